@@ -171,6 +171,10 @@ public class CompilationTask {
         return baseDir;
     }
     
+    public boolean hasSource(String className) {
+        return sources.containsKey(className);
+    }
+    
     public String getSource(String className) {
         String ret = sources.get(className);
         RJavaCompiler.assertion(ret != null, "The source for " + className + " is not stored");
@@ -16,6 +16,8 @@ public final class Constants {
     public static final String RJAVA_INLINE_ANNOTATION = "org.vmmagic.pragma.Inline";
     public static final String RJAVA_NOBOUNDSCHECK_ANNOTATION = "org.vmmagic.pragma.NoBoundsCheck";
     public static final String RJAVA_REGISTERFIELD_ANNOTATION = "org.rjava.restriction.rules.RegisterField";
+    public static final String RJAVA_NOESCAPES_ANNOTATION = "org.vmmagic.pragma.NoEscapes";
+    public static final String RJAVA_PURE_ANNOTATION = "org.vmmagic.pragma.Pure";
     
     // the suffix that check rules end with
     public static final String CHECK_RULE_SUFFIX = "_CHECK";
@@ -62,6 +64,7 @@ public final class Constants {
         "java.lang.Object",
         "java.lang.String",
         "java.lang.StringBuffer",
+        "java.lang.StringBuilder",
         "java.lang.System",
         "java.lang.Throwable",
         "java.lang.Boolean",
@@ -0,0 +1,343 @@
+package org.rjava.compiler;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.rjava.compiler.semantics.ClassHierarchy;
+import org.rjava.compiler.semantics.SemanticMap;
+import org.rjava.compiler.semantics.representation.RClass;
+import org.rjava.compiler.semantics.representation.RField;
+import org.rjava.compiler.semantics.representation.RMethod;
+import org.rjava.compiler.semantics.representation.RStatement;
+import org.rjava.compiler.util.Tree;
+import org.rjava.compiler.util.TreeBreadthFirstIterator;
+
+import soot.ArrayType;
+import soot.RefType;
+import soot.SootField;
+import soot.SootMethod;
+import soot.Type;
+import soot.Value;
+import soot.ValueBox;
+import soot.jimple.FieldRef;
+import soot.jimple.InstanceInvokeExpr;
+import soot.jimple.InstanceOfExpr;
+import soot.jimple.InterfaceInvokeExpr;
+import soot.jimple.InvokeExpr;
+import soot.jimple.VirtualInvokeExpr;
+
+/**
+ * Per-class cache for incremental compilation (-incremental), stored under the output directory.
+ *
+ * A class is keyed by a fingerprint of
+ * 1. its own body (jimple) and the analysis facts (constant propagation, points-to) code generation consumes for it
+ * 2. the interface of classes it depends on: its ancestors, outer class, and every class its code references
+ *    (fields, method signatures, annotations, interface ids), and the ids of the interfaces in its itable
+ * 3. the interface of all descendants of a class it virtually calls on, since devirtualization depends on them
+ * If the fingerprint is unchanged, the code generator merges the cached summary of the class instead of translating it,
+ * and the generated files of the class are left untouched.
+ * @author yi
+ *
+ */
+public class IncrementalCache {
+    public static final String CACHE_DIR = ".rjava_cache/";
+    public static final String CACHE_FILE_SUFFIX = ".properties";
+    
+    private static final String FINGERPRINT = "rjava.fingerprint";
+    // bump this when generated code changes for the same input
+    private static final String CACHE_VERSION = "1";
+    
+    private String dir;
+    
+    private Map<RClass, String> interfaces = new HashMap<RClass, String>();
+    // fingerprints are computed once at lookup, translating other classes may change what we would describe later
+    private Map<RClass, String> fingerprints = new HashMap<RClass, String>();
+    
+    public IncrementalCache(String outputDir) {
+        this.dir = outputDir + CACHE_DIR;
+    }
+    
+    /**
+     * @param klass
+     * @return the cached summary of klass, or null if klass is not cached or changed since it was cached
+     */
+    public Properties lookup(RClass klass) {
+        File f = new File(dir + klass.getName() + CACHE_FILE_SUFFIX);
+        if (!f.exists())
+            return null;
+        
+        Properties cached = new Properties();
+        FileInputStream in = null;
+        try {
+            in = new FileInputStream(f);
+            cached.load(in);
+        } catch (IOException e) {
+            RJavaCompiler.warning("Ignoring unreadable cache " + f.getPath() + ": " + e.getMessage());
+            return null;
+        } finally {
+            if (in != null)
+                try {
+                    in.close();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+        }
+        
+        if (!fingerprint(klass).equals(cached.getProperty(FINGERPRINT)))
+            return null;
+        
+        cached.remove(FINGERPRINT);
+        return cached;
+    }
+    
+    public void store(RClass klass, Properties summary) {
+        Properties cached = new Properties();
+        cached.putAll(summary);
+        cached.setProperty(FINGERPRINT, fingerprint(klass));
+        
+        File f = new File(dir + klass.getName() + CACHE_FILE_SUFFIX);
+        FileOutputStream out = null;
+        try {
+            f.getParentFile().mkdirs();
+            out = new FileOutputStream(f);
+            cached.store(out, klass.getName());
+        } catch (IOException e) {
+            // a missing cache entry only means we will translate the class next time
+            RJavaCompiler.warning("Fail to write cache " + f.getPath() + ": " + e.getMessage());
+        } finally {
+            if (out != null)
+                try {
+                    out.close();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+        }
+    }
+    
+    public String fingerprint(RClass klass) {
+        String ret = fingerprints.get(klass);
+        if (ret == null) {
+            ret = computeFingerprint(klass);
+            fingerprints.put(klass, ret);
+        }
+        return ret;
+    }
+    
+    private String computeFingerprint(RClass klass) {
+        StringBuilder key = new StringBuilder();
+        key.append(CACHE_VERSION + "\n");
+        key.append(describeOptions());
+        key.append(describeBody(klass));
+        
+        // classes whose interface matters to klass, and whether klass virtually calls on them. sorted by name to be stable
+        Map<String, Boolean> dependencies = new TreeMap<String, Boolean>();
+        dependencies.put(klass.getName(), false);
+        for (RClass ancestor : SemanticMap.cha.getClassHierarchy().getAncestorsOf(klass))
+            dependencies.put(ancestor.getName(), false);
+        if (klass.hasInterfaces())
+            for (RClass myInterface : klass.getInterfaces())
+                dependencies.put(myInterface.getName(), false);
+        if (klass.isInnerClass() && SemanticMap.getOuterClass(klass) != null)
+            dependencies.put(SemanticMap.getOuterClass(klass).getName(), false);
+        collectReferencedClasses(klass, dependencies);
+        
+        key.append(describeItable(klass));
+        
+        ClassHierarchy hierarchy = SemanticMap.cha.getClassHierarchy();
+        for (String name : dependencies.keySet()) {
+            RClass dependency = SemanticMap.getAllClasses().get(name);
+            if (dependency == null)
+                continue;
+            if (!dependency.isAppClass()) {
+                // code that invokes on or type checks against a library interface uses its id
+                if (dependency.isInterface() && hierarchy.hasInterfaceId(dependency))
+                    key.append("interface " + name + " id:" + hierarchy.getInterfaceId(dependency) + "\n");
+                continue;
+            }
+            
+            key.append(describeInterface(dependency));
+            if (dependencies.get(name)) {
+                Tree<RClass> tree = SemanticMap.cha.getClassHierarchy().getTree(dependency);
+                if (tree == null)
+                    continue;
+                TreeBreadthFirstIterator<RClass> iter = tree.getBreadthFirstIterator();
+                while (iter.hasNext()) {
+                    RClass descendant = iter.next();
+                    if (descendant != null && !descendant.equals(dependency))
+                        key.append(describeInterface(descendant));
+                }
+            }
+        }
+        
+        return digest(key.toString());
+    }
+    
+    private String describeOptions() {
+        return "options:" + RJavaCompiler.noOpt + RJavaCompiler.debugTarget + RJavaCompiler.m32 + RJavaCompiler.keepSourceLineNumber +
+                RJavaCompiler.hostOS + RJavaCompiler.OPT_DEVIRTUALIZATION + RJavaCompiler.OPT_CHA_DEVIRTUALIZATION + RJavaCompiler.OPT_OBJECT_INLINING + RJavaCompiler.OPT_CONSTANT_PROPAGATION + RJavaCompiler.verifyConstants + RJavaCompiler.OPT_BOUNDS_CHECK_ELIMINATION + RJavaCompiler.OPT_STRING_CONCAT_CHAINS + RJavaCompiler.OPT_ESCAPE_ANALYSIS + RJavaCompiler.profileFunctions +
+                " display:" + SemanticMap.cha.getClassHierarchy().getDisplaySize() + "\n";
+    }
+    
+    /**
+     * methods and statements of klass, with the analysis facts generated code depends on
+     */
+    private String describeBody(RClass klass) {
+        StringBuilder ret = new StringBuilder();
+        for (RMethod method : klass.getMethods()) {
+            ret.append(method.getSignature());
+            ret.append(" inline:" + method.hasInlineAnnotation() + method.isHeuristicInlined() + "\n");
+            for (RStatement stmt : method.getBody()) {
+                ret.append(stmt.toString());
+                if (RJavaCompiler.keepSourceLineNumber)
+                    ret.append(" @" + stmt.getLineStart());
+                
+                if (stmt.getType() == RStatement.ASSIGN_STMT || stmt.getType() == RStatement.IDENTITY_STMT)
+                    ret.append(describeFacts(stmt.getLeftOp()));
+                if (SemanticMap.sccp != null && SemanticMap.sccp.getDefinedConstant(stmt.internal()) != null)
+                    ret.append(" sccp:" + SemanticMap.sccp.getDefinedConstant(stmt.internal()));
+                if (SemanticMap.ea != null && SemanticMap.ea.isStackAllocated(stmt.internal()))
+                    ret.append(" stack");
+                if (stmt.containsInvokeExpr() && stmt.getInvokeExpr().getInternal() instanceof InstanceInvokeExpr)
+                    ret.append(describeFacts(((InstanceInvokeExpr) stmt.getInvokeExpr().getInternal()).getBase()));
+                ret.append("\n");
+            }
+        }
+        return ret.toString();
+    }
+    
+    private String describeFacts(Value v) {
+        StringBuilder ret = new StringBuilder();
+        if (SemanticMap.cp != null && SemanticMap.cp.isConstant(v))
+            ret.append(" const:" + SemanticMap.cp.getConstant(v));
+        if (SemanticMap.pta != null) {
+            ret.append(" type:" + SemanticMap.pta.inferType(v));
+            ret.append(" pointsTo:" + SemanticMap.pta.tracePointsTo(v));
+        }
+        return ret.toString();
+    }
+    
+    /**
+     * the itable slots class_init() sets for klass: its interfaces, their super interfaces, and the interfaces of its super classes
+     */
+    private String describeItable(RClass klass) {
+        Set<RClass> implemented = new HashSet<RClass>();
+        if (klass.hasInterfaces())
+            for (RClass myInterface : klass.getInterfaces())
+                ClassHierarchy.addWithSuperInterfaces(myInterface, implemented);
+        if (klass.hasInheritedInterfaces())
+            for (RClass myInterface : klass.getInheritedInterfaces())
+                ClassHierarchy.addWithSuperInterfaces(myInterface, implemented);
+        
+        Map<String, Integer> ids = new TreeMap<String, Integer>();
+        for (RClass myInterface : implemented)
+            ids.put(myInterface.getName(), SemanticMap.cha.getClassHierarchy().getInterfaceId(myInterface));
+        return "itable:" + ids + "\n";
+    }
+    
+    /**
+     * what other classes see from klass: its declaration, fields and method signatures
+     */
+    private String describeInterface(RClass klass) {
+        String ret = interfaces.get(klass);
+        if (ret != null)
+            return ret;
+        
+        StringBuilder out = new StringBuilder();
+        out.append("class " + klass.getName() + " " + klass.internal().getModifiers());
+        if (klass.hasSuperClass())
+            out.append(" extends " + klass.getSuperClass().getName());
+        if (klass.hasInterfaces())
+            for (RClass myInterface : klass.getInterfaces())
+                out.append(" implements " + myInterface.getName());
+        if (klass.isInterface())
+            out.append(" id:" + SemanticMap.cha.getClassHierarchy().getInterfaceId(klass));
+        else out.append(" depth:" + ClassHierarchy.getDepth(klass));
+        out.append(" " + klass.internal().getTags() + "\n");
+        
+        for (SootField f : klass.internal().getFields())
+            out.append(f.getDeclaration() + " " + f.getTags() + " inlinable:" + RField.fromSootField(f).isInlinable() + "\n");
+        
+        for (RMethod method : klass.getMethods()) {
+            SootMethod m = method.internal();
+            out.append(m.getDeclaration() + " " + m.getTags());
+            out.append(" inline:" + method.hasInlineAnnotation() + method.isHeuristicInlined() + "\n");
+        }
+        
+        ret = out.toString();
+        interfaces.put(klass, ret);
+        return ret;
+    }
+    
+    /**
+     * put all application classes referenced from klass' code into dependencies.
+     * A class is mapped to true if klass dispatches a virtual/interface call on it
+     */
+    private void collectReferencedClasses(RClass klass, Map<String, Boolean> dependencies) {
+        for (RMethod method : klass.getMethods()) {
+            for (RStatement stmt : method.getBody()) {
+                for (Object o : stmt.internal().getUseAndDefBoxes()) {
+                    Value v = ((ValueBox) o).getValue();
+                    addDependency(dependencies, v.getType(), false);
+                    
+                    if (v instanceof InstanceOfExpr)
+                        addDependency(dependencies, ((InstanceOfExpr) v).getCheckType(), false);
+                    else if (v instanceof FieldRef)
+                        addDependency(dependencies, ((FieldRef) v).getField().getDeclaringClass().getName(), false);
+                    else if (v instanceof InvokeExpr) {
+                        boolean dispatch = v instanceof VirtualInvokeExpr || v instanceof InterfaceInvokeExpr;
+                        addDependency(dependencies, ((InvokeExpr) v).getMethod().getDeclaringClass().getName(), dispatch);
+                    }
+                }
+            }
+        }
+    }
+    
+    private void addDependency(Map<String, Boolean> dependencies, Type type, boolean dispatch) {
+        if (type instanceof ArrayType)
+            type = ((ArrayType) type).baseType;
+        if (type instanceof RefType)
+            addDependency(dependencies, ((RefType) type).getClassName(), dispatch);
+    }
+    
+    private void addDependency(Map<String, Boolean> dependencies, String className, boolean dispatch) {
+        Boolean old = dependencies.get(className);
+        dependencies.put(className, (old != null && old) || dispatch);
+    }
+    
+    private static String digest(String s) {
+        try {
+            return digest(s.getBytes("UTF-8"));
+        } catch (UnsupportedEncodingException e) {
+            RJavaCompiler.error(e);
+        }
+        return null;
+    }
+    
+    /**
+     * @param bytes
+     * @return md5 of bytes as a hex string
+     */
+    public static String digest(byte[] bytes) {
+        try {
+            byte[] hash = MessageDigest.getInstance("MD5").digest(bytes);
+            StringBuilder ret = new StringBuilder();
+            for (byte b : hash)
+                ret.append(Integer.toHexString((b & 0xff) | 0x100).substring(1));
+            return ret.toString();
+        } catch (NoSuchAlgorithmException e) {
+            RJavaCompiler.error(e);
+        }
+        return null;
+    }
+}
@@ -9,7 +9,12 @@ import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.rjava.compiler.exception.RJavaError;
 import org.rjava.compiler.exception.RJavaRestrictionViolation;
@@ -55,22 +60,37 @@ public class RJavaCompiler {
     public static boolean noOpt = false;
     // keep source-level file name and line number
     public static boolean keepSourceLineNumber = false;
+    // how many threads the compiler may use to run compilation passes and to translate classes
+    public static int compilerThreads = 1;
+    // only translate classes that changed since last compilation into the same output dir (see IncrementalCache)
+    public static boolean incremental = false;
+    // keep a snapshot of parsed classes next to output dir, and load unchanged classes from it (see SceneSnapshot)
+    public static boolean useSnapshot = false;
+    // keep code as it is, and check the constants that constant propagation finds with assertions (see ConditionalConstantPropagationPass)
+    public static boolean verifyConstants = false;
     
     // rjava restr./ext. annotations' path
     public static String soot_jdk_path = "components/soot/";    // should contain jce.jar and rt.jar
     public static String rjava_ext = "rjava_ext/";
     public static String rjava_rt = "rjava_rt/";
+    // hand-written C sources (e.g. a host layer around a library) copied into the output dir and built with it
+    public static String nativeSrc = null;
     
     public static final int HOST_MACOSX = 0;
     public static final int HOST_LINUX  = 1;
     // which os the C code will run on
     public static int hostOS = HOST_MACOSX;
     
+    public static final int PROFILE_NONE   = 0;
+    public static final int PROFILE_COUNT  = 1;
+    public static final int PROFILE_TIME   = 2;
+    public static final int PROFILE_SAMPLE = 3;
     /**
-     * log how many times each function is executed
-     * Turning on this results in extremely slow execution. So be careful to turn it on for large programs
+     * instrument generated functions to profile their execution (the profiler is rjava_rt/rjava_profiler.h, the values
+     * match RJAVA_PROFILE_* there). count: calls of each method; time: calls and inclusive time of each method;
+     * sample: call stacks sampled with SIGPROF, for flame graphs
      */
-    public static final boolean LOG_FUNCTION_EXECUTION = false;
+    public static int profileFunctions = PROFILE_NONE;
     
     private RJavaCompiler(CompilationTask task) {
     	this.task = task;
@@ -105,27 +125,12 @@ public class RJavaCompiler {
         try {
         	codeGenerator.preTranslationWork();
         	
-        	for (int i = 0; i < task.getClasses().size(); i ++) {
-        	    RJavaCompiler.println("Compiling [" + task.getClasses().toArray()[i] + "]...");
-        	    String className = (String) task.getClasses().get(i);
-        	    RClass klass = SemanticMap.getAllClasses().get(className);
-        	    
-        	    // for each class, check restriction compliance first
-        	    try {
-        	        checker.comply(klass);
-        	    } catch (RJavaError e) {
-        	        error(e);
-        	    } catch (RJavaWarning e) {
-        	        warning(e);
-        	    } 
-        	    
-        	    // then compiles the class	    
-        	    try {
-        	        codeGenerator.translate(klass);
-        	    } catch (RJavaError e) {
-        	        error(e);
-        	    } catch (RJavaWarning e) {
-        	        warning(e);
+        	if (incremental || (compilerThreads > 1 && task.getClasses().size() > 1))
+        	    compileInContexts();
+        	else {
+        	    for (int i = 0; i < task.getClasses().size(); i ++) {
+        	        String className = (String) task.getClasses().get(i);
+        	        compileClass(SemanticMap.getAllClasses().get(className), codeGenerator);
         	    }
         	}
         	
@@ -138,6 +143,107 @@ public class RJavaCompiler {
         }
     }
     
+    /**
+     * check restriction compliance and translate one class with the given generator
+     * @param klass
+     * @param generator
+     */
+    private void compileClass(RClass klass, CodeGenerator generator) {
+        RJavaCompiler.println("Compiling [" + klass.getName() + "]...");
+        
+        // for each class, check restriction compliance first
+        checkRestrictions(klass);
+        
+        // then compiles the class      
+        try {
+            generator.translate(klass);
+        } catch (RJavaError e) {
+            error(e);
+        } catch (RJavaWarning e) {
+            warning(e);
+        }
+    }
+    
+    /**
+     * an up-to-date class (incremental compilation) is not translated, but still checked so violations are reported
+     * @param klass
+     */
+    private void checkClass(RClass klass) {
+        RJavaCompiler.println("Up to date [" + klass.getName() + "]");
+        checkRestrictions(klass);
+    }
+    
+    private void checkRestrictions(RClass klass) {
+        try {
+            checker.comply(klass);
+        } catch (RJavaError e) {
+            error(e);
+        } catch (RJavaWarning e) {
+            warning(e);
+        }
+    }
+    
+    /**
+     * translate classes with compilerThreads threads, each class in its own generator context. 
+     * Contexts are merged back in compilation order, so the output is the same as compiling one by one. 
+     * With incremental compilation, a class whose fingerprint is unchanged is merged from the cache instead of being translated. 
+     * Falls back to serial compilation if the code generator doesn't support class contexts
+     */
+    private void compileInContexts() {
+        final List<RClass> classes = new ArrayList<RClass>();
+        final List<CodeGenerator> contexts = new ArrayList<CodeGenerator>();
+        final List<Properties> cached = new ArrayList<Properties>();
+        IncrementalCache cache = incremental ? new IncrementalCache(outputDir) : null;
+        
+        for (int i = 0; i < task.getClasses().size(); i ++) {
+            RClass klass = SemanticMap.getAllClasses().get((String) task.getClasses().get(i));
+            CodeGenerator context = codeGenerator.newClassContext(klass);
+            if (context == null) {
+                RJavaCompiler.assertion(i == 0, "code generator should either always or never support class contexts");
+                if (incremental)
+                    warning("Incremental compilation is not supported by " + codeGenerator.getClass().getName() + ", compiling all classes");
+                for (int j = 0; j < task.getClasses().size(); j ++)
+                    compileClass(SemanticMap.getAllClasses().get((String) task.getClasses().get(j)), codeGenerator);
+                return;
+            }
+            classes.add(klass);
+            contexts.add(context);
+            cached.add(incremental ? cache.lookup(klass) : null);
+        }
+        
+        ExecutorService pool = Executors.newFixedThreadPool(compilerThreads);
+        List<Future<?>> futures = new ArrayList<Future<?>>();
+        for (int i = 0; i < classes.size(); i ++) {
+            final int index = i;
+            futures.add(pool.submit(new Runnable() {
+                @Override
+                public void run() {
+                    if (cached.get(index) != null)
+                        checkClass(classes.get(index));
+                    else compileClass(classes.get(index), contexts.get(index));
+                }
+            }));
+        }
+        pool.shutdown();
+        
+        try {
+            for (int i = 0; i < classes.size(); i ++) {
+                futures.get(i).get();
+                if (cached.get(i) != null)
+                    codeGenerator.mergeClassSummary(cached.get(i));
+                else {
+                    codeGenerator.mergeClassContext(contexts.get(i));
+                    if (incremental)
+                        cache.store(classes.get(i), codeGenerator.summarizeClassContext(contexts.get(i)));
+                }
+            }
+        } catch (InterruptedException e) {
+            error(e);
+        } catch (ExecutionException e) {
+            error(e.getCause());
+        }
+    }
+    
     public void finish() throws IOException {
         RJavaCompiler.println("");
         if (checker.needReport()) {
@@ -200,6 +306,9 @@ public class RJavaCompiler {
                 } else if (args[i].equals("-rjava_rt")) {
                     rjava_rt = args[i+1];
                     i++;
+                } else if (args[i].equals("-native_src")) {
+                    nativeSrc = args[i+1];
+                    i++;
                 } else if (args[i].equals("-host_os")) {
                     String os = args[i+1];
                     if (os.equalsIgnoreCase("mac")) {
@@ -217,6 +326,26 @@ public class RJavaCompiler {
                     noOpt = true;
                 } else if (args[i].equals("-keep_source_line_number")) {
                     keepSourceLineNumber = true;
+                } else if (args[i].equals("-snapshot")) {
+                    useSnapshot = true;
+                } else if (args[i].equals("-incremental")) {
+                    incremental = true;
+                } else if (args[i].equals("-verify_constants")) {
+                    verifyConstants = true;
+                } else if (args[i].equals("-profile")) {
+                    if (args[i+1].equals("count"))
+                        profileFunctions = PROFILE_COUNT;
+                    else if (args[i+1].equals("time"))
+                        profileFunctions = PROFILE_TIME;
+                    else if (args[i+1].equals("sample"))
+                        profileFunctions = PROFILE_SAMPLE;
+                    else error("Unknown profile mode (expecting count, time or sample): " + args[i+1]);
+                    i++;
+                } else if (args[i].equals("-threads")) {
+                    compilerThreads = Integer.parseInt(args[i+1]);
+                    if (compilerThreads < 1)
+                        error("Number of compiler threads should be at least 1: " + args[i+1]);
+                    i++;
                 }
                 else {
                     sources.add(args[i]);
@@ -328,6 +457,14 @@ public class RJavaCompiler {
     	usage += "-o [file_name]\t\t\texecutable name\n";
     	usage += "-m32\t\t\tbuild for 32 bits address\n";
     	usage += "-dt\t\t\tenable debug information during c compilation (-g in gcc)\n";
+    	usage += "-native_src [dir]\t\t\tcopy hand-written C files in dir into output, and build them with the generated code\n";
+    	usage += "-snapshot\t\t\tload classes whose source is unchanged from a snapshot of last parsing (stored next to output dir)\n";
+    	usage += "-incremental\t\t\tkeep output dir, and only translate classes that changed since last compilation\n";
+    	usage += "-verify_constants\t\t\tdo not substitute constants or fold branches, assert the constants found at runtime instead\n";
+    	usage += "-target:pgo=[cmd]\t\t\tgenerated Makefile builds with -flto and profile feedback from running cmd in output dir, and writes the profile to rjava_profile.txt\n";
+    	usage += "-target:pgo-profile=[file]\t\t\tinline methods that are hot in a profile from last PGO build\n";
+    	usage += "-profile [count|time|sample]\t\t\tgenerated code counts calls of each method, or also times them, or samples call stacks. The report is written to rjava_prof.txt at exit\n";
+    	usage += "-threads [n]\t\t\tuse n threads for compilation passes that can visit classes in parallel, and for translating classes\n";
     	error(usage);
     }
 
@@ -392,6 +529,12 @@ public class RJavaCompiler {
     
     public static boolean OPT_DEVIRTUALIZATION = true;
     
+    /**
+     * virtual calls that type inference cannot devirtualize are devirtualized by class hierarchy analysis,
+     * with guards if there are a few implementations (see CExpressions.fromVirtualInvokeByClassHierarchy())
+     */
+    public static boolean OPT_CHA_DEVIRTUALIZATION = true;
+    
     /**
      * only works in the simplest testcase (see org.rjava.test.opt.objectinline)
      * and this opt seems not making code faster
@@ -410,13 +553,35 @@ public class RJavaCompiler {
      */
     public static boolean OPT_OBJECT_INLINING =  false;   
     
+    /**
+     * constants are substituted, and branches on them folded, before code generation (see ConditionalConstantPropagationPass)
+     */
     public static boolean OPT_CONSTANT_PROPAGATION = true;
     
+    /**
+     * array accesses that range analysis proves in bounds are not checked (see BoundsCheckEliminationPass)
+     */
+    public static boolean OPT_BOUNDS_CHECK_ELIMINATION = true;
+    
+    /**
+     * string buffers that only live in a concatenation chain are presized and not locked (see StringConcatChains)
+     */
+    public static boolean OPT_STRING_CONCAT_CHAINS = true;
+    
+    /**
+     * objects that do not escape the method allocating them are put on stack (see EscapeAnalysisPass)
+     */
+    public static boolean OPT_ESCAPE_ANALYSIS = true;
+    
     private void lateCLInit() {
         if (noOpt) {
             OPT_DEVIRTUALIZATION        = false;
+            OPT_CHA_DEVIRTUALIZATION    = false;
             OPT_OBJECT_INLINING         = false;
             OPT_CONSTANT_PROPAGATION    = false;
+            OPT_BOUNDS_CHECK_ELIMINATION = false;
+            OPT_STRING_CONCAT_CHAINS    = false;
+            OPT_ESCAPE_ANALYSIS         = false;
         }
     }
 }
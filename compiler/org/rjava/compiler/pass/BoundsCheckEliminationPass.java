@@ -0,0 +1,541 @@
+package org.rjava.compiler.pass;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.rjava.compiler.RJavaCompiler;
+import org.rjava.compiler.semantics.representation.RClass;
+import org.rjava.compiler.semantics.representation.RMethod;
+import org.rjava.compiler.semantics.representation.RStatement;
+import org.rjava.compiler.semantics.representation.stmt.RAssignStmt;
+import org.rjava.compiler.semantics.representation.stmt.RBreakpointStmt;
+import org.rjava.compiler.semantics.representation.stmt.REnterMonitorStmt;
+import org.rjava.compiler.semantics.representation.stmt.RExitMonitorStmt;
+import org.rjava.compiler.semantics.representation.stmt.RGotoStmt;
+import org.rjava.compiler.semantics.representation.stmt.RIdentityStmt;
+import org.rjava.compiler.semantics.representation.stmt.RIfStmt;
+import org.rjava.compiler.semantics.representation.stmt.RInvokeExpr;
+import org.rjava.compiler.semantics.representation.stmt.RInvokeStmt;
+import org.rjava.compiler.semantics.representation.stmt.RLookupSwitchStmt;
+import org.rjava.compiler.semantics.representation.stmt.RNopStmt;
+import org.rjava.compiler.semantics.representation.stmt.RRetStmt;
+import org.rjava.compiler.semantics.representation.stmt.RReturnStmt;
+import org.rjava.compiler.semantics.representation.stmt.RReturnVoidStmt;
+import org.rjava.compiler.semantics.representation.stmt.RTableSwitchStmt;
+import org.rjava.compiler.semantics.representation.stmt.RThrowStmt;
+import org.rjava.compiler.util.Statistics;
+
+import soot.Local;
+import soot.Unit;
+import soot.UnitBox;
+import soot.Value;
+import soot.jimple.AddExpr;
+import soot.jimple.ArrayRef;
+import soot.jimple.BinopExpr;
+import soot.jimple.ConditionExpr;
+import soot.jimple.DefinitionStmt;
+import soot.jimple.GeExpr;
+import soot.jimple.GtExpr;
+import soot.jimple.IfStmt;
+import soot.jimple.IntConstant;
+import soot.jimple.LeExpr;
+import soot.jimple.LengthExpr;
+import soot.jimple.LtExpr;
+import soot.jimple.StaticFieldRef;
+import soot.jimple.Stmt;
+import soot.jimple.SubExpr;
+
+/**
+ * Intra-procedural range analysis that finds array accesses which never go out of bounds,
+ * so code generation can use rjava_access_array_nobounds_check() for them.
+ *
+ * For every statement we compute facts that hold whenever it is reached (a forward must-analysis):
+ *   i >= 0          i is non-negative
+ *   i < a.length    i is below the length of array local a
+ *   n == a.length   n holds the length of array local a
+ * Facts come from constants, lengthof, conditional branches (e.g. the loop test i < a.length), and induction steps.
+ * i = i + 1 keeps i >= 0 only if i < a.length held before (so the increment cannot overflow). i = i - c keeps i < a.length
+ * only if i >= 0 held before. An access a[i] is in bounds if both i >= 0 and i < a.length hold.
+ *
+ * e.g. the canonical for (int i = 0; i < a.length; i++) a[i]... is proved in bounds, as is the reverse loop over a.
+ * Array fields are loaded into a new local for each access, so they are not covered.
+ * @author yi
+ *
+ */
+public class BoundsCheckEliminationPass extends CompilationPass {
+    public static final boolean DEBUG = false;
+    
+    // array refs (soot values) that are proved in bounds, added to by workers visiting different classes
+    private Set<Value> inBounds = Collections.synchronizedSet(new HashSet<Value>());
+    
+    /**
+     * the analysis is intraprocedural, a visit only reads the body of the method being visited
+     */
+    @Override
+    protected boolean isParallel() {
+        return true;
+    }
+    
+    public boolean isInBounds(Value arrayRef) {
+        return inBounds.contains(arrayRef);
+    }
+    
+    @Override
+    public void visit(RClass klass) {
+    
+    }
+    
+    @Override
+    public void visit(RMethod method) {
+        List<RStatement> body = method.getBody();
+        // accesses in these methods are not checked anyway
+        if (body.isEmpty() || method.hasNoBoundsCheckAnnotation())
+            return;
+        
+        Map<Unit, Facts> facts = analyze(body);
+        
+        int accesses = 0;
+        int removed = 0;
+        for (RStatement stmt : body) {
+            Stmt s = stmt.internal();
+            if (!s.containsArrayRef())
+                continue;
+            
+            accesses++;
+            ArrayRef ref = s.getArrayRef();
+            if (isProvedInBounds(ref, facts.get(s))) {
+                inBounds.add(ref);
+                removed++;
+                if (DEBUG)
+                    RJavaCompiler.debug("in bounds: " + stmt.toSimpleString() + " in " + method.getSignature());
+            }
+        }
+        
+        Statistics.increaseCounter("array accesses", accesses);
+        if (removed != 0) {
+            Statistics.increaseCounter("bounds checks removed", removed);
+            Statistics.increaseCounter("bounds checks removed in " + method.getSignature(), removed);
+        }
+    }
+    
+    private boolean isProvedInBounds(ArrayRef ref, Facts facts) {
+        if (facts == null || facts.top)
+            return false;
+        if (!(ref.getBase() instanceof Local) || !(ref.getIndex() instanceof Local))
+            return false;
+        
+        Local index = (Local) ref.getIndex();
+        Local array = (Local) ref.getBase();
+        return facts.nonNegative.contains(index) && facts.bounds.contains(new Bound(index, array));
+    }
+    
+    /**
+     * @param body
+     * @return facts that hold before each statement
+     */
+    private Map<Unit, Facts> analyze(List<RStatement> body) {
+        List<Unit> units = new ArrayList<Unit>();
+        for (RStatement stmt : body)
+            units.add(stmt.internal());
+        
+        // control flow (exceptional edges are ignored, handlers have no predecessor and start with no facts)
+        Map<Unit, Unit> next = new HashMap<Unit, Unit>();
+        Map<Unit, List<Unit>> preds = new HashMap<Unit, List<Unit>>();
+        for (Unit u : units)
+            preds.put(u, new ArrayList<Unit>());
+        for (int i = 0; i < units.size(); i++) {
+            Unit u = units.get(i);
+            if (i + 1 < units.size())
+                next.put(u, units.get(i + 1));
+            
+            if (u.fallsThrough() && i + 1 < units.size())
+                preds.get(units.get(i + 1)).add(u);
+            if (u.branches()) {
+                for (Object o : u.getUnitBoxes()) {
+                    Unit target = ((UnitBox) o).getUnit();
+                    if (preds.containsKey(target))
+                        preds.get(target).add(u);
+                }
+            }
+        }
+        
+        // optimistic start: everything holds (top) until we see otherwise. Iterate till nothing changes
+        Map<Unit, Facts> in = new HashMap<Unit, Facts>();
+        for (Unit u : units)
+            in.put(u, Facts.top());
+        
+        Unit entry = units.get(0);
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (Unit u : units) {
+                Facts newIn = null;
+                if (u == entry || preds.get(u).isEmpty())
+                    newIn = new Facts();
+                
+                for (Unit p : preds.get(u)) {
+                    Facts edge = flowAlongEdge(p, u, next.get(p), in.get(p));
+                    newIn = newIn == null ? edge : newIn.meet(edge);
+                }
+                
+                if (!newIn.equals(in.get(u))) {
+                    in.put(u, newIn);
+                    changed = true;
+                }
+            }
+        }
+        
+        return in;
+    }
+    
+    /**
+     * facts that hold when control goes from p to succ
+     */
+    private Facts flowAlongEdge(Unit p, Unit succ, Unit fallThrough, Facts in) {
+        Facts out = flowThrough(p, in);
+        if (out.top || !(p instanceof IfStmt))
+            return out;
+        
+        IfStmt ifStmt = (IfStmt) p;
+        boolean taken = succ == ifStmt.getTarget();
+        boolean fallen = succ == fallThrough;
+        // both edges lead to succ, we know nothing about the condition
+        if (taken == fallen)
+            return out;
+        
+        assume(out, (ConditionExpr) ifStmt.getCondition(), taken);
+        return out;
+    }
+    
+    private Facts flowThrough(Unit u, Facts in) {
+        if (in.top)
+            return Facts.top();
+        
+        Facts out = in.copy();
+        if (!(u instanceof DefinitionStmt) || !(((DefinitionStmt) u).getLeftOp() instanceof Local))
+            return out;
+        
+        Local x = (Local) ((DefinitionStmt) u).getLeftOp();
+        Value right = ((DefinitionStmt) u).getRightOp();
+        
+        // what we know about x after the definition, computed from 'in' since x may appear on the right
+        boolean nonNegative = false;
+        Set<Local> below = new HashSet<Local>();
+        Local lengthOf = null;
+        
+        if (right instanceof IntConstant) {
+            nonNegative = ((IntConstant) right).value >= 0;
+        } else if (right instanceof Local) {
+            Local y = (Local) right;
+            nonNegative = in.nonNegative.contains(y);
+            below.addAll(in.getArraysAbove(y));
+            lengthOf = in.lengths.get(y);
+        } else if (right instanceof LengthExpr) {
+            nonNegative = true;
+            if (((LengthExpr) right).getOp() instanceof Local)
+                lengthOf = (Local) ((LengthExpr) right).getOp();
+        } else if (right instanceof AddExpr || right instanceof SubExpr) {
+            Value op1 = ((BinopExpr) right).getOp1();
+            Value op2 = ((BinopExpr) right).getOp2();
+            
+            // x = y + delta
+            Local y = null;
+            int delta = 0;
+            if (op1 instanceof Local && op2 instanceof IntConstant && !(right instanceof SubExpr && ((IntConstant) op2).value == Integer.MIN_VALUE)) {
+                y = (Local) op1;
+                delta = ((IntConstant) op2).value;
+                if (right instanceof SubExpr)
+                    delta = -delta;
+            } else if (right instanceof AddExpr && op2 instanceof Local && op1 instanceof IntConstant) {
+                y = (Local) op2;
+                delta = ((IntConstant) op1).value;
+            }
+            
+            if (y != null && delta == 0) {
+                nonNegative = in.nonNegative.contains(y);
+                below.addAll(in.getArraysAbove(y));
+            } else if (y != null && delta == 1) {
+                // y < some length <= MAX_INT, y + 1 does not overflow
+                nonNegative = in.nonNegative.contains(y) && !in.getArraysAbove(y).isEmpty();
+            } else if (y != null && delta < 0) {
+                // y >= 0, y - c does not underflow
+                if (in.lengths.containsKey(y))
+                    below.add(in.lengths.get(y));
+                if (in.nonNegative.contains(y))
+                    below.addAll(in.getArraysAbove(y));
+            }
+        }
+        
+        out.kill(x);
+        if (nonNegative)
+            out.nonNegative.add(x);
+        for (Local array : below)
+            out.bounds.add(new Bound(x, array));
+        if (lengthOf != null && lengthOf != x)
+            out.lengths.put(x, lengthOf);
+        
+        return out;
+    }
+    
+    private void assume(Facts facts, ConditionExpr cond, boolean holds) {
+        Value op1 = cond.getOp1();
+        Value op2 = cond.getOp2();
+        
+        if (cond instanceof LtExpr) {
+            if (holds) lessThan(facts, op1, op2);
+            else atLeast(facts, op1, op2);
+        } else if (cond instanceof GeExpr) {
+            if (holds) atLeast(facts, op1, op2);
+            else lessThan(facts, op1, op2);
+        } else if (cond instanceof GtExpr) {
+            if (holds) lessThan(facts, op2, op1);
+            else atLeast(facts, op2, op1);
+        } else if (cond instanceof LeExpr) {
+            if (holds) atLeast(facts, op2, op1);
+            else lessThan(facts, op2, op1);
+        }
+    }
+    
+    /**
+     * a < b holds
+     */
+    private void lessThan(Facts facts, Value a, Value b) {
+        if (!(a instanceof Local) || !(b instanceof Local))
+            return;
+        
+        Local index = (Local) a;
+        Local limit = (Local) b;
+        if (facts.lengths.containsKey(limit))
+            facts.bounds.add(new Bound(index, facts.lengths.get(limit)));
+        for (Local array : facts.getArraysAbove(limit))
+            facts.bounds.add(new Bound(index, array));
+    }
+    
+    /**
+     * a >= b holds
+     */
+    private void atLeast(Facts facts, Value a, Value b) {
+        if (!(a instanceof Local))
+            return;
+        
+        if ((b instanceof IntConstant && ((IntConstant) b).value >= 0)
+                || (b instanceof Local && facts.nonNegative.contains(b)))
+            facts.nonNegative.add((Local) a);
+    }
+    
+    /**
+     * index < array.length
+     */
+    static class Bound {
+        Local index;
+        Local array;
+        
+        Bound(Local index, Local array) {
+            this.index = index;
+            this.array = array;
+        }
+        
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Bound))
+                return false;
+            Bound b = (Bound) o;
+            return b.index == index && b.array == array;
+        }
+        
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(index) * 31 + System.identityHashCode(array);
+        }
+        
+        @Override
+        public String toString() {
+            return index + " < " + array + ".length";
+        }
+    }
+    
+    static class Facts {
+        // unreached yet, every fact holds
+        boolean top = false;
+        
+        Set<Local> nonNegative = new HashSet<Local>();
+        Set<Bound> bounds = new HashSet<Bound>();
+        // local -> the array whose length it holds
+        Map<Local, Local> lengths = new HashMap<Local, Local>();
+        
+        static Facts top() {
+            Facts ret = new Facts();
+            ret.top = true;
+            return ret;
+        }
+        
+        Facts copy() {
+            Facts ret = new Facts();
+            ret.top = top;
+            ret.nonNegative.addAll(nonNegative);
+            ret.bounds.addAll(bounds);
+            ret.lengths.putAll(lengths);
+            return ret;
+        }
+        
+        /**
+         * @return facts that hold in both (this is not changed)
+         */
+        Facts meet(Facts other) {
+            if (top)
+                return other.copy();
+            if (other.top)
+                return copy();
+            
+            Facts ret = copy();
+            ret.nonNegative.retainAll(other.nonNegative);
+            ret.bounds.retainAll(other.bounds);
+            for (Local l : lengths.keySet())
+                if (other.lengths.get(l) != lengths.get(l))
+                    ret.lengths.remove(l);
+            return ret;
+        }
+        
+        /**
+         * local is redefined, forget everything about it
+         */
+        void kill(Local local) {
+            nonNegative.remove(local);
+            
+            Set<Bound> killed = new HashSet<Bound>();
+            for (Bound b : bounds)
+                if (b.index == local || b.array == local)
+                    killed.add(b);
+            bounds.removeAll(killed);
+            
+            lengths.remove(local);
+            Set<Local> killedLengths = new HashSet<Local>();
+            for (Local l : lengths.keySet())
+                if (lengths.get(l) == local)
+                    killedLengths.add(l);
+            for (Local l : killedLengths)
+                lengths.remove(l);
+        }
+        
+        Set<Local> getArraysAbove(Local index) {
+            Set<Local> ret = new HashSet<Local>();
+            for (Bound b : bounds)
+                if (b.index == index)
+                    ret.add(b.array);
+            return ret;
+        }
+        
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Facts))
+                return false;
+            Facts f = (Facts) o;
+            if (top || f.top)
+                return top == f.top;
+            return nonNegative.equals(f.nonNegative) && bounds.equals(f.bounds) && lengths.equals(f.lengths);
+        }
+        
+        @Override
+        public int hashCode() {
+            return top ? 0 : nonNegative.hashCode() + bounds.hashCode();
+        }
+        
+        @Override
+        public String toString() {
+            if (top)
+                return "top";
+            return nonNegative + " >= 0, " + bounds + ", lengths " + lengths;
+        }
+    }
+    
+    @Override
+    public void visit(RAssignStmt stmt) {
+    
+    }
+    
+    @Override
+    public void visit(RBreakpointStmt stmt) {
+    
+    }
+    
+    @Override
+    public void visit(REnterMonitorStmt stmt) {
+    
+    }
+    
+    @Override
+    public void visit(RExitMonitorStmt stmt) {
+    
+    }
+    
+    @Override
+    public void visit(RGotoStmt stmt) {
+    
+    }
+    
+    @Override
+    public void visit(RIdentityStmt stmt) {
+    
+    }
+    
+    @Override
+    public void visit(RIfStmt stmt) {
+    
+    }
+    
+    @Override
+    public void visit(RInvokeStmt stmt) {
+    
+    }
+    
+    @Override
+    public void visit(RLookupSwitchStmt stmt) {
+    
+    }
+    
+    @Override
+    public void visit(RNopStmt stmt) {
+    
+    }
+    
+    @Override
+    public void visit(RRetStmt stmt) {
+    
+    }
+    
+    @Override
+    public void visit(RReturnStmt stmt) {
+    
+    }
+    
+    @Override
+    public void visit(RReturnVoidStmt stmt) {
+    
+    }
+    
+    @Override
+    public void visit(RTableSwitchStmt stmt) {
+    
+    }
+    
+    @Override
+    public void visit(RThrowStmt stmt) {
+    
+    }
+    
+    @Override
+    public void visit(RInvokeExpr expr) {
+    
+    }
+    
+    @Override
+    public void visit(RStatement stmt, StaticFieldRef staticRef) {
+    
+    }
+
+}
@@ -34,6 +34,14 @@ public class CallGraphPass extends CompilationPass {
         super.start(name);
     }
     
+    /**
+     * each visit reads only the statements of the class being visited, and CallGraph guards its own updates
+     */
+    @Override
+    protected boolean isParallel() {
+        return true;
+    }
+    
     public CallGraph getCallGraph() {
         RJavaCompiler.assertion(callGraph != null, "Call graph is not ready since CallGraphPass hasn't run yet");
         return callGraph;
@@ -1,5 +1,8 @@
 package org.rjava.compiler.pass;
 
+import java.util.HashSet;
+import java.util.Set;
+
 import org.rjava.compiler.RJavaCompiler;
 import org.rjava.compiler.semantics.SemanticMap;
 import org.rjava.compiler.semantics.ClassHierarchy;
@@ -23,15 +26,28 @@ import org.rjava.compiler.semantics.representation.stmt.RReturnVoidStmt;
 import org.rjava.compiler.semantics.representation.stmt.RTableSwitchStmt;
 import org.rjava.compiler.semantics.representation.stmt.RThrowStmt;
 
+import soot.RefType;
+import soot.Type;
+import soot.Value;
+import soot.jimple.CastExpr;
+import soot.jimple.InstanceOfExpr;
+import soot.jimple.InterfaceInvokeExpr;
 import soot.jimple.StaticFieldRef;
 
 public class ClassHierarchyPass extends CompilationPass {
     private ClassHierarchy typeHierarchy;
     
+    // interfaces that need an id: implemented by a class, invoked on, or type checked against
+    private Set<RClass> interfaces;
+    
     @Override
     public void start(String name) {
         typeHierarchy = new ClassHierarchy();
-        super.start(name);   
+        interfaces = new HashSet<RClass>();
+        super.start(name);
+        
+        // ids are fixed before any code is generated, so code generation only reads them
+        typeHierarchy.assignInterfaceIds(interfaces);
     }
     
     public ClassHierarchy getClassHierarchy() {
@@ -42,6 +58,31 @@ public class ClassHierarchyPass extends CompilationPass {
     @Override
     public void visit(RClass klass) {
         typeHierarchy.add(klass);
+        
+        // interfaces outside the application (e.g. java.lang.Runnable) are seen via their implementors
+        if (klass.isInterface())
+            ClassHierarchy.addWithSuperInterfaces(klass, interfaces);
+        if (klass.hasInterfaces()) {
+            for (RClass myInterface : klass.getInterfaces())
+                ClassHierarchy.addWithSuperInterfaces(myInterface, interfaces);
+        }
+        if (klass.hasInheritedInterfaces()) {
+            for (RClass myInterface : klass.getInheritedInterfaces())
+                ClassHierarchy.addWithSuperInterfaces(myInterface, interfaces);
+        }
+    }
+    
+    /**
+     * a library interface that no application class implements may still be invoked on or type checked against
+     * @param type
+     */
+    private void addIfInterface(Type type) {
+        if (!(type instanceof RefType))
+            return;
+        
+        RClass klass = RClass.fromClassName(((RefType) type).getClassName());
+        if (klass.isInterface())
+            ClassHierarchy.addWithSuperInterfaces(klass, interfaces);
     }
 
     @Override
@@ -52,8 +93,11 @@ public class ClassHierarchyPass extends CompilationPass {
 
     @Override
     public void visit(RAssignStmt stmt) {
-        // TODO Auto-generated method stub
-        
+        Value rightOp = stmt.internal().getRightOp();
+        if (rightOp instanceof InstanceOfExpr)
+            addIfInterface(((InstanceOfExpr) rightOp).getCheckType());
+        else if (rightOp instanceof CastExpr)
+            addIfInterface(((CastExpr) rightOp).getCastType());
     }
 
     @Override
@@ -142,8 +186,8 @@ public class ClassHierarchyPass extends CompilationPass {
 
     @Override
     public void visit(RInvokeExpr expr) {
-        // TODO Auto-generated method stub
-        
+        if (expr.getInternal() instanceof InterfaceInvokeExpr)
+            addIfInterface(((InterfaceInvokeExpr) expr.getInternal()).getBase().getType());
     }
 
     @Override
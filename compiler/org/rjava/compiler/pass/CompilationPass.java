@@ -1,5 +1,14 @@
 package org.rjava.compiler.pass;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import org.rjava.compiler.RJavaCompiler;
 import org.rjava.compiler.semantics.SemanticMap;
 import org.rjava.compiler.semantics.representation.RClass;
@@ -15,11 +24,83 @@ public abstract class CompilationPass {
         ElapseTimer timer = new ElapseTimer(passName, true);
         timer.start();
         
+        // take a snapshot, visiting a class may resolve new classes into the semantic map
+        List<RClass> appClasses = new ArrayList<RClass>();
         for (RClass klass : SemanticMap.getAllClasses().values())
             if (klass.isAppClass())
+                appClasses.add(klass);
+        
+        List<ElapseTimer> workers = null;
+        if (isParallel() && RJavaCompiler.compilerThreads > 1 && appClasses.size() > 1)
+            workers = visitInParallel(appClasses);
+        else {
+            for (RClass klass : appClasses)
                 klass.accept(this);
+        }
         
         timer.end();
+        
+        if (workers != null)
+            for (ElapseTimer worker : workers)
+                RJavaCompiler.println("  " + worker.report());
+    }
+    
+    /**
+     * Whether this pass can visit different classes at the same time. 
+     * A pass returning true must only mutate the class it is visiting, or guard any shared state itself.
+     * Most passes build one global structure in visit order (and resolve classes through soot), so default is false.
+     * @return
+     */
+    protected boolean isParallel() {
+        return false;
+    }
+    
+    /**
+     * visit classes with RJavaCompiler.compilerThreads workers. 
+     * Workers take the next unvisited class from a shared index, so a worker stuck with a large class does not hold up the others
+     * @param appClasses
+     * @return timers of each worker
+     */
+    private List<ElapseTimer> visitInParallel(final List<RClass> appClasses) {
+        int nWorkers = Math.min(RJavaCompiler.compilerThreads, appClasses.size());
+        final AtomicInteger next = new AtomicInteger(0);
+        
+        ExecutorService pool = Executors.newFixedThreadPool(nWorkers);
+        List<Future<ElapseTimer>> futures = new ArrayList<Future<ElapseTimer>>();
+        for (int i = 0; i < nWorkers; i++) {
+            final int workerId = i;
+            futures.add(pool.submit(new Callable<ElapseTimer>() {
+                @Override
+                public ElapseTimer call() {
+                    ElapseTimer timer = new ElapseTimer("worker " + workerId, false);
+                    timer.start();
+                    int visited = 0;
+                    
+                    int index = next.getAndIncrement();
+                    while (index < appClasses.size()) {
+                        appClasses.get(index).accept(CompilationPass.this);
+                        visited++;
+                        index = next.getAndIncrement();
+                    }
+                    
+                    timer.end();
+                    timer.setNote(visited + " classes");
+                    return timer;
+                }
+            }));
+        }
+        pool.shutdown();
+        
+        List<ElapseTimer> workers = new ArrayList<ElapseTimer>();
+        try {
+            for (Future<ElapseTimer> f : futures)
+                workers.add(f.get());
+        } catch (InterruptedException e) {
+            RJavaCompiler.error(e);
+        } catch (ExecutionException e) {
+            RJavaCompiler.error(e.getCause());
+        }
+        return workers;
     }
     
     /*
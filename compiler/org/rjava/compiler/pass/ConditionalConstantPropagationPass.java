@@ -0,0 +1,905 @@
+package org.rjava.compiler.pass;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.rjava.compiler.RJavaCompiler;
+import org.rjava.compiler.semantics.SemanticMap;
+import org.rjava.compiler.semantics.representation.RClass;
+import org.rjava.compiler.semantics.representation.RMethod;
+import org.rjava.compiler.semantics.representation.RStatement;
+import org.rjava.compiler.semantics.representation.RType;
+import org.rjava.compiler.semantics.representation.stmt.RAssignStmt;
+import org.rjava.compiler.semantics.representation.stmt.RBreakpointStmt;
+import org.rjava.compiler.semantics.representation.stmt.REnterMonitorStmt;
+import org.rjava.compiler.semantics.representation.stmt.RExitMonitorStmt;
+import org.rjava.compiler.semantics.representation.stmt.RGotoStmt;
+import org.rjava.compiler.semantics.representation.stmt.RIdentityStmt;
+import org.rjava.compiler.semantics.representation.stmt.RIfStmt;
+import org.rjava.compiler.semantics.representation.stmt.RInvokeExpr;
+import org.rjava.compiler.semantics.representation.stmt.RInvokeStmt;
+import org.rjava.compiler.semantics.representation.stmt.RLookupSwitchStmt;
+import org.rjava.compiler.semantics.representation.stmt.RNopStmt;
+import org.rjava.compiler.semantics.representation.stmt.RRetStmt;
+import org.rjava.compiler.semantics.representation.stmt.RReturnStmt;
+import org.rjava.compiler.semantics.representation.stmt.RReturnVoidStmt;
+import org.rjava.compiler.semantics.representation.stmt.RTableSwitchStmt;
+import org.rjava.compiler.semantics.representation.stmt.RThrowStmt;
+import org.rjava.compiler.util.Statistics;
+
+import soot.Body;
+import soot.BooleanType;
+import soot.ByteType;
+import soot.CharType;
+import soot.DoubleType;
+import soot.FloatType;
+import soot.IntType;
+import soot.Local;
+import soot.LongType;
+import soot.PatchingChain;
+import soot.PrimType;
+import soot.ShortType;
+import soot.SootField;
+import soot.SootMethod;
+import soot.Trap;
+import soot.Type;
+import soot.Unit;
+import soot.UnitBox;
+import soot.Value;
+import soot.ValueBox;
+import soot.jimple.AddExpr;
+import soot.jimple.AndExpr;
+import soot.jimple.ArithmeticConstant;
+import soot.jimple.AssignStmt;
+import soot.jimple.BinopExpr;
+import soot.jimple.CastExpr;
+import soot.jimple.CmpExpr;
+import soot.jimple.CmpgExpr;
+import soot.jimple.CmplExpr;
+import soot.jimple.DefinitionStmt;
+import soot.jimple.DivExpr;
+import soot.jimple.DoubleConstant;
+import soot.jimple.EqExpr;
+import soot.jimple.FloatConstant;
+import soot.jimple.GeExpr;
+import soot.jimple.GotoStmt;
+import soot.jimple.GtExpr;
+import soot.jimple.IdentityStmt;
+import soot.jimple.IfStmt;
+import soot.jimple.IntConstant;
+import soot.jimple.InvokeExpr;
+import soot.jimple.Jimple;
+import soot.jimple.LeExpr;
+import soot.jimple.LongConstant;
+import soot.jimple.LookupSwitchStmt;
+import soot.jimple.LtExpr;
+import soot.jimple.MulExpr;
+import soot.jimple.NeExpr;
+import soot.jimple.NegExpr;
+import soot.jimple.NumericConstant;
+import soot.jimple.OrExpr;
+import soot.jimple.RealConstant;
+import soot.jimple.RemExpr;
+import soot.jimple.ReturnStmt;
+import soot.jimple.ShlExpr;
+import soot.jimple.ShrExpr;
+import soot.jimple.SpecialInvokeExpr;
+import soot.jimple.StaticFieldRef;
+import soot.jimple.StaticInvokeExpr;
+import soot.jimple.SubExpr;
+import soot.jimple.TableSwitchStmt;
+import soot.jimple.UshrExpr;
+import soot.jimple.VirtualInvokeExpr;
+import soot.jimple.XorExpr;
+
+/**
+ * Sparse conditional constant propagation (Wegman and Zadeck). For each method, statements are evaluated from a
+ * worklist, and control only flows along edges that are executable under what is known so far: a branch on a constant
+ * condition only reaches its taken side. Values start as UNDEFINED and only go down to a constant and then NONCONSTANT,
+ * so a loop is analyzed optimistically and constants survive it if no executable path changes them.
+ *
+ * The body is Jimple, not SSA. Instead of one value per SSA name we keep the values of all numeric locals before each
+ * statement, which finds the same constants (a phi is the meet at a join) without converting bodies back and forth.
+ *
+ * Besides literals, constants come from
+ *   static final fields that the class initializer sets to a constant (e.g. VM.VERIFY_ASSERTIONS), and
+ *   calls whose possible targets (by class hierarchy analysis) all return the same constant (e.g. plan constraints).
+ * Reading a static final field is assumed to see its initialized value, as javac assumes for compile time constants.
+ * Fields of a class are not constant in its own class initializer.
+ *
+ * Then the body is rewritten before code generation:
+ *   uses of constant locals are replaced by the constant,
+ *   if/switch on a constant becomes a goto (or falls through),
+ *   statements that are not reachable are removed, and
+ *   private methods whose call sites are all removed are removed from their class.
+ *
+ * With -verify_constants nothing is rewritten. The constants a statement assigns are kept in getDefinedConstant(),
+ * and code generation asserts them at runtime instead.
+ * @author yi
+ *
+ */
+public class ConditionalConstantPropagationPass extends CompilationPass {
+    public static final boolean DEBUG = false;
+    
+    // nested analyses of callees (and class initializers) deeper than this take the callee as nonconstant
+    public static final int MAX_ANALYSIS_DEPTH = 8;
+    
+    static class Lattice {
+        static final Lattice UNDEFINED = new Lattice(null);
+        static final Lattice NONCONSTANT = new Lattice(null);
+        
+        final NumericConstant constant;
+        
+        private Lattice(NumericConstant constant) {
+            this.constant = constant;
+        }
+        
+        static Lattice constant(NumericConstant constant) {
+            return new Lattice(constant);
+        }
+        
+        boolean isConstant() {
+            return constant != null;
+        }
+        
+        static Lattice meet(Lattice a, Lattice b) {
+            if (a == UNDEFINED)
+                return b;
+            if (b == UNDEFINED)
+                return a;
+            if (a == NONCONSTANT || b == NONCONSTANT)
+                return NONCONSTANT;
+            return a.constant.equals(b.constant) ? a : NONCONSTANT;
+        }
+        
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Lattice))
+                return false;
+            Lattice l = (Lattice) o;
+            if (constant == null || l.constant == null)
+                return this == l;
+            return constant.equals(l.constant);
+        }
+        
+        @Override
+        public int hashCode() {
+            return constant == null ? System.identityHashCode(this) : constant.hashCode();
+        }
+        
+        @Override
+        public String toString() {
+            if (this == UNDEFINED)
+                return "UNDEFINED";
+            if (this == NONCONSTANT)
+                return "NONCONSTANT";
+            return constant.toString();
+        }
+    }
+    
+    /**
+     * values of numeric locals before a statement. A local that is not in the map is UNDEFINED,
+     * or NONCONSTANT in an exception handler (which may be reached from anywhere in its trap)
+     */
+    static class Env {
+        final Map<Local, Lattice> values = new HashMap<Local, Lattice>();
+        final boolean handler;
+        
+        Env(boolean handler) {
+            this.handler = handler;
+        }
+        
+        Lattice get(Local local) {
+            Lattice ret = values.get(local);
+            if (ret != null)
+                return ret;
+            return handler ? Lattice.NONCONSTANT : Lattice.UNDEFINED;
+        }
+        
+        Env copy() {
+            Env ret = new Env(handler);
+            ret.values.putAll(values);
+            return ret;
+        }
+        
+        Env meet(Env another) {
+            Env ret = new Env(handler || another.handler);
+            Set<Local> locals = new HashSet<Local>(values.keySet());
+            locals.addAll(another.values.keySet());
+            for (Local local : locals)
+                ret.values.put(local, Lattice.meet(get(local), another.get(local)));
+            return ret;
+        }
+        
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Env && handler == ((Env) o).handler && values.equals(((Env) o).values);
+        }
+        
+        @Override
+        public int hashCode() {
+            return values.hashCode();
+        }
+    }
+    
+    /**
+     * the values before each reachable statement of a method
+     */
+    static class Result {
+        Map<Unit, Env> in = new HashMap<Unit, Env>();
+        // branches whose condition never got a value, they are taken as nonconstant
+        Set<Unit> unresolved = new HashSet<Unit>();
+        
+        boolean isReachable(Unit u) {
+            return in.containsKey(u);
+        }
+    }
+    
+    private Map<SootMethod, Lattice> returnValues = new HashMap<SootMethod, Lattice>();
+    private Map<SootField, Lattice> fieldValues = new HashMap<SootField, Lattice>();
+    
+    // methods being analyzed (for their return value or as a class initializer), innermost last
+    private List<SootMethod> analyzing = new ArrayList<SootMethod>();
+    // set when a nested analysis gave up on a callee (recursion or depth), results depending on it are not kept
+    private boolean gaveUp;
+    
+    // only with -verify_constants
+    private Map<Unit, NumericConstant> definedConstants = new HashMap<Unit, NumericConstant>();
+    
+    /**
+     * @param stmt
+     * @return the constant an assignment to a local stores, or null. Only recorded with -verify_constants
+     */
+    public NumericConstant getDefinedConstant(Unit stmt) {
+        return definedConstants.get(stmt);
+    }
+    
+    @Override
+    public void visit(RClass klass) {
+        Set<SootMethod> calledBefore = privateCallees(klass);
+        
+        for (RMethod method : klass.getMethods()) {
+            if (method.getBody().isEmpty() || method.isNative())
+                continue;
+            
+            if (RJavaCompiler.verifyConstants)
+                recordDefinedConstants(method);
+            else propagate(method);
+        }
+        
+        if (!RJavaCompiler.verifyConstants)
+            removeUncalledMethods(klass, calledBefore);
+    }
+    
+    @Override
+    public void visit(RMethod method) {
+    }
+    
+    /*
+     * rewriting
+     */
+    
+    private void propagate(RMethod method) {
+        // the body of a twin does not come from its soot body, leave it alone
+        if (method.hasTwin())
+            return;
+        
+        Result result = analyze(method);
+        Body body = method.getSootBody();
+        PatchingChain<Unit> units = body.getUnits();
+        
+        int substituted = 0;
+        int folded = 0;
+        int removed = 0;
+        
+        List<Unit> snapshot = new ArrayList<Unit>(units);
+        for (Unit u : snapshot) {
+            if (!result.isReachable(u) || u instanceof IdentityStmt)
+                continue;
+            
+            Env in = result.in.get(u);
+            for (Object o : u.getUseBoxes()) {
+                ValueBox box = (ValueBox) o;
+                if (!(box.getValue() instanceof Local))
+                    continue;
+                
+                Lattice value = in.get((Local) box.getValue());
+                if (value.isConstant() && canSpell(value.constant) && box.canContainValue(value.constant)) {
+                    box.setValue(value.constant);
+                    substituted++;
+                }
+            }
+        }
+        
+        for (Unit u : snapshot) {
+            if (!result.isReachable(u) || result.unresolved.contains(u))
+                continue;
+            
+            Env in = result.in.get(u);
+            if (u instanceof IfStmt) {
+                Lattice condition = evaluate(((IfStmt) u).getCondition(), in, method);
+                if (condition.isConstant()) {
+                    if (((IntConstant) condition.constant).value != 0)
+                        units.swapWith(u, Jimple.v().newGotoStmt(((IfStmt) u).getTarget()));
+                    else units.remove(u);
+                    folded++;
+                }
+            } else if (u instanceof TableSwitchStmt || u instanceof LookupSwitchStmt) {
+                Lattice key = evaluate(switchKey(u), in, method);
+                if (key.isConstant()) {
+                    units.swapWith(u, Jimple.v().newGotoStmt(switchTarget(u, ((IntConstant) key.constant).value)));
+                    folded++;
+                }
+            }
+        }
+        
+        Set<Unit> handlers = new HashSet<Unit>();
+        for (Object o : body.getTraps())
+            handlers.add(((Trap) o).getHandlerUnit());
+        for (Unit u : snapshot) {
+            if (!result.isReachable(u) && !handlers.contains(u)) {
+                units.remove(u);
+                removed++;
+            }
+        }
+        
+        if (substituted == 0 && folded == 0 && removed == 0)
+            return;
+        
+        if (DEBUG)
+            RJavaCompiler.debug(method.getSignature() + ": " + substituted + " constants, " + folded + " branches folded, " + removed + " statements removed");
+        Statistics.increaseCounter(Statistics.CONSTANT_SUBSTITUTED, substituted);
+        Statistics.increaseCounter(Statistics.BRANCH_FOLDED, folded);
+        Statistics.increaseCounter(Statistics.UNREACHABLE_REMOVED, removed);
+        
+        method.update();
+    }
+    
+    /**
+     * C spells these constants the way soot prints them, except non-finite floats (and Long.MIN_VALUE, which is not a literal)
+     */
+    private boolean canSpell(NumericConstant c) {
+        if (c instanceof FloatConstant)
+            return !Float.isNaN(((FloatConstant) c).value) && !Float.isInfinite(((FloatConstant) c).value);
+        if (c instanceof DoubleConstant)
+            return !Double.isNaN(((DoubleConstant) c).value) && !Double.isInfinite(((DoubleConstant) c).value);
+        if (c instanceof LongConstant)
+            return ((LongConstant) c).value != Long.MIN_VALUE;
+        return true;
+    }
+    
+    private void recordDefinedConstants(RMethod method) {
+        Result result = analyze(method);
+        for (RStatement stmt : method.getBody()) {
+            Unit u = stmt.internal();
+            if (!result.isReachable(u) || !(u instanceof AssignStmt) || !(((AssignStmt) u).getLeftOp() instanceof Local))
+                continue;
+            
+            Value right = ((AssignStmt) u).getRightOp();
+            Lattice value = evaluate(right, result.in.get(u), method);
+            if (value.isConstant() && !(right instanceof NumericConstant) && canSpell(value.constant))
+                definedConstants.put(u, value.constant);
+        }
+    }
+    
+    /**
+     * private methods of klass that are called from its code
+     */
+    private Set<SootMethod> privateCallees(RClass klass) {
+        Set<SootMethod> ret = new HashSet<SootMethod>();
+        for (RMethod method : klass.getMethods())
+            for (RStatement stmt : method.getBody()) {
+                if (!stmt.internal().containsInvokeExpr())
+                    continue;
+                SootMethod callee = stmt.internal().getInvokeExpr().getMethod();
+                if (callee.isPrivate() && callee.getDeclaringClass().equals(klass.internal()))
+                    ret.add(callee);
+            }
+        return ret;
+    }
+    
+    /**
+     * private methods can only be called from their own class. If all of their call sites are gone, they are not generated
+     */
+    private void removeUncalledMethods(RClass klass, Set<SootMethod> calledBefore) {
+        boolean removed = true;
+        while (removed) {
+            removed = false;
+            Set<SootMethod> called = privateCallees(klass);
+            Iterator<RMethod> iter = klass.getMethods().iterator();
+            while (iter.hasNext()) {
+                RMethod method = iter.next();
+                if (calledBefore.contains(method.internal()) && !called.contains(method.internal())) {
+                    if (DEBUG)
+                        RJavaCompiler.debug("uncalled: " + method.getSignature());
+                    iter.remove();
+                    Statistics.increaseCounterByOne(Statistics.UNCALLED_METHOD_REMOVED);
+                    removed = true;
+                }
+            }
+        }
+    }
+    
+    /*
+     * analysis
+     */
+    
+    private Result analyze(RMethod method) {
+        List<Unit> units = new ArrayList<Unit>();
+        for (RStatement stmt : method.getBody())
+            units.add(stmt.internal());
+        
+        Map<Unit, Unit> next = new HashMap<Unit, Unit>();
+        for (int i = 0; i + 1 < units.size(); i++)
+            next.put(units.get(i), units.get(i + 1));
+        
+        Result result = new Result();
+        LinkedList<Unit> worklist = new LinkedList<Unit>();
+        Set<Unit> inWorklist = new HashSet<Unit>();
+        
+        reach(result, units.get(0), new Env(false), worklist, inWorklist);
+        // handlers have no predecessor in our flow, they are reachable from anywhere in their traps
+        if (!method.hasTwin())
+            for (Object o : method.getSootBody().getTraps())
+                reach(result, ((Trap) o).getHandlerUnit(), new Env(true), worklist, inWorklist);
+        
+        while (!worklist.isEmpty()) {
+            while (!worklist.isEmpty()) {
+                Unit u = worklist.poll();
+                inWorklist.remove(u);
+                
+                Env in = result.in.get(u);
+                Env out = flowThrough(u, in, method);
+                for (Unit succ : executableSuccessors(u, in, next.get(u), result, method))
+                    reach(result, succ, out, worklist, inWorklist);
+            }
+            
+            // a condition that is still UNDEFINED depends on nothing executable (e.g. a callee that never returns).
+            // Take it as nonconstant and let both sides run
+            for (Unit u : new ArrayList<Unit>(result.in.keySet())) {
+                Value condition = u instanceof IfStmt ? ((IfStmt) u).getCondition() : switchKey(u);
+                if (condition == null || result.unresolved.contains(u))
+                    continue;
+                if (evaluate(condition, result.in.get(u), method) == Lattice.UNDEFINED) {
+                    result.unresolved.add(u);
+                    worklist.add(u);
+                    inWorklist.add(u);
+                }
+            }
+        }
+        
+        return result;
+    }
+    
+    private void reach(Result result, Unit u, Env env, LinkedList<Unit> worklist, Set<Unit> inWorklist) {
+        Env old = result.in.get(u);
+        Env merged = old == null ? env.copy() : old.meet(env);
+        if (old != null && merged.equals(old))
+            return;
+        
+        result.in.put(u, merged);
+        if (!inWorklist.contains(u)) {
+            worklist.add(u);
+            inWorklist.add(u);
+        }
+    }
+    
+    private Env flowThrough(Unit u, Env in, RMethod method) {
+        if (!(u instanceof DefinitionStmt) || !(((DefinitionStmt) u).getLeftOp() instanceof Local))
+            return in;
+        
+        Local left = (Local) ((DefinitionStmt) u).getLeftOp();
+        if (!(left.getType() instanceof PrimType))
+            return in;
+        
+        Env out = in.copy();
+        if (u instanceof IdentityStmt)
+            out.values.put(left, Lattice.NONCONSTANT);
+        else out.values.put(left, evaluate(((DefinitionStmt) u).getRightOp(), in, method));
+        return out;
+    }
+    
+    private List<Unit> executableSuccessors(Unit u, Env in, Unit fallThrough, Result result, RMethod method) {
+        List<Unit> ret = new ArrayList<Unit>();
+        boolean resolved = !result.unresolved.contains(u);
+        
+        if (u instanceof IfStmt) {
+            Lattice condition = evaluate(((IfStmt) u).getCondition(), in, method);
+            if (condition == Lattice.UNDEFINED && resolved)
+                return ret;
+            if (!condition.isConstant() || !resolved) {
+                ret.add(((IfStmt) u).getTarget());
+                if (fallThrough != null)
+                    ret.add(fallThrough);
+            } else if (((IntConstant) condition.constant).value != 0)
+                ret.add(((IfStmt) u).getTarget());
+            else if (fallThrough != null)
+                ret.add(fallThrough);
+            return ret;
+        }
+        
+        if (u instanceof TableSwitchStmt || u instanceof LookupSwitchStmt) {
+            Lattice key = evaluate(switchKey(u), in, method);
+            if (key == Lattice.UNDEFINED && resolved)
+                return ret;
+            if (key.isConstant() && resolved)
+                ret.add(switchTarget(u, ((IntConstant) key.constant).value));
+            else {
+                for (Object o : u.getUnitBoxes())
+                    ret.add(((UnitBox) o).getUnit());
+            }
+            return ret;
+        }
+        
+        if (u instanceof GotoStmt) {
+            ret.add(((GotoStmt) u).getTarget());
+            return ret;
+        }
+        
+        if (u.fallsThrough() && fallThrough != null)
+            ret.add(fallThrough);
+        return ret;
+    }
+    
+    private Value switchKey(Unit u) {
+        if (u instanceof TableSwitchStmt)
+            return ((TableSwitchStmt) u).getKey();
+        if (u instanceof LookupSwitchStmt)
+            return ((LookupSwitchStmt) u).getKey();
+        return null;
+    }
+    
+    private Unit switchTarget(Unit u, int key) {
+        if (u instanceof TableSwitchStmt) {
+            TableSwitchStmt table = (TableSwitchStmt) u;
+            if (key >= table.getLowIndex() && key <= table.getHighIndex())
+                return table.getTarget(key - table.getLowIndex());
+            return table.getDefaultTarget();
+        }
+        
+        LookupSwitchStmt lookup = (LookupSwitchStmt) u;
+        for (int i = 0; i < lookup.getLookupValues().size(); i++)
+            if (lookup.getLookupValue(i) == key)
+                return lookup.getTarget(i);
+        return lookup.getDefaultTarget();
+    }
+    
+    /*
+     * evaluation
+     */
+    
+    private Lattice evaluate(Value v, Env in, RMethod method) {
+        if (v instanceof NumericConstant)
+            return Lattice.constant((NumericConstant) v);
+        
+        if (v instanceof Local)
+            return v.getType() instanceof PrimType ? in.get((Local) v) : Lattice.NONCONSTANT;
+        
+        if (v instanceof StaticFieldRef) {
+            SootField field = ((StaticFieldRef) v).getField();
+            // not initialized yet in its own class initializer
+            if (method.isClassInitializer() && field.getDeclaringClass().equals(method.getKlass().internal()))
+                return Lattice.NONCONSTANT;
+            return fieldValue(field);
+        }
+        
+        if (v instanceof InvokeExpr)
+            return returnValue((InvokeExpr) v);
+        
+        if (v instanceof NegExpr) {
+            Lattice op = evaluate(((NegExpr) v).getOp(), in, method);
+            return op.isConstant() ? Lattice.constant(op.constant.negate()) : op;
+        }
+        
+        if (v instanceof CastExpr) {
+            Lattice op = evaluate(((CastExpr) v).getOp(), in, method);
+            if (!op.isConstant())
+                return op;
+            NumericConstant cast = cast(op.constant, ((CastExpr) v).getCastType());
+            return cast != null ? Lattice.constant(cast) : Lattice.NONCONSTANT;
+        }
+        
+        if (v instanceof BinopExpr) {
+            Lattice op1 = evaluate(((BinopExpr) v).getOp1(), in, method);
+            Lattice op2 = evaluate(((BinopExpr) v).getOp2(), in, method);
+            if (op1 == Lattice.NONCONSTANT || op2 == Lattice.NONCONSTANT)
+                return Lattice.NONCONSTANT;
+            if (op1 == Lattice.UNDEFINED || op2 == Lattice.UNDEFINED)
+                return Lattice.UNDEFINED;
+            NumericConstant folded = fold((BinopExpr) v, op1.constant, op2.constant);
+            return folded != null ? Lattice.constant(folded) : Lattice.NONCONSTANT;
+        }
+        
+        // field/array loads, lengthof, instanceof, new...
+        return Lattice.NONCONSTANT;
+    }
+    
+    /**
+     * Java semantics of a binary operation on constants, by soot's constant arithmetic
+     * @return null if it cannot be folded (division by zero, or unexpected operand types)
+     */
+    private NumericConstant fold(BinopExpr expr, NumericConstant c1, NumericConstant c2) {
+        // throws at runtime
+        if ((expr instanceof DivExpr || expr instanceof RemExpr) && (c2.equals(IntConstant.v(0)) || c2.equals(LongConstant.v(0))))
+            return null;
+        
+        try {
+            if (expr instanceof AddExpr)        return c1.add(c2);
+            if (expr instanceof SubExpr)        return c1.subtract(c2);
+            if (expr instanceof MulExpr)        return c1.multiply(c2);
+            if (expr instanceof DivExpr)        return c1.divide(c2);
+            if (expr instanceof RemExpr)        return c1.remainder(c2);
+            if (expr instanceof EqExpr)         return c1.equalEqual(c2);
+            if (expr instanceof NeExpr)         return c1.notEqual(c2);
+            if (expr instanceof LtExpr)         return c1.lessThan(c2);
+            if (expr instanceof LeExpr)         return c1.lessThanOrEqual(c2);
+            if (expr instanceof GtExpr)         return c1.greaterThan(c2);
+            if (expr instanceof GeExpr)         return c1.greaterThanOrEqual(c2);
+            
+            if (expr instanceof CmpExpr && c1 instanceof LongConstant && c2 instanceof LongConstant)
+                return ((LongConstant) c1).cmp((LongConstant) c2);
+            if (expr instanceof CmplExpr && c1 instanceof RealConstant && c2 instanceof RealConstant)
+                return ((RealConstant) c1).cmpl((RealConstant) c2);
+            if (expr instanceof CmpgExpr && c1 instanceof RealConstant && c2 instanceof RealConstant)
+                return ((RealConstant) c1).cmpg((RealConstant) c2);
+            
+            if (c1 instanceof ArithmeticConstant && c2 instanceof ArithmeticConstant) {
+                ArithmeticConstant a1 = (ArithmeticConstant) c1;
+                ArithmeticConstant a2 = (ArithmeticConstant) c2;
+                if (expr instanceof AndExpr)    return a1.and(a2);
+                if (expr instanceof OrExpr)     return a1.or(a2);
+                if (expr instanceof XorExpr)    return a1.xor(a2);
+                if (expr instanceof ShlExpr)    return a1.shiftLeft(a2);
+                if (expr instanceof ShrExpr)    return a1.shiftRight(a2);
+                if (expr instanceof UshrExpr)   return a1.unsignedShiftRight(a2);
+            }
+        } catch (IllegalArgumentException e) {
+            // soot refuses operands of different types
+            if (DEBUG)
+                RJavaCompiler.debug("cannot fold " + expr + " with " + c1 + ", " + c2);
+        }
+        return null;
+    }
+    
+    /**
+     * Java semantics of a primitive cast on a constant
+     * @return null if type is not a numeric type
+     */
+    private NumericConstant cast(NumericConstant c, Type type) {
+        long l;
+        double d;
+        if (c instanceof IntConstant) {
+            l = ((IntConstant) c).value;
+            d = ((IntConstant) c).value;
+        } else if (c instanceof LongConstant) {
+            l = ((LongConstant) c).value;
+            d = ((LongConstant) c).value;
+        } else if (c instanceof FloatConstant) {
+            l = (long) ((FloatConstant) c).value;
+            d = ((FloatConstant) c).value;
+        } else if (c instanceof DoubleConstant) {
+            l = (long) ((DoubleConstant) c).value;
+            d = ((DoubleConstant) c).value;
+        } else return null;
+        
+        boolean real = c instanceof RealConstant;
+        // float/double to int narrows in one step, other integer types go through int
+        int i = real ? (int) d : (int) l;
+        
+        if (type instanceof IntType)            return IntConstant.v(i);
+        if (type instanceof LongType)           return LongConstant.v(l);
+        if (type instanceof FloatType)          return FloatConstant.v(real ? (float) d : (float) l);
+        if (type instanceof DoubleType)         return DoubleConstant.v(real ? d : (double) l);
+        if (type instanceof ShortType)          return IntConstant.v((short) i);
+        if (type instanceof ByteType)           return IntConstant.v((byte) i);
+        if (type instanceof CharType)           return IntConstant.v((char) i);
+        if (type instanceof BooleanType)        return IntConstant.v(i);
+        return null;
+    }
+    
+    /*
+     * interprocedural facts
+     */
+    
+    /**
+     * a static final field is constant if every reachable assignment in the class initializer stores the same constant
+     */
+    private Lattice fieldValue(SootField field) {
+        Lattice ret = fieldValues.get(field);
+        if (ret != null)
+            return ret;
+        
+        if (!field.isStatic() || !field.isFinal() || !(field.getType() instanceof PrimType)
+                || !SemanticMap.isApplicationClass(field.getDeclaringClass().getName()))
+            return Lattice.NONCONSTANT;
+        
+        RMethod clinit = RClass.fromSootClass(field.getDeclaringClass()).getCLInitMethod();
+        if (clinit == null || clinit.getBody().isEmpty())
+            return Lattice.NONCONSTANT;
+        
+        boolean outerGaveUp = gaveUp;
+        gaveUp = false;
+        Result result = analyzeNested(clinit);
+        if (result == null) {
+            gaveUp = true;
+            return Lattice.NONCONSTANT;
+        }
+        
+        ret = Lattice.UNDEFINED;
+        for (RStatement stmt : clinit.getBody()) {
+            Unit u = stmt.internal();
+            if (!result.isReachable(u) || !(u instanceof AssignStmt))
+                continue;
+            Value left = ((AssignStmt) u).getLeftOp();
+            if (left instanceof StaticFieldRef && ((StaticFieldRef) left).getField().equals(field))
+                ret = Lattice.meet(ret, evaluate(((AssignStmt) u).getRightOp(), result.in.get(u), clinit));
+        }
+        // javac sets compile time constants with a ConstantValue attribute instead, but it also inlines their uses
+        if (ret == Lattice.UNDEFINED)
+            ret = Lattice.NONCONSTANT;
+        
+        if (!gaveUp)
+            fieldValues.put(field, ret);
+        gaveUp = outerGaveUp || gaveUp;
+        return ret;
+    }
+    
+    /**
+     * the value a call returns, if all its possible targets return the same constant
+     */
+    private Lattice returnValue(InvokeExpr invoke) {
+        if (!(invoke.getType() instanceof PrimType))
+            return Lattice.NONCONSTANT;
+        
+        SootMethod callee = invoke.getMethod();
+        if (!SemanticMap.isApplicationClass(callee.getDeclaringClass().getName()))
+            return Lattice.NONCONSTANT;
+        
+        List<RMethod> targets = new ArrayList<RMethod>();
+        if (invoke instanceof StaticInvokeExpr || invoke instanceof SpecialInvokeExpr)
+            targets.add(RMethod.getFromSootMethod(callee));
+        else if (invoke instanceof VirtualInvokeExpr && SemanticMap.cha != null) {
+            // as CExpressions.fromVirtualInvokeByClassHierarchy(), the static type of the receiver bounds the targets
+            RClass base = RClass.fromClassName(RType.initWithSootType(((VirtualInvokeExpr) invoke).getBase().getType()).getClassName());
+            Map<RClass, List<RClass>> implementations = SemanticMap.cha.getClassHierarchy().getVirtualCallTargets(base, callee);
+            if (implementations == null || implementations.isEmpty())
+                return Lattice.NONCONSTANT;
+            for (RClass implementing : implementations.keySet()) {
+                if (implementing == null)
+                    return Lattice.NONCONSTANT;
+                targets.add(implementing.getMethodByMatchingNameAndParameters(callee));
+            }
+        } else return Lattice.NONCONSTANT;
+        
+        Lattice ret = Lattice.UNDEFINED;
+        for (RMethod target : targets) {
+            ret = Lattice.meet(ret, returnValue(target));
+            if (ret == Lattice.NONCONSTANT)
+                break;
+        }
+        return ret == Lattice.UNDEFINED ? Lattice.NONCONSTANT : ret;
+    }
+    
+    private Lattice returnValue(RMethod method) {
+        if (method == null || method.getBody().isEmpty() || method.isNative() || method.isAbstract() || method.isIntrinsic())
+            return Lattice.NONCONSTANT;
+        
+        Lattice ret = returnValues.get(method.internal());
+        if (ret != null)
+            return ret;
+        
+        boolean outerGaveUp = gaveUp;
+        gaveUp = false;
+        Result result = analyzeNested(method);
+        if (result == null) {
+            gaveUp = true;
+            return Lattice.NONCONSTANT;
+        }
+        
+        ret = Lattice.UNDEFINED;
+        for (RStatement stmt : method.getBody()) {
+            Unit u = stmt.internal();
+            if (result.isReachable(u) && u instanceof ReturnStmt)
+                ret = Lattice.meet(ret, evaluate(((ReturnStmt) u).getOp(), result.in.get(u), method));
+        }
+        // never returns
+        if (ret == Lattice.UNDEFINED)
+            ret = Lattice.NONCONSTANT;
+        
+        if (!gaveUp)
+            returnValues.put(method.internal(), ret);
+        gaveUp = outerGaveUp || gaveUp;
+        return ret;
+    }
+    
+    /**
+     * analyze a callee or a class initializer on demand. Callers clear gaveUp before, and only keep what they compute
+     * if it is still clear after (nothing below had to assume nonconstant because of recursion or depth)
+     * @return null if the method is already being analyzed or we are too deep
+     */
+    private Result analyzeNested(RMethod method) {
+        if (analyzing.contains(method.internal()) || analyzing.size() >= MAX_ANALYSIS_DEPTH)
+            return null;
+        
+        analyzing.add(method.internal());
+        try {
+            return analyze(method);
+        } finally {
+            analyzing.remove(analyzing.size() - 1);
+        }
+    }
+    
+    @Override
+    public void visit(RAssignStmt stmt) {
+    }
+    
+    @Override
+    public void visit(RBreakpointStmt stmt) {
+    }
+    
+    @Override
+    public void visit(REnterMonitorStmt stmt) {
+    }
+    
+    @Override
+    public void visit(RExitMonitorStmt stmt) {
+    }
+    
+    @Override
+    public void visit(RGotoStmt stmt) {
+    }
+    
+    @Override
+    public void visit(RIdentityStmt stmt) {
+    }
+    
+    @Override
+    public void visit(RIfStmt stmt) {
+    }
+    
+    @Override
+    public void visit(RInvokeStmt stmt) {
+    }
+    
+    @Override
+    public void visit(RLookupSwitchStmt stmt) {
+    }
+    
+    @Override
+    public void visit(RNopStmt stmt) {
+    }
+    
+    @Override
+    public void visit(RRetStmt stmt) {
+    }
+    
+    @Override
+    public void visit(RReturnStmt stmt) {
+    }
+    
+    @Override
+    public void visit(RReturnVoidStmt stmt) {
+    }
+    
+    @Override
+    public void visit(RTableSwitchStmt stmt) {
+    }
+    
+    @Override
+    public void visit(RThrowStmt stmt) {
+    }
+    
+    @Override
+    public void visit(RInvokeExpr expr) {
+    }
+    
+    @Override
+    public void visit(RStatement stmt, StaticFieldRef staticRef) {
+    }
+}
@@ -78,12 +78,12 @@ import soot.util.HashMultiMap;
 
 public class ConstantPropagationPass extends CompilationPass {
     /**
-     * when turned on, for x := temp$1 (temp$1 is known to be CONSTANT), we dont use the constant value
-     * instead, generated code is x = temp$1; assert (x == CONSTANT)
-     * when turned off, we we use constant value
+     * The constants found here are not used in generated code. A formal parameter becomes constant from the call sites
+     * whose arguments are constants, even if other call sites pass variables, so they are not safe to substitute.
+     * With -verify_constants this pass runs, and for x := temp$1 (temp$1 is known to be CONSTANT),
+     * generated code is x = temp$1; assert (x == CONSTANT).
+     * Constants are substituted by ConditionalConstantPropagationPass.
      */
-    public static final boolean ASSERT_CORRECTNESS = true;
-    public static final boolean USE_CONSTANT = !ASSERT_CORRECTNESS;
     
     public static final boolean DEBUG = false;
     
@@ -0,0 +1,511 @@
+package org.rjava.compiler.pass;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.rjava.compiler.RJavaCompiler;
+import org.rjava.compiler.semantics.SemanticMap;
+import org.rjava.compiler.semantics.representation.RClass;
+import org.rjava.compiler.semantics.representation.RField;
+import org.rjava.compiler.semantics.representation.RMethod;
+import org.rjava.compiler.semantics.representation.RStatement;
+import org.rjava.compiler.semantics.representation.RType;
+import org.rjava.compiler.semantics.representation.stmt.RAssignStmt;
+import org.rjava.compiler.semantics.representation.stmt.RBreakpointStmt;
+import org.rjava.compiler.semantics.representation.stmt.REnterMonitorStmt;
+import org.rjava.compiler.semantics.representation.stmt.RExitMonitorStmt;
+import org.rjava.compiler.semantics.representation.stmt.RGotoStmt;
+import org.rjava.compiler.semantics.representation.stmt.RIdentityStmt;
+import org.rjava.compiler.semantics.representation.stmt.RIfStmt;
+import org.rjava.compiler.semantics.representation.stmt.RInvokeExpr;
+import org.rjava.compiler.semantics.representation.stmt.RInvokeStmt;
+import org.rjava.compiler.semantics.representation.stmt.RLookupSwitchStmt;
+import org.rjava.compiler.semantics.representation.stmt.RNopStmt;
+import org.rjava.compiler.semantics.representation.stmt.RRetStmt;
+import org.rjava.compiler.semantics.representation.stmt.RReturnStmt;
+import org.rjava.compiler.semantics.representation.stmt.RReturnVoidStmt;
+import org.rjava.compiler.semantics.representation.stmt.RTableSwitchStmt;
+import org.rjava.compiler.semantics.representation.stmt.RThrowStmt;
+import org.rjava.compiler.util.Statistics;
+
+import soot.Local;
+import soot.RefLikeType;
+import soot.SootMethod;
+import soot.Type;
+import soot.Unit;
+import soot.UnitBox;
+import soot.Value;
+import soot.ValueBox;
+import soot.jimple.ArrayRef;
+import soot.jimple.CastExpr;
+import soot.jimple.DefinitionStmt;
+import soot.jimple.EnterMonitorStmt;
+import soot.jimple.ExitMonitorStmt;
+import soot.jimple.FieldRef;
+import soot.jimple.InstanceInvokeExpr;
+import soot.jimple.InvokeExpr;
+import soot.jimple.NewExpr;
+import soot.jimple.ParameterRef;
+import soot.jimple.ReturnStmt;
+import soot.jimple.SpecialInvokeExpr;
+import soot.jimple.StaticFieldRef;
+import soot.jimple.StaticInvokeExpr;
+import soot.jimple.Stmt;
+import soot.jimple.ThisRef;
+import soot.jimple.ThrowStmt;
+import soot.jimple.VirtualInvokeExpr;
+
+/**
+ * Finds objects that never escape the method allocating them, so code generation puts them on the C stack instead of
+ * the heap (see CExpressions.fromSootJNewExpr()).
+ *
+ * Within a method, a local points to the allocation sites and parameters (including this) that are assigned or copied
+ * (maybe through casts) to it. An object escapes if it is stored into a field, a static or an array, returned, thrown,
+ * used as a monitor, or passed to a callee whose parameter escapes. Objects loaded from fields or returned by calls are
+ * not tracked, they are allocated elsewhere anyway.
+ *
+ * Across methods, each method has a summary of which of its parameters escape. Summaries start optimistic (nothing
+ * escapes) and are recomputed for all methods until none changes, so recursion is fine. The targets of a call are
+ * the inferred type of the receiver (see PointsToAnalysisPass), or all implementations by class hierarchy analysis.
+ * Without a body to look at (native, abstract, intrinsic, or calls to the library and through interfaces), parameters
+ * escape, unless the method is @NoEscapes, or @Pure and returns no reference. java.lang.Object.<init>() does nothing.
+ *
+ * A site that does not escape gets one stack slot for the method, which is reused each time the site runs.
+ * That is only right if nothing still refers to the object from the last time, so no local the object may be in
+ * can be live when the site runs again (e.g. in a loop, prev = obj; obj = new T() keeps prev on the heap).
+ * Methods with exception handlers are not looked at, as the flow into handlers is not tracked.
+ *
+ * Fields of a stack object are not replaced with locals here. Once the constructor and accessors are inlined,
+ * the object is a local aggregate to the C compiler, and its scalar replacement of aggregates does that.
+ * @author yi
+ *
+ */
+public class EscapeAnalysisPass extends CompilationPass {
+    public static final boolean DEBUG = false;
+    
+    // bigger objects stay on the heap, so deep recursion does not blow up the stack
+    public static final int STACK_OBJECT_MAX_FIELDS = 32;
+    
+    // for each method with a body: does this (at index 0, if not static) and each parameter escape
+    private Map<SootMethod, boolean[]> summaries = new HashMap<SootMethod, boolean[]>();
+    private List<RMethod> methods = new ArrayList<RMethod>();
+    
+    // allocation statements (x = new T) whose object goes on stack
+    private Set<Unit> stackAllocated = new HashSet<Unit>();
+    
+    public boolean isStackAllocated(Unit allocation) {
+        return stackAllocated.contains(allocation);
+    }
+    
+    static class Result {
+        // allocation sites and identity statements (of this and parameters) each local may refer to
+        Map<Local, Set<Unit>> pointsTo = new HashMap<Local, Set<Unit>>();
+        Set<Unit> escaped = new HashSet<Unit>();
+        
+        Set<Unit> pointsTo(Value v) {
+            Set<Unit> ret = v instanceof Local ? pointsTo.get(v) : null;
+            return ret != null ? ret : new HashSet<Unit>();
+        }
+    }
+    
+    @Override
+    public void start(String name) {
+        super.start(name + " - collect methods");
+        
+        // summaries, from nothing escaping until no summary changes
+        int rounds = 0;
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            rounds++;
+            for (RMethod method : methods) {
+                boolean[] summary = summarize(method, analyze(method));
+                if (!Arrays.equals(summary, summaries.get(method.internal()))) {
+                    summaries.put(method.internal(), summary);
+                    changed = true;
+                }
+            }
+        }
+        RJavaCompiler.println(name + " - " + methods.size() + " methods summarized in " + rounds + " rounds");
+        
+        for (RMethod method : methods)
+            findStackAllocations(method);
+    }
+    
+    @Override
+    public void visit(RClass klass) {
+    
+    }
+    
+    @Override
+    public void visit(RMethod method) {
+        if (method.getBody().isEmpty() || method.isNative() || method.isAbstract() || method.isIntrinsic())
+            return;
+        
+        methods.add(method);
+        summaries.put(method.internal(), new boolean[parameterCount(method.internal())]);
+    }
+    
+    private static int parameterCount(SootMethod method) {
+        return method.getParameterCount() + (method.isStatic() ? 0 : 1);
+    }
+    
+    private boolean[] summarize(RMethod method, Result result) {
+        boolean[] ret = new boolean[parameterCount(method.internal())];
+        int thisIndex = method.isStatic() ? -1 : 0;
+        int firstParameter = method.isStatic() ? 0 : 1;
+        for (RStatement stmt : method.getBody()) {
+            Stmt s = stmt.internal();
+            if (!(s instanceof DefinitionStmt) || !result.escaped.contains(s))
+                continue;
+            
+            Value right = ((DefinitionStmt) s).getRightOp();
+            if (right instanceof ThisRef)
+                ret[thisIndex] = true;
+            else if (right instanceof ParameterRef)
+                ret[firstParameter + ((ParameterRef) right).getIndex()] = true;
+        }
+        
+        // the generated code locks this on entry (see CLanguageGenerator.getMethodBody())
+        if (method.isSynchronized() && !method.isStatic())
+            ret[thisIndex] = true;
+        return ret;
+    }
+    
+    private Result analyze(RMethod method) {
+        Result result = new Result();
+        
+        // points-to, flow-insensitive: propagate along copies until nothing changes
+        Map<Local, List<Local>> copies = new HashMap<Local, List<Local>>();
+        for (RStatement stmt : method.getBody()) {
+            Stmt s = stmt.internal();
+            if (!(s instanceof DefinitionStmt) || !(((DefinitionStmt) s).getLeftOp() instanceof Local))
+                continue;
+            
+            Local left = (Local) ((DefinitionStmt) s).getLeftOp();
+            if (!(left.getType() instanceof RefLikeType))
+                continue;
+            
+            Value right = ((DefinitionStmt) s).getRightOp();
+            if (right instanceof CastExpr)
+                right = ((CastExpr) right).getOp();
+            
+            if (right instanceof NewExpr || right instanceof ThisRef || right instanceof ParameterRef)
+                pointsToOf(result, left).add(s);
+            else if (right instanceof Local) {
+                if (!copies.containsKey(right))
+                    copies.put((Local) right, new ArrayList<Local>());
+                copies.get(right).add(left);
+            }
+        }
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (Local from : copies.keySet())
+                for (Local to : copies.get(from))
+                    changed |= pointsToOf(result, to).addAll(result.pointsTo(from));
+        }
+        
+        // escapes
+        for (RStatement stmt : method.getBody()) {
+            Stmt s = stmt.internal();
+            if (s instanceof DefinitionStmt) {
+                Value left = ((DefinitionStmt) s).getLeftOp();
+                if (left instanceof FieldRef || left instanceof ArrayRef)
+                    result.escaped.addAll(result.pointsTo(((DefinitionStmt) s).getRightOp()));
+            } else if (s instanceof ReturnStmt)
+                result.escaped.addAll(result.pointsTo(((ReturnStmt) s).getOp()));
+            else if (s instanceof ThrowStmt)
+                result.escaped.addAll(result.pointsTo(((ThrowStmt) s).getOp()));
+            else if (s instanceof EnterMonitorStmt)
+                result.escaped.addAll(result.pointsTo(((EnterMonitorStmt) s).getOp()));
+            else if (s instanceof ExitMonitorStmt)
+                result.escaped.addAll(result.pointsTo(((ExitMonitorStmt) s).getOp()));
+            
+            if (s.containsInvokeExpr()) {
+                InvokeExpr invoke = s.getInvokeExpr();
+                int firstArg = 0;
+                if (invoke instanceof InstanceInvokeExpr) {
+                    if (escapesThrough(invoke, 0))
+                        result.escaped.addAll(result.pointsTo(((InstanceInvokeExpr) invoke).getBase()));
+                    firstArg = 1;
+                }
+                for (int i = 0; i < invoke.getArgCount(); i++)
+                    if (invoke.getArg(i) instanceof Local && escapesThrough(invoke, firstArg + i))
+                        result.escaped.addAll(result.pointsTo(invoke.getArg(i)));
+            }
+        }
+        
+        return result;
+    }
+    
+    private static Set<Unit> pointsToOf(Result result, Local local) {
+        if (!result.pointsTo.containsKey(local))
+            result.pointsTo.put(local, new HashSet<Unit>());
+        return result.pointsTo.get(local);
+    }
+    
+    /**
+     * @param index 0 is the receiver of an instance call, arguments follow
+     * @return true if the object at index may escape in any target of the call
+     */
+    private boolean escapesThrough(InvokeExpr invoke, int index) {
+        SootMethod callee = invoke.getMethod();
+        if (callee.getDeclaringClass().getName().equals("java.lang.Object") && callee.getName().equals("<init>"))
+            return false;
+        if (!SemanticMap.isApplicationClass(callee.getDeclaringClass().getName()))
+            return true;
+        
+        List<RMethod> targets = targetsOf(invoke);
+        if (targets == null) {
+            RMethod declared = RMethod.getFromSootMethod(callee);
+            return !declared.hasNoEscapesAnnotation();
+        }
+        
+        for (RMethod target : targets)
+            if (parameterEscapes(target, index))
+                return true;
+        return false;
+    }
+    
+    /**
+     * @return possible targets of the call, or null if we do not know them
+     */
+    private List<RMethod> targetsOf(InvokeExpr invoke) {
+        SootMethod callee = invoke.getMethod();
+        List<RMethod> targets = new ArrayList<RMethod>();
+        if (invoke instanceof StaticInvokeExpr || invoke instanceof SpecialInvokeExpr) {
+            targets.add(RMethod.getFromSootMethod(callee));
+            return targets;
+        }
+        if (!(invoke instanceof VirtualInvokeExpr))
+            return null;
+        
+        // as CExpressions.fromSootVirtualInvokeExpr(), an inferred receiver type means one target
+        Value base = ((VirtualInvokeExpr) invoke).getBase();
+        Type inferred = SemanticMap.pta != null ? SemanticMap.pta.inferType(base) : null;
+        if (inferred != null) {
+            RClass receiver = RClass.fromClassName(RType.initWithSootType(inferred).getClassName());
+            targets.add(RClass.whoImplementsMethodLastInTypeHierarchy(receiver, RMethod.getFromSootMethod(callee))
+                    .getMethodByMatchingNameAndParameters(callee));
+            return targets;
+        }
+        
+        RClass baseClass = RClass.fromClassName(RType.initWithSootType(base.getType()).getClassName());
+        Map<RClass, List<RClass>> implementations = SemanticMap.cha.getClassHierarchy().getVirtualCallTargets(baseClass, callee);
+        if (implementations == null)
+            return null;
+        for (RClass implementing : implementations.keySet()) {
+            if (implementing == null)
+                return null;
+            targets.add(implementing.getMethodByMatchingNameAndParameters(callee));
+        }
+        return targets;
+    }
+    
+    private boolean parameterEscapes(RMethod method, int index) {
+        if (method == null)
+            return true;
+        if (method.hasNoEscapesAnnotation())
+            return false;
+        if (method.hasPureAnnotation() && !method.getReturnType().isReferenceType())
+            return false;
+        
+        boolean[] summary = summaries.get(method.internal());
+        return summary == null || summary[index];
+    }
+    
+    private void findStackAllocations(RMethod method) {
+        if (!method.getSootBody().getTraps().isEmpty())
+            return;
+        
+        Result result = null;
+        Cfg cfg = null;
+        for (RStatement stmt : method.getBody()) {
+            if (!stmt.isObjectCreation())
+                continue;
+            
+            Statistics.increaseCounterByOne(Statistics.ALLOCATION_SITES);
+            if (!fitsOnStack(stmt.getCreatedObjectClass()))
+                continue;
+            
+            if (result == null) {
+                result = analyze(method);
+                cfg = new Cfg(method);
+            }
+            Unit site = stmt.internal();
+            if (result.escaped.contains(site) || isReferredWhenReached(cfg, site, result))
+                continue;
+            
+            stackAllocated.add(site);
+            Statistics.increaseCounterByOne(Statistics.STACK_ALLOCATED);
+            if (DEBUG)
+                RJavaCompiler.debug("on stack: " + stmt.toSimpleString() + " in " + method.getSignature());
+        }
+    }
+    
+    private boolean fitsOnStack(RType type) {
+        // magic types become primitives
+        if (!type.isAppType() || type.isMagicType() || type.isPrimitive())
+            return false;
+        
+        int fields = 0;
+        for (RClass klass = RClass.fromClassName(type.getClassName()); klass != null; klass = klass.hasSuperClass() ? klass.getSuperClass() : null)
+            for (RField field : klass.getFields())
+                if (!field.isStatic())
+                    fields++;
+        return fields <= STACK_OBJECT_MAX_FIELDS;
+    }
+    
+    /**
+     * is any local, that may refer to the object from site, used before being redefined on a path from site back to
+     * itself (or anywhere after it). Such a local would still refer to the last object when the slot is reused
+     */
+    private boolean isReferredWhenReached(Cfg cfg, Unit site, Result result) {
+        Local allocated = (Local) ((DefinitionStmt) site).getLeftOp();
+        for (Local local : result.pointsTo.keySet()) {
+            // the site itself redefines the local it allocates into
+            if (local == allocated || !result.pointsTo.get(local).contains(site))
+                continue;
+            if (isLiveAt(cfg, site, local))
+                return true;
+        }
+        return false;
+    }
+    
+    /**
+     * is local used on some path from the start of site before it is defined (site itself does not define local)
+     */
+    private boolean isLiveAt(Cfg cfg, Unit site, Local local) {
+        Set<Unit> visited = new HashSet<Unit>();
+        LinkedList<Unit> worklist = new LinkedList<Unit>(cfg.successors.get(site));
+        while (!worklist.isEmpty()) {
+            Unit u = worklist.removeFirst();
+            if (!visited.add(u))
+                continue;
+            
+            for (Object o : u.getUseBoxes())
+                if (((ValueBox) o).getValue() == local)
+                    return true;
+            boolean defines = false;
+            for (Object o : u.getDefBoxes())
+                if (((ValueBox) o).getValue() == local)
+                    defines = true;
+            if (!defines)
+                worklist.addAll(cfg.successors.get(u));
+        }
+        return false;
+    }
+    
+    /**
+     * control flow of a method without exception handlers
+     */
+    static class Cfg {
+        Map<Unit, List<Unit>> successors = new HashMap<Unit, List<Unit>>();
+        
+        Cfg(RMethod method) {
+            List<RStatement> body = method.getBody();
+            for (int i = 0; i < body.size(); i++) {
+                Unit u = body.get(i).internal();
+                List<Unit> succs = new ArrayList<Unit>();
+                if (u.fallsThrough() && i + 1 < body.size())
+                    succs.add(body.get(i + 1).internal());
+                if (u.branches())
+                    for (Object o : u.getUnitBoxes())
+                        succs.add(((UnitBox) o).getUnit());
+                successors.put(u, succs);
+            }
+        }
+    }
+    
+    @Override
+    public void visit(RAssignStmt stmt) {
+    
+    }
+    
+    @Override
+    public void visit(RBreakpointStmt stmt) {
+    
+    }
+    
+    @Override
+    public void visit(REnterMonitorStmt stmt) {
+    
+    }
+    
+    @Override
+    public void visit(RExitMonitorStmt stmt) {
+    
+    }
+    
+    @Override
+    public void visit(RGotoStmt stmt) {
+    
+    }
+    
+    @Override
+    public void visit(RIdentityStmt stmt) {
+    
+    }
+    
+    @Override
+    public void visit(RIfStmt stmt) {
+    
+    }
+    
+    @Override
+    public void visit(RInvokeStmt stmt) {
+    
+    }
+    
+    @Override
+    public void visit(RLookupSwitchStmt stmt) {
+    
+    }
+    
+    @Override
+    public void visit(RNopStmt stmt) {
+    
+    }
+    
+    @Override
+    public void visit(RRetStmt stmt) {
+    
+    }
+    
+    @Override
+    public void visit(RReturnStmt stmt) {
+    
+    }
+    
+    @Override
+    public void visit(RReturnVoidStmt stmt) {
+    
+    }
+    
+    @Override
+    public void visit(RTableSwitchStmt stmt) {
+    
+    }
+    
+    @Override
+    public void visit(RThrowStmt stmt) {
+    
+    }
+    
+    @Override
+    public void visit(RInvokeExpr expr) {
+    
+    }
+    
+    @Override
+    public void visit(RStatement stmt, StaticFieldRef staticRef) {
+    
+    }
+}
@@ -0,0 +1,92 @@
+package org.rjava.compiler.pass;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.rjava.compiler.RJavaCompiler;
+
+/**
+ * Runs compilation passes in an order that respects their declared dependencies.
+ * Passes without a dependency between them keep the order they are added in.
+ * Whether a pass visits classes in parallel is decided by the pass itself (see CompilationPass.isParallel())
+ * @author yi
+ *
+ */
+public class PassManager {
+    private List<ScheduledPass> pending = new ArrayList<ScheduledPass>();
+    private Set<CompilationPass> finished = new HashSet<CompilationPass>();
+    
+    /**
+     * schedule a pass. It will be run in the next run()
+     * @param name name used to report the pass
+     * @param pass
+     * @param dependencies passes that have to finish before this pass starts. They should be either finished or scheduled in this manager
+     */
+    public void add(String name, CompilationPass pass, CompilationPass... dependencies) {
+        RJavaCompiler.assertion(!isScheduled(pass) && !finished.contains(pass), "Pass " + name + " is already added");
+        
+        for (CompilationPass dep : dependencies) {
+            RJavaCompiler.assertion(dep != null, "Pass " + name + " depends on a pass that is not created (probably turned off by an option)");
+            RJavaCompiler.assertion(isScheduled(dep) || finished.contains(dep), "Pass " + name + " depends on a pass that is not added to the pass manager");
+        }
+        
+        pending.add(new ScheduledPass(name, pass, dependencies));
+    }
+    
+    /**
+     * run all scheduled passes
+     */
+    public void run() {
+        while (!pending.isEmpty()) {
+            ScheduledPass next = null;
+            for (ScheduledPass p : pending)
+                if (isReady(p)) {
+                    next = p;
+                    break;
+                }
+            
+            // add() only accepts dependencies that are added earlier, so there is always a ready pass
+            RJavaCompiler.assertion(next != null, "Circular dependencies among passes: " + pending);
+            
+            pending.remove(next);
+            next.pass.start(next.name);
+            finished.add(next.pass);
+        }
+    }
+    
+    public boolean hasFinished(CompilationPass pass) {
+        return finished.contains(pass);
+    }
+    
+    private boolean isScheduled(CompilationPass pass) {
+        for (ScheduledPass p : pending)
+            if (p.pass == pass)
+                return true;
+        return false;
+    }
+    
+    private boolean isReady(ScheduledPass p) {
+        for (CompilationPass dep : p.dependencies)
+            if (!finished.contains(dep))
+                return false;
+        return true;
+    }
+    
+    static class ScheduledPass {
+        String name;
+        CompilationPass pass;
+        CompilationPass[] dependencies;
+        
+        ScheduledPass(String name, CompilationPass pass, CompilationPass[] dependencies) {
+            this.name = name;
+            this.pass = pass;
+            this.dependencies = dependencies;
+        }
+        
+        public String toString() {
+            return name;
+        }
+    }
+}
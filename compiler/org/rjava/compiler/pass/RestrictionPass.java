@@ -25,6 +25,14 @@ import org.rjava.compiler.semantics.representation.stmt.RThrowStmt;
 import soot.jimple.StaticFieldRef;
 
 public class RestrictionPass extends CompilationPass {
+    
+    /**
+     * each visit only adds restrictions to the class being visited (outer classes are read, but never written)
+     */
+    @Override
+    protected boolean isParallel() {
+        return true;
+    }
 
     @Override
     public void visit(RClass klass) {
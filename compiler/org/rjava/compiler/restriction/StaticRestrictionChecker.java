@@ -18,7 +18,17 @@ import org.rjava.compiler.exception.*;
 import static org.rjava.compiler.Constants.*;
 
 public class StaticRestrictionChecker {
+    /**
+     * violations are collected in static lists, so classes are checked one at a time 
+     * even when they are translated in parallel
+     */
     public void comply(RClass klass) throws RJavaError, RJavaWarning{
+        synchronized (StaticRestrictionChecker.class) {
+            complyInternal(klass);
+        }
+    }
+    
+    private void complyInternal(RClass klass) throws RJavaError, RJavaWarning{
         boolean noRuleset = true;
         for (RAnnotation anno : klass.getAnnotations()) {
             if (anno.isRestrictionRuleset())
@@ -22,7 +22,8 @@ public class CallGraph {
     
     Map<RStatement, RMethod> callsites = new HashMap<RStatement, RMethod>();
     
-    public void addCallSite(RStatement callsite, RMethod callee) {
+    // call sites and edges are added by CallGraphPass workers in parallel
+    public synchronized void addCallSite(RStatement callsite, RMethod callee) {
         callsites.put(callsite, callee);
     }
     
@@ -44,7 +45,7 @@ public class CallGraph {
         return ret;
     }
     
-    public void addCallEdge(RMethod from, RMethod to) {
+    public synchronized void addCallEdge(RMethod from, RMethod to) {
         if (!cg.containsVertex(from))
             cg.addVertex(from);
         if (!cg.containsVertex(to))
@@ -1,27 +1,47 @@
 package org.rjava.compiler.semantics;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeSet;
 
 import org.rjava.compiler.RJavaCompiler;
 import org.rjava.compiler.semantics.representation.RClass;
+import org.rjava.compiler.semantics.representation.RMethod;
 import org.rjava.compiler.util.Tree;
 import org.rjava.compiler.util.TreeBreadthFirstIterator;
 
+import soot.SootMethod;
+
 /**
  * This class stores the type hierarchy. This info is used to generate class_init(), since parent class should be inited before child. 
  * @author Yi
  *
  */
 public class ClassHierarchy {
+    /**
+     * java.lang.Runnable is implemented by java.lang.Thread in rjava_rt, its id is fixed so the C library can refer to it
+     */
+    public static final String RUNNABLE_INTERFACE = "java.lang.Runnable";
+    public static final int RUNNABLE_INTERFACE_ID = 0;
+    
     List<Tree<RClass>> internal;
     
+    // interface name -> whole-program interface id (index into the itable of each class)
+    Map<String, Integer> interfaceIds;
+    
+    // length of the type display in every class struct, i.e. the depth of the deepest class in the hierarchy + 1 (see getDepth())
+    int displaySize = 1;
+    
     public ClassHierarchy() {
         internal = new ArrayList<Tree<RClass>>();
+        interfaceIds = new HashMap<String, Integer>();
+        interfaceIds.put(RUNNABLE_INTERFACE, RUNNABLE_INTERFACE_ID);
     }
 
     public void add(RClass klass) {
@@ -45,6 +65,10 @@ public class ClassHierarchy {
             add(klass.getSuperClass());
             getTree(klass.getSuperClass()).addLeaf(klass);
         }
+        
+        int depth = getDepth(klass);
+        if (depth >= displaySize)
+            displaySize = depth + 1;
     }
     
     /**
@@ -106,6 +130,94 @@ public class ClassHierarchy {
         return false;
     }
 
+    /**
+     * class hierarchy analysis of a virtual call. The program is closed, so a receiver whose static type is base
+     * is an instance of a concrete class in the subtree of base. The closed world only covers application classes:
+     * a receiver typed as java.lang.Object or another library class may be a String, StringBuilder, array etc.
+     * from rjava_rt, which are not in the hierarchy
+     * @param base static type of the receiver
+     * @param method the invoked method
+     * @return the classes whose implementation of method may be called, each with the concrete classes that dispatch
+     * to it (in breadth first order), or null if base is not an application class or not in the hierarchy
+     */
+    public Map<RClass, List<RClass>> getVirtualCallTargets(RClass base, SootMethod method) {
+        if (base.getName().equals("java.lang.Object") || !base.isAppClass())
+            return null;
+        
+        Tree<RClass> tree = getTree(base);
+        if (tree == null)
+            return null;
+        
+        RMethod invoked = RMethod.getFromSootMethod(method);
+        Map<RClass, List<RClass>> ret = new LinkedHashMap<RClass, List<RClass>>();
+        TreeBreadthFirstIterator<RClass> iter = tree.getBreadthFirstIterator();
+        while (iter.hasNext()) {
+            RClass klass = iter.next();
+            if (klass == null || klass.isInterface() || klass.isAbstract())
+                continue;
+            
+            RClass implementing = RClass.whoImplementsMethodLastInTypeHierarchy(klass, invoked);
+            if (!ret.containsKey(implementing))
+                ret.put(implementing, new ArrayList<RClass>());
+            ret.get(implementing).add(klass);
+        }
+        return ret;
+    }
+    
+    /**
+     * is klass the same type as target, or a subtype of it (by extending or implementing)
+     * @param klass
+     * @param target
+     * @return
+     */
+    public static boolean isSubtypeOf(RClass klass, RClass target) {
+        if (klass.equals(target))
+            return true;
+        
+        if (klass.hasInterfaces()) {
+            for (RClass myInterface : klass.getInterfaces())
+                if (isSubtypeOf(myInterface, target))
+                    return true;
+        }
+        
+        return klass.hasSuperClass() && isSubtypeOf(klass.getSuperClass(), target);
+    }
+    
+    /**
+     * add myInterface and all its super interfaces to interfaces. A class implementing an interface implements its super interfaces as well
+     * @param myInterface
+     * @param interfaces
+     */
+    public static void addWithSuperInterfaces(RClass myInterface, Set<RClass> interfaces) {
+        if (!interfaces.add(myInterface))
+            return;
+        
+        if (myInterface.hasInterfaces()) {
+            for (RClass superInterface : myInterface.getInterfaces())
+                addWithSuperInterfaces(superInterface, interfaces);
+        }
+    }
+    
+    /**
+     * @param klass
+     * @return number of super classes of klass (java.lang.Object is at depth 0). A class struct holds itself at display[depth]
+     */
+    public static int getDepth(RClass klass) {
+        int depth = 0;
+        while (klass.hasSuperClass()) {
+            depth++;
+            klass = klass.getSuperClass();
+        }
+        return depth;
+    }
+    
+    /**
+     * @return length of the type display. Classes deeper than this (library classes outside the hierarchy) are not in the display of their descendants
+     */
+    public int getDisplaySize() {
+        return displaySize;
+    }
+
     public Tree<RClass> getTree(RClass superClass) {
         for (Tree<RClass> root : internal) {
             Tree<RClass> ret = root.getTree(superClass);
@@ -115,6 +227,44 @@ public class ClassHierarchy {
         return null;
     }
 
+    /**
+     * assign whole-program ids to interfaces. Ids follow the order of interface names (after java.lang.Runnable), 
+     * so they do not depend on the order classes are visited in
+     * @param interfaces every interface that is implemented, invoked on or type checked against in the program
+     */
+    public void assignInterfaceIds(Collection<RClass> interfaces) {
+        Set<String> names = new TreeSet<String>();
+        for (RClass myInterface : interfaces) {
+            RJavaCompiler.assertion(myInterface.isInterface(), myInterface.getName() + " is not an interface");
+            names.add(myInterface.getName());
+        }
+        
+        for (String name : names)
+            if (!interfaceIds.containsKey(name))
+                interfaceIds.put(name, interfaceIds.size());
+    }
+    
+    /**
+     * @param myInterface
+     * @return the id of the interface, which is its slot in the itable of every implementing class
+     */
+    public int getInterfaceId(RClass myInterface) {
+        Integer ret = interfaceIds.get(myInterface.getName());
+        RJavaCompiler.assertion(ret != null, myInterface.getName() + " has no interface id, ClassHierarchyPass did not see it");
+        return ret;
+    }
+    
+    public boolean hasInterfaceId(RClass myInterface) {
+        return interfaceIds.containsKey(myInterface.getName());
+    }
+    
+    /**
+     * @return number of interfaces with an id, i.e. the length of the itable
+     */
+    public int getInterfaceCount() {
+        return interfaceIds.size();
+    }
+
     private boolean contains(RClass klass) {
         return getTree(klass) != null;
     }
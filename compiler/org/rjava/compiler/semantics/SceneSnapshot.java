@@ -0,0 +1,423 @@
+package org.rjava.compiler.semantics;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.commons.io.FileUtils;
+import org.rjava.compiler.CompilationTask;
+import org.rjava.compiler.IncrementalCache;
+import org.rjava.compiler.RJavaCompiler;
+
+import soot.ArrayType;
+import soot.Body;
+import soot.RefType;
+import soot.SootClass;
+import soot.SootField;
+import soot.SootMethod;
+import soot.Trap;
+import soot.Type;
+import soot.Value;
+import soot.ValueBox;
+import soot.jimple.CastExpr;
+import soot.jimple.ClassConstant;
+import soot.jimple.FieldRef;
+import soot.jimple.InstanceOfExpr;
+import soot.jimple.InvokeExpr;
+import soot.jimple.JasminClass;
+import soot.jimple.NewExpr;
+import soot.util.JasminOutputStream;
+
+/**
+ * A snapshot of resolved application classes (-snapshot), stored next to the output dir (e.g. output.snapshot/).
+ *
+ * Parsing java source is the most expensive part of starting the compiler. After parsing, soot writes each
+ * application class as a class file into the snapshot, and we remember the hash of the source file it came from.
+ * Next time, snapshot classes whose source is unchanged are on the soot classpath before the sources, and soot
+ * prefers class files, so only changed classes are parsed from source again.
+ *
+ * The jimple of a class depends on other sources as well: soot folds constants of other classes into it, and
+ * method/field refs and inferred local types depend on the declarations and hierarchy of the classes it uses.
+ * So for each source we also record which sources it depends on (classes named in its text, and classes its
+ * jimple refers to), and a change to a source drops the snapshot of every source depending on it, transitively.
+ * Adding or removing a source drops the whole snapshot, as a new class may change how names resolve.
+ *
+ * Classes from the snapshot go through soot's bytecode frontend, so their jimple is not the same as the one
+ * from the java frontend:
+ * - locals are named by soot ($r0, i1, ...) instead of by the source
+ * - local types are inferred from bytecode (e.g. boolean/byte/char locals may become int)
+ * - source position tags (SourceLnNamePosTag) are lost, annotations are kept
+ * The generated code is equivalent, but differs textually, so with -incremental a class is generated again
+ * the first time it switches frontend. Line numbers are needed for -keep_source_line_number, so snapshot
+ * classes are not loaded with that option (see SootEngine).
+ * @author yi
+ *
+ */
+public class SceneSnapshot {
+    public static final String SNAPSHOT_DIR_SUFFIX = ".snapshot/";
+    private static final String INDEX = "index.properties";
+    private static final String DEPENDENCIES = "dependencies.properties";
+    
+    private static final Pattern IDENTIFIER = Pattern.compile("[A-Za-z_$][A-Za-z0-9_$]*");
+    
+    private String dir;
+    private CompilationTask task;
+    
+    // class name -> hash of its source file, for classes in the snapshot
+    private Properties index = new Properties();
+    // source class name -> hash of its source, and the source classes it depends on, e.g. "hash a.B a.C"
+    private Properties dependencies = new Properties();
+    private Map<String, String> sourceHashes = new HashMap<String, String>();
+    
+    private int warmClasses = 0;
+    
+    public SceneSnapshot(CompilationTask task) {
+        this.task = task;
+        
+        String output = RJavaCompiler.outputDir;
+        if (output.endsWith("/"))
+            output = output.substring(0, output.length() - 1);
+        this.dir = output + SNAPSHOT_DIR_SUFFIX;
+        
+        loadIndex();
+    }
+    
+    public String getDir() {
+        return dir;
+    }
+    
+    /**
+     * @return true if some classes can be loaded from the snapshot
+     */
+    public boolean isWarm() {
+        return warmClasses > 0;
+    }
+    
+    public int getWarmClassCount() {
+        return warmClasses;
+    }
+    
+    /**
+     * load the index, and drop classes whose source or any source they depend on changed (or is no longer in the task) from the snapshot
+     */
+    private void loadIndex() {
+        File indexFile = new File(dir + INDEX);
+        if (!indexFile.exists())
+            return;
+        
+        // a snapshot without dependencies is dropped as a whole below
+        File dependenciesFile = new File(dir + DEPENDENCIES);
+        if (!load(indexFile, index) || (dependenciesFile.exists() && !load(dependenciesFile, dependencies))) {
+            index.clear();
+            dependencies.clear();
+        }
+        
+        Set<String> stale = findStaleSources();
+        for (String className : index.stringPropertyNames()) {
+            File classFile = getClassFile(className);
+            if (stale == null || stale.contains(getOuterClass(className)) || !classFile.exists()) {
+                classFile.delete();
+                index.remove(className);
+            } else warmClasses++;
+        }
+    }
+    
+    /**
+     * @return sources that changed since the snapshot was saved, and sources that depend on them (transitively). 
+     * null if sources were added or removed, which makes the whole snapshot stale
+     */
+    private Set<String> findStaleSources() {
+        if (!dependencies.stringPropertyNames().equals(getSources()))
+            return null;
+        
+        Map<String, List<String>> dependents = new HashMap<String, List<String>>();
+        LinkedList<String> worklist = new LinkedList<String>();
+        for (String source : dependencies.stringPropertyNames()) {
+            String[] record = dependencies.getProperty(source).split(" ");
+            if (!record[0].equals(hashSource(source)))
+                worklist.add(source);
+            
+            for (int i = 1; i < record.length; i++) {
+                if (!dependents.containsKey(record[i]))
+                    dependents.put(record[i], new ArrayList<String>());
+                dependents.get(record[i]).add(source);
+            }
+        }
+        
+        Set<String> stale = new HashSet<String>();
+        while (!worklist.isEmpty()) {
+            String source = worklist.removeFirst();
+            if (!stale.add(source) || !dependents.containsKey(source))
+                continue;
+            worklist.addAll(dependents.get(source));
+        }
+        return stale;
+    }
+    
+    private boolean load(File file, Properties properties) {
+        FileInputStream in = null;
+        try {
+            in = new FileInputStream(file);
+            properties.load(in);
+            return true;
+        } catch (IOException e) {
+            RJavaCompiler.warning("Ignoring unreadable snapshot index " + file.getPath() + ": " + e.getMessage());
+            return false;
+        } finally {
+            if (in != null)
+                try {
+                    in.close();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+        }
+    }
+    
+    /**
+     * write classes that are not in the snapshot yet (i.e. parsed from source this time), and the dependencies of all sources
+     * @param classes
+     */
+    public void save(Collection<SootClass> classes) {
+        Map<String, List<String>> bySimpleName = new HashMap<String, List<String>>();
+        for (String className : getSources()) {
+            String simpleName = className.substring(className.lastIndexOf('.') + 1);
+            if (!bySimpleName.containsKey(simpleName))
+                bySimpleName.put(simpleName, new ArrayList<String>());
+            bySimpleName.get(simpleName).add(className);
+        }
+        
+        Map<String, Set<String>> sourceDependencies = new HashMap<String, Set<String>>();
+        for (String source : getSources())
+            sourceDependencies.put(source, findNamedSources(source, bySimpleName));
+        
+        for (SootClass klass : classes) {
+            String hash = hashSource(klass.getName());
+            if (hash == null)
+                continue;
+            
+            Set<String> referred = sourceDependencies.get(getOuterClass(klass.getName()));
+            try {
+                referred.addAll(findReferredSources(klass));
+            } catch (RuntimeException e) {
+                // bodies cannot be retrieved, so be conservative: this source depends on everything
+                referred.addAll(getSources());
+            }
+            
+            if (index.containsKey(klass.getName()))
+                continue;
+            
+            // soot might not be able to generate bytecode for some bodies. Such class is simply parsed from source next time
+            try {
+                writeClass(klass);
+                index.setProperty(klass.getName(), hash);
+            } catch (RuntimeException e) {
+                RJavaCompiler.warning("Fail to snapshot " + klass.getName() + ": " + e.getMessage());
+                getClassFile(klass.getName()).delete();
+            } catch (IOException e) {
+                RJavaCompiler.warning("Fail to snapshot " + klass.getName() + ": " + e.getMessage());
+                getClassFile(klass.getName()).delete();
+            }
+        }
+        
+        dependencies.clear();
+        for (String source : sourceDependencies.keySet()) {
+            String hash = hashSource(source);
+            if (hash == null)
+                continue;
+            
+            StringBuilder record = new StringBuilder(hash);
+            for (String dependency : sourceDependencies.get(source))
+                if (!dependency.equals(source))
+                    record.append(" " + dependency);
+            dependencies.setProperty(source, record.toString());
+        }
+        
+        new File(dir).mkdirs();
+        store(new File(dir + DEPENDENCIES), dependencies);
+        store(new File(dir + INDEX), index);
+    }
+    
+    private void store(File file, Properties properties) {
+        FileOutputStream out = null;
+        try {
+            out = new FileOutputStream(file);
+            properties.store(out, "RJava scene snapshot");
+        } catch (IOException e) {
+            RJavaCompiler.warning("Fail to write snapshot index: " + e.getMessage());
+        } finally {
+            if (out != null)
+                try {
+                    out.close();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+        }
+    }
+    
+    /**
+     * sources whose class name is used in the text of the given source. This covers folded constants, 
+     * which leave no reference to their class in jimple
+     * @param source
+     * @param bySimpleName source class names by their simple name
+     * @return
+     */
+    private Set<String> findNamedSources(String source, Map<String, List<String>> bySimpleName) {
+        Set<String> ret = new HashSet<String>();
+        
+        String text;
+        try {
+            text = FileUtils.readFileToString(new File(task.getSource(source)));
+        } catch (IOException e) {
+            return ret;
+        }
+        
+        Matcher m = IDENTIFIER.matcher(text);
+        while (m.find())
+            if (bySimpleName.containsKey(m.group()))
+                ret.addAll(bySimpleName.get(m.group()));
+        return ret;
+    }
+    
+    /**
+     * sources of the classes that klass (its hierarchy, members and bodies) refers to
+     * @param klass
+     * @return
+     */
+    private Set<String> findReferredSources(SootClass klass) {
+        Set<String> ret = new HashSet<String>();
+        
+        if (klass.hasSuperclass())
+            addSource(ret, klass.getSuperclass().getName());
+        for (Object i : klass.getInterfaces())
+            addSource(ret, ((SootClass) i).getName());
+        for (SootField f : klass.getFields())
+            addSource(ret, f.getType());
+        
+        for (SootMethod m : klass.getMethods()) {
+            addSource(ret, m.getReturnType());
+            for (Object t : m.getParameterTypes())
+                addSource(ret, (Type) t);
+            for (Object e : m.getExceptions())
+                addSource(ret, ((SootClass) e).getName());
+            
+            if (!m.isConcrete())
+                continue;
+            
+            Body body = m.retrieveActiveBody();
+            for (Object trap : body.getTraps())
+                addSource(ret, ((Trap) trap).getException().getName());
+            for (Object box : body.getUseAndDefBoxes()) {
+                Value v = ((ValueBox) box).getValue();
+                addSource(ret, v.getType());
+                
+                if (v instanceof FieldRef)
+                    addSource(ret, ((FieldRef) v).getFieldRef().declaringClass().getName());
+                else if (v instanceof InvokeExpr) {
+                    InvokeExpr invoke = (InvokeExpr) v;
+                    addSource(ret, invoke.getMethodRef().declaringClass().getName());
+                    for (Object t : invoke.getMethodRef().parameterTypes())
+                        addSource(ret, (Type) t);
+                } else if (v instanceof NewExpr)
+                    addSource(ret, ((NewExpr) v).getBaseType());
+                else if (v instanceof CastExpr)
+                    addSource(ret, ((CastExpr) v).getCastType());
+                else if (v instanceof InstanceOfExpr)
+                    addSource(ret, ((InstanceOfExpr) v).getCheckType());
+                else if (v instanceof ClassConstant)
+                    addSource(ret, ((ClassConstant) v).getValue().replace('/', '.'));
+            }
+        }
+        
+        return ret;
+    }
+    
+    private void addSource(Set<String> sources, Type type) {
+        if (type instanceof ArrayType)
+            type = ((ArrayType) type).baseType;
+        if (type instanceof RefType)
+            addSource(sources, ((RefType) type).getClassName());
+    }
+    
+    private void addSource(Set<String> sources, String className) {
+        String outer = getOuterClass(className);
+        if (task.hasSource(outer))
+            sources.add(outer);
+    }
+    
+    private void writeClass(SootClass klass) throws IOException {
+        for (SootMethod m : klass.getMethods())
+            if (m.isConcrete())
+                m.retrieveActiveBody();
+        
+        File classFile = getClassFile(klass.getName());
+        classFile.getParentFile().mkdirs();
+        
+        OutputStream streamOut = new JasminOutputStream(new FileOutputStream(classFile));
+        PrintWriter writerOut = new PrintWriter(new OutputStreamWriter(streamOut));
+        try {
+            new JasminClass(klass).print(writerOut);
+            writerOut.flush();
+        } finally {
+            writerOut.close();
+        }
+    }
+    
+    /**
+     * @return class names of all the sources in the task
+     */
+    private Set<String> getSources() {
+        Set<String> ret = new HashSet<String>();
+        for (String className : task.getClasses())
+            ret.add(getOuterClass(className));
+        return ret;
+    }
+    
+    /**
+     * @param className
+     * @return the class whose source contains className (nested classes are in the source of their outer class)
+     */
+    private String getOuterClass(String className) {
+        return className.contains("$") ? className.substring(0, className.indexOf('$')) : className;
+    }
+    
+    private File getClassFile(String className) {
+        return new File(dir + className.replaceAll("\\.", "/") + ".class");
+    }
+    
+    /**
+     * @param className
+     * @return hash of the source file that contains className, null if the source isnt known
+     */
+    private String hashSource(String className) {
+        String outer = getOuterClass(className);
+        if (!task.hasSource(outer))
+            return null;
+        
+        String source = task.getSource(outer);
+        String hash = sourceHashes.get(source);
+        if (hash == null) {
+            try {
+                hash = IncrementalCache.digest(FileUtils.readFileToByteArray(new File(source)));
+            } catch (IOException e) {
+                return null;
+            }
+            sourceHashes.put(source, hash);
+        }
+        return hash;
+    }
+}
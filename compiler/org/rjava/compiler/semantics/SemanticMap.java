@@ -1,10 +1,9 @@
 package org.rjava.compiler.semantics;
 
-import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
-import java.util.List;
 import java.util.Map;
 import java.util.Queue;
 import java.util.Set;
@@ -12,12 +11,16 @@ import java.util.Set;
 import org.rjava.compiler.CompilationTask;
 import org.rjava.compiler.Constants;
 import org.rjava.compiler.RJavaCompiler;
+import org.rjava.compiler.pass.BoundsCheckEliminationPass;
 import org.rjava.compiler.pass.CallGraphPass;
 import org.rjava.compiler.pass.CircularTypePass;
 import org.rjava.compiler.pass.ClassHierarchyPass;
+import org.rjava.compiler.pass.ConditionalConstantPropagationPass;
 import org.rjava.compiler.pass.ConstantPropagationPass;
 import org.rjava.compiler.pass.DependencyGraphPass;
 import org.rjava.compiler.pass.DetectInlinableFieldPass;
+import org.rjava.compiler.pass.EscapeAnalysisPass;
+import org.rjava.compiler.pass.PassManager;
 import org.rjava.compiler.pass.PointsToAnalysisPass;
 import org.rjava.compiler.pass.RestrictionPass;
 import org.rjava.compiler.semantics.representation.*;
@@ -25,6 +28,10 @@ import org.rjava.compiler.util.JGraphTUtils;
 
 import soot.SootClass;
 
+/**
+ * Classes and types are resolved (and put into this map) on demand. Resolving is done while holding the lock of SemanticMap.class, 
+ * code that iterates classes/types while other threads may be resolving (e.g. translating classes in parallel) should hold it as well
+ */
 public abstract class SemanticMap {
     public static final boolean DEBUG = true;
     
@@ -37,9 +44,6 @@ public abstract class SemanticMap {
     // class hierarchy
     public static ClassHierarchyPass cha;
     
-    // interfaces
-    public static List<RClass> interfacesThatNeedInit = new ArrayList<RClass>();
-    
     // class initialization dependency
     public static DependencyGraphPass dg;
     
@@ -52,14 +56,25 @@ public abstract class SemanticMap {
     // object inlining
     public static DetectInlinableFieldPass oi;
     
-    // constant propagation
+    // constant propagation (substitutes constants and folds branches)
+    public static ConditionalConstantPropagationPass sccp;
+    
+    // interprocedural constant propagation, only checked with assertions (-verify_constants)
     public static ConstantPropagationPass cp;
     
+    // array bounds check elimination
+    public static BoundsCheckEliminationPass bce;
+    
+    // stack allocation of objects that do not escape
+    public static EscapeAnalysisPass ea;
+    
+    public static PassManager passes;
+    
     public static SootEngine engine;
 
     public static void initSemanticMap(CompilationTask task) {
-    	classes = new HashMap<String, RClass>();
-    	types = new HashMap<String, RType>();
+    	classes = Collections.synchronizedMap(new HashMap<String, RClass>());
+    	types = Collections.synchronizedMap(new HashMap<String, RType>());
     	
     	// force a few primitive types in the map
     	for (String primitive : RType.PRIMITIVE_TYPES)
@@ -79,12 +94,15 @@ public abstract class SemanticMap {
     	}
     	
     	/*
-    	 * The order of the following passes matters. DONT CHANGE 
+    	 * The order of the following passes matters. Dependencies are declared to the pass manager, 
+    	 * and passes are added in the order they should run. DONT CHANGE 
     	 */
+    	passes = new PassManager();
     	
     	// init hierarchy - we need this for the next step below
     	cha = new ClassHierarchyPass();
-    	cha.start("Class Hierarchy Analysis");
+    	passes.add("Class Hierarchy Analysis", cha);
+    	passes.run();
 //    	if (DEBUG)
 //    	    cha.getClassHierarchy().printHierarchy();
     	
@@ -106,35 +124,56 @@ public abstract class SemanticMap {
     	
         // init call graph
         cg = new CallGraphPass();
-        cg.start("Call Graph Building");
+        passes.add("Call Graph Building", cg, cha);
         
         // init class initialization dependency
         dg = new DependencyGraphPass();
-        dg.start("Class Initialization Dependency");
+        passes.add("Class Initialization Dependency", dg, cha);
         
         // init restrictions
         RestrictionPass rPass = new RestrictionPass();
-        rPass.start("Restriction Propagating");
+        passes.add("Restriction Propagating", rPass);
         
         // points to analysis
         if (!RJavaCompiler.noOpt) {
             pta = new PointsToAnalysisPass();
-            pta.start("Points-To Analysis");
+            passes.add("Points-To Analysis", pta, cg);
         }
         
         if (RJavaCompiler.OPT_OBJECT_INLINING) {
             CircularTypePass circularTypePass = new CircularTypePass();
-            circularTypePass.start("Object Inlining - find circular type");
+            passes.add("Object Inlining - find circular type", circularTypePass);
             
             oi = new DetectInlinableFieldPass(circularTypePass);
-            oi.start("Object Inlining - find inlinable field");
+            passes.add("Object Inlining - find inlinable field", oi, circularTypePass, pta);
         }
         
         if (RJavaCompiler.OPT_CONSTANT_PROPAGATION) {
-            cp = new ConstantPropagationPass();
-            cp.start("Constant Propagation");
+            // rewrites bodies, so passes that look at statements are added after it
+            sccp = new ConditionalConstantPropagationPass();
+            passes.add("Conditional Constant Propagation", sccp, cha, cg);
+            
+            if (RJavaCompiler.verifyConstants) {
+                cp = new ConstantPropagationPass();
+                passes.add("Constant Propagation", cp, cg, pta);
+            }
         }
         
+        if (RJavaCompiler.OPT_BOUNDS_CHECK_ELIMINATION && RJavaCompiler.getGeneratorOptions().allowArrayBoundCheck()) {
+            bce = new BoundsCheckEliminationPass();
+            passes.add("Bounds Check Elimination", bce);
+        }
+        
+        if (RJavaCompiler.OPT_ESCAPE_ANALYSIS) {
+            // looks at the bodies constant propagation leaves
+            ea = new EscapeAnalysisPass();
+            if (sccp != null)
+                passes.add("Escape Analysis", ea, cha, pta, sccp);
+            else passes.add("Escape Analysis", ea, cha, pta);
+        }
+        
+        passes.run();
+        
         // nop
     }
 
@@ -42,6 +42,9 @@ public class SootEngine {
     private List<String> dir;
     private List<String> classNames;
     
+    // null if -snapshot is not used
+    private SceneSnapshot snapshot;
+    
     private Map<String, SootClass> allClasses;
     private Map<String, SootMethod> allMethods;
     
@@ -55,11 +58,20 @@ public class SootEngine {
     	// sources
     	this.classNames = task.getClasses();
     	
+    	// classes from the snapshot have no source positions (see SceneSnapshot)
+    	if (RJavaCompiler.useSnapshot && RJavaCompiler.keepSourceLineNumber)
+    	    RJavaCompiler.warning("-snapshot is ignored with -keep_source_line_number");
+    	else if (RJavaCompiler.useSnapshot)
+    	    snapshot = new SceneSnapshot(task);
+    	
     	init();
     }
     
     private void init() {
-        ElapseTimer parsingTimer = new ElapseTimer("Parsing Source", true);
+        String phase = "Parsing Source";
+        if (snapshot != null)
+            phase += snapshot.isWarm() ? " (warm, " + snapshot.getWarmClassCount() + " classes from snapshot)" : " (cold)";
+        ElapseTimer parsingTimer = new ElapseTimer(phase, true);
         parsingTimer.start();
         
         List<String> sootArgs = initSoot();
@@ -69,6 +81,13 @@ public class SootEngine {
     	    runSoot(sootArgs);
     	
     	parsingTimer.end();
+    	
+    	if (snapshot != null) {
+    	    ElapseTimer snapshotTimer = new ElapseTimer("Writing Snapshot", true);
+    	    snapshotTimer.start();
+    	    snapshot.save(Scene.v().getApplicationClasses());
+    	    snapshotTimer.end();
+    	}
     }
 
     private void resolveClasses() {
@@ -96,8 +115,10 @@ public class SootEngine {
         // whole program
         Options.v().set_whole_program(true);
         
-        // source preference: java
-        Options.v().set_src_prec(Options.src_prec_java);
+        // source preference: java, or class files if we have a snapshot (classes not in the snapshot are still parsed from java)
+        if (snapshot != null && snapshot.isWarm())
+            Options.v().set_src_prec(Options.src_prec_class);
+        else Options.v().set_src_prec(Options.src_prec_java);
         
         // no output
         Options.v().set_output_format(Options.output_format_none);
@@ -121,6 +142,8 @@ public class SootEngine {
         
         // classpath
         String classpath = "";
+        if (snapshot != null && snapshot.isWarm())
+            classpath += snapshot.getDir() + ":";
         for (String path : dir)
             classpath += path + ":";
         if (RJavaCompiler.isInternalCompiling() != RJavaCompiler.INTERNAL_COMPILE_LIB) {
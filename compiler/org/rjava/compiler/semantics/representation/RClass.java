@@ -44,21 +44,25 @@ public class RClass implements DependencyEdgeNode, CompilationUnit{
      */
     public static RClass fromSootClass(SootClass sootClass) {
         String className = sootClass.getName();
-        RClass rClass = SemanticMap.getAllClasses().get(className);
-        if (rClass == null) {
-            rClass = new RClass(sootClass);
-            SemanticMap.getAllClasses().put(className, rClass);
+        synchronized (SemanticMap.class) {
+            RClass rClass = SemanticMap.getAllClasses().get(className);
+            if (rClass == null) {
+                rClass = new RClass(sootClass);
+                SemanticMap.getAllClasses().put(className, rClass);
+            }
+            return rClass;
         }
-        return rClass;
     }
     
     public static RClass fromClassName(String className) {
-        RClass rClass = SemanticMap.getAllClasses().get(className);
-        if (rClass == null) {
-            rClass = new RClass(SootEngine.resolveAndGetClass(className));
-            SemanticMap.getAllClasses().put(className, rClass);
+        synchronized (SemanticMap.class) {
+            RClass rClass = SemanticMap.getAllClasses().get(className);
+            if (rClass == null) {
+                rClass = new RClass(SootEngine.resolveAndGetClass(className));
+                SemanticMap.getAllClasses().put(className, rClass);
+            }
+            return rClass;
         }
-        return rClass;
     }
     
     protected RClass(SootClass sootClass) {
@@ -129,7 +133,7 @@ public class RClass implements DependencyEdgeNode, CompilationUnit{
      * get a list of restrictions on such class. Build restriction list when first executed
      * @return list of {@link RRestriction}
      */
-    public List<RRestriction> getRestrictions() {
+    public synchronized List<RRestriction> getRestrictions() {
     	if (restrictions == null)
     	    restrictions = fetchRestrictions();		// build from annotations
     
@@ -147,7 +151,7 @@ public class RClass implements DependencyEdgeNode, CompilationUnit{
     	return result;
     }
     
-    public void addRestriction(RRestriction r) {
+    public synchronized void addRestriction(RRestriction r) {
         List<RRestriction> list = getRestrictions();
         for (RRestriction every : list) 
             if (every.equals(r))
@@ -420,6 +424,10 @@ public class RClass implements DependencyEdgeNode, CompilationUnit{
         return Modifier.isFinal(internal.getModifiers());
     }
     
+    public boolean isAbstract() {
+        return Modifier.isAbstract(internal.getModifiers());
+    }
+    
     public boolean isDefactoFinal() {
         if (isFinal())
             return true;
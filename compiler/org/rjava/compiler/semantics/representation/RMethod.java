@@ -96,11 +96,7 @@ public class RMethod implements DependencyEdgeNode, CompilationUnit{
             try {
                 // get body
                 // FIXME: seems to be a problem if we call update() from intrinsic pass. are we getting the modified body?
-                Body sootBody = null;
-                if (SootEngine.RUN_SOOT) {
-                    sootBody = SootEngine.methodStorage.get(internal);
-                }
-                else sootBody = internal.retrieveActiveBody();
+                Body sootBody = getSootBody();
                         
                 Iterator<Unit> iter = sootBody.getUnits().iterator();
                 while(iter.hasNext()) {
@@ -138,6 +134,16 @@ public class RMethod implements DependencyEdgeNode, CompilationUnit{
         this.annotations = fetchAnnotations(internal);
         checkMainMethod();
     }
+    
+    /**
+     * the soot body statements and locals of this method are read from. Passes that change the body call update() afterwards
+     * @return
+     */
+    public Body getSootBody() {
+        if (SootEngine.RUN_SOOT)
+            return SootEngine.methodStorage.get(internal);
+        else return internal.retrieveActiveBody();
+    }
 
     public List<RType> getParameters() {
         return parameters;
@@ -211,8 +217,24 @@ public class RMethod implements DependencyEdgeNode, CompilationUnit{
         return mainMethod;
     }
     
+    // with a training profile, hot methods up to this size are inlined
+    public static final int PROFILED_INLINE_SIZE = 100;
+    
+    /**
+     * With a profile from a training run (see CodeGenerator.isHotMethod()), hot methods that are not too big are inlined,
+     * and methods that the profile calls cold are not. Otherwise small methods are inlined. 
+     * Either way, nothing is inlined heuristically if the target does not allow it
+     * @return
+     */
     public boolean isHeuristicInlined() {
-        return body.size() <= 25 && RJavaCompiler.getGeneratorOptions().allowInline();
+        if (!RJavaCompiler.getGeneratorOptions().allowInline())
+            return false;
+        
+        Boolean hot = RJavaCompiler.getCodeGenerator().isHotMethod(this);
+        if (hot != null)
+            return hot && !mainMethod && body.size() <= PROFILED_INLINE_SIZE;
+        
+        return body.size() <= 25;
     }
     
     public boolean hasInlineAnnotation() {
@@ -231,6 +253,25 @@ public class RMethod implements DependencyEdgeNode, CompilationUnit{
         return false;
     }
     
+    /**
+     * reference arguments (and this) of this method do not escape it, trusted by escape analysis
+     */
+    public boolean hasNoEscapesAnnotation() {
+        for (RAnnotation rAnno : annotations)
+            if (rAnno.getType().getClassName().equals(Constants.RJAVA_NOESCAPES_ANNOTATION))
+                return true;
+        
+        return false;
+    }
+    
+    public boolean hasPureAnnotation() {
+        for (RAnnotation rAnno : annotations)
+            if (rAnno.getType().getClassName().equals(Constants.RJAVA_PURE_ANNOTATION))
+                return true;
+        
+        return false;
+    }
+    
     /**
      * annotations on this method. 
      * Remember annotations on the declaring class also affect this method. 
@@ -320,6 +361,13 @@ public class RMethod implements DependencyEdgeNode, CompilationUnit{
         this.twinLocals = twin.locals;
     }
     
+    /**
+     * @return true if this method has a twin (see twinReturnType). Its body may be the twin's, so it does not match getSootBody()
+     */
+    public boolean hasTwin() {
+        return twinBody != null;
+    }
+    
     public void checkTwin() {
         if (twinReturnType == null || twinBody == null)
             return;
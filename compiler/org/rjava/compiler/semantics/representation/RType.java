@@ -63,17 +63,19 @@ public class RType {
      */
     public static RType initWithTypeName(String type) {
         String classNameTmp = getClassNameFromType(type);
-        if (SemanticMap.getAllTypes().get(classNameTmp) != null) {
-            return SemanticMap.getAllTypes().get(classNameTmp);
+        synchronized (SemanticMap.class) {
+            if (SemanticMap.getAllTypes().get(classNameTmp) != null) {
+                return SemanticMap.getAllTypes().get(classNameTmp);
+            }
+            
+            RType r = new RType();
+            r.type = type;
+            r.resolveAndNormalize();
+            
+            saveToSemanticMap(classNameTmp, r);
+            
+            return r;
         }
-        
-    	RType r = new RType();
-    	r.type = type;
-      	r.resolveAndNormalize();
-      	
-      	saveToSemanticMap(classNameTmp, r);
-
-    	return r;
     }
 
     /**
@@ -98,17 +100,19 @@ public class RType {
      * @return corresponding RType
      */
     public static RType initWithClassName(String className) {
-        if (SemanticMap.getAllTypes().get(className) != null) {
-            return SemanticMap.getAllTypes().get(className);
+        synchronized (SemanticMap.class) {
+            if (SemanticMap.getAllTypes().get(className) != null) {
+                return SemanticMap.getAllTypes().get(className);
+            }
+            
+            RType r = new RType();
+            r.className = className;    
+            r.resolveAndNormalize();
+            
+            // store back to types map
+            saveToSemanticMap(className, r);
+            return r;
         }
-        
-    	RType r = new RType();
-    	r.className = className;    
-    	r.resolveAndNormalize();
-    	
-    	// store back to types map
-    	saveToSemanticMap(className, r);
-    	return r;
     }
     
     /**
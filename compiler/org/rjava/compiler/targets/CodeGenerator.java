@@ -3,10 +3,12 @@ package org.rjava.compiler.targets;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.util.Properties;
 
 import org.apache.commons.io.FileUtils;
 import org.rjava.compiler.RJavaCompiler;
 import org.rjava.compiler.semantics.representation.RClass;
+import org.rjava.compiler.semantics.representation.RMethod;
 import org.rjava.compiler.exception.*;
 import org.rjava.compiler.semantics.SemanticMap;
 
@@ -14,6 +16,54 @@ public abstract class CodeGenerator {
 
     public abstract void translate(RClass klass) throws RJavaWarning, RJavaError;
     
+    /**
+     * Translating a class keeps per-class state (e.g. current class/method, referenced headers) in the generator. 
+     * A target that can translate classes concurrently returns a new generator to translate klass here. 
+     * Contexts are created in compilation order before any of them translates, and their outputs are merged 
+     * back in the same order with mergeClassContext(), so the output is the same as translating one by one
+     * @param klass
+     * @return null if this target can only translate one class at a time
+     */
+    public CodeGenerator newClassContext(RClass klass) {
+        return null;
+    }
+    
+    /**
+     * merge outputs of a generator returned by newClassContext() into this generator
+     * @param context
+     */
+    public void mergeClassContext(CodeGenerator context) {
+        RJavaCompiler.fail(getClass().getName() + " does not translate classes in separate contexts");
+    }
+    
+    /**
+     * describe outputs of a class context, so that the class can be merged later (see IncrementalCache) without translating it
+     * @param context
+     * @return
+     */
+    public Properties summarizeClassContext(CodeGenerator context) {
+        RJavaCompiler.fail(getClass().getName() + " does not translate classes in separate contexts");
+        return null;
+    }
+    
+    /**
+     * merge a summary returned by summarizeClassContext() as if the class context was translated and merged
+     * @param summary
+     */
+    public void mergeClassSummary(Properties summary) {
+        RJavaCompiler.fail(getClass().getName() + " does not translate classes in separate contexts");
+    }
+    
+    /**
+     * tells if a method is hot in the profile of a training run, for targets that build with profile feedback
+     * (see RMethod.isHeuristicInlined())
+     * @param method
+     * @return null if there is no profile, or the profile has no record of the method
+     */
+    public Boolean isHotMethod(RMethod method) {
+        return null;
+    }
+    
     /**
      * e.g. clean up output dir
      */
@@ -22,7 +72,9 @@ public abstract class CodeGenerator {
             File outputDir = new File(RJavaCompiler.outputDir);
             if (!outputDir.exists())
                 outputDir.mkdir();
-            FileUtils.cleanDirectory(outputDir);
+            // incremental compilation reuses generated files (and the cache) from last time
+            if (!RJavaCompiler.incremental)
+                FileUtils.cleanDirectory(outputDir);
         } catch (IOException e) {
             throw new RJavaError("Error when cleaning output dir : " + e.getMessage());
         }
@@ -64,6 +116,9 @@ public abstract class CodeGenerator {
         FileOutputStream os = null;
         try{
             File f = new File(file);
+            // leave an unchanged file untouched, so make wont rebuild it
+            if (RJavaCompiler.incremental && f.exists() && FileUtils.readFileToString(f).equals(out))
+                return;
             if (!f.exists()) {
                 f.getParentFile().mkdirs();
                 f.createNewFile();
@@ -1,20 +1,25 @@
 package org.rjava.compiler.targets.c;
 
+import java.util.List;
+import java.util.Map;
+
 import org.rjava.compiler.RJavaCompiler;
+import org.rjava.compiler.semantics.ClassHierarchy;
 import org.rjava.compiler.semantics.SemanticMap;
 import org.rjava.compiler.semantics.representation.RClass;
 import org.rjava.compiler.semantics.representation.RMethod;
 import org.rjava.compiler.semantics.representation.RType;
 import org.rjava.compiler.targets.c.runtime.CLanguageRuntime;
 import org.rjava.compiler.targets.c.runtime.RuntimeHelpers;
-import org.rjava.compiler.util.HelperMethod;
 import org.rjava.compiler.util.Statistics;
 
 import soot.Local;
+import soot.RefType;
 import soot.SootField;
 import soot.Type;
 import soot.Value;
 import soot.jimple.BinopExpr;
+import soot.jimple.InstanceInvokeExpr;
 import soot.jimple.InvokeExpr;
 import soot.jimple.NumericConstant;
 import soot.jimple.StaticFieldRef;
@@ -169,6 +174,9 @@ public class CExpressions {
      */
     public String fromSootJVirtualInvokeExpr_libCall(
             soot.jimple.internal.JVirtualInvokeExpr virtualInvoke) {
+        if (generator.isStringConcatChainCall(virtualInvoke))
+            return fromStringConcatChainCall(virtualInvoke);
+        
         String methodName = id.fromSootMethod(virtualInvoke.getMethod());
         String base = id.fromSootLocal((Local) virtualInvoke.getBase());
 
@@ -228,7 +236,6 @@ public class CExpressions {
 
                 // devirtualize
                 Statistics.increaseCounterByOne("devirtualize");
-                StringBuilder ret = new StringBuilder();
 
                 RType inferredRType = RType.initWithSootType(inferred);
                 RClass targetClass = SemanticMap
@@ -237,40 +244,152 @@ public class CExpressions {
                         .whoImplementsMethodLastInTypeHierarchy(targetClass,
                                 RMethod.getFromSootMethod(virtualInvoke
                                         .getMethod()));
-                RMethod directInvoke = actualClass
-                        .getMethodByMatchingNameAndParameters(virtualInvoke
-                                .getMethod());
+                return directInvoke(virtualInvoke, actualClass) + typeInfo;
+            }
 
-                generator.referencing(directInvoke);
+            Statistics.increaseCounterByOne("type inference fail");
 
-                ret.append(id.get(actualClass));
-                ret.append("_");
-                ret.append(id
-                        .getFunctionPointerNameFromSootMethod(virtualInvoke
-                                .getMethod()));
-                ret.append("(");
+            if (RJavaCompiler.OPT_CHA_DEVIRTUALIZATION) {
+                String cha = fromVirtualInvokeByClassHierarchy(virtualInvoke);
+                if (cha != null)
+                    return cha + typeInfo;
+            }
+        }
 
-                String base = id.fromSootLocal((Local) virtualInvoke.getBase());
-                ret.append(base);
-
-                if (virtualInvoke.getArgCount() == 0)
-                    ret.append(")");
-                else {
-                    for (int i = 0; i < virtualInvoke.getArgCount(); i++) {
-                        // ret += ", " +
-                        // name.fromSootValue(virtualInvoke.getArg(i));
-                        ret.append(", "
-                                + typeCastingForInvokeParameter(virtualInvoke,
-                                        i));
-                    }
-                    ret.append(")");
-                }
-                return ret.toString() + typeInfo;
+        return virtualInvoke(virtualInvoke) + typeInfo;
+    }
+
+    /**
+     * the most implementations a call site may have to be devirtualized with guards, and the most classes to compare with
+     */
+    public static final int CHA_MAX_GUARDED_TARGETS = 3;
+    public static final int CHA_MAX_GUARDS = 4;
+
+    /**
+     * devirtualize with class hierarchy analysis, when type inference cannot tell the type of the receiver.
+     * The program is closed, so the receiver is an instance of one of the concrete classes under its static type.
+     * Only application classes are closed: a receiver typed as a library class (e.g. java.lang.Object) stays virtual.
+     * If all of them share one implementation, it is called directly. If there are a few implementations, the class
+     * struct of the receiver is compared with each concrete class, and a match calls its implementation directly:
+     *   (class_struct == &B_class_instance) ? B_m(base) : (class_struct == &C_class_instance) ? C_m(base) : virtual call
+     * The virtual call stays as a fallback. Either way the C compiler sees direct calls it can inline.
+     * 
+     * @param virtualInvoke
+     * @return null if the call should stay virtual
+     */
+    private String fromVirtualInvokeByClassHierarchy(
+            soot.jimple.internal.JVirtualInvokeExpr virtualInvoke) {
+        RClass baseClass = RClass.fromClassName(RType.initWithSootType(
+                virtualInvoke.getBase().getType()).getClassName());
+        Map<RClass, List<RClass>> targets = SemanticMap.cha
+                .getClassHierarchy()
+                .getVirtualCallTargets(baseClass, virtualInvoke.getMethod());
+        if (targets == null || targets.size() == 0) {
+            Statistics.increaseCounterByOne(Statistics.CHA_UNKNOWN);
+            return null;
+        }
+
+        if (targets.size() == 1) {
+            Statistics.increaseCounterByOne(Statistics.CHA_DEVIRTUALIZE);
+            RClass actualClass = targets.keySet().iterator().next();
+            return directInvoke(virtualInvoke, actualClass)
+                    + Code.commentln(baseClass.getName() + " -> "
+                            + actualClass.getName() + " (cha)");
+        }
+
+        int guards = 0;
+        for (List<RClass> classes : targets.values())
+            guards += classes.size();
+        if (targets.size() > CHA_MAX_GUARDED_TARGETS || guards > CHA_MAX_GUARDS) {
+            Statistics.increaseCounterByOne(Statistics.CHA_MEGAMORPHIC);
+            return null;
+        }
+
+        Statistics.increaseCounterByOne(Statistics.CHA_GUARDED);
+        Statistics.increaseCounter(Statistics.CHA_GUARDED_TARGETS, targets.size());
+
+        // the base and arguments are locals or constants, so they can be evaluated more than once
+        String base = id.fromSootLocal((Local) virtualInvoke.getBase());
+        String classStruct = Code.getClassStructFromInstance(base);
+        String returnType = returnTypeCast(virtualInvoke);
+        StringBuilder ret = new StringBuilder();
+        StringBuilder info = new StringBuilder(baseClass.getName() + " ->");
+        ret.append("(");
+        for (Map.Entry<RClass, List<RClass>> target : targets.entrySet()) {
+            ret.append("(");
+            for (int i = 0; i < target.getValue().size(); i++) {
+                if (i != 0)
+                    ret.append(" || ");
+                ret.append(classStruct + " == (void*)&"
+                        + id.get(target.getValue().get(i))
+                        + CLanguageRuntime.CLASS_STRUCT_INSTANCE_SUFFIX);
             }
+            ret.append(") ? " + returnType
+                    + directInvoke(virtualInvoke, target.getKey()) + " : ");
+            info.append(" " + target.getKey().getName());
+        }
+        ret.append(returnType + virtualInvoke(virtualInvoke));
+        ret.append(")");
 
-            Statistics.increaseCounterByOne("type inference fail");
+        return ret.toString() + Code.commentln(info + " (cha, guarded)");
+    }
+
+    /**
+     * an implementation may return a subtype of what the invoked method returns, cast it so all branches of a guarded
+     * call have the same type
+     */
+    private String returnTypeCast(
+            soot.jimple.internal.JVirtualInvokeExpr virtualInvoke) {
+        Type returnType = virtualInvoke.getMethod().getReturnType();
+        if (!(returnType instanceof RefType))
+            return "";
+        return "(" + id.getWithPointerIfProper(RType.initWithSootType(returnType)) + ")";
+    }
+
+    /**
+     * call the implementation in actualClass directly
+     */
+    private String directInvoke(
+            soot.jimple.internal.JVirtualInvokeExpr virtualInvoke,
+            RClass actualClass) {
+        StringBuilder ret = new StringBuilder();
+
+        RMethod directInvoke = actualClass
+                .getMethodByMatchingNameAndParameters(virtualInvoke
+                        .getMethod());
+
+        generator.referencing(directInvoke);
+
+        ret.append(id.get(actualClass));
+        ret.append("_");
+        ret.append(id
+                .getFunctionPointerNameFromSootMethod(virtualInvoke
+                        .getMethod()));
+        ret.append("(");
+
+        String base = id.fromSootLocal((Local) virtualInvoke.getBase());
+        ret.append(base);
+
+        if (virtualInvoke.getArgCount() == 0)
+            ret.append(")");
+        else {
+            for (int i = 0; i < virtualInvoke.getArgCount(); i++) {
+                // ret += ", " +
+                // name.fromSootValue(virtualInvoke.getArg(i));
+                ret.append(", "
+                        + typeCastingForInvokeParameter(virtualInvoke,
+                                i));
+            }
+            ret.append(")");
         }
+        return ret.toString();
+    }
 
+    /**
+     * call through the function pointer in the class struct of the receiver
+     */
+    private String virtualInvoke(
+            soot.jimple.internal.JVirtualInvokeExpr virtualInvoke) {
         /* virtual call */
 
         // for a call to cat.speak()
@@ -306,7 +425,7 @@ public class CExpressions {
             ret.append(")");
         }
 
-        return ret.toString() + typeInfo;
+        return ret.toString();
     }
 
     public String fromSootJInterfaceInvokeExpr(JInterfaceInvokeExpr invoke) {
@@ -314,9 +433,9 @@ public class CExpressions {
         // correspondingly has method calcAdd()
         // we have a pointer (DoArithmetic* cat) which is actually pointing to
         // Cat
-        // we invoke calcAdd by ((DoArithmetic*) rjava_get_interface(
-        // ((RJava_Common_Class*)((RJava_Common_Instance*) cat) -> class_struct)
-        // -> interfaces, "DoArithmetic") ) -> calcAdd();
+        // we invoke calcAdd by ((DoArithmetic*) ((RJava_Common_Class*)((RJava_Common_Instance*) cat) -> class_struct)
+        // -> itable[ID]) -> calcAdd();
+        // where ID is the whole-program interface id of DoArithmetic (assigned by ClassHierarchyPass)
 
         StringBuilder ret = new StringBuilder();
 
@@ -329,10 +448,9 @@ public class CExpressions {
 
         ret.append("(");
         ret.append("(" + id.get(interfaceClass) + "*) ");
-        String interfaceList = Code.getClassAttributeFromInstance(base, CLanguageRuntime.INTERFACE_LIST);
-        String interfaceName = "\"" + id.get(interfaceClass) + "\"";
-        ret.append(RuntimeHelpers.invoke(RuntimeHelpers.GET_INTERFACE,
-                new String[] { interfaceList, interfaceName }));
+        String itable = Code.getClassAttributeFromInstance(base, CLanguageRuntime.INTERFACE_TABLE);
+        int interfaceId = SemanticMap.cha.getClassHierarchy().getInterfaceId(interfaceClass);
+        ret.append(itable + "[" + interfaceId + "]");
         ret.append(")");
         ret.append(" -> " + methodName + "(" + base);
 
@@ -351,6 +469,9 @@ public class CExpressions {
 
     public String fromSootJSpecialInvokeExpr(
             soot.jimple.internal.JSpecialInvokeExpr specialInvoke) {
+        if (generator.isStringConcatChainCall(specialInvoke))
+            return fromStringConcatChainCall(specialInvoke);
+        
         String methodName = id.fromSootMethod(specialInvoke.getMethod());
         String base = id.fromSootLocal((Local) specialInvoke.getBase());
 
@@ -369,6 +490,35 @@ public class CExpressions {
         return ret;
     }
 
+    /**
+     * a call on a string buffer that only lives in a concatenation chain (see StringConcatChains).
+     * It goes to the StringBuilder function without locking, and init presizes the buffer
+     */
+    private String fromStringConcatChainCall(InstanceInvokeExpr invoke) {
+        String base = id.fromSootLocal((Local) invoke.getBase());
+        if (invoke.getMethod().getName().equals("<init>")) {
+            String str = invoke.getArgCount() == 0 ? "NULL" : typeCastingForInvokeParameter(invoke, 0);
+            return "rjava_string_builder_init(" + base + ", " + str + ", " + generator.getStringConcatChainCapacity(invoke) + ")";
+        }
+        
+        // java_lang_StringBuffer_append_... -> java_lang_StringBuilder_append_...
+        String bufferClass = id.fromSootClass(invoke.getMethod().getDeclaringClass());
+        String builderClass = id.javaNameToCName(StringConcatChains.STRING_BUILDER);
+        String methodName = builderClass + id.fromSootMethod(invoke.getMethod()).substring(bufferClass.length());
+        
+        String ret = methodName + "((" + builderClass + CLanguageGenerator.POINTER + ") " + base;
+        for (int i = 0; i < invoke.getArgCount(); i++)
+            ret += ", " + typeCastingForInvokeParameter(invoke, i);
+        ret += ")";
+        
+        // append returns the builder, the chain holds it in a local of the buffer type
+        if (invoke.getMethod().getName().equals("append"))
+            ret = "((" + bufferClass + CLanguageGenerator.POINTER + ") " + ret + ")";
+        
+        Statistics.increaseCounterByOne("string concatenation chain calls");
+        return ret;
+    }
+    
     public String fromSootJStaticInvokeExpr(JStaticInvokeExpr actualInvoke) {
         String ret = "";
         ret = id.fromSootMethod(actualInvoke.getMethod());
@@ -474,8 +624,15 @@ public class CExpressions {
         if (RType.initWithClassName(newExpr.getType().toString()).isPrimitive())
             return "0";
 
-        // otherwise, we malloc
         String type = id.fromSootType(newExpr.getType());
+        
+        // the object does not escape, clear its slot on stack (each time, the site may be in a loop)
+        String stackObject = generator.getStackObject(newExpr);
+        if (stackObject != null)
+            return "(" + type + CLanguageGenerator.POINTER + ") __builtin_memset(&" + stackObject + ", 0, "
+                    + CLanguageGenerator.SIZE_OF + "(" + type + "))";
+        
+        // otherwise, we malloc
         String ret = "(" + type + CLanguageGenerator.POINTER + ") "
                 + CLanguageGenerator.MALLOC + "(";
         ret += CLanguageGenerator.SIZE_OF + "(" + type + "))";
@@ -483,10 +640,23 @@ public class CExpressions {
     }
 
     public String fromSootJCastExpr(JCastExpr castExpr) {
-        return "("
+        String cast = "("
                 + id.getWithPointerIfProper(RType.initWithClassName(castExpr
-                        .getCastType().toString())) + ")"
-                + castExpr.getOp().toString();
+                        .getCastType().toString())) + ")";
+        String op = castExpr.getOp().toString();
+        
+        // casts are not checked in release target. In debug target, we check reference casts unless they are statically safe
+        if (!RJavaCompiler.debugTarget || !isTypeCheckable(castExpr.getOp(), castExpr.getCastType()))
+            return cast + op;
+        
+        if (isStaticallyOfType(castExpr.getOp(), castExpr.getCastType())) {
+            Statistics.increaseCounterByOne("checkcast elided");
+            return cast + op;
+        }
+        
+        String pass = "(" + op + " == NULL || " + typeCheck(op, (RefType) castExpr.getCastType()) + ")";
+        return cast + RuntimeHelpers.invoke(RuntimeHelpers.CHECKCAST, new String[] {
+                "(void*)" + op, pass, "\"" + castExpr.getCastType() + "\""});
     }
 
     /*
@@ -532,17 +702,75 @@ public class CExpressions {
      * instanceof expression
      */
     public String fromSootJInstanceOfExpr(JInstanceOfExpr expr) {
-        // e.g. temp instanceof org.mmtk.plan.ComplexPhase
-        // will translate to a call to helper method rjava_instanceof(temp,
-        // &org_mmtk_plan_CompelxPhase_class_instance);
-        String ret = RuntimeHelpers
-                .invoke(RuntimeHelpers.INSTANCEOF,
-                        new String[] {
-                                "(void*)" + id.fromSootValue(expr.getOp()),
-                                "(void*)&"
-                                        + id.fromSootType(expr.getCheckType())
-                                        + CLanguageRuntime.CLASS_STRUCT_INSTANCE_SUFFIX });
-        return ret;
+        String instance = id.fromSootValue(expr.getOp());
+        
+        if (!isTypeCheckable(expr.getOp(), expr.getCheckType())) {
+            // e.g. temp instanceof org.mmtk.plan.ComplexPhase
+            // will translate to a call to helper method rjava_instanceof(temp,
+            // &org_mmtk_plan_CompelxPhase_class_instance);
+            return RuntimeHelpers.invoke(RuntimeHelpers.INSTANCEOF,
+                    new String[] {
+                            "(void*)" + instance,
+                            "(void*)&"
+                                    + id.fromSootType(expr.getCheckType())
+                                    + CLanguageRuntime.CLASS_STRUCT_INSTANCE_SUFFIX });
+        }
+        
+        // the static type already is the check type, only null fails
+        if (isStaticallyOfType(expr.getOp(), expr.getCheckType())) {
+            Statistics.increaseCounterByOne("instanceof elided");
+            return "(" + instance + " != NULL)";
+        }
+        
+        return typeCheck(instance, (RefType) expr.getCheckType());
+    }
+    
+    /**
+     * can we check v against type with the type display/itable, i.e. both are (non-magic) reference types
+     */
+    private boolean isTypeCheckable(Value v, Type type) {
+        if (!(type instanceof RefType) || !(v.getType() instanceof RefType))
+            return false;
+        
+        RType checkType = RType.initWithClassName(type.toString());
+        RType staticType = RType.initWithClassName(v.getType().toString());
+        return !checkType.isPrimitive() && !checkType.isMagicType() && !staticType.isPrimitive() && !staticType.isMagicType();
+    }
+    
+    /**
+     * is the static type of v already a subtype of type
+     */
+    private boolean isStaticallyOfType(Value v, Type type) {
+        RClass staticClass = RClass.fromClassName(((RefType) v.getType()).getClassName());
+        RClass checkClass = RClass.fromClassName(((RefType) type).getClassName());
+        return ClassHierarchy.isSubtypeOf(staticClass, checkClass);
+    }
+    
+    /**
+     * e.g. temp instanceof org.mmtk.plan.ComplexPhase (at depth 2)
+     * will translate to rjava_instanceof_class(temp, &org_mmtk_plan_ComplexPhase_class_instance, 2)
+     * and temp instanceof org.mmtk.utility.Constants (interface id 5)
+     * will translate to rjava_instanceof_interface(temp, 5)
+     * @param instance
+     * @param type
+     * @return C expression that is true if instance is not null and is of type
+     */
+    private String typeCheck(String instance, RefType type) {
+        RClass target = RClass.fromClassName(type.getClassName());
+        ClassHierarchy hierarchy = SemanticMap.cha.getClassHierarchy();
+        
+        if (target.isInterface()) {
+            String interfaceId = Integer.toString(hierarchy.getInterfaceId(target));
+            return RuntimeHelpers.invoke(RuntimeHelpers.INSTANCEOF_INTERFACE, new String[] {"(void*)" + instance, interfaceId});
+        }
+        
+        String classStruct = "(void*)&" + id.fromSootType(type) + CLanguageRuntime.CLASS_STRUCT_INSTANCE_SUFFIX;
+        int depth = ClassHierarchy.getDepth(target);
+        if (depth < hierarchy.getDisplaySize())
+            return RuntimeHelpers.invoke(RuntimeHelpers.INSTANCEOF_CLASS, new String[] {"(void*)" + instance, classStruct, Integer.toString(depth)});
+        
+        // the class is deeper than any class in the hierarchy, it is not in the display. walk the super classes
+        return "(" + instance + " != NULL && " + RuntimeHelpers.invoke(RuntimeHelpers.INSTANCEOF, new String[] {"(void*)" + instance, classStruct}) + ")";
     }
 
     public String fromSootInstanceFieldRef(JInstanceFieldRef ref,
@@ -582,18 +810,12 @@ public class CExpressions {
         String type = id.getWithPointerIfProper(RType.initWithClassName(op
                 .getType().toString()));
 
-        String ret = "*((" + type + "*)";
-        HelperMethod accessArray;
-        if (generator.getMethodContext().hasNoBoundsCheckAnnotation()
-                || !RJavaCompiler.getGeneratorOptions().allowArrayBoundCheck())
-            accessArray = RuntimeHelpers.ACCESS_ARRAY_NOBOUNDS_CHECK;
-        else
-            accessArray = RuntimeHelpers.ACCESS_ARRAY;
-        ret += RuntimeHelpers.invoke(accessArray, new String[] {
-                op.getBase().toString(), op.getIndex().toString() });
-        ret += ")";
-
-        return ret;
+        boolean boundsCheck = !(generator.getMethodContext().hasNoBoundsCheckAnnotation()
+                || !RJavaCompiler.getGeneratorOptions().allowArrayBoundCheck()
+                || (SemanticMap.bce != null && SemanticMap.bce.isInBounds(op)));
+        
+        // the element type is known statically, so we index the elements directly instead of using ele_size in the array
+        return Code.getArrayElement(op.getBase().toString(), op.getIndex().toString(), type, boundsCheck);
     }
 
     public String fromSootStaticFieldRef(soot.jimple.StaticFieldRef ref) {
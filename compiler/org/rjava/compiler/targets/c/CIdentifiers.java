@@ -2,6 +2,7 @@ package org.rjava.compiler.targets.c;
 
 import java.util.List;
 
+import org.rjava.compiler.IncrementalCache;
 import org.rjava.compiler.RJavaCompiler;
 import org.rjava.compiler.semantics.SemanticMap;
 import org.rjava.compiler.semantics.representation.RClass;
@@ -28,6 +29,8 @@ import soot.jimple.internal.JArrayRef;
 import soot.jimple.internal.JInstanceFieldRef;
 
 public class CIdentifiers {
+    public static final String STRING_LITERAL_PREFIX = "rjava_str_";
+    
     CLanguageGenerator generator;
     
     public CIdentifiers(CLanguageGenerator generator) {
@@ -92,7 +95,22 @@ public class CIdentifiers {
      */
     
     public String fromSootMethod(soot.SootMethod method) {
-        String classPrefix = fromSootClass(method.getDeclaringClass());
+        // the declaring class and parameter types are referenced by whoever uses the name
+        fromSootClass(method.getDeclaringClass());
+        for (int i = 0; i < method.getParameterCount(); i++)
+            fromSootType(method.getParameterType(i));
+        
+        return functionName(method);
+    }
+    
+    /**
+     * the C function name for such method. Unlike fromSootMethod(), it references nothing, so it works without a generator
+     * (see TrainingProfile)
+     * @param method
+     * @return
+     */
+    public String functionName(soot.SootMethod method) {
+        String classPrefix = javaNameToCName(RClass.fromSootClass(method.getDeclaringClass()).getName());
         String methodName = method.getName();
         if (methodName.equals("<init>"))
             methodName = CLanguageGenerator.RJAVA_INIT;
@@ -103,8 +121,9 @@ public class CIdentifiers {
         
         // add args type into method name to fake overloading
         for (int i = 0; i < method.getParameterCount(); i++) {
-            ret += "_" + fromSootType(method.getParameterType(i));
-            if (RType.initWithClassName(method.getParameterType(i).toString()).isArray())
+            RType type = RType.initWithClassName(method.getParameterType(i).toString());
+            ret += "_" + javaNameToCName(type.getClassName());
+            if (type.isArray())
                 ret += "array";
         }
         
@@ -150,7 +169,8 @@ public class CIdentifiers {
         if (value.toString().equals("null"))
             return "NULL";
         else if (value instanceof StringConstant) {
-            return "newStringConstant(" + value.toString() + ")";
+            // literals are statically allocated in rjava_crt.c, one per distinct value in the program
+            return "(&" + generator.referenceStringLiteral(((StringConstant) value).value) + ")";
         }
         else if (value instanceof LongConstant) {
             // make sure that long is 64bits (LL) under m32 mode
@@ -165,6 +185,20 @@ public class CIdentifiers {
         else return value.toString();
     }
     
+    /**
+     * @param value
+     * @return C name of the statically allocated java_lang_String for literal value.
+     * The name only depends on the chars, so equal literals in different classes (or compilations) share it
+     */
+    public static String stringLiteral(String value) {
+        byte[] chars = new byte[value.length() * 2];
+        for (int i = 0; i < value.length(); i++) {
+            chars[2 * i] = (byte) (value.charAt(i) >> 8);
+            chars[2 * i + 1] = (byte) value.charAt(i);
+        }
+        return STRING_LITERAL_PREFIX + IncrementalCache.digest(chars);
+    }
+    
     public String fromJavaNumber(Number n) {
         if (n instanceof Long) {
             return n + "L" + (RJavaCompiler.m32 ? "L" : "");
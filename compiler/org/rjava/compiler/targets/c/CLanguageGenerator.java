@@ -3,17 +3,22 @@ package org.rjava.compiler.targets.c;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Properties;
 import java.util.Set;
+import java.util.TreeMap;
 
 import org.apache.commons.io.FileUtils;
 import org.rjava.compiler.RJavaCompiler;
 import org.rjava.compiler.exception.RJavaError;
 import org.rjava.compiler.exception.RJavaWarning;
 import org.rjava.compiler.pass.ConstantPropagationPass;
+import org.rjava.compiler.semantics.ClassHierarchy;
 import org.rjava.compiler.semantics.SemanticMap;
 import org.rjava.compiler.semantics.representation.RClass;
 import org.rjava.compiler.semantics.representation.RField;
@@ -35,6 +40,7 @@ import org.rjava.compiler.util.TreeBreadthFirstIterator;
 
 import soot.Local;
 import soot.Value;
+import soot.jimple.InvokeExpr;
 import soot.jimple.StaticFieldRef;
 import soot.jimple.internal.AbstractStmt;
 import soot.jimple.internal.JAssignStmt;
@@ -51,6 +57,9 @@ public class CLanguageGenerator extends CodeGenerator {
     public static final boolean OUTPUT_JIMPLE_TO_SOURCE = true; // as comment
     public static final boolean OUTPUT_JIMPLE_SOURCE = false; // as *.jimple
     
+    // calls of generated functions in a training run (-target:pgo-profile=), shared by all class contexts
+    public static TrainingProfile profile = null;
+    
     /*
      * Java spec
      */
@@ -79,6 +88,7 @@ public class CLanguageGenerator extends CodeGenerator {
      */
     public static final String FORMAL_PARAMETER = "parameter";
     public static final String THIS_PARAMETER = "this_parameter";
+    public static final String STACK_OBJECT = "stack_object";
     public static final String RJAVA_INIT = "rjinit";
     public static final String RJAVA_CLINIT = "rjclinit";
     
@@ -97,6 +107,8 @@ public class CLanguageGenerator extends CodeGenerator {
     
     protected RClass currentRClass;
     protected RMethod currentRMethod;
+    protected StringConcatChains currentConcatChains;    // of currentRMethod, null if the opt is off
+    protected Map<Value, String> currentStackObjects;    // new exprs of currentRMethod that are allocated on stack, and their slots
     protected boolean generatingType = false;   // if we are generating type, when referencing other class, we dont include their methods header
     
     protected List<String> translatedCSource = new ArrayList<String>();
@@ -106,9 +118,18 @@ public class CLanguageGenerator extends CodeGenerator {
    
     protected Map<String, CodeStringBuilder> classInitMap = new HashMap<String, CodeStringBuilder>();
     
+    // interfaces with a class initializer, i.e. with constants that are not compile time constants
+    protected List<RClass> interfacesThatNeedInit = new ArrayList<RClass>();
+    
+    // string literals referenced by translated code: C name -> value. Sorted, so rjava_crt is stable between compilations
+    protected Map<String, String> stringLiterals = new TreeMap<String, String>();
+    
     protected Set<String> referencedClasses;
     protected Set<String> referencedMethodClasses;
     
+    // intrinsic translation goes through all types, so for a class context it is done before translating in parallel
+    protected boolean intrinsicGenerated = false;
+    
     public CLanguageGenerator() {
         
     }
@@ -158,8 +179,10 @@ public class CLanguageGenerator extends CodeGenerator {
         /*
          * One RJava class org.rjava.A would become several C files
          */
-        if (!klass.isInterface()) {
+        if (!intrinsicGenerated)
             generateIntrinsic(klass);
+        
+        if (!klass.isInterface()) {
             /*
              * A non-interface class org.rjava.A will become org_rjava_A.h, which includes:
              * 1. instance declaration 'struct org_rjava_A', including instance fields
@@ -182,7 +205,6 @@ public class CLanguageGenerator extends CodeGenerator {
              */
             generateCode(klass);
         } else {
-            generateIntrinsic(klass);
             generateInterfaceHeader(klass);
             generateInterfaceBody(klass);
         }
@@ -240,7 +262,7 @@ public class CLanguageGenerator extends CodeGenerator {
             
             writeTo(outInc.toString() + outMain.toString(), RJavaCompiler.outputDir + cCodeSource);
             translatedCSource.add(cCodeSource);
-            SemanticMap.interfacesThatNeedInit.add(klass);
+            interfacesThatNeedInit.add(klass);
         }
     }
 
@@ -316,8 +338,10 @@ public class CLanguageGenerator extends CodeGenerator {
 
     protected void generateIntrinsic(RClass klass) {
         // translate intrinsic types, e.g. java.lang.String/Integer, or org.vmmagic.unboxed.Address
-        for (RType type : SemanticMap.getAllTypes().values()) {
-            intrinsic.generate(type);
+        synchronized (SemanticMap.class) {
+            for (RType type : SemanticMap.getAllTypes().values()) {
+                intrinsic.generate(type);
+            }
         }
         
         // translate intrinsic statement
@@ -511,9 +535,15 @@ public class CLanguageGenerator extends CodeGenerator {
             // super_class = NULL
             classInitTemp.append(Code.getClassAttribute(id.get(klass), CLanguageRuntime.SUPER_CLASS));
             classInitTemp.append(" = NULL" + SEMICOLON + NEWLINE);
-            // interfaces = NULL
-            classInitTemp.append(Code.getClassAttribute(id.get(klass), CLanguageRuntime.INTERFACE_LIST));
-            classInitTemp.append(" = NULL" + SEMICOLON + NEWLINE);
+            // itable[] = NULL
+            String itable = Code.getClassAttribute(id.get(klass), CLanguageRuntime.INTERFACE_TABLE);
+            classInitTemp.append("memset(" + itable + ", 0, " + SIZE_OF + "(" + itable + "))" + SEMICOLON + NEWLINE);
+            // depth = 0, display[] = {this class}
+            classInitTemp.append(Code.getClassAttribute(id.get(klass), CLanguageRuntime.CLASS_DEPTH));
+            classInitTemp.append(" = 0" + SEMICOLON + NEWLINE);
+            String display = Code.getClassAttribute(id.get(klass), CLanguageRuntime.TYPE_DISPLAY);
+            classInitTemp.append("memset(" + display + ", 0, " + SIZE_OF + "(" + display + "))" + SEMICOLON + NEWLINE);
+            classInitTemp.append(display + "[0] = (" + CLanguageRuntime.COMMON_CLASS_STRUCT + "*)&" + Code.getClassStruct(id.get(klass)) + SEMICOLON + NEWLINE);
             // class_name
             if (RJavaCompiler.debugTarget) {
                 classInitTemp.append(Code.getClassAttribute(id.get(klass), CLanguageRuntime.CLASS_NAME));
@@ -587,14 +617,24 @@ public class CLanguageGenerator extends CodeGenerator {
         }
         
         // check if the class implements any interface. If so, we will init those interfaces in class_init()
+        // super interfaces of those interfaces are implemented as well, so interface calls and instanceof on them find the itable slot set
+        Set<RClass> implemented = new LinkedHashSet<RClass>();
         if (klass.hasInterfaces()) {
             for(RClass myInterface : klass.getInterfaces()) {
+                ClassHierarchy.addWithSuperInterfaces(myInterface, implemented);
+            }
+            for(RClass myInterface : implemented) {
                 getInterfaceInitCode(klass, myInterface, false);
             }
         }
+        // interfaces of super classes (and their super interfaces) are inherited. If klass overrides any of their methods, rewrite them
         if (klass.hasInheritedInterfaces()) {
+            Set<RClass> inherited = new LinkedHashSet<RClass>();
             for(RClass myInterface : klass.getInheritedInterfaces()) {
-                if (klass.hasOverridingMethodsFromInterface(myInterface)) {
+                ClassHierarchy.addWithSuperInterfaces(myInterface, inherited);
+            }
+            for(RClass myInterface : inherited) {
+                if (!implemented.contains(myInterface) && klass.hasOverridingMethodsFromInterface(myInterface)) {
                     getInterfaceInitCode(klass, myInterface, true);
                 }
             }
@@ -735,20 +775,17 @@ public class CLanguageGenerator extends CodeGenerator {
             classInitTemp.append(" = " + id.get(klass.getImplementingMethodOfAnInterfaceMethod(interfaceMethod)) + SEMICOLON + NEWLINE);
         }
 
+        String interfaceId = Integer.toString(SemanticMap.cha.getClassHierarchy().getInterfaceId(myInterface));
+        String tempClassVar = "(" + CLanguageRuntime.COMMON_CLASS_STRUCT + "*)&" + id.get(klass) + CLanguageRuntime.CLASS_STRUCT_INSTANCE_SUFFIX;
         if (rewrite) {
             // rewrite
-            // void rjava_alter_interface(void* interface, char* name, RJava_Common_Class* class);
-            String tempClassVar = "(" + CLanguageRuntime.COMMON_CLASS_STRUCT + "*)&" + id.get(klass) + CLanguageRuntime.CLASS_STRUCT_INSTANCE_SUFFIX;
-            String tempInterfaceName = "\"" + id.get(myInterface) + "\"";
-            classInitTemp.append(RuntimeHelpers.invoke(RuntimeHelpers.ALTER_INTERFACE, new String[]{tempInterfaceVar, tempInterfaceName, tempClassVar}) + SEMICOLON + NEWLINE);
+            // void rjava_alter_interface(void* interface, int interface_id, RJava_Common_Class* class);
+            classInitTemp.append(RuntimeHelpers.invoke(RuntimeHelpers.ALTER_INTERFACE, new String[]{tempInterfaceVar, interfaceId, tempClassVar}) + SEMICOLON + NEWLINE);
         }else {
             // add this interface to class
-            // void rjava_add_interface_to_class(void* interface, int interface_size, char* name, RJava_Common_Class* class);
-            String interfaceSize = SIZE_OF + "(" + id.get(myInterface) + ")";
-            String tempInterfaceName = "\"" + id.get(myInterface) + "\"";
-            String tempClassVar = "(" + CLanguageRuntime.COMMON_CLASS_STRUCT + "*)&" + id.get(klass) + CLanguageRuntime.CLASS_STRUCT_INSTANCE_SUFFIX;
+            // void rjava_add_interface_to_class(void* interface, int interface_id, RJava_Common_Class* class);
             classInitTemp.append(RuntimeHelpers.invoke(RuntimeHelpers.ADD_INTERFACE_TO_CLASS, 
-                    new String[]{tempInterfaceVar, interfaceSize, tempInterfaceName, tempClassVar}) + SEMICOLON + NEWLINE);
+                    new String[]{tempInterfaceVar, interfaceId, tempClassVar}) + SEMICOLON + NEWLINE);
         }
         
         addToClassInitMap(klass.getName(), classInitTemp.toString());
@@ -823,14 +860,18 @@ public class CLanguageGenerator extends CodeGenerator {
     
     public String getMethodBody(RMethod method) throws RJavaError {
         String prologue = "";
-        if (RJavaCompiler.LOG_FUNCTION_EXECUTION) {
-            prologue = RuntimeHelpers.invoke(RuntimeHelpers.DEBUG_LOG_FUNC_EXEC, new String[]{"__func__"}) + SEMICOLON + NEWLINE;
+        if (RJavaCompiler.profileFunctions != RJavaCompiler.PROFILE_NONE) {
+            // see rjava_profiler.h, the function is only used by sampling to map code addresses back to the method
+            String function = method.isMainMethod() ? "main" : id.get(method);
+            prologue = "RJAVA_PROF_ENTER(" + function + ", \"" + method.getSignature() + "\")" + SEMICOLON + NEWLINE;
         }
         
         if (method.isIntrinsic())
             return prologue + method.getCode();
         
         currentRMethod = method;
+        if (RJavaCompiler.OPT_STRING_CONCAT_CHAINS)
+            currentConcatChains = new StringConcatChains(method);
         
         try {
             CodeStringBuilder out = new CodeStringBuilder();
@@ -841,13 +882,23 @@ public class CLanguageGenerator extends CodeGenerator {
             for (RLocal local : method.getLocals()) {
                 out.append(stmt.get(local) + SEMICOLON + NEWLINE);
             }
+            // one slot for each allocation site whose object does not escape (see EscapeAnalysisPass)
+            currentStackObjects = new HashMap<Value, String>();
+            for (RStatement rStmt : method.getBody()) {
+                if (SemanticMap.ea != null && rStmt.isObjectCreation() && SemanticMap.ea.isStackAllocated(rStmt.internal())) {
+                    Value newExpr = ((JAssignStmt) rStmt.internal()).getRightOp();
+                    String slot = STACK_OBJECT + currentStackObjects.size();
+                    currentStackObjects.put(newExpr, slot);
+                    out.append(id.fromSootType(newExpr.getType()) + " " + slot + SEMICOLON + NEWLINE);
+                }
+            }
             out.append(NEWLINE);
             out.append(Code.commentln("stmts"));
             
             if (method.isSynchronized()) {
                 if (!method.isStatic()) {
                     // lock on instance monitor
-                    out.append(Code.mutexLockOnInstance(THIS_PARAMETER) + SEMICOLON + NEWLINE);
+                    out.append(Code.monitorEnterOnInstance(THIS_PARAMETER) + SEMICOLON + NEWLINE);
                 } else {
                     // lock on class monitor
                     out.append(Code.mutexLockOnClass(id.get(method.getKlass())) + SEMICOLON + NEWLINE);
@@ -879,7 +930,7 @@ public class CLanguageGenerator extends CodeGenerator {
                         // unlock mutex
                         if (!method.isStatic()) {
                             // unlock on instance monitor
-                            out.append(Code.mutexUnlockOnInstance(THIS_PARAMETER) + SEMICOLON + NEWLINE);
+                            out.append(Code.monitorExitOnInstance(THIS_PARAMETER) + SEMICOLON + NEWLINE);
                         } else {
                             // unlock on class monitor
                             out.append(Code.mutexUnlockOnClass(id.get(method.getKlass())) + SEMICOLON + NEWLINE);
@@ -906,7 +957,125 @@ public class CLanguageGenerator extends CodeGenerator {
             return prologue + out.toString();
         } finally {
             currentRMethod = null;
+            currentConcatChains = null;
+            currentStackObjects = null;
+        }
+    }
+    
+    /**
+     * only CLanguageGenerator itself translates in class contexts. 
+     * Generators for the library (subclasses) are run in internal compilation, and they stay serial
+     */
+    @Override
+    public CodeGenerator newClassContext(RClass klass) {
+        if (getClass() != CLanguageGenerator.class)
+            return null;
+        
+        // intrinsic translation changes shared types, do it here in compilation order
+        generateIntrinsic(klass);
+        
+        CLanguageGenerator context = new CLanguageGenerator();
+        context.intrinsicGenerated = true;
+        return context;
+    }
+    
+    /**
+     * a class context keeps everything it generates to itself (including the typedefs of its runtime), 
+     * the main generator takes them over here, in compilation order
+     */
+    @Override
+    public void mergeClassContext(CodeGenerator context) {
+        CLanguageGenerator c = (CLanguageGenerator) context;
+        
+        translatedCHeader.addAll(c.translatedCHeader);
+        translatedCSource.addAll(c.translatedCSource);
+        
+        for (String typedef : c.runtime.getTypedefList())
+            runtime.addTypedef(typedef);
+        interfacesThatNeedInit.addAll(c.interfacesThatNeedInit);
+        
+        for (String rClassName : c.classInitMap.keySet())
+            addToClassInitMap(rClassName, c.classInitMap.get(rClassName).toString());
+        
+        stringLiterals.putAll(c.stringLiterals);
+        
+        if (c.mainObj != null) {
+            mainSource = c.mainSource;
+            setMainObj(c.mainObj);
+        }
+    }
+    
+    private static final String SUMMARY_HEADERS = "headers";
+    private static final String SUMMARY_SOURCES = "sources";
+    private static final String SUMMARY_TYPEDEFS = "typedefs";
+    private static final String SUMMARY_INTERFACES_TO_INIT = "interfaces.init";
+    private static final String SUMMARY_MAIN_OBJ = "main.obj";
+    private static final String SUMMARY_MAIN_SOURCE = "main.source";
+    private static final String SUMMARY_CLASS_INIT_PREFIX = "init.";
+    private static final String SUMMARY_STRING_LITERAL_PREFIX = "string.";
+    private static final String SUMMARY_SEPARATOR = ",";
+    
+    @Override
+    public Properties summarizeClassContext(CodeGenerator context) {
+        CLanguageGenerator c = (CLanguageGenerator) context;
+        Properties summary = new Properties();
+        
+        summary.setProperty(SUMMARY_HEADERS, join(c.translatedCHeader));
+        summary.setProperty(SUMMARY_SOURCES, join(c.translatedCSource));
+        summary.setProperty(SUMMARY_TYPEDEFS, join(c.runtime.getTypedefList()));
+        List<String> interfaces = new ArrayList<String>();
+        for (RClass myInterface : c.interfacesThatNeedInit)
+            interfaces.add(myInterface.getName());
+        summary.setProperty(SUMMARY_INTERFACES_TO_INIT, join(interfaces));
+        for (String rClassName : c.classInitMap.keySet())
+            summary.setProperty(SUMMARY_CLASS_INIT_PREFIX + rClassName, c.classInitMap.get(rClassName).toString());
+        for (String literal : c.stringLiterals.keySet())
+            summary.setProperty(SUMMARY_STRING_LITERAL_PREFIX + literal, c.stringLiterals.get(literal));
+        if (c.mainObj != null) {
+            summary.setProperty(SUMMARY_MAIN_OBJ, c.mainObj);
+            summary.setProperty(SUMMARY_MAIN_SOURCE, c.mainSource);
+        }
+        
+        return summary;
+    }
+    
+    @Override
+    public void mergeClassSummary(Properties summary) {
+        translatedCHeader.addAll(split(summary.getProperty(SUMMARY_HEADERS)));
+        translatedCSource.addAll(split(summary.getProperty(SUMMARY_SOURCES)));
+        
+        for (String typedef : split(summary.getProperty(SUMMARY_TYPEDEFS)))
+            runtime.addTypedef(typedef);
+        for (String interfaceName : split(summary.getProperty(SUMMARY_INTERFACES_TO_INIT)))
+            interfacesThatNeedInit.add(RClass.fromClassName(interfaceName));
+        
+        for (String key : summary.stringPropertyNames())
+            if (key.startsWith(SUMMARY_CLASS_INIT_PREFIX))
+                addToClassInitMap(key.substring(SUMMARY_CLASS_INIT_PREFIX.length()), summary.getProperty(key));
+            else if (key.startsWith(SUMMARY_STRING_LITERAL_PREFIX))
+                stringLiterals.put(key.substring(SUMMARY_STRING_LITERAL_PREFIX.length()), summary.getProperty(key));
+        
+        if (summary.getProperty(SUMMARY_MAIN_OBJ) != null) {
+            mainSource = summary.getProperty(SUMMARY_MAIN_SOURCE);
+            setMainObj(summary.getProperty(SUMMARY_MAIN_OBJ));
+        }
+    }
+    
+    private static String join(List<String> list) {
+        StringBuilder ret = new StringBuilder();
+        for (int i = 0; i < list.size(); i++) {
+            if (i != 0)
+                ret.append(SUMMARY_SEPARATOR);
+            ret.append(list.get(i));
         }
+        return ret.toString();
+    }
+    
+    private static List<String> split(String joined) {
+        List<String> ret = new ArrayList<String>();
+        if (joined != null && !joined.isEmpty())
+            ret.addAll(Arrays.asList(joined.split(SUMMARY_SEPARATOR)));
+        return ret;
     }
     
     @Override
@@ -989,6 +1158,45 @@ public class CLanguageGenerator extends CodeGenerator {
     public Map<String, CodeStringBuilder> getClassInitMap() {
         return classInitMap;
     }
+    
+    /**
+     * record that the code being translated uses string literal value
+     * @param value
+     * @return C name of the literal
+     */
+    public String referenceStringLiteral(String value) {
+        String literal = CIdentifiers.stringLiteral(value);
+        stringLiterals.put(literal, value);
+        return literal;
+    }
+    
+    /**
+     * @param invoke
+     * @return true if invoke is on a string buffer that is only used in a concatenation chain of the current method
+     */
+    public boolean isStringConcatChainCall(InvokeExpr invoke) {
+        return currentConcatChains != null && currentConcatChains.isChainCall(invoke);
+    }
+    
+    public int getStringConcatChainCapacity(InvokeExpr init) {
+        return currentConcatChains.getCapacity(init);
+    }
+    
+    /**
+     * @param newExpr
+     * @return the local that holds the object of newExpr in the current method, or null if it is allocated on heap
+     */
+    public String getStackObject(Value newExpr) {
+        return currentStackObjects != null ? currentStackObjects.get(newExpr) : null;
+    }
+    
+    public Map<String, String> getStringLiterals() {
+        return stringLiterals;
+    }
+    
+    public List<RClass> getInterfacesThatNeedInit() {
+        return interfacesThatNeedInit;
+    }
 
     public Intrinsics getIntrinsic() {
         return intrinsic;
@@ -1014,6 +1222,10 @@ public class CLanguageGenerator extends CodeGenerator {
         } else if (arg.contains("-target:boehm-env=")) {
             String env = arg.replaceAll("-target:boehm-env=", "");
             CLanguageRuntime.BOEHM_ENV.add(env);
+        } else if (arg.startsWith("-target:pgo=")) {
+            CLanguageRuntime.pgoTraining = arg.substring("-target:pgo=".length());
+        } else if (arg.startsWith("-target:pgo-profile=")) {
+            CLanguageRuntime.pgoProfile = arg.substring("-target:pgo-profile=".length());
         } else {
             throw new RJavaError("Unrecognizable target option: " + arg);
         }
@@ -1025,6 +1237,18 @@ public class CLanguageGenerator extends CodeGenerator {
                 CLanguageRuntime.memoryManagement != CLanguageRuntime.GC_MALLOC) {
             throw new RJavaError("Boehm environment variables can't be applied when boehm is not chosen as RJava mm");
         }
+        if (CLanguageRuntime.pgoTraining != null && CLanguageRuntime.pgoTraining.trim().isEmpty())
+            throw new RJavaError("PGO build needs a training command, e.g. -target:pgo=./a.out");
+        // read now, the profile may be in the output dir that is cleaned before translation
+        if (CLanguageRuntime.pgoProfile != null) {
+            profile = new TrainingProfile(CLanguageRuntime.pgoProfile);
+            RJavaCompiler.println("Profile of " + profile.size() + " functions from " + CLanguageRuntime.pgoProfile);
+        }
+    }
+    
+    @Override
+    public Boolean isHotMethod(RMethod method) {
+        return profile == null ? null : profile.isHot(method);
     }
 
     @Override
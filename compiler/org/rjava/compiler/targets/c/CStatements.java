@@ -6,7 +6,6 @@ import java.util.Map;
 
 import org.rjava.compiler.RJavaCompiler;
 import org.rjava.compiler.exception.RJavaError;
-import org.rjava.compiler.pass.ConstantPropagationPass;
 import org.rjava.compiler.pass.PointsToAnalysisPass;
 import org.rjava.compiler.semantics.SemanticMap;
 import org.rjava.compiler.semantics.representation.RClass;
@@ -16,7 +15,6 @@ import org.rjava.compiler.semantics.representation.RMethod;
 import org.rjava.compiler.semantics.representation.RStatement;
 import org.rjava.compiler.semantics.representation.RType;
 import org.rjava.compiler.semantics.representation.stmt.*;
-import org.rjava.compiler.targets.c.runtime.CLanguageRuntime;
 import org.rjava.compiler.targets.c.runtime.RuntimeHelpers;
 import org.rjava.compiler.util.HelperMethod;
 import org.rjava.compiler.util.Statistics;
@@ -183,17 +181,16 @@ public class CStatements {
             }
         }
         
-        if (RJavaCompiler.OPT_CONSTANT_PROPAGATION) {
-            if (SemanticMap.cp.isConstant(leftOp)) {
-                if (ConstantPropagationPass.ASSERT_CORRECTNESS) {
-                    String assertion = "assert (" + leftOpStr + " == " + id.fromJavaNumber(SemanticMap.cp.getConstant(leftOp)) + ")";
-                    return leftOpStr + " = " + rightOpWithCast + ";" + assertion;
-                }
-                if (ConstantPropagationPass.USE_CONSTANT) {
-                    String constantRight = id.fromJavaNumber(SemanticMap.cp.getConstant(leftOp));
-                    return leftOpStr + " = " + expr.typeCasting(leftOp.getType(), rightOp.getType(), constantRight);
-                }
-            }
+        // constants are substituted before code generation, unless we are asked to check them at runtime
+        if (RJavaCompiler.OPT_CONSTANT_PROPAGATION && RJavaCompiler.verifyConstants) {
+            String assertion = "";
+            if (SemanticMap.cp.isConstant(leftOp))
+                assertion += ";assert (" + leftOpStr + " == " + id.fromJavaNumber(SemanticMap.cp.getConstant(leftOp)) + ")";
+            NumericConstant defined = SemanticMap.sccp.getDefinedConstant(internal);
+            if (defined != null)
+                assertion += ";assert (" + leftOpStr + " == " + id.fromSootValue(defined) + ")";
+            if (!assertion.isEmpty())
+                return leftOpStr + " = " + rightOpWithCast + assertion;
         }
         
         if (PointsToAnalysisPass.DEBUG) {
@@ -216,12 +213,12 @@ public class CStatements {
     
     private String get(REnterMonitorStmt stmt) throws RJavaError {
         JEnterMonitorStmt internal = stmt.internal();
-        return "pthread_mutex_lock(&(((" + CLanguageRuntime.COMMON_INSTANCE_STRUCT + "*) " + id.fromSootValue(internal.getOp()) + ") -> " + CLanguageRuntime.INSTANCE_MUTEX + "))";
+        return Code.monitorEnterOnInstance(id.fromSootValue(internal.getOp()));
     }
     
     private String get(RExitMonitorStmt stmt) throws RJavaError {
         JExitMonitorStmt internal = stmt.internal();
-        return "pthread_mutex_unlock(&(((" + CLanguageRuntime.COMMON_INSTANCE_STRUCT + "*) " + id.fromSootValue(internal.getOp()) + ") -> " + CLanguageRuntime.INSTANCE_MUTEX + "))";
+        return Code.monitorExitOnInstance(id.fromSootValue(internal.getOp()));
     }
     
     private String get(RGotoStmt stmt) {
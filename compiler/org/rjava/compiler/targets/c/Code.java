@@ -1,6 +1,7 @@
 package org.rjava.compiler.targets.c;
 
 import org.rjava.compiler.targets.c.runtime.CLanguageRuntime;
+import org.rjava.compiler.targets.c.runtime.RuntimeHelpers;
 
 /**
  * Methods from this class serve as 'macros' to access attributes in instance or class
@@ -70,12 +71,29 @@ public abstract class Code {
         return "((" + klass + "*)" + instance + ")->" + attr;
     }
     
-    public static String mutexLockOnInstance(String instance) {
-        return "pthread_mutex_lock(&(((" + CLanguageRuntime.COMMON_INSTANCE_STRUCT + "*) " + instance + ") -> " + CLanguageRuntime.INSTANCE_MUTEX + "))";
+    /**
+     * element of an rjava array as an lvalue, e.g. ((int32_t*)rjava_array_elements(array))[index]
+     * the stride is sizeof(eleType) at compile time rather than ele_size stored in the array
+     * @param array
+     * @param index should have no side effect (it may be evaluated twice)
+     * @param eleType C type of the element
+     * @param boundsCheck
+     * @return
+     */
+    public static String getArrayElement(String array, String index, String eleType, boolean boundsCheck) {
+        String elements;
+        if (boundsCheck)
+            elements = RuntimeHelpers.invoke(RuntimeHelpers.ARRAY_ELEMENTS_CHECKED, new String[]{array, index});
+        else elements = RuntimeHelpers.invoke(RuntimeHelpers.ARRAY_ELEMENTS, new String[]{array});
+        return "((" + eleType + "*)" + elements + ")[" + index + "]";
+    }
+    
+    public static String monitorEnterOnInstance(String instance) {
+        return RuntimeHelpers.invoke(RuntimeHelpers.MONITOR_ENTER, new String[]{instance});
     }
     
-    public static String mutexUnlockOnInstance(String instance) {
-        return "pthread_mutex_unlock(&(((" + CLanguageRuntime.COMMON_INSTANCE_STRUCT + "*) " + instance + ") -> " + CLanguageRuntime.INSTANCE_MUTEX + "))";
+    public static String monitorExitOnInstance(String instance) {
+        return RuntimeHelpers.invoke(RuntimeHelpers.MONITOR_EXIT, new String[]{instance});
     }
     
     public static String mutexLockOnClass(String klass) {
@@ -6,7 +6,6 @@ import java.util.Iterator;
 import java.util.Map;
 
 import org.rjava.compiler.Constants;
-import org.rjava.compiler.RJavaCompiler;
 import org.rjava.compiler.semantics.representation.RLocal;
 import org.rjava.compiler.semantics.representation.RMethod;
 import org.rjava.compiler.semantics.representation.RStatement;
@@ -122,11 +121,8 @@ public class Intrinsics {
         else if (stmt instanceof RReturnVoidStmt && stmt.getMethod().isMainMethod()) {
             stmt.setIntrinsic(true);
             String joinAllThreads = "rjava_join_all_threads();";
-            String reportFuncLog = "";
-            if (RJavaCompiler.LOG_FUNCTION_EXECUTION)
-                reportFuncLog = RuntimeHelpers.invoke(RuntimeHelpers.DEBUG_REPORT_FUNC_LOG, null) + ";";
             String ret = "return 0";
-            stmt.setCode(joinAllThreads + reportFuncLog + ret);
+            stmt.setCode(joinAllThreads + ret);
         }
     }
 
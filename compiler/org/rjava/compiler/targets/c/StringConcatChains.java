@@ -0,0 +1,201 @@
+package org.rjava.compiler.targets.c;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.rjava.compiler.semantics.representation.RMethod;
+import org.rjava.compiler.semantics.representation.RStatement;
+import org.rjava.compiler.util.Statistics;
+
+import soot.BooleanType;
+import soot.ByteType;
+import soot.CharType;
+import soot.DoubleType;
+import soot.FloatType;
+import soot.IntType;
+import soot.Local;
+import soot.LongType;
+import soot.ShortType;
+import soot.Type;
+import soot.Value;
+import soot.ValueBox;
+import soot.jimple.AssignStmt;
+import soot.jimple.InvokeExpr;
+import soot.jimple.NewExpr;
+import soot.jimple.SpecialInvokeExpr;
+import soot.jimple.Stmt;
+import soot.jimple.StringConstant;
+import soot.jimple.VirtualInvokeExpr;
+
+/**
+ * Finds string concatenation chains in a method: a StringBuffer (or StringBuilder) that is created, appended to and
+ * turned into a String without ever leaving the method, which is what "a" + b + "c" compiles to.
+ *
+ * Nothing but the chain sees such a buffer, so the chain calls the unsynchronized StringBuilder functions,
+ * and the buffer is created with the capacity that the appends are estimated to need (so it doesnt grow on the way).
+ * @author yi
+ *
+ */
+public class StringConcatChains {
+    public static final String STRING_BUFFER = "java.lang.StringBuffer";
+    public static final String STRING_BUILDER = "java.lang.StringBuilder";
+    
+    // estimated chars appended for an argument of unknown length
+    public static final int UNKNOWN_LENGTH = 16;
+    
+    // invokes on a chain buffer (init, append, toString)
+    private Set<InvokeExpr> chainCalls = new HashSet<InvokeExpr>();
+    // init invoke -> estimated capacity of the chain
+    private Map<InvokeExpr, Integer> capacity = new HashMap<InvokeExpr, Integer>();
+    
+    public StringConcatChains(RMethod method) {
+        List<Stmt> body = new ArrayList<Stmt>();
+        for (RStatement stmt : method.getBody())
+            body.add(stmt.internal());
+        
+        for (Stmt stmt : body) {
+            if (stmt instanceof AssignStmt && ((AssignStmt) stmt).getRightOp() instanceof NewExpr && ((AssignStmt) stmt).getLeftOp() instanceof Local) {
+                String type = ((AssignStmt) stmt).getRightOp().getType().toString();
+                if (type.equals(STRING_BUFFER) || type.equals(STRING_BUILDER))
+                    findChain(body, stmt, (Local) ((AssignStmt) stmt).getLeftOp());
+            }
+        }
+    }
+    
+    public boolean isChainCall(InvokeExpr invoke) {
+        return chainCalls.contains(invoke);
+    }
+    
+    /**
+     * @param init an init invoke of a chain
+     * @return the number of chars the chain is estimated to append
+     */
+    public int getCapacity(InvokeExpr init) {
+        return capacity.get(init);
+    }
+    
+    /**
+     * collect the locals that alias the buffer created by newStmt (append returns the buffer itself), and accept them as a
+     * chain if every statement touching them is a copy, the one init, an append or toString on them
+     */
+    private void findChain(List<Stmt> body, Stmt newStmt, Local buffer) {
+        Set<Local> aliases = new HashSet<Local>();
+        aliases.add(buffer);
+        
+        List<InvokeExpr> calls = new ArrayList<InvokeExpr>();
+        InvokeExpr init = null;
+        int estimate = 0;
+        
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            calls.clear();
+            init = null;
+            estimate = 0;
+            
+            for (Stmt stmt : body) {
+                if (stmt == newStmt)
+                    continue;
+                
+                Local def = null;
+                if (stmt instanceof AssignStmt && ((AssignStmt) stmt).getLeftOp() instanceof Local)
+                    def = (Local) ((AssignStmt) stmt).getLeftOp();
+                
+                if (!usesAny(stmt, aliases)) {
+                    // an alias can only be defined from the buffer
+                    if (def != null && aliases.contains(def))
+                        return;
+                    continue;
+                }
+                
+                // a = b
+                if (def != null && ((AssignStmt) stmt).getRightOp() instanceof Local) {
+                    if (aliases.add(def))
+                        changed = true;
+                    continue;
+                }
+                
+                if (!stmt.containsInvokeExpr())
+                    return;
+                InvokeExpr invoke = stmt.getInvokeExpr();
+                if (!isOnBuffer(invoke, aliases))
+                    return;
+                
+                String name = invoke.getMethod().getName();
+                if (name.equals("<init>") && invoke instanceof SpecialInvokeExpr && def == null) {
+                    if (init != null || invoke.getArgCount() > 1 || (invoke.getArgCount() == 1 && !invoke.getArg(0).getType().toString().equals("java.lang.String")))
+                        return;
+                    init = invoke;
+                    if (invoke.getArgCount() == 1)
+                        estimate += estimateLength(invoke.getArg(0));
+                } else if (name.equals("append") && invoke instanceof VirtualInvokeExpr && invoke.getArgCount() == 1) {
+                    estimate += estimateLength(invoke.getArg(0));
+                    // the result of append is the buffer
+                    if (def != null && aliases.add(def))
+                        changed = true;
+                } else if (name.equals("toString") && invoke instanceof VirtualInvokeExpr && invoke.getArgCount() == 0) {
+                    // the result is a string, it can go anywhere
+                } else return;
+                
+                calls.add(invoke);
+            }
+        }
+        
+        if (init == null)
+            return;
+        
+        chainCalls.addAll(calls);
+        capacity.put(init, Math.max(estimate, 1));
+        Statistics.increaseCounterByOne("string concatenation chains");
+    }
+    
+    private static boolean usesAny(Stmt stmt, Set<Local> locals) {
+        for (Object o : stmt.getUseBoxes())
+            if (locals.contains(((ValueBox) o).getValue()))
+                return true;
+        return false;
+    }
+    
+    /**
+     * @return true if invoke is called on one of the locals, and none of them is passed as an argument
+     */
+    private static boolean isOnBuffer(InvokeExpr invoke, Set<Local> locals) {
+        if (!(invoke instanceof SpecialInvokeExpr || invoke instanceof VirtualInvokeExpr))
+            return false;
+        
+        String declaring = invoke.getMethod().getDeclaringClass().getName();
+        if (!declaring.equals(STRING_BUFFER) && !declaring.equals(STRING_BUILDER))
+            return false;
+        
+        Value base = invoke instanceof SpecialInvokeExpr ? ((SpecialInvokeExpr) invoke).getBase() : ((VirtualInvokeExpr) invoke).getBase();
+        if (!locals.contains(base))
+            return false;
+        
+        for (Object arg : invoke.getArgs())
+            if (locals.contains(arg))
+                return false;
+        return true;
+    }
+    
+    private static int estimateLength(Value v) {
+        if (v instanceof StringConstant)
+            return ((StringConstant) v).value.length();
+        
+        Type t = v.getType();
+        if (t instanceof CharType)
+            return 1;
+        if (t instanceof BooleanType)
+            return 5;
+        if (t instanceof IntType || t instanceof ShortType || t instanceof ByteType)
+            return 11;
+        if (t instanceof LongType)
+            return 20;
+        if (t instanceof FloatType || t instanceof DoubleType)
+            return 24;
+        return UNKNOWN_LENGTH;
+    }
+}
@@ -0,0 +1,70 @@
+package org.rjava.compiler.targets.c;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.rjava.compiler.exception.RJavaError;
+import org.rjava.compiler.semantics.representation.RMethod;
+
+/**
+ * calls of each C function in the training run of a PGO build (-target:pgo=, see CLanguageRuntime.generateGNUMakefile()).
+ * The Makefile writes PROFILE_FILE from gcov with one "function_name calls" per line. A function from a header shows up
+ * once for each translation unit that includes it, and its calls are summed here.
+ *
+ * The profile is read back with -target:pgo-profile= in the next compilation, and decides which methods are
+ * inlined if the generator options allow inlining (see RMethod.isHeuristicInlined())
+ */
+public class TrainingProfile {
+    public static final String PROFILE_FILE = "rjava_profile.txt";
+
+    // a function is hot if it takes at least 1/HOT_SHARE of all the calls in the training run
+    public static final int HOT_SHARE = 1000;
+
+    private Map<String, Long> calls = new HashMap<String, Long>();
+    private long totalCalls = 0;
+
+    // only used for names, which reference nothing
+    private CIdentifiers id = new CIdentifiers(null);
+
+    public TrainingProfile(String file) throws RJavaError {
+        try {
+            BufferedReader br = new BufferedReader(new FileReader(file));
+            String line = br.readLine();
+            while (line != null) {
+                String[] record = line.trim().split("\\s+");
+                if (record.length == 2) {
+                    long count = Long.parseLong(record[1]);
+                    Long previous = calls.get(record[0]);
+                    calls.put(record[0], previous == null ? count : previous + count);
+                    totalCalls += count;
+                }
+                line = br.readLine();
+            }
+            br.close();
+        } catch (IOException e) {
+            throw new RJavaError("Error when reading profile " + file + ": " + e.getMessage());
+        } catch (NumberFormatException e) {
+            throw new RJavaError("Malformed profile " + file + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * @param method
+     * @return null if the training run has no record of the method (e.g. it was always inlined by gcc),
+     * otherwise true if the method is hot
+     */
+    public Boolean isHot(RMethod method) {
+        Long count = calls.get(id.functionName(method.internal()));
+        if (count == null)
+            return null;
+
+        return count > 0 && count * HOT_SHARE >= totalCalls;
+    }
+
+    public int size() {
+        return calls.size();
+    }
+}
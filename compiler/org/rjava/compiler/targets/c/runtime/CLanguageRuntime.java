@@ -15,12 +15,14 @@ import org.apache.commons.io.FileUtils;
 import org.rjava.compiler.Constants;
 import org.rjava.compiler.RJavaCompiler;
 import org.rjava.compiler.exception.RJavaError;
+import org.rjava.compiler.semantics.ClassHierarchy;
 import org.rjava.compiler.semantics.SemanticMap;
 import org.rjava.compiler.semantics.representation.RClass;
 import org.rjava.compiler.targets.CodeStringBuilder;
 import org.rjava.compiler.targets.c.CLanguageGenerator;
 import org.rjava.compiler.targets.c.CIdentifiers;
 import org.rjava.compiler.targets.c.Code;
+import org.rjava.compiler.targets.c.TrainingProfile;
 import org.rjava.compiler.util.HelperMethod;
 import org.rjava.compiler.util.HelperVariable;
 import org.rjava.compiler.util.Tree;
@@ -50,12 +52,15 @@ public class CLanguageRuntime {
         "inttypes.h",
         "pthread.h",
         "limits.h",
-        "assert.h"
+        "assert.h",
+        "sched.h"
     };
     // rjava's java.lang lib
     public static final String RJAVA_LIB = "rjava_clib";
     // rjava runtime (including some defines and helpers)
     public static final String RJAVA_CRT = "rjava_crt";
+    // hand-written in rjava_rt
+    public static final String PROFILER_HEADER = "rjava_profiler.h";
     // runtime define before include (an ugly hack) because we need to define GC_THREADS before including boehm gc header
     public static final HashMap<String, String> RJAVA_RUNTIME_DEFINE_BEFORE_INCLUDE = new HashMap<String, String>();
 
@@ -64,12 +69,29 @@ public class CLanguageRuntime {
     static {
         RJAVA_RUNTIME_DEFINE.put("byte", "char");
         RJAVA_RUNTIME_DEFINE.put("RJAVA_ALWAYS_INLINE", ALWAYS_INLINE);
+        
+        // lock word
+        RJAVA_RUNTIME_DEFINE.put("RJAVA_LOCK_INFLATED", "1");
+        RJAVA_RUNTIME_DEFINE.put("RJAVA_LOCK_COUNT_UNIT", "2");
+        RJAVA_RUNTIME_DEFINE.put("RJAVA_LOCK_COUNT_MASK", "6");
+        RJAVA_RUNTIME_DEFINE.put("RJAVA_LOCK_OWNER_MASK", "(~((intptr_t)7))");
+        RJAVA_RUNTIME_DEFINE.put("RJAVA_THREAD_LOCK_TOKEN", "((intptr_t)&rjava_thread_lock_token)");
+        // times a contender yields on a thin lock before it inflates the lock and blocks
+        RJAVA_RUNTIME_DEFINE.put("RJAVA_LOCK_SPINS", "16");
+        RJAVA_RUNTIME_DEFINE.put("RJAVA_MONITOR_CHUNK_SIZE", "1024");
+        RJAVA_RUNTIME_DEFINE.put("RJAVA_MONITOR_CHUNKS", "1024");
     }
     public static final ArrayList<String> EXTRA_INCLUDE = new ArrayList<String>();
     public static final HashMap<String, String> MAKE_SUBTASK = new HashMap<String, String>();
     
     public static final ArrayList<String> BOEHM_ENV = new ArrayList<String>();
     
+    // training command of a PGO build (-target:pgo=). The Makefile builds with -fprofile-generate, runs it in the output dir,
+    // and builds again with -fprofile-use. All generated files are linked with -flto
+    public static String pgoTraining = null;
+    // profile from the training run of last PGO build (-target:pgo-profile=, see TrainingProfile)
+    public static String pgoProfile = null;
+    
     public static final String ATOMIC_LIB_OSX = "libatomic_ops_osx.a";
     public static final String ATOMIC_LIB_OSX_32 = "libatomic_ops_osx_32.a";
     public static final String ATOMIC_LIB_LINUX = "libatomic_ops_linux.a";
@@ -82,21 +104,18 @@ public class CLanguageRuntime {
     
     public static final String TC_MALLOC_OSX = "libtcmalloc_minimal.a";
     
-    // for their run-time initialization, see RuntimeHelpers.RUNTIME_GLOBAL_INIT
-    public static final ArrayList<String> RJAVA_RUNTIME_GLOBALS = new ArrayList<String>();
-    static {
-        if (RJavaCompiler.LOG_FUNCTION_EXECUTION) {
-            RJAVA_RUNTIME_GLOBALS.add("struct FunctionLog* func_log_head");
-        }
-    }
-    
     public static void lateCLInit() {
         if (memoryManagement == GC_MALLOC || memoryManagement == GC_MALLOC_PREBUILT) {
             RJAVA_RUNTIME_DEFINE_BEFORE_INCLUDE.put("GC_THREADS", "");
             RJAVA_RUNTIME_DEFINE.put("malloc", "GC_MALLOC");
+            RJAVA_RUNTIME_DEFINE.put("realloc", "GC_REALLOC");
         } else if (memoryManagement == TC_MALLOC_PREBUILT) {
             RJAVA_RUNTIME_DEFINE.put("malloc", "tc_malloc");
+            RJAVA_RUNTIME_DEFINE.put("realloc", "tc_realloc");
         }
+        RJAVA_RUNTIME_DEFINE.put(ARRAY_HEADER_SIZE, "(sizeof(int) + sizeof(long))");
+        // GC_MALLOC() returns cleared memory, so new arrays dont need zeroing (GC_MALLOC_ATOMIC() does not)
+        RJAVA_RUNTIME_DEFINE.put(MALLOC_ZEROED, memoryManagement == GC_MALLOC || memoryManagement == GC_MALLOC_PREBUILT ? "1" : "0");
         
         if (ATOMIC_OPS_PREBUILT) {
             if (RJavaCompiler.hostOS == RJavaCompiler.HOST_MACOSX) {
@@ -179,28 +198,62 @@ public class CLanguageRuntime {
     public static final String COMMON_CLASS_STRUCT = "RJava_Common_Class";
     public static final String EMBED_SUPER_CLASS  = "class_header";
     public static final String SUPER_CLASS = "super_class";
-    public static final String INTERFACE_LIST = "interfaces";
+    public static final String INTERFACE_TABLE = "itable";
     public static final String CLASS_STRUCT_SUFFIX = "_class";
     public static final String CLASS_STRUCT_INSTANCE_SUFFIX = "_class_instance";
     public static final String CLASS_NAME = "class_name";
+    /* array: int length, long ele_size, then elements */
+    public static final String ARRAY_HEADER_SIZE = "RJAVA_ARRAY_HEADER_SIZE";
+    public static final String MALLOC_ZEROED = "RJAVA_MALLOC_ZEROED";
+    // every class struct holds its depth, and its ancestors (and itself) indexed by depth in a display of RJAVA_DISPLAY_SIZE slots
+    public static final String CLASS_DEPTH = "depth";
+    public static final String TYPE_DISPLAY = "display";
+    public static final String DISPLAY_SIZE = "RJAVA_DISPLAY_SIZE";
     /* rjava instance/object */
     public static final String POINTER_TO_CLASS_STRUCT = "class_struct";    // in object, pointing to its class
     public static final String EMBED_SUPER_OBJECT = "instance_header";
     public static final String COMMON_INSTANCE_STRUCT = "RJava_Common_Instance";
+    public static final String STRING_LATIN1 = "RJAVA_STRING_LATIN1";         // string coders, defined in rjava_rt
+    public static final String STRING_UTF16 = "RJAVA_STRING_UTF16";
     /* interface */
-    public static final String INTERFACE_LIST_NODE = "RJava_Interface_Node";
+    // every class has an itable of RJAVA_INTERFACE_COUNT slots, indexed by interface id (see ClassHierarchy)
     public static final String INTERFACE_STRUCT_SUFFIX = "";
-    public static final String INTERFACE_LIST_NODE_ATTR_NAME = "name";
-    public static final String INTERFACE_LIST_NODE_ATTR_ADDR = "address";
-    public static final String INTERFACE_LIST_NODE_ATTR_NEXT = "next";
-    public static final String INTERFACE_LIST_NODE_ATTR_SIZE = "interface_size";
+    public static final String INTERFACE_COUNT = "RJAVA_INTERFACE_COUNT";
+    public static final String RUNNABLE_INTERFACE_ID = "RJAVA_RUNNABLE_INTERFACE_ID";
     /* mutex */
     public static final String MUTEX_TYPE = "pthread_mutex_t";
-    public static final String INSTANCE_MUTEX = "instance_mutex";
     public static final String CLASS_MUTEX = "class_mutex";
     
     public static final String COND_VAR_TYPE = "pthread_cond_t";
-    public static final String INSTANCE_COND_VAR = "instance_cond";
+    /* lock word (in object), see RuntimeHelpers.MONITOR_ENTER for its encoding */
+    public static final String LOCK_WORD = "lock_word";
+    public static final String LOCK_WORD_TYPE = "volatile intptr_t";
+    /* inflated monitor, only allocated on contention or wait/notify */
+    public static final String MONITOR_STRUCT = "RJava_Monitor";
+    public static final String MONITOR_MUTEX = "mutex";
+    public static final String MONITOR_COND_VAR = "cond";
+    public static final String MONITOR_ENTRY_COND_VAR = "entry";
+    public static final String MONITOR_OWNER = "owner";
+    public static final String MONITOR_COUNT = "count";
+    public static final String MONITOR_USERS = "users";
+    public static final String MONITOR_NEXT_FREE = "next_free";
+    public static final String MONITOR_TABLE = "rjava_monitor_table";
+    public static final String MONITOR_TABLE_LOCK = "rjava_monitor_table_lock";
+    public static final String MONITOR_TABLE_COUNT = "rjava_monitor_count";
+    public static final String MONITOR_FREE_LIST = "rjava_monitor_free";
+    public static final String THREAD_LOCK_TOKEN = "rjava_thread_lock_token";
+    
+    // for their run-time initialization, see RuntimeHelpers.RUNTIME_GLOBAL_INIT
+    public static final ArrayList<String> RJAVA_RUNTIME_GLOBALS = new ArrayList<String>();
+    static {
+        // inflated monitors side table (chunks never move, so it can be read without holding the lock)
+        RJAVA_RUNTIME_GLOBALS.add(MONITOR_STRUCT + "* " + MONITOR_TABLE + "[RJAVA_MONITOR_CHUNKS]");
+        RJAVA_RUNTIME_GLOBALS.add("int " + MONITOR_TABLE_COUNT);
+        RJAVA_RUNTIME_GLOBALS.add("int " + MONITOR_FREE_LIST);
+        RJAVA_RUNTIME_GLOBALS.add(MUTEX_TYPE + " " + MONITOR_TABLE_LOCK);
+        // its address identifies the thread as a lock owner (defined in rjava_clib.c)
+        RJAVA_RUNTIME_GLOBALS.add("extern __thread int64_t " + THREAD_LOCK_TOKEN);
+    }
     
     CLanguageGenerator generator;
     CIdentifiers name;
@@ -253,36 +306,37 @@ public class CLanguageRuntime {
             RJAVA_RUNTIME_DEFINE.put("__OS_LINUX_", "");
         }
         
-        if (RJavaCompiler.LOG_FUNCTION_EXECUTION) {
-            RJAVA_RUNTIME_DEFINE.put("LOG_FUNCTION_EXEC", "");
+        if (RJavaCompiler.profileFunctions != RJavaCompiler.PROFILE_NONE) {
+            RJAVA_RUNTIME_DEFINE.put("RJAVA_PROFILE", Integer.toString(RJavaCompiler.profileFunctions));
         }
         
+        // interface ids are assigned during class hierarchy analysis
+        RJAVA_RUNTIME_DEFINE.put(INTERFACE_COUNT, Integer.toString(SemanticMap.cha.getClassHierarchy().getInterfaceCount()));
+        RJAVA_RUNTIME_DEFINE.put(RUNNABLE_INTERFACE_ID, Integer.toString(ClassHierarchy.RUNNABLE_INTERFACE_ID));
+        RJAVA_RUNTIME_DEFINE.put(DISPLAY_SIZE, Integer.toString(SemanticMap.cha.getClassHierarchy().getDisplaySize()));
+        
         out.append(Code.commentln("defines"));
         for (String key : RJAVA_RUNTIME_DEFINE.keySet()) {
             out.append("#define " + key + " " + RJAVA_RUNTIME_DEFINE.get(key) + NEWLINE);
         }
         out.append(NEWLINE);
         
-        // class struct and interface list forward declaration
-        out.append("typedef struct " + COMMON_CLASS_STRUCT + " " + COMMON_CLASS_STRUCT + SEMICOLON + NEWLINE);
-        out.append("typedef struct " + INTERFACE_LIST_NODE + " " + INTERFACE_LIST_NODE + SEMICOLON + NEWLINE);
+        // function profiler, only declares anything with RJAVA_PROFILE (RJAVA_PROF_ENTER() then starts every generated function)
+        out.append(Code.includeNonStandardHeader(PROFILER_HEADER) + NEWLINE);
         out.append(NEWLINE);
         
-        // interface list
-        out.append("struct " + INTERFACE_LIST_NODE + " {" + NEWLINE);
-        out.increaseIndent();
-        out.append("char* " + INTERFACE_LIST_NODE_ATTR_NAME + SEMICOLON + NEWLINE);
-        out.append("void* " + INTERFACE_LIST_NODE_ATTR_ADDR + SEMICOLON + NEWLINE);
-        out.append("int " + INTERFACE_LIST_NODE_ATTR_SIZE + SEMICOLON + NEWLINE);
-        out.append(INTERFACE_LIST_NODE + "* " + INTERFACE_LIST_NODE_ATTR_NEXT + SEMICOLON + NEWLINE);
-        out.decreaseIndent();
-        out.append("}" + SEMICOLON + NEWLINE);
+        // class struct forward declaration
+        out.append("typedef struct " + COMMON_CLASS_STRUCT + " " + COMMON_CLASS_STRUCT + SEMICOLON + NEWLINE);
         out.append(NEWLINE);
         
         out.append("struct " + COMMON_CLASS_STRUCT + " {" + NEWLINE);
         out.increaseIndent();
         out.append(COMMON_CLASS_STRUCT + "* " + SUPER_CLASS + SEMICOLON + NEWLINE);
-        out.append(INTERFACE_LIST_NODE + "* " + INTERFACE_LIST + SEMICOLON + NEWLINE);
+        // itable is embedded, so rjava_init_header() copies it from super class along with the rest of the header
+        out.append("void* " + INTERFACE_TABLE + "[" + INTERFACE_COUNT + "]" + SEMICOLON + NEWLINE);
+        // so is the type display, rjava_init_header() then puts the class itself at display[depth]
+        out.append("int " + CLASS_DEPTH + SEMICOLON + NEWLINE);
+        out.append(COMMON_CLASS_STRUCT + "* " + TYPE_DISPLAY + "[" + DISPLAY_SIZE + "]" + SEMICOLON + NEWLINE);
         out.append(MUTEX_TYPE + " " + CLASS_MUTEX + SEMICOLON + NEWLINE);
         if (RJavaCompiler.debugTarget)
             out.append("char* " + CLASS_NAME + SEMICOLON + NEWLINE);
@@ -294,24 +348,38 @@ public class CLanguageRuntime {
         out.append("typedef struct " + COMMON_INSTANCE_STRUCT + " {" + NEWLINE);
         out.increaseIndent();
         out.append("void* " + POINTER_TO_CLASS_STRUCT + SEMICOLON + NEWLINE);
-        out.append(MUTEX_TYPE + " " + INSTANCE_MUTEX + SEMICOLON + NEWLINE);
-        out.append(COND_VAR_TYPE + " " + INSTANCE_COND_VAR + SEMICOLON + NEWLINE);
+        out.append(LOCK_WORD_TYPE + " " + LOCK_WORD + SEMICOLON + NEWLINE);
         out.decreaseIndent();
         out.append("} " + COMMON_INSTANCE_STRUCT + SEMICOLON + NEWLINE);
         
         out.append(NEWLINE);
         
+        // inflated monitor
+        out.append("typedef struct " + MONITOR_STRUCT + " {" + NEWLINE);
+        out.increaseIndent();
+        out.append(Code.commentln("guards the fields below, it is only held for short and not while owning the monitor"));
+        out.append(MUTEX_TYPE + " " + MONITOR_MUTEX + SEMICOLON + NEWLINE);
+        out.append(Code.commentln("wait/notify"));
+        out.append(COND_VAR_TYPE + " " + MONITOR_COND_VAR + SEMICOLON + NEWLINE);
+        out.append(Code.commentln("threads blocked in monitorenter (or returning from wait) until the owner releases the monitor"));
+        out.append(COND_VAR_TYPE + " " + MONITOR_ENTRY_COND_VAR + SEMICOLON + NEWLINE);
+        out.append(Code.commentln("lock token of the owner thread, 0 if the monitor is not owned"));
+        out.append("intptr_t " + MONITOR_OWNER + SEMICOLON + NEWLINE);
+        out.append("int " + MONITOR_COUNT + SEMICOLON + NEWLINE);
+        out.append(Code.commentln("threads blocked entering the monitor or waiting on it, the monitor is not deflated while there are any"));
+        out.append("int " + MONITOR_USERS + SEMICOLON + NEWLINE);
+        out.append(Code.commentln("next monitor in the free list, see rjava_free_monitor()"));
+        out.append("int " + MONITOR_NEXT_FREE + SEMICOLON + NEWLINE);
+        out.decreaseIndent();
+        out.append("} " + MONITOR_STRUCT + SEMICOLON + NEWLINE);
+        
+        out.append(NEWLINE);
+        
         // types defines
         out.append(Code.commentln("application type defines"));
         out.append(getTypedefs());
         out.append(NEWLINE);
         
-        if (RJavaCompiler.LOG_FUNCTION_EXECUTION) {
-            out.append(Code.commentln("function log - debug use"));
-            out.append(STRUCT_FUNCTION_LOG);
-            out.append(NEWLINE);
-        }
-        
         // runtime globals
         out.append(Code.commentln("rjava runtime globals"));
         for (String global : RJAVA_RUNTIME_GLOBALS) {
@@ -319,6 +387,13 @@ public class CLanguageRuntime {
         }
         out.append(NEWLINE);
         
+        // string literals (java_lang_String is only complete after rjava_lib, an extern of incomplete type is fine)
+        out.append(Code.commentln("string literals"));
+        for (String literal : generator.getStringLiterals().keySet()) {
+            out.append("extern struct java_lang_String " + literal + SEMICOLON + NEWLINE);
+        }
+        out.append(NEWLINE);
+        
         // helper methods
         out.append(RuntimeHelpers.signature(RuntimeHelpers.CLASS_INIT) + SEMICOLON + NEWLINE);
         for (HelperMethod method : RuntimeHelpers.CRT_HELPERS) {            
@@ -348,12 +423,15 @@ public class CLanguageRuntime {
         }
         crtSource.append(NEWLINE);
         
+        crtSource.append(getStringLiteralDefinitions());
+        
         // void rjava_class_init()
         crtSource.append(RuntimeHelpers.signature(RuntimeHelpers.CLASS_INIT) + " {" + NEWLINE);
         crtSource.increaseIndent();
         crtSource.append(getRuntimeInitCode());
         crtSource.append(NEWLINE);
         crtSource.append(RuntimeHelpers.invoke(RuntimeHelpers.LIB_INIT, null) + SEMICOLON + NEWLINE);
+        crtSource.append(getStringLiteralInternCode());
         crtSource.append(getClassInitMethodBody());
         crtSource.decreaseIndent();
         crtSource.append("}" + NEWLINE);
@@ -389,7 +467,10 @@ public class CLanguageRuntime {
     public void copyJavaLibrary() throws RJavaError {
         // copy lib files
         try {
-            FileUtils.copyDirectory(new File(RJavaCompiler.rjava_rt), new File(RJavaCompiler.outputDir), false);
+            // keep file dates in incremental compilation, otherwise make will rebuild the whole library every time
+            FileUtils.copyDirectory(new File(RJavaCompiler.rjava_rt), new File(RJavaCompiler.outputDir), RJavaCompiler.incremental);
+            if (RJavaCompiler.nativeSrc != null)
+                FileUtils.copyDirectory(new File(RJavaCompiler.nativeSrc), new File(RJavaCompiler.outputDir), RJavaCompiler.incremental);
             Runtime.getRuntime().exec("chmod -R 777 " + RJavaCompiler.outputDir);
         } catch (IOException e) {
             e.printStackTrace();
@@ -412,6 +493,15 @@ public class CLanguageRuntime {
         if (memoryManagement == TC_MALLOC_PREBUILT)
             C_FLAGS += "-ltcmalloc_minimal ";
         
+        // one optimization unit for all generated files, so gcc inlines and specializes across classes
+        boolean pgo = pgoTraining != null;
+        if (pgo)
+            C_FLAGS += "-flto ";
+        
+        // the sampling profiler names code addresses with dladdr()
+        if (RJavaCompiler.profileFunctions == RJavaCompiler.PROFILE_SAMPLE)
+            C_FLAGS += "-rdynamic " + (RJavaCompiler.hostOS == RJavaCompiler.HOST_LINUX ? "-ldl " : "");
+        
         /*
          *  generate makefile
          */
@@ -429,16 +519,24 @@ public class CLanguageRuntime {
         boolean library = (generator.getMainObj() == null);
         
         // general settings/flags
-        makeFile.append(library ? "PROGRAM = lib" : "PROGRAM = " + generator.getMainObj());
+        // a library is a static archive, named after -o if given
+        makeFile.append(library ? "PROGRAM = lib" + (RJavaCompiler.namedOutput != null ? RJavaCompiler.namedOutput : "rjava") + ".a" : "PROGRAM = " + generator.getMainObj());
         makeFile.append(NEWLINE);
         makeFile.append("C_FILES := $(wildcard *.c)" + NEWLINE);
         makeFile.append("OBJS := $(patsubst %.c, %.o, $(C_FILES))" + NEWLINE);
         makeFile.append("CC = gcc" + NEWLINE);
-        makeFile.append("CFLAGS = " + C_FLAGS + NEWLINE);
+        // PGO_FLAGS is set by each stage of the pgo target
+        makeFile.append("CFLAGS = " + C_FLAGS + (library ? "-fPIC " : "") + "$(PGO_FLAGS)" + NEWLINE);
         makeFile.append("LDFLAGS = " + NEWLINE);
+        if (pgo) {
+            // archive lto objects with the linker plugin
+            makeFile.append("AR = gcc-ar" + NEWLINE);
+            makeFile.append("GCOV = gcov" + NEWLINE);
+            makeFile.append("PGO_TRAINING = " + pgoTraining.replace("$", "$$") + NEWLINE);
+        }
         makeFile.append(NEWLINE);
         
-        makeFile.append("all: $(PROGRAM)" + NEWLINE);
+        makeFile.append("all: " + (pgo ? "pgo" : "$(PROGRAM)") + NEWLINE);
         makeFile.append(NEWLINE);
         
         // main obj
@@ -447,9 +545,10 @@ public class CLanguageRuntime {
         for (String lib : MAKE_SUBTASK.keySet())
             libs += lib + " ";
         makeFile.append(libs + NEWLINE);
-        makeFile.append("\t$(CC) $(CFLAGS) $(OBJS) " + libs + "$(LDFLAGS) ");
-        makeFile.append(library ? "-c -fPIC" : "-o $(PROGRAM)");
-        makeFile.append(NEWLINE);
+        if (library)
+            // subtask libs are linked by whoever links the archive
+            makeFile.append("\t$(AR) rcs $(PROGRAM) $(OBJS)" + NEWLINE);
+        else makeFile.append("\t$(CC) $(CFLAGS) $(OBJS) " + libs + "$(LDFLAGS) -o $(PROGRAM)" + NEWLINE);
         makeFile.append(NEWLINE);
         
         // generating dependency
@@ -477,10 +576,30 @@ public class CLanguageRuntime {
         
         // clean
         makeFile.append("clean:" + NEWLINE);
-        makeFile.append("\trm -f .depend *.o" + NEWLINE);
+        makeFile.append("\trm -f .depend *.o" + (library ? " $(PROGRAM)" : "") + NEWLINE);
         makeFile.append(NEWLINE);
         
-        makeFile.append(".PHONY: clean depend" + NEWLINE);
+        if (pgo) {
+            /*
+             * PGO build: an instrumented build runs the training command, and leaves counters (*.gcda) for the second build.
+             * Calls of each function are written to the profile from gcov, which needs notes (*.gcno) from -ftest-coverage.
+             * gcc counts calls after early inlining, so the instrumented build does not inline early, otherwise small hot
+             * functions show up as never called. Threads race on the counters, -fprofile-correction tolerates that
+             */
+            makeFile.append("pgo:" + NEWLINE);
+            makeFile.append("\t$(MAKE) clean" + NEWLINE);
+            makeFile.append("\trm -f *.gcda *.gcno" + NEWLINE);
+            makeFile.append("\t$(MAKE) $(PROGRAM) PGO_FLAGS=\"-fprofile-generate -ftest-coverage -fno-early-inlining\"" + NEWLINE);
+            makeFile.append("\t$(PGO_TRAINING)" + NEWLINE);
+            makeFile.append("\t$(GCOV) -b -l -o . $(C_FILES) > /dev/null" + NEWLINE);
+            makeFile.append("\tcat *.gcov | awk '/^function / { print $$2, $$4 }' > " + TrainingProfile.PROFILE_FILE + NEWLINE);
+            makeFile.append("\trm -f *.gcov" + NEWLINE);
+            makeFile.append("\t$(MAKE) clean" + NEWLINE);
+            makeFile.append("\t$(MAKE) $(PROGRAM) PGO_FLAGS=\"-fprofile-use -fprofile-correction -Wno-missing-profile\"" + NEWLINE);
+            makeFile.append(NEWLINE);
+        }
+        
+        makeFile.append(".PHONY: clean depend" + (pgo ? " pgo" : "") + NEWLINE);
 
         // library build
         for (String lib : MAKE_SUBTASK.keySet()) {
@@ -517,6 +636,62 @@ public class CLanguageRuntime {
         return body.toString();
     }
     
+    /**
+     * Each distinct string literal is a java_lang_String in the data section, pointing to its chars in rodata.
+     * Generated code uses its address, so a literal costs neither allocation nor widening at run time
+     */
+    private String getStringLiteralDefinitions() {
+        CodeStringBuilder defs = new CodeStringBuilder();
+        defs.append(Code.commentln("string literals"));
+        
+        for (String literal : generator.getStringLiterals().keySet()) {
+            String value = generator.getStringLiterals().get(literal);
+            
+            // compact (latin1, with a trailing \0) if every char fits in a byte, see java_lang_String in rjava_rt
+            boolean latin1 = true;
+            for (int i = 0; i < value.length(); i++)
+                if (value.charAt(i) > 0xff)
+                    latin1 = false;
+            
+            // chars as numbers, so we dont need to escape anything
+            StringBuilder chars = new StringBuilder();
+            for (int i = 0; i < value.length(); i++) {
+                if (i != 0)
+                    chars.append(", ");
+                chars.append(latin1 ? (int) value.charAt(i) : (int) (short) value.charAt(i));
+            }
+            if (latin1)
+                chars.append(value.isEmpty() ? "0" : ", 0");
+            // C doesnt allow an empty initializer list
+            else if (value.isEmpty())
+                chars.append("0");
+            
+            String charType = latin1 ? "uint8_t" : "int16_t";
+            defs.append("static const " + charType + " " + literal + "_chars[] = {" + chars + "}" + SEMICOLON + NEWLINE);
+            defs.append("java_lang_String " + literal + " = {" +
+                    "." + EMBED_SUPER_OBJECT + "." + EMBED_SUPER_OBJECT + "." + POINTER_TO_CLASS_STRUCT + " = &java_lang_String_class_instance, " +
+                    ".internal = (void*) " + literal + "_chars, " +
+                    ".count = " + value.length() + ", " +
+                    ".coder = " + (latin1 ? STRING_LATIN1 : STRING_UTF16) + "}" + SEMICOLON + NEWLINE);
+        }
+        
+        defs.append(NEWLINE);
+        return defs.toString();
+    }
+    
+    /**
+     * literals are in the intern table from the start, so String.intern() of an equal string returns the literal
+     */
+    private String getStringLiteralInternCode() {
+        CodeStringBuilder init = new CodeStringBuilder();
+        init.append(Code.commentln("intern string literals"));
+        for (String literal : generator.getStringLiterals().keySet()) {
+            init.append("java_lang_String_intern(&" + literal + ")" + SEMICOLON + NEWLINE);
+        }
+        init.append(NEWLINE);
+        return init.toString();
+    }
+    
     /**
      * (R)Java types may use each other, but C is compiled top-down. Thus we typedefine all the types in advance to avoid warnings. 
      */
@@ -524,6 +699,9 @@ public class CLanguageRuntime {
     public void addTypedef(String type) {
         RJavaCStructType.add(type);
     }
+    public List<String> getTypedefList() {
+        return RJavaCStructType;
+    }
     private String getTypedefs() {
         CodeStringBuilder defs = new CodeStringBuilder();
         for (String typedef : RJavaCStructType) {
@@ -534,11 +712,4 @@ public class CLanguageRuntime {
         }
         return defs.toString();
     }
-    
-    public static final String STRUCT_FUNCTION_LOG = 
-            "struct FunctionLog {" + NEWLINE +
-            "  char func_name[500];" + NEWLINE +
-            "  long func_count;" + NEWLINE +
-            "  struct FunctionLog* next;" + NEWLINE +
-            "};";
 }
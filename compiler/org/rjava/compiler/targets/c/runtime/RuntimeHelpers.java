@@ -3,7 +3,6 @@ package org.rjava.compiler.targets.c.runtime;
 import static org.rjava.compiler.targets.c.CLanguageGenerator.MALLOC;
 import static org.rjava.compiler.targets.c.CLanguageGenerator.NEWLINE;
 import static org.rjava.compiler.targets.c.CLanguageGenerator.SEMICOLON;
-import static org.rjava.compiler.targets.c.CLanguageGenerator.SIZE_OF;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -17,24 +16,34 @@ import org.rjava.compiler.util.HelperVariable;
 import static org.rjava.compiler.targets.c.runtime.CLanguageRuntime.COMMON_CLASS_STRUCT;
 import static org.rjava.compiler.targets.c.runtime.CLanguageRuntime.EMBED_SUPER_CLASS;
 import static org.rjava.compiler.targets.c.runtime.CLanguageRuntime.SUPER_CLASS;
-import static org.rjava.compiler.targets.c.runtime.CLanguageRuntime.INTERFACE_LIST;
 import static org.rjava.compiler.targets.c.runtime.CLanguageRuntime.CLASS_STRUCT_SUFFIX;
 import static org.rjava.compiler.targets.c.runtime.CLanguageRuntime.CLASS_STRUCT_INSTANCE_SUFFIX;
 import static org.rjava.compiler.targets.c.runtime.CLanguageRuntime.CLASS_NAME;
 import static org.rjava.compiler.targets.c.runtime.CLanguageRuntime.POINTER_TO_CLASS_STRUCT;
 import static org.rjava.compiler.targets.c.runtime.CLanguageRuntime.EMBED_SUPER_OBJECT;
 import static org.rjava.compiler.targets.c.runtime.CLanguageRuntime.COMMON_INSTANCE_STRUCT;
-import static org.rjava.compiler.targets.c.runtime.CLanguageRuntime.INTERFACE_LIST_NODE;
 import static org.rjava.compiler.targets.c.runtime.CLanguageRuntime.INTERFACE_STRUCT_SUFFIX;
-import static org.rjava.compiler.targets.c.runtime.CLanguageRuntime.INTERFACE_LIST_NODE_ATTR_NAME;
-import static org.rjava.compiler.targets.c.runtime.CLanguageRuntime.INTERFACE_LIST_NODE_ATTR_ADDR;
-import static org.rjava.compiler.targets.c.runtime.CLanguageRuntime.INTERFACE_LIST_NODE_ATTR_NEXT;
-import static org.rjava.compiler.targets.c.runtime.CLanguageRuntime.INTERFACE_LIST_NODE_ATTR_SIZE;
-import static org.rjava.compiler.targets.c.runtime.CLanguageRuntime.MUTEX_TYPE;
-import static org.rjava.compiler.targets.c.runtime.CLanguageRuntime.INSTANCE_MUTEX;
-import static org.rjava.compiler.targets.c.runtime.CLanguageRuntime.COND_VAR_TYPE;
-import static org.rjava.compiler.targets.c.runtime.CLanguageRuntime.INSTANCE_COND_VAR;
+import static org.rjava.compiler.targets.c.runtime.CLanguageRuntime.INTERFACE_TABLE;
+import static org.rjava.compiler.targets.c.runtime.CLanguageRuntime.INTERFACE_COUNT;
 import static org.rjava.compiler.targets.c.runtime.CLanguageRuntime.CLASS_MUTEX;
+import static org.rjava.compiler.targets.c.runtime.CLanguageRuntime.CLASS_DEPTH;
+import static org.rjava.compiler.targets.c.runtime.CLanguageRuntime.TYPE_DISPLAY;
+import static org.rjava.compiler.targets.c.runtime.CLanguageRuntime.DISPLAY_SIZE;
+import static org.rjava.compiler.targets.c.runtime.CLanguageRuntime.ARRAY_HEADER_SIZE;
+import static org.rjava.compiler.targets.c.runtime.CLanguageRuntime.MALLOC_ZEROED;
+import static org.rjava.compiler.targets.c.runtime.CLanguageRuntime.LOCK_WORD;
+import static org.rjava.compiler.targets.c.runtime.CLanguageRuntime.MONITOR_STRUCT;
+import static org.rjava.compiler.targets.c.runtime.CLanguageRuntime.MONITOR_MUTEX;
+import static org.rjava.compiler.targets.c.runtime.CLanguageRuntime.MONITOR_COND_VAR;
+import static org.rjava.compiler.targets.c.runtime.CLanguageRuntime.MONITOR_ENTRY_COND_VAR;
+import static org.rjava.compiler.targets.c.runtime.CLanguageRuntime.MONITOR_OWNER;
+import static org.rjava.compiler.targets.c.runtime.CLanguageRuntime.MONITOR_COUNT;
+import static org.rjava.compiler.targets.c.runtime.CLanguageRuntime.MONITOR_USERS;
+import static org.rjava.compiler.targets.c.runtime.CLanguageRuntime.MONITOR_NEXT_FREE;
+import static org.rjava.compiler.targets.c.runtime.CLanguageRuntime.MONITOR_FREE_LIST;
+import static org.rjava.compiler.targets.c.runtime.CLanguageRuntime.MONITOR_TABLE;
+import static org.rjava.compiler.targets.c.runtime.CLanguageRuntime.MONITOR_TABLE_LOCK;
+import static org.rjava.compiler.targets.c.runtime.CLanguageRuntime.MONITOR_TABLE_COUNT;
 
 public class RuntimeHelpers {
 
@@ -53,6 +62,11 @@ public class RuntimeHelpers {
      * void rjava_lib_init()
      */
     public static final HelperMethod LIB_INIT;
+    /**
+     * start the function profiler (defined in rjava_profiler.c)
+     * void rjava_prof_init()
+     */
+    public static final HelperMethod PROFILER_INIT;
     /**
      * init rjava c runtime globals
      * void rjava_runtime_global_init()
@@ -61,17 +75,17 @@ public class RuntimeHelpers {
     
     /**
      * add an interface (instance) to class, used during crt initialization
-     * void rjava_add_interface_to_class(void* interface, int interface_size, char* name, RJava_Common_Class* class);
+     * inline void rjava_add_interface_to_class(void* interface, int interface_id, RJava_Common_Class* class);
      */
     public static final HelperMethod ADD_INTERFACE_TO_CLASS;
     /**
      * change one interface that is already attached to a class, used when subclass overrides a interface method from super class
-     * void rjava_alter_interface(void* interface, char* name, RJava_Common_Class* class);
+     * void rjava_alter_interface(void* interface, int interface_id, RJava_Common_Class* class);
      */
     public static final HelperMethod ALTER_INTERFACE;
     /**
-     * get one interface from a class, used when invokeinterface happens
-     * void* rjava_get_interface(RJava_Interface_Node* list, char* name);
+     * get one interface from a class (by its itable slot), used by rjava_rt. Generated code indexes the itable directly
+     * inline void* rjava_get_interface(void* instance, int interface_id);
      */
     public static final HelperMethod GET_INTERFACE;
     /**
@@ -84,16 +98,6 @@ public class RuntimeHelpers {
      * void rjava_debug_print_header(void* this_class, char* name);
      */
     public static final HelperMethod DEBUG_PRINT_HEADER;
-    /**
-     * increase the function execution counter for the function
-     * void rjava_debug_log_func_exec(char* func_name);
-     */
-    public static final HelperMethod DEBUG_LOG_FUNC_EXEC;
-    /**
-     * report function logs
-     * void rjava_debug_report_func_log();
-     */
-    public static final HelperMethod DEBUG_REPORT_FUNC_LOG;
     /**
      * assert
      * void rjava_assert(bool cond);
@@ -104,12 +108,79 @@ public class RuntimeHelpers {
      * bool rjava_instanceof(void* instance, void* class_struct);
      */
     public static final HelperMethod INSTANCEOF;
+    /**
+     * instanceof against a class at a known depth, one load and compare from the type display
+     * inline bool rjava_instanceof_class(void* instance, void* class_struct, int depth);
+     */
+    public static final HelperMethod INSTANCEOF_CLASS;
+    /**
+     * instanceof against an interface, the class implements it iff its itable slot is set
+     * inline bool rjava_instanceof_interface(void* instance, int interface_id);
+     */
+    public static final HelperMethod INSTANCEOF_INTERFACE;
+    /**
+     * implements checkcast bytecode (debug target only), fails if the check doesnt pass
+     * void* rjava_checkcast(void* instance, bool pass, char* type);
+     */
+    public static final HelperMethod CHECKCAST;
     /**
      * install signal handler to allow thread suspend
      * void rjava_init_thread_suspending();
      */
     public static final HelperMethod INIT_THREAD_SUSPENDING;
     
+    /*
+     *  object lock: every object has a lock word in its header (instead of a pthread mutex/cond pair)
+     *   0                        unlocked
+     *   token | (count << 1)     thin lock, owned by the thread whose token is RJAVA_THREAD_LOCK_TOKEN, recursion count 0-3
+     *   (index << 1) | 1         inflated, index into the monitor side table
+     *  a lock is inflated only on contention, on recursion overflow, or when wait/notify is called on it. 
+     *  a contender yields a few times (RJAVA_LOCK_SPINS) while a thin lock is held, then CASes an inflated word owned by the thin owner 
+     *  into the object and blocks on the monitor. since the word may be swapped under the owner, the owner also updates a thin word with CAS, 
+     *  and finds the monitor when its CAS fails. 
+     *  it is deflated when its owner releases it and no other thread is blocked on it or waits on it. the monitor then goes back to the side table
+     */
+    /**
+     * used to implement monitorenter (and synchronized method), CAS fast path
+     * inline void rjava_monitor_enter(void* instance);
+     */
+    public static final HelperMethod MONITOR_ENTER;
+    /**
+     * used to implement monitorexit (and synchronized method), fast path for an unlocked thin lock
+     * inline void rjava_monitor_exit(void* instance);
+     */
+    public static final HelperMethod MONITOR_EXIT;
+    /**
+     * slow path of monitorenter (recursion, contention, inflated lock)
+     * void rjava_monitor_enter_slow(void* instance);
+     */
+    public static final HelperMethod MONITOR_ENTER_SLOW;
+    /**
+     * slow path of monitorexit (recursion, inflated lock)
+     * void rjava_monitor_exit_slow(void* instance);
+     */
+    public static final HelperMethod MONITOR_EXIT_SLOW;
+    /**
+     * allocate a monitor from side table, owned by owner. returns the inflated lock word
+     * intptr_t rjava_new_monitor(intptr_t owner, int count);
+     */
+    public static final HelperMethod NEW_MONITOR;
+    /**
+     * return a monitor that no thread is using to the side table
+     * void rjava_free_monitor(intptr_t lock_word);
+     */
+    public static final HelperMethod FREE_MONITOR;
+    /**
+     * get the monitor from an inflated lock word
+     * inline RJava_Monitor* rjava_get_monitor(intptr_t lock_word);
+     */
+    public static final HelperMethod GET_MONITOR;
+    /**
+     * inflate the lock of an instance (current thread must own the lock), used by wait/notify
+     * RJava_Monitor* rjava_inflate_monitor(void* instance);
+     */
+    public static final HelperMethod INFLATE_MONITOR;
+    
     /*
      *  array implements: an array is a void* that points to a structure (in memory) like this
      *   --------------------------------------------------
@@ -131,11 +202,26 @@ public class RuntimeHelpers {
      * inline void* rjava_access_array(void* array, int index);
      */
     public static final HelperMethod ACCESS_ARRAY;
+    /**
+     * reports an out of bounds array access and exits (kept out of line, so the inlined bounds check stays small)
+     * void rjava_array_index_out_of_bounds(int index, int length);
+     */
+    public static final HelperMethod ARRAY_INDEX_OUT_OF_BOUNDS;
     /**
      * used to implement array access (e.g. array[0])
      * inline void* rjava_access_array_nobounds_check(void* array, int index);
      */
     public static final HelperMethod ACCESS_ARRAY_NOBOUNDS_CHECK;
+    /**
+     * elements of an array, to be indexed with the element type known at compile time (see Code.getArrayElement())
+     * inline void* rjava_array_elements(void* array);
+     */
+    public static final HelperMethod ARRAY_ELEMENTS;
+    /**
+     * elements of an array, after checking index is in bounds
+     * inline void* rjava_array_elements_checked(void* array, int index);
+     */
+    public static final HelperMethod ARRAY_ELEMENTS_CHECKED;
     /**
      * used to implement array.length
      * inline int rjava_length_of_array(void* array);
@@ -190,94 +276,66 @@ public class RuntimeHelpers {
          */
         LIB_INIT = new HelperMethod("rjava_lib_init", HelperMethod.RETURN_VOID, null); 
         
+        /**
+         * start the function profiler (defined in rjava_profiler.c)
+         * void rjava_prof_init()
+         */
+        PROFILER_INIT = new HelperMethod("rjava_prof_init", HelperMethod.RETURN_VOID, null);
+        
         /**
          * init rjava c runtime globals
          * void rjava_runtime_global_init()
          */
         RUNTIME_GLOBAL_INIT = new HelperMethod("rjava_runtime_global_init", HelperMethod.RETURN_VOID, null);
-        String RJAVA_RUNTIME_GLOBAL_INIT_SOURCE = "";
-        if (RJavaCompiler.LOG_FUNCTION_EXECUTION) {
-            RJAVA_RUNTIME_GLOBAL_INIT_SOURCE += 
-                    "func_log_head = (struct FunctionLog*) malloc(sizeof(struct FunctionLog));" + NEWLINE +
-                    "strcpy(func_log_head->func_name, \"log head\");" + NEWLINE +
-                    "func_log_head->func_count = 0;" + NEWLINE +
-                    "func_log_head->next = NULL;" + NEWLINE;
-        }
+        String RJAVA_RUNTIME_GLOBAL_INIT_SOURCE = 
+                "pthread_mutex_init(&" + MONITOR_TABLE_LOCK + ", NULL);" + NEWLINE +
+                MONITOR_TABLE_COUNT + " = 0;" + NEWLINE +
+                MONITOR_FREE_LIST + " = -1;" + NEWLINE;
         RUNTIME_GLOBAL_INIT.setSource(RJAVA_RUNTIME_GLOBAL_INIT_SOURCE);
         
         /**
          * add an interface (instance) to class, used during crt initialization
-         * void rjava_add_interface_to_class(void* interface, int interface_size, char* name, RJava_Common_Class* class);
+         * inline void rjava_add_interface_to_class(void* interface, int interface_id, RJava_Common_Class* class);
          */
         ADD_INTERFACE_TO_CLASS = new HelperMethod("rjava_add_interface_to_class", HelperMethod.RETURN_VOID, new HelperVariable[]{
                                                                new HelperVariable("void*", "interface"),
-                                                               new HelperVariable("int", "interface_size"),
-                                                               new HelperVariable("char*", "name"),
+                                                               new HelperVariable("int", "interface_id"),
                                                                new HelperVariable(COMMON_CLASS_STRUCT + "*", "klass")
         });
         final String RJAVA_ADD_INTERFACE_TO_CLASS_SOURCE = 
-                INTERFACE_LIST_NODE + "* newNode = " + MALLOC + "(" + SIZE_OF + "(" + INTERFACE_LIST_NODE + "));" + NEWLINE +
-                "newNode->" + INTERFACE_LIST_NODE_ATTR_ADDR + "=interface;" + NEWLINE +
-                "newNode->" + INTERFACE_LIST_NODE_ATTR_SIZE + "=interface_size;" + NEWLINE +
-                "newNode->" + INTERFACE_LIST_NODE_ATTR_NAME + "=" + MALLOC + "(strlen(name)+1);" + NEWLINE +
-                "strcpy(newNode->" + INTERFACE_LIST_NODE_ATTR_NAME + ",name);" + NEWLINE +
-                "newNode->" + INTERFACE_LIST_NODE_ATTR_NEXT + "=NULL;" + NEWLINE +
-                
-                INTERFACE_LIST_NODE + "* last = klass->" + INTERFACE_LIST + ";" + NEWLINE +
-                "if (klass->" + INTERFACE_LIST + " == NULL) " + NEWLINE +
-                "  klass->" + INTERFACE_LIST + "=newNode;" + NEWLINE +
-                "else {" + NEWLINE +
-                "  while(last->" + INTERFACE_LIST_NODE_ATTR_NEXT + "!=NULL)" + NEWLINE +
-                "    last = last->" + INTERFACE_LIST_NODE_ATTR_NEXT + ";" + NEWLINE +
-                "  last->" + INTERFACE_LIST_NODE_ATTR_NEXT + "=newNode;" + NEWLINE +
-                "}" + NEWLINE;
+                "klass->" + INTERFACE_TABLE + "[interface_id] = interface;" + NEWLINE;
         ADD_INTERFACE_TO_CLASS.setSource(RJAVA_ADD_INTERFACE_TO_CLASS_SOURCE);
+        ADD_INTERFACE_TO_CLASS.setInline(true);
         
         /**
          * change one interface that is already attached to a class, used when subclass overrides a interface method from super class
-         * void rjava_alter_interface(void* interface, char* name, RJava_Common_Class* class);
+         * void rjava_alter_interface(void* interface, int interface_id, RJava_Common_Class* class);
          */
         ALTER_INTERFACE = new HelperMethod("rjava_alter_interface", HelperMethod.RETURN_VOID, new HelperVariable[]{
                                                         new HelperVariable("void*", "interface"),
-                                                        new HelperVariable("char*", "name"),
+                                                        new HelperVariable("int", "interface_id"),
                                                         new HelperVariable(COMMON_CLASS_STRUCT + "*", "klass")
         });
         final String RJAVA_ALTER_INTERFACE_SOURCE = 
-                INTERFACE_LIST_NODE + "* iter = klass->" + INTERFACE_LIST + SEMICOLON + NEWLINE +
-                "do {" + NEWLINE + 
-                "  if (strcmp(iter->" + INTERFACE_LIST_NODE_ATTR_NAME + ", name) == 0) {" + NEWLINE + 
-                "    iter->" + INTERFACE_LIST_NODE_ATTR_ADDR + " = interface;" + NEWLINE +
-                "    return;" + NEWLINE + 
-                "  }" + NEWLINE +
-                "  iter = iter->" + INTERFACE_LIST_NODE_ATTR_NEXT + SEMICOLON + NEWLINE +
-                "} while (iter != NULL);" + NEWLINE + 
-                "printf(\"didnt find interface(%s)\\n\", name);" + NEWLINE + 
-                "exit(1);" + NEWLINE;
+                "if (klass->" + INTERFACE_TABLE + "[interface_id] == NULL) {" + NEWLINE + 
+                "  printf(\"didnt find interface(%d)\\n\", interface_id);" + NEWLINE + 
+                "  exit(1);" + NEWLINE +
+                "}" + NEWLINE +
+                "klass->" + INTERFACE_TABLE + "[interface_id] = interface;" + NEWLINE;
         ALTER_INTERFACE.setSource(RJAVA_ALTER_INTERFACE_SOURCE);
         
         /**
-         * get one interface from a class, used when invokeinterface happens
-         * void* rjava_get_interface(RJava_Interface_Node* list, char* name);
+         * get one interface from a class (by its itable slot), used by rjava_rt. Generated code indexes the itable directly
+         * inline void* rjava_get_interface(void* instance, int interface_id);
          */
         GET_INTERFACE = new HelperMethod("rjava_get_interface", "void*", new HelperVariable[]{
-                                                      new HelperVariable(INTERFACE_LIST_NODE + "*", "list"),
-                                                      new HelperVariable("char*", "name")
+                                                      new HelperVariable("void*", "instance"),
+                                                      new HelperVariable("int", "interface_id")
         });
         final String RJAVA_GET_INTERFACE_SOURCE = 
-                INTERFACE_LIST_NODE + "* interface = list;" + NEWLINE +
-                "while(1) {" + NEWLINE +
-                "  if (strcmp(interface->" + INTERFACE_LIST_NODE_ATTR_NAME + ", name) == 0)" + NEWLINE +
-                "    return interface->" + INTERFACE_LIST_NODE_ATTR_ADDR + ";" + NEWLINE +
-                "  else {" + NEWLINE +
-                "    if (interface->" + INTERFACE_LIST_NODE_ATTR_NEXT + " != NULL)" + NEWLINE +
-                "      interface = interface->" + INTERFACE_LIST_NODE_ATTR_NEXT + ";" + NEWLINE +
-                "    else {" + NEWLINE +
-                "      printf(\"Error when resolving interface invoke: %s\", name);" + NEWLINE +
-                "      exit(1);" + NEWLINE +
-                "    }" + NEWLINE +
-                "  }" + NEWLINE +
-                "}" + NEWLINE;
+                "return " + Code.getClassAttributeFromInstance("instance", INTERFACE_TABLE) + "[interface_id];" + NEWLINE;
         GET_INTERFACE.setSource(RJAVA_GET_INTERFACE_SOURCE);
+        GET_INTERFACE.setInline(true);
         
         /**
          * init rjava c header for the class (copying stuff from its super_class, and set correct super_class)
@@ -288,40 +346,15 @@ public class RuntimeHelpers {
                                                     new HelperVariable("void*", "super_class"),
                                                     new HelperVariable("int", "super_class_size")
         });
+        // the itable is copied by memcpy(), so the class shares interfaces (and their implementation) with super class until it alters them
+        // so is the display, a class deeper than the display (only possible for library classes) is simply not in it
         final String RJAVA_INIT_HEADER_SOURCE = 
                 "memcpy(this_class, super_class, super_class_size);" + NEWLINE + 
                 "((RJava_Common_Class*)this_class) -> super_class = (RJava_Common_Class*)super_class;" + NEWLINE + 
-                "if (((RJava_Common_Class*)super_class) -> interfaces == NULL) {" + NEWLINE + 
-                "  ((RJava_Common_Class*)this_class) -> interfaces = NULL;" + NEWLINE +
-                "  return;" + NEWLINE + 
-                "}" + NEWLINE +
-        
-                "RJava_Interface_Node* newListHead = NULL;" + NEWLINE + 
-                "RJava_Interface_Node* newListIter = NULL;" + NEWLINE + 
-                "RJava_Interface_Node* oldListIter = ((RJava_Common_Class*)super_class) -> interfaces;" + NEWLINE +
-                "RJava_Interface_Node* prevNewListNode = NULL;" + NEWLINE + 
-        
-                "for (; oldListIter != NULL; oldListIter = oldListIter->next) {" + NEWLINE + 
-                "  newListIter = (RJava_Interface_Node*)" + CLanguageGenerator.MALLOC + "(sizeof(RJava_Interface_Node));" + NEWLINE + 
-                "  newListIter->name = " + CLanguageGenerator.MALLOC + "(strlen(oldListIter->name)+1);" + NEWLINE +
-                "  strcpy(newListIter->name, oldListIter->name);" + NEWLINE + 
-
-                "  newListIter->address = " + CLanguageGenerator.MALLOC + "(oldListIter->interface_size);" + NEWLINE + 
-                "  memcpy(newListIter->address, oldListIter->address, oldListIter->interface_size);" + NEWLINE + 
-
-                "  newListIter->interface_size = oldListIter->interface_size;" + NEWLINE + 
-            
-                "  if (prevNewListNode == NULL) {" + NEWLINE + 
-                "    // first node" + NEWLINE + 
-                "    newListHead = newListIter;" + NEWLINE + 
-                "  } else {" + NEWLINE + 
-                "    prevNewListNode->next = newListIter;" + NEWLINE + 
-                "  }" + NEWLINE + 
-            
-                "  prevNewListNode = newListIter;" + NEWLINE + 
-                "}" + NEWLINE +
-        
-                "((RJava_Common_Class*)this_class) -> interfaces = newListHead;" + NEWLINE +
+                "int depth = ((RJava_Common_Class*)super_class) -> " + CLASS_DEPTH + " + 1;" + NEWLINE +
+                "((RJava_Common_Class*)this_class) -> " + CLASS_DEPTH + " = depth;" + NEWLINE +
+                "if (depth < " + DISPLAY_SIZE + ")" + NEWLINE +
+                "  ((RJava_Common_Class*)this_class) -> " + TYPE_DISPLAY + "[depth] = (RJava_Common_Class*)this_class;" + NEWLINE + 
                 "pthread_mutex_init(&(((RJava_Common_Class*)this_class) -> " + CLASS_MUTEX + "), NULL);" + NEWLINE;
         INIT_HEADER.setSource(RJAVA_INIT_HEADER_SOURCE);
         
@@ -336,55 +369,233 @@ public class RuntimeHelpers {
         final String RJAVA_DEBUG_PRINT_HEADER_SOURCE =
                 "printf(\"%s:\\n\", name);" + NEWLINE +
                 "printf(\" super:%d\\n\", ((RJava_Common_Class*)this_class)->super_class != NULL);" + NEWLINE + 
-                "if (((RJava_Common_Class*)this_class)->interfaces == NULL) {" + NEWLINE + 
-                "  printf(\" interfaces:none\\n\");" + NEWLINE + 
-                "  return;" + NEWLINE + 
-                "} " + NEWLINE + 
-                "RJava_Interface_Node* iter = ((RJava_Common_Class*)this_class)->interfaces;" + NEWLINE +
-                "for (; iter != NULL; iter = iter->next) {" + NEWLINE +
-                "  printf(\" interface:%s\\n\", iter->name);" + NEWLINE +
+                "int i = 0;" + NEWLINE +
+                "for (; i < " + INTERFACE_COUNT + "; i++) {" + NEWLINE +
+                "  if (((RJava_Common_Class*)this_class)->" + INTERFACE_TABLE + "[i] != NULL)" + NEWLINE +
+                "    printf(\" interface:%d\\n\", i);" + NEWLINE +
                 "}" + NEWLINE;
         DEBUG_PRINT_HEADER.setSource(RJAVA_DEBUG_PRINT_HEADER_SOURCE);
         
         /**
-         * increase the function execution counter for the function
-         * void rjava_debug_log_func_exec(const char* func_name);
+         * allocate a monitor from side table, owned by owner. returns the inflated lock word
+         * intptr_t rjava_new_monitor(intptr_t owner, int count);
+         */
+        NEW_MONITOR = new HelperMethod("rjava_new_monitor", "intptr_t", new HelperVariable[]{
+                                                    new HelperVariable("intptr_t", "owner"),
+                                                    new HelperVariable("int", "count")
+        });
+        final String RJAVA_NEW_MONITOR_SOURCE = 
+                "pthread_mutex_lock(&" + MONITOR_TABLE_LOCK + ");" + NEWLINE +
+                "int index = " + MONITOR_FREE_LIST + ";" + NEWLINE +
+                "if (index != -1)" + NEWLINE +
+                "  " + MONITOR_FREE_LIST + " = " + MONITOR_TABLE + "[index / RJAVA_MONITOR_CHUNK_SIZE][index % RJAVA_MONITOR_CHUNK_SIZE]." + MONITOR_NEXT_FREE + ";" + NEWLINE +
+                "else {" + NEWLINE +
+                "  index = " + MONITOR_TABLE_COUNT + ";" + NEWLINE +
+                "  if (index >= RJAVA_MONITOR_CHUNKS * RJAVA_MONITOR_CHUNK_SIZE) {" + NEWLINE +
+                "    printf(\"too many inflated monitors in use at the same time (%d), raise RJAVA_MONITOR_CHUNKS\\n\", index);" + NEWLINE +
+                "    exit(1);" + NEWLINE +
+                "  }" + NEWLINE +
+                "  " + MONITOR_TABLE_COUNT + "++;" + NEWLINE +
+                "  if (" + MONITOR_TABLE + "[index / RJAVA_MONITOR_CHUNK_SIZE] == NULL) {" + NEWLINE +
+                "    // mutexes are initialized once, a thread may still lock the mutex of a recycled monitor" + NEWLINE +
+                "    " + MONITOR_STRUCT + "* chunk = (" + MONITOR_STRUCT + "*) " + MALLOC + "(sizeof(" + MONITOR_STRUCT + ") * RJAVA_MONITOR_CHUNK_SIZE);" + NEWLINE +
+                "    int i;" + NEWLINE +
+                "    for (i = 0; i < RJAVA_MONITOR_CHUNK_SIZE; i++) {" + NEWLINE +
+                "      pthread_mutex_init(&(chunk[i]." + MONITOR_MUTEX + "), NULL);" + NEWLINE +
+                "      pthread_cond_init(&(chunk[i]." + MONITOR_COND_VAR + "), NULL);" + NEWLINE +
+                "      pthread_cond_init(&(chunk[i]." + MONITOR_ENTRY_COND_VAR + "), NULL);" + NEWLINE +
+                "      chunk[i]." + MONITOR_USERS + " = 0;" + NEWLINE +
+                "    }" + NEWLINE +
+                "    " + MONITOR_TABLE + "[index / RJAVA_MONITOR_CHUNK_SIZE] = chunk;" + NEWLINE +
+                "  }" + NEWLINE +
+                "}" + NEWLINE +
+                "pthread_mutex_unlock(&" + MONITOR_TABLE_LOCK + ");" + NEWLINE +
+                Code.commentln("not published yet, the CAS that installs the lock word orders these stores") +
+                MONITOR_STRUCT + "* monitor = &" + MONITOR_TABLE + "[index / RJAVA_MONITOR_CHUNK_SIZE][index % RJAVA_MONITOR_CHUNK_SIZE];" + NEWLINE +
+                "monitor->" + MONITOR_OWNER + " = owner;" + NEWLINE +
+                "monitor->" + MONITOR_COUNT + " = count;" + NEWLINE +
+                "return (((intptr_t)index) << 1) | RJAVA_LOCK_INFLATED;" + NEWLINE;
+        NEW_MONITOR.setSource(RJAVA_NEW_MONITOR_SOURCE);
+        
+        /**
+         * return a monitor that no thread is using to the side table
+         * void rjava_free_monitor(intptr_t lock_word);
          */
-        DEBUG_LOG_FUNC_EXEC = new HelperMethod("rjava_debug_log_func_exec", HelperMethod.RETURN_VOID, new HelperVariable[]{
-                                                            new HelperVariable("const char*", "func_name")
+        FREE_MONITOR = new HelperMethod("rjava_free_monitor", HelperMethod.RETURN_VOID, new HelperVariable[]{
+                                                     new HelperVariable("intptr_t", "lock_word")
         });
-        final String RJAVA_DEBUG_LOG_FUNC_EXEC_SOURCE = 
-                "struct FunctionLog* cursor = func_log_head;" + NEWLINE +
+        final String RJAVA_FREE_MONITOR_SOURCE = 
+                "int index = (int) (lock_word >> 1);" + NEWLINE +
+                "pthread_mutex_lock(&" + MONITOR_TABLE_LOCK + ");" + NEWLINE +
+                MONITOR_TABLE + "[index / RJAVA_MONITOR_CHUNK_SIZE][index % RJAVA_MONITOR_CHUNK_SIZE]." + MONITOR_NEXT_FREE + " = " + MONITOR_FREE_LIST + ";" + NEWLINE +
+                MONITOR_FREE_LIST + " = index;" + NEWLINE +
+                "pthread_mutex_unlock(&" + MONITOR_TABLE_LOCK + ");" + NEWLINE;
+        FREE_MONITOR.setSource(RJAVA_FREE_MONITOR_SOURCE);
+        
+        /**
+         * get the monitor from an inflated lock word
+         * inline RJava_Monitor* rjava_get_monitor(intptr_t lock_word);
+         */
+        GET_MONITOR = new HelperMethod("rjava_get_monitor", MONITOR_STRUCT + "*", new HelperVariable[]{
+                                                    new HelperVariable("intptr_t", "lock_word")
+        });
+        final String RJAVA_GET_MONITOR_SOURCE = 
+                "intptr_t index = lock_word >> 1;" + NEWLINE +
+                "return &" + MONITOR_TABLE + "[index / RJAVA_MONITOR_CHUNK_SIZE][index % RJAVA_MONITOR_CHUNK_SIZE];" + NEWLINE;
+        GET_MONITOR.setSource(RJAVA_GET_MONITOR_SOURCE);
+        GET_MONITOR.setInline(true);
+        
+        /**
+         * inflate the lock of an instance (current thread must own the lock), used by wait/notify
+         * RJava_Monitor* rjava_inflate_monitor(void* instance);
+         */
+        INFLATE_MONITOR = new HelperMethod("rjava_inflate_monitor", MONITOR_STRUCT + "*", new HelperVariable[]{
+                                                        new HelperVariable("void*", "instance")
+        });
+        final String RJAVA_INFLATE_MONITOR_SOURCE = 
+                COMMON_INSTANCE_STRUCT + "* object = (" + COMMON_INSTANCE_STRUCT + "*) instance;" + NEWLINE +
+                "intptr_t word = object->" + LOCK_WORD + ";" + NEWLINE +
+                "if (word & RJAVA_LOCK_INFLATED)" + NEWLINE +
+                "  return " + invoke(GET_MONITOR, new String[]{"word"}) + ";" + NEWLINE +
+                invoke(ASSERT, new String[]{"(word & RJAVA_LOCK_OWNER_MASK) == RJAVA_THREAD_LOCK_TOKEN", "\"current thread does not own the lock\""}) + SEMICOLON + NEWLINE +
+                "intptr_t inflated = " + invoke(NEW_MONITOR, new String[]{"RJAVA_THREAD_LOCK_TOKEN", "(word & RJAVA_LOCK_COUNT_MASK) / RJAVA_LOCK_COUNT_UNIT + 1"}) + ";" + NEWLINE +
+                "if (__sync_bool_compare_and_swap(&(object->" + LOCK_WORD + "), word, inflated))" + NEWLINE +
+                "  return " + invoke(GET_MONITOR, new String[]{"inflated"}) + ";" + NEWLINE +
+                Code.commentln("a contender inflated the lock for us first") +
+                invoke(FREE_MONITOR, new String[]{"inflated"}) + ";" + NEWLINE +
+                "return " + invoke(GET_MONITOR, new String[]{"object->" + LOCK_WORD}) + ";" + NEWLINE;
+        INFLATE_MONITOR.setSource(RJAVA_INFLATE_MONITOR_SOURCE);
+        
+        /**
+         * slow path of monitorenter (recursion, contention, inflated lock)
+         * void rjava_monitor_enter_slow(void* instance);
+         */
+        MONITOR_ENTER_SLOW = new HelperMethod("rjava_monitor_enter_slow", HelperMethod.RETURN_VOID, new HelperVariable[]{
+                                                           new HelperVariable("void*", "instance")
+        });
+        final String RJAVA_MONITOR_ENTER_SLOW_SOURCE = 
+                COMMON_INSTANCE_STRUCT + "* object = (" + COMMON_INSTANCE_STRUCT + "*) instance;" + NEWLINE +
+                "intptr_t token = RJAVA_THREAD_LOCK_TOKEN;" + NEWLINE +
+                "int spins = 0;" + NEWLINE +
                 "while (1) {" + NEWLINE +
-                "  if (strcmp(cursor->func_name, func_name) == 0) {" + NEWLINE +
-                "    cursor->func_count++;" + NEWLINE +
+                "  intptr_t word = object->" + LOCK_WORD + ";" + NEWLINE +
+                "  if (word & RJAVA_LOCK_INFLATED) {" + NEWLINE +
+                "    " + MONITOR_STRUCT + "* monitor = " + invoke(GET_MONITOR, new String[]{"word"}) + ";" + NEWLINE +
+                "    pthread_mutex_lock(&(monitor->" + MONITOR_MUTEX + "));" + NEWLINE +
+                "    if (object->" + LOCK_WORD + " != word) {" + NEWLINE +
+                "      // the lock was deflated before we got the mutex (the monitor may already be reused), start over" + NEWLINE +
+                "      pthread_mutex_unlock(&(monitor->" + MONITOR_MUTEX + "));" + NEWLINE +
+                "      continue;" + NEWLINE +
+                "    }" + NEWLINE +
+                "    if (monitor->" + MONITOR_OWNER + " == token)" + NEWLINE +
+                "      monitor->" + MONITOR_COUNT + "++;" + NEWLINE +
+                "    else {" + NEWLINE +
+                "      monitor->" + MONITOR_USERS + "++;" + NEWLINE +
+                "      while (monitor->" + MONITOR_OWNER + " != 0)" + NEWLINE +
+                "        pthread_cond_wait(&(monitor->" + MONITOR_ENTRY_COND_VAR + "), &(monitor->" + MONITOR_MUTEX + "));" + NEWLINE +
+                "      monitor->" + MONITOR_USERS + "--;" + NEWLINE +
+                "      monitor->" + MONITOR_OWNER + " = token;" + NEWLINE +
+                "      monitor->" + MONITOR_COUNT + " = 1;" + NEWLINE +
+                "    }" + NEWLINE +
+                "    pthread_mutex_unlock(&(monitor->" + MONITOR_MUTEX + "));" + NEWLINE +
                 "    return;" + NEWLINE +
                 "  }" + NEWLINE +
-                "  if (cursor->next != NULL) {" + NEWLINE +
-                "    cursor = cursor->next;" + NEWLINE +
-                "  } else break;" + NEWLINE +
-                "}" + NEWLINE +
-                "/* add to function log */" + NEWLINE +
-                "struct FunctionLog* newLog = (struct FunctionLog*) malloc(sizeof(struct FunctionLog));" + NEWLINE +
-                "strcpy(newLog->func_name, func_name);" + NEWLINE +
-                "newLog->func_count = 1;" + NEWLINE +
-                "cursor->next = newLog;" + NEWLINE +
-                "newLog->next = NULL;" + NEWLINE;
-        DEBUG_LOG_FUNC_EXEC.setSource(RJAVA_DEBUG_LOG_FUNC_EXEC_SOURCE);
-        
-        /**
-         * report function logs
-         * void rjava_debug_report_func_log();
-         */
-        DEBUG_REPORT_FUNC_LOG = new HelperMethod("rjava_debug_report_func_log", HelperMethod.RETURN_VOID, null);
-        final String RJAVA_DEBUG_REPORT_FUNC_LOG_SOURCE = 
-                "printf(\"-------------FUNCTION LOG-------------\\n\");" + NEWLINE +
-                "struct FunctionLog* cursor = func_log_head;" + NEWLINE +
-                "while (cursor != NULL) {" + NEWLINE +
-                "  printf(\"%s,%ld\\n\", cursor->func_name, cursor->func_count);" + NEWLINE +
-                "  cursor = cursor->next;" + NEWLINE +
+                "  if (word == 0) {" + NEWLINE +
+                "    if (__sync_bool_compare_and_swap(&(object->" + LOCK_WORD + "), 0, token))" + NEWLINE +
+                "      return;" + NEWLINE +
+                "    continue;" + NEWLINE +
+                "  }" + NEWLINE +
+                "  if ((word & RJAVA_LOCK_OWNER_MASK) == token) {" + NEWLINE +
+                "    // recursive thin lock. CAS, as a contender may inflate the word meanwhile" + NEWLINE +
+                "    if ((word & RJAVA_LOCK_COUNT_MASK) == RJAVA_LOCK_COUNT_MASK) {" + NEWLINE +
+                "      " + invoke(INFLATE_MONITOR, new String[]{"instance"}) + ";" + NEWLINE +
+                "      continue;" + NEWLINE +
+                "    }" + NEWLINE +
+                "    if (__sync_bool_compare_and_swap(&(object->" + LOCK_WORD + "), word, word + RJAVA_LOCK_COUNT_UNIT))" + NEWLINE +
+                "      return;" + NEWLINE +
+                "    continue;" + NEWLINE +
+                "  }" + NEWLINE +
+                "  // contended: thin lock held by another thread. yield a few times in case it is released soon" + NEWLINE +
+                "  if (spins < RJAVA_LOCK_SPINS) {" + NEWLINE +
+                "    spins++;" + NEWLINE +
+                "    sched_yield();" + NEWLINE +
+                "    continue;" + NEWLINE +
+                "  }" + NEWLINE +
+                "  // then inflate the lock on behalf of its owner, and block on the monitor (next iteration). the owner's next CAS" + NEWLINE +
+                "  // on the thin word fails, so it releases through the monitor and wakes us" + NEWLINE +
+                "  intptr_t inflated = " + invoke(NEW_MONITOR, new String[]{"word & RJAVA_LOCK_OWNER_MASK", "(word & RJAVA_LOCK_COUNT_MASK) / RJAVA_LOCK_COUNT_UNIT + 1"}) + ";" + NEWLINE +
+                "  if (!__sync_bool_compare_and_swap(&(object->" + LOCK_WORD + "), word, inflated))" + NEWLINE +
+                "    " + invoke(FREE_MONITOR, new String[]{"inflated"}) + ";" + NEWLINE +
+                "}" + NEWLINE;
+        MONITOR_ENTER_SLOW.setSource(RJAVA_MONITOR_ENTER_SLOW_SOURCE);
+        
+        /**
+         * slow path of monitorexit (recursion, inflated lock)
+         * void rjava_monitor_exit_slow(void* instance);
+         */
+        MONITOR_EXIT_SLOW = new HelperMethod("rjava_monitor_exit_slow", HelperMethod.RETURN_VOID, new HelperVariable[]{
+                                                          new HelperVariable("void*", "instance")
+        });
+        final String RJAVA_MONITOR_EXIT_SLOW_SOURCE = 
+                COMMON_INSTANCE_STRUCT + "* object = (" + COMMON_INSTANCE_STRUCT + "*) instance;" + NEWLINE +
+                "while (1) {" + NEWLINE +
+                "  intptr_t word = object->" + LOCK_WORD + ";" + NEWLINE +
+                "  if (word & RJAVA_LOCK_INFLATED) {" + NEWLINE +
+                "    " + MONITOR_STRUCT + "* monitor = " + invoke(GET_MONITOR, new String[]{"word"}) + ";" + NEWLINE +
+                "    pthread_mutex_lock(&(monitor->" + MONITOR_MUTEX + "));" + NEWLINE +
+                "    " + invoke(ASSERT, new String[]{"monitor->" + MONITOR_OWNER + " == RJAVA_THREAD_LOCK_TOKEN", "\"illegal monitor state on monitorexit\""}) + SEMICOLON + NEWLINE +
+                "    monitor->" + MONITOR_COUNT + "--;" + NEWLINE +
+                "    if (monitor->" + MONITOR_COUNT + " == 0) {" + NEWLINE +
+                "      monitor->" + MONITOR_OWNER + " = 0;" + NEWLINE +
+                "      if (monitor->" + MONITOR_USERS + " == 0) {" + NEWLINE +
+                "        // deflate. a thread that saw the inflated word but did not get the mutex yet" + NEWLINE +
+                "        // finds the word changed once it gets the mutex, and starts over" + NEWLINE +
+                "        __sync_synchronize();" + NEWLINE +
+                "        object->" + LOCK_WORD + " = 0;" + NEWLINE +
+                "        pthread_mutex_unlock(&(monitor->" + MONITOR_MUTEX + "));" + NEWLINE +
+                "        " + invoke(FREE_MONITOR, new String[]{"word"}) + ";" + NEWLINE +
+                "        return;" + NEWLINE +
+                "      }" + NEWLINE +
+                "      pthread_cond_signal(&(monitor->" + MONITOR_ENTRY_COND_VAR + "));" + NEWLINE +
+                "    }" + NEWLINE +
+                "    pthread_mutex_unlock(&(monitor->" + MONITOR_MUTEX + "));" + NEWLINE +
+                "    return;" + NEWLINE +
+                "  }" + NEWLINE +
+                "  " + invoke(ASSERT, new String[]{"(word & RJAVA_LOCK_OWNER_MASK) == RJAVA_THREAD_LOCK_TOKEN", "\"illegal monitor state on monitorexit\""}) + SEMICOLON + NEWLINE +
+                "  // a contender may inflate the word meanwhile, then we release through the monitor" + NEWLINE +
+                "  if (__sync_bool_compare_and_swap(&(object->" + LOCK_WORD + "), word, (word & RJAVA_LOCK_COUNT_MASK) == 0 ? 0 : word - RJAVA_LOCK_COUNT_UNIT))" + NEWLINE +
+                "    return;" + NEWLINE +
                 "}" + NEWLINE;
-        DEBUG_REPORT_FUNC_LOG.setSource(RJAVA_DEBUG_REPORT_FUNC_LOG_SOURCE);
+        MONITOR_EXIT_SLOW.setSource(RJAVA_MONITOR_EXIT_SLOW_SOURCE);
+        
+        /**
+         * used to implement monitorenter (and synchronized method), CAS fast path
+         * inline void rjava_monitor_enter(void* instance);
+         */
+        MONITOR_ENTER = new HelperMethod("rjava_monitor_enter", HelperMethod.RETURN_VOID, new HelperVariable[]{
+                                                      new HelperVariable("void*", "instance")
+        });
+        final String RJAVA_MONITOR_ENTER_SOURCE = 
+                "if (__sync_bool_compare_and_swap(&(((" + COMMON_INSTANCE_STRUCT + "*) instance)->" + LOCK_WORD + "), 0, RJAVA_THREAD_LOCK_TOKEN))" + NEWLINE +
+                "  return;" + NEWLINE +
+                invoke(MONITOR_ENTER_SLOW, new String[]{"instance"}) + SEMICOLON + NEWLINE;
+        MONITOR_ENTER.setSource(RJAVA_MONITOR_ENTER_SOURCE);
+        MONITOR_ENTER.setInline(true);
+        
+        /**
+         * used to implement monitorexit (and synchronized method), fast path for an unlocked thin lock
+         * inline void rjava_monitor_exit(void* instance);
+         */
+        MONITOR_EXIT = new HelperMethod("rjava_monitor_exit", HelperMethod.RETURN_VOID, new HelperVariable[]{
+                                                     new HelperVariable("void*", "instance")
+        });
+        final String RJAVA_MONITOR_EXIT_SOURCE = 
+                "if (__sync_bool_compare_and_swap(&(((" + COMMON_INSTANCE_STRUCT + "*) instance)->" + LOCK_WORD + "), RJAVA_THREAD_LOCK_TOKEN, 0))" + NEWLINE +
+                "  return;" + NEWLINE +
+                invoke(MONITOR_EXIT_SLOW, new String[]{"instance"}) + SEMICOLON + NEWLINE;
+        MONITOR_EXIT.setSource(RJAVA_MONITOR_EXIT_SOURCE);
+        MONITOR_EXIT.setInline(true);
+        
         /**
          * implements instanceof bytecode
          * bool rjava_instanceof(void* instance, void* class_struct);
@@ -406,6 +617,53 @@ public class RuntimeHelpers {
                 "return 0" + SEMICOLON + NEWLINE;
         INSTANCEOF.setSource(RJAVA_INSTANCEOF_SOURCE);
         
+        /**
+         * instanceof against a class at a known depth, one load and compare from the type display
+         * inline bool rjava_instanceof_class(void* instance, void* class_struct, int depth);
+         */
+        INSTANCEOF_CLASS = new HelperMethod("rjava_instanceof_class", "bool", new HelperVariable[]{
+                                                                new HelperVariable("void*", "instance"),
+                                                                new HelperVariable("void*", "class_struct"),
+                                                                new HelperVariable("int", "depth")
+        });
+        // display slots below the depth of a class are zeroed, so there is no need to check the depth of the instance
+        final String RJAVA_INSTANCEOF_CLASS_SOURCE = 
+                "return instance != NULL && " + Code.getClassAttributeFromInstance("instance", TYPE_DISPLAY) + "[depth] == class_struct;" + NEWLINE;
+        INSTANCEOF_CLASS.setSource(RJAVA_INSTANCEOF_CLASS_SOURCE);
+        INSTANCEOF_CLASS.setInline(true);
+        
+        /**
+         * instanceof against an interface, the class implements it iff its itable slot is set
+         * inline bool rjava_instanceof_interface(void* instance, int interface_id);
+         */
+        INSTANCEOF_INTERFACE = new HelperMethod("rjava_instanceof_interface", "bool", new HelperVariable[]{
+                                                                new HelperVariable("void*", "instance"),
+                                                                new HelperVariable("int", "interface_id")
+        });
+        final String RJAVA_INSTANCEOF_INTERFACE_SOURCE = 
+                "return instance != NULL && " + Code.getClassAttributeFromInstance("instance", INTERFACE_TABLE) + "[interface_id] != NULL;" + NEWLINE;
+        INSTANCEOF_INTERFACE.setSource(RJAVA_INSTANCEOF_INTERFACE_SOURCE);
+        INSTANCEOF_INTERFACE.setInline(true);
+        
+        /**
+         * implements checkcast bytecode (debug target only), fails if the check doesnt pass
+         * void* rjava_checkcast(void* instance, bool pass, char* type);
+         */
+        CHECKCAST = new HelperMethod("rjava_checkcast", "void*", new HelperVariable[]{
+                                                                new HelperVariable("void*", "instance"),
+                                                                new HelperVariable("bool", "pass"),
+                                                                new HelperVariable("char*", "type")
+        });
+        final String RJAVA_CHECKCAST_SOURCE = 
+                "if (!pass) {" + NEWLINE +
+                "  printf(\"RJava C class cast failed: instance is not %s\\n\", type);" + NEWLINE +
+                "  GDB_BREAKPOINT;" + NEWLINE +
+                "  java_lang_Thread_dumpStack();" + NEWLINE +
+                "  exit(1);" + NEWLINE +
+                "}" + NEWLINE +
+                "return instance;" + NEWLINE;
+        CHECKCAST.setSource(RJAVA_CHECKCAST_SOURCE);
+        
         /**
          * install signal handler to allow thread suspend
          * void rjava_init_thread_suspending();
@@ -424,6 +682,20 @@ public class RuntimeHelpers {
         LENGTH_OF_ARRAY.setSource(RJAVA_LENGTH_OF_ARRAY_SOURCE);
         LENGTH_OF_ARRAY.setInline(true);
         
+        /**
+         * reports an out of bounds array access and exits
+         * void rjava_array_index_out_of_bounds(int index, int length);
+         */
+        ARRAY_INDEX_OUT_OF_BOUNDS = new HelperMethod("rjava_array_index_out_of_bounds", HelperMethod.RETURN_VOID, new HelperVariable[]{
+                                                     new HelperVariable("int", "index"),
+                                                     new HelperVariable("int", "length")
+        });
+        final String RJAVA_ARRAY_INDEX_OUT_OF_BOUNDS_SOURCE = 
+                "char* str = (char*)" + CLanguageGenerator.MALLOC + "(1000)" + SEMICOLON + NEWLINE +
+                "sprintf(str, \"index(%d) out of bounds(%d)\", index, length)" + SEMICOLON + NEWLINE +
+                invoke(ASSERT, new String[]{"false", "str"}) + SEMICOLON + NEWLINE;
+        ARRAY_INDEX_OUT_OF_BOUNDS.setSource(RJAVA_ARRAY_INDEX_OUT_OF_BOUNDS_SOURCE);
+        
         /**
          * used to implement array access (e.g. array[0])
          * inline void* rjava_access_array(void* array, int index);
@@ -432,17 +704,15 @@ public class RuntimeHelpers {
                                                      new HelperVariable("void*", "array"),
                                                      new HelperVariable("int", "index")
         });
+        // one unsigned compare covers both index < 0 and index >= length
         final String RJAVA_ACCESS_ARRAY_SOURCE = 
                 // bounds check code
                 Code.commentln("bounds check") + NEWLINE +
                 "int length = " + invoke(LENGTH_OF_ARRAY, new String[]{"array"}) + SEMICOLON + NEWLINE +
-                "if (index >= length || index < 0) {" + NEWLINE +
-                "char* str = (char*)" + CLanguageGenerator.MALLOC + "(1000)" + SEMICOLON + NEWLINE +
-                "sprintf(str, \"index(%d) out of bounds(%d)\", index, length)" + SEMICOLON + NEWLINE +
-                invoke(ASSERT, new String[]{"false", "str"}) + SEMICOLON + NEWLINE
-                + "}" + NEWLINE +
+                "if (__builtin_expect((unsigned int) index >= (unsigned int) length, 0))" + NEWLINE +
+                "  " + invoke(ARRAY_INDEX_OUT_OF_BOUNDS, new String[]{"index", "length"}) + SEMICOLON + NEWLINE +
                 "long ele_size = *((long*)((char*)array + sizeof(int)));" + NEWLINE +
-                "return ((char*)array + sizeof(int) + sizeof(long) + ele_size * index);" + NEWLINE;
+                "return ((char*)array + " + ARRAY_HEADER_SIZE + " + ele_size * index);" + NEWLINE;
         ACCESS_ARRAY.setSource(RJAVA_ACCESS_ARRAY_SOURCE);
         ACCESS_ARRAY.setInline(true);
         
@@ -456,10 +726,38 @@ public class RuntimeHelpers {
         });
         final String RJAVA_ACCESS_ARRAY_NOBOUNDS_CHECK_SOURCE = 
                 "long ele_size = *((long*)((char*)array + sizeof(int)));" + NEWLINE +
-                "return ((char*)array + sizeof(int) + sizeof(long) + ele_size * index);" + NEWLINE;
+                "return ((char*)array + " + ARRAY_HEADER_SIZE + " + ele_size * index);" + NEWLINE;
         ACCESS_ARRAY_NOBOUNDS_CHECK.setSource(RJAVA_ACCESS_ARRAY_NOBOUNDS_CHECK_SOURCE);
         ACCESS_ARRAY_NOBOUNDS_CHECK.setInline(true);
         
+        /**
+         * elements of an array, to be indexed with the element type known at compile time (see Code.getArrayElement())
+         * inline void* rjava_array_elements(void* array);
+         */
+        ARRAY_ELEMENTS = new HelperMethod("rjava_array_elements", "void*", new HelperVariable[]{
+                                                     new HelperVariable("void*", "array")
+        });
+        final String RJAVA_ARRAY_ELEMENTS_SOURCE = 
+                "return (char*)array + " + ARRAY_HEADER_SIZE + ";" + NEWLINE;
+        ARRAY_ELEMENTS.setSource(RJAVA_ARRAY_ELEMENTS_SOURCE);
+        ARRAY_ELEMENTS.setInline(true);
+        
+        /**
+         * elements of an array, after checking index is in bounds
+         * inline void* rjava_array_elements_checked(void* array, int index);
+         */
+        ARRAY_ELEMENTS_CHECKED = new HelperMethod("rjava_array_elements_checked", "void*", new HelperVariable[]{
+                                                     new HelperVariable("void*", "array"),
+                                                     new HelperVariable("int", "index")
+        });
+        final String RJAVA_ARRAY_ELEMENTS_CHECKED_SOURCE = 
+                "int length = " + invoke(LENGTH_OF_ARRAY, new String[]{"array"}) + SEMICOLON + NEWLINE +
+                "if (__builtin_expect((unsigned int) index >= (unsigned int) length, 0))" + NEWLINE +
+                "  " + invoke(ARRAY_INDEX_OUT_OF_BOUNDS, new String[]{"index", "length"}) + SEMICOLON + NEWLINE +
+                "return (char*)array + " + ARRAY_HEADER_SIZE + ";" + NEWLINE;
+        ARRAY_ELEMENTS_CHECKED.setSource(RJAVA_ARRAY_ELEMENTS_CHECKED_SOURCE);
+        ARRAY_ELEMENTS_CHECKED.setInline(true);
+        
         /**
          * used to implement newarray
          * void* rjava_new_array(int length, long ele_size);
@@ -469,13 +767,12 @@ public class RuntimeHelpers {
                                                   new HelperVariable("long", "ele_size")
         });
         final String RJAVA_NEW_ARRAY_SOURCE = 
-                "void* ret = " + MALLOC + "(sizeof(int) + sizeof(long) + ele_size * length);" + NEWLINE +
+                "void* ret = " + MALLOC + "(" + ARRAY_HEADER_SIZE + " + ele_size * length);" + NEWLINE +
                 "*((int*)ret) = length;" + NEWLINE + 
                 "*((long*)(ret + sizeof(int))) = ele_size;" + NEWLINE +
                 // zeroing the array
-                "int i = 0;" + NEWLINE + 
-                "for(; i < length; i++)" + NEWLINE +
-                "  *(char**)(rjava_access_array(ret, i)) = NULL;" + NEWLINE +
+                "if (!" + MALLOC_ZEROED + ")" + NEWLINE +
+                "  memset(ret + " + ARRAY_HEADER_SIZE + ", 0, ele_size * length);" + NEWLINE +
                 "return ret;" + NEWLINE;
         NEW_ARRAY.setSource(RJAVA_NEW_ARRAY_SOURCE);
         
@@ -488,13 +785,11 @@ public class RuntimeHelpers {
                                                         new HelperVariable("long", "ele_size")
         });
         final String RJAVA_NEW_ARRAY_ATOMIC_SOURCE = 
-                "void* ret = " + CLanguageGenerator.MALLOC_ATOMIC + "(sizeof(int) + sizeof(long) + ele_size * length);" + NEWLINE +
+                "void* ret = " + CLanguageGenerator.MALLOC_ATOMIC + "(" + ARRAY_HEADER_SIZE + " + ele_size * length);" + NEWLINE +
                 "*((int*)ret) = length;" + NEWLINE + 
                 "*((long*)(ret + sizeof(int))) = ele_size;" + NEWLINE +
-                // zeroing the array
-                "int i = 0;" + NEWLINE + 
-                "for(; i < length; i++)" + NEWLINE +
-                "  *(char**)(rjava_access_array(ret, i)) = NULL;" + NEWLINE +
+                // zeroing the array (atomic memory is not cleared)
+                "memset(ret + " + ARRAY_HEADER_SIZE + ", 0, ele_size * length);" + NEWLINE +
                 "return ret;" + NEWLINE;
         NEW_ARRAY_ATOMIC.setSource(RJAVA_NEW_ARRAY_ATOMIC_SOURCE);
         
@@ -529,14 +824,7 @@ public class RuntimeHelpers {
         });
         final String RJAVA_C_ARRAY_TO_RJAVA_ARRAY_SOURCE = 
                 "void* ret = rjava_new_array(length, ele_size);" + NEWLINE +
-                "void* src_ptr = c_array;" + NEWLINE +
-                "void* dst_ptr = ret + sizeof(int) + sizeof(long);" + NEWLINE +
-                "int i = 0;" + NEWLINE +
-                "for (; i < length; i = i + 1) {" + NEWLINE +
-                "  memcpy(dst_ptr, src_ptr, ele_size);" + NEWLINE +
-                "  dst_ptr = dst_ptr + ele_size;" + NEWLINE + 
-                "  src_ptr = src_ptr + ele_size;" + NEWLINE +
-                "}" + NEWLINE +
+                "memcpy(ret + " + ARRAY_HEADER_SIZE + ", c_array, ele_size * length);" + NEWLINE +
                 "return ret;" + NEWLINE;
         C_ARRAY_TO_RJAVA_ARRAY.setSource(RJAVA_C_ARRAY_TO_RJAVA_ARRAY_SOURCE);
         
@@ -552,7 +840,7 @@ public class RuntimeHelpers {
                 "void* ret = " + invoke(NEW_ARRAY, new String[]{"argc-1", "sizeof(java_lang_String*)"}) + ";" + NEWLINE + 
                 "int i = 0;" + NEWLINE + 
                 "for (; i < argc - 1; i = i + 1) {" + NEWLINE +
-                "  *((java_lang_String**)rjava_access_array(ret,i)) = newStringConstant(args[i+1]);" + NEWLINE +
+                "  *((java_lang_String**)rjava_access_array(ret,i)) = rjava_intern_c_string(args[i+1]);" + NEWLINE +
                 "}" + NEWLINE +
                 "return ret;" + NEWLINE;
         INIT_ARGS.setSource(RJAVA_INIT_ARGS_SOURCE);
@@ -575,23 +863,37 @@ public class RuntimeHelpers {
         CRT_HELPERS.add(GET_INTERFACE);
         CRT_HELPERS.add(INIT_HEADER);
         CRT_HELPERS.add(DEBUG_PRINT_HEADER);
+        CRT_HELPERS.add(NEW_MONITOR);
+        CRT_HELPERS.add(FREE_MONITOR);
+        CRT_HELPERS.add(GET_MONITOR);
+        CRT_HELPERS.add(INFLATE_MONITOR);
+        CRT_HELPERS.add(MONITOR_ENTER_SLOW);
+        CRT_HELPERS.add(MONITOR_EXIT_SLOW);
+        CRT_HELPERS.add(MONITOR_ENTER);
+        CRT_HELPERS.add(MONITOR_EXIT);
         CRT_HELPERS.add(NEW_ARRAY);
         if (CLanguageRuntime.memoryManagement == CLanguageRuntime.GC_MALLOC || CLanguageRuntime.memoryManagement == CLanguageRuntime.GC_MALLOC_PREBUILT)
             CRT_HELPERS.add(NEW_ARRAY_ATOMIC);
         CRT_HELPERS.add(LENGTH_OF_ARRAY);
+        CRT_HELPERS.add(ARRAY_INDEX_OUT_OF_BOUNDS);
         CRT_HELPERS.add(ACCESS_ARRAY);
         CRT_HELPERS.add(ACCESS_ARRAY_NOBOUNDS_CHECK);
+        CRT_HELPERS.add(ARRAY_ELEMENTS);
+        CRT_HELPERS.add(ARRAY_ELEMENTS_CHECKED);
         CRT_HELPERS.add(INIT_ARGS);
         CRT_HELPERS.add(NEW_MULTIARRAY);
         CRT_HELPERS.add(C_ARRAY_TO_RJAVA_ARRAY);
         CRT_HELPERS.add(INSTANCEOF);
+        CRT_HELPERS.add(INSTANCEOF_CLASS);
+        CRT_HELPERS.add(INSTANCEOF_INTERFACE);
+        CRT_HELPERS.add(CHECKCAST);
         CRT_HELPERS.add(INIT_THREAD_SUSPENDING);
         CRT_HELPERS.add(UNIMPLEMENTED_METHOD);
         CRT_HELPERS.add(RUNTIME_GLOBAL_INIT);
-        if (RJavaCompiler.LOG_FUNCTION_EXECUTION) {
-            CRT_HELPERS.add(DEBUG_LOG_FUNC_EXEC);
-            CRT_HELPERS.add(DEBUG_REPORT_FUNC_LOG);
-        }
+        
+        // options are known by now
+        if (RJavaCompiler.profileFunctions != RJavaCompiler.PROFILE_NONE)
+            RUNTIME_GLOBAL_INIT.setSource(RUNTIME_GLOBAL_INIT.getSource() + invoke(PROFILER_INIT, null) + SEMICOLON + NEWLINE);
     }
     
     /**
@@ -6,6 +6,7 @@ public class ElapseTimer {
     long start;
     long end;
     String name;
+    String note;
     
     boolean reportOnStartNEnd;
     
@@ -34,7 +35,17 @@ public class ElapseTimer {
         return end - start;
     }
     
+    /**
+     * extra information appended to the report, e.g. how much work was done in the measured period
+     * @param note
+     */
+    public void setNote(String note) {
+        this.note = note;
+    }
+    
     public String report() {
+        if (note != null)
+            return name + " [" + read() + "ms, " + note + "]";
         return name + " [" + read() + "ms]";
     }
 }
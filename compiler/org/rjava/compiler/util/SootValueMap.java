@@ -1,6 +1,7 @@
 package org.rjava.compiler.util;
 
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.Map.Entry;
 import java.util.Set;
 
@@ -11,7 +12,7 @@ import soot.Value;
 public class SootValueMap<K> {
     HashMap<Value, K> map = new HashMap<Value, K>();
     
-    public void put(Value key, K value) {
+    public synchronized void put(Value key, K value) {
         Set<Entry<Value, K>> set = map.entrySet();
         for (Entry<Value, K> entry : set) 
             if (SootCollectionUtils.isEqualValue(entry.getKey(), key)) {
@@ -22,11 +23,11 @@ public class SootValueMap<K> {
         map.put(key, value);
     }
     
-    public boolean contains(Value key) {
+    public synchronized boolean contains(Value key) {
         return get(key) != null;
     }
     
-    public K get(Value key) {
+    public synchronized K get(Value key) {
         for (Value v : map.keySet())
             if (SootCollectionUtils.isEqualValue(v, key))
                 return map.get(v);
@@ -34,7 +35,7 @@ public class SootValueMap<K> {
         return null;
     }
     
-    public void remove(Value key) {
+    public synchronized void remove(Value key) {
         if (contains(key)) {
             HashMap<Value, K> another = new HashMap<Value, K>();
             for (Value v : map.keySet())
@@ -44,7 +45,10 @@ public class SootValueMap<K> {
         }
     }
     
-    public Set<Value> keySet() {
-        return map.keySet();
+    /**
+     * @return a copy of the keys (in the map's iteration order), so callers can iterate while other workers keep putting
+     */
+    public synchronized Set<Value> keySet() {
+        return new LinkedHashSet<Value>(map.keySet());
     }
 }
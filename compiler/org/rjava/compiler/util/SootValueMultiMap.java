@@ -2,6 +2,7 @@ package org.rjava.compiler.util;
 
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Set;
@@ -17,7 +18,7 @@ import soot.Value;
 public class SootValueMultiMap<K> {
     HashMap<Value, Set<K>> map = new HashMap<Value, Set<K>>();
     
-    public void put(Value key, K value) {
+    public synchronized void put(Value key, K value) {
         Set<K> list = get(key);
         if (list != null) {
             list.add(value);
@@ -28,11 +29,11 @@ public class SootValueMultiMap<K> {
         }
     }
     
-    public boolean contains(Value key) {
+    public synchronized boolean contains(Value key) {
         return get(key) != null;
     }
     
-    public Set<K> get(Value key) {
+    public synchronized Set<K> get(Value key) {
         for (Value v : map.keySet())
             if (SootCollectionUtils.isEqualValue(v, key))
                 return map.get(v);
@@ -40,7 +41,10 @@ public class SootValueMultiMap<K> {
         return null;
     }
     
-    public Set<Value> keySet() {
-        return map.keySet();
+    /**
+     * @return a copy of the keys (in the map's iteration order), so callers can iterate while other workers keep putting
+     */
+    public synchronized Set<Value> keySet() {
+        return new LinkedHashSet<Value>(map.keySet());
     }
 }
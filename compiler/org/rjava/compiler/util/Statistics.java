@@ -10,6 +10,23 @@ public class Statistics {
     
     public static final String VIRTUAL_CALL_COUNT = "virtual call sites";
     
+    // virtual calls that type inference cannot devirtualize, see CExpressions.fromVirtualInvokeByClassHierarchy()
+    public static final String CHA_DEVIRTUALIZE = "devirtualize (cha)";
+    public static final String CHA_GUARDED = "devirtualize (cha, guarded)";
+    public static final String CHA_GUARDED_TARGETS = "cha guarded direct calls";
+    public static final String CHA_MEGAMORPHIC = "cha megamorphic";
+    public static final String CHA_UNKNOWN = "cha unknown receiver";
+    
+    // see ConditionalConstantPropagationPass
+    public static final String CONSTANT_SUBSTITUTED = "constant uses substituted";
+    public static final String BRANCH_FOLDED = "branches folded";
+    public static final String UNREACHABLE_REMOVED = "unreachable statements removed";
+    public static final String UNCALLED_METHOD_REMOVED = "uncalled methods removed";
+    
+    // see EscapeAnalysisPass
+    public static final String ALLOCATION_SITES = "object allocation sites";
+    public static final String STACK_ALLOCATED = "objects allocated on stack";
+    
     public static final String TOTAL_ASSIGNMENT = "total assignment";
     public static final String LOCAL_REASSIGN = "local reassign";
     public static final String INSTANCE_FIELD_REASSIGN = "local field reassign";
@@ -19,16 +36,38 @@ public class Statistics {
     public static final String TYPE_FOUND = "type found";
     public static final String TYPE_NOT_FOUND = "type not found";
     
+    // guarded by Statistics.class, passes may count from several workers
     public static final Map<Object, Long> counters = new HashMap<Object, Long>();
     
-    public static final void report() {
+    public static synchronized final void report() {
         RJavaCompiler.println("RJava Compiler statistics. \ncounters:");
         for (Object o : counters.keySet()) {
             RJavaCompiler.println(o + ": " + counters.get(o));
         }
+        reportDevirtualization();
+    }
+    
+    private static void reportDevirtualization() {
+        long sites = get(VIRTUAL_CALL_COUNT);
+        if (sites == 0)
+            return;
+        
+        long inferred = get("devirtualize");
+        long cha = get(CHA_DEVIRTUALIZE);
+        long guarded = get(CHA_GUARDED);
+        RJavaCompiler.println("devirtualization: " + sites + " virtual call sites, " +
+                inferred + " direct by type inference, " +
+                cha + " direct by cha, " +
+                guarded + " guarded by cha (" + get(CHA_GUARDED_TARGETS) + " direct calls), " +
+                (sites - inferred - cha - guarded) + " left virtual");
+    }
+    
+    private static long get(Object counter) {
+        Long ret = counters.get(counter);
+        return ret == null ? 0 : ret;
     }
     
-    public static final void increaseCounter(Object counter, long increase) {
+    public static synchronized final void increaseCounter(Object counter, long increase) {
         if (!counters.containsKey(counter)) {
             counters.put(counter, increase);
             return;
@@ -42,11 +81,11 @@ public class Statistics {
         increaseCounter(counter, 1);
     }
     
-    public static final void setCounter(Object counter, long count) {
+    public static synchronized final void setCounter(Object counter, long count) {
         counters.put(counter, count);
     }
     
-    public static final long getCounter(Object counter) {
+    public static synchronized final long getCounter(Object counter) {
         return counters.get(counter);
     }
 }
@@ -56,7 +56,7 @@ public class GenMS extends Gen {
    */
 
   /** The mature space, which for GenMS uses a mark sweep collection policy. */
-  public static final MarkSweepSpace msSpace = new MarkSweepSpace("ms", VMRequest.create());
+  public static final MarkSweepSpace msSpace = new MarkSweepSpace("gen-ms", VMRequest.create());
 
   public static final int MS = msSpace.getDescriptor();
 
@@ -49,8 +49,11 @@ import org.vmmagic.unboxed.ObjectReference;
    * Class variables
    */
 
-  /** The mark compact space itself */
-  public static final MarkCompactSpace mcSpace = new MarkCompactSpace("mc", VMRequest.create(0.6f));
+  /**
+   * The mark compact space itself. It is discontiguous, as all plans are linked into the testbed
+   * (see PlanSelect), and a contiguous fraction of the heap would be reserved even if MC is not selected.
+   */
+  public static final MarkCompactSpace mcSpace = new MarkCompactSpace("mc", VMRequest.create());
 
   /** The space descriptor */
   public static final int MARK_COMPACT = mcSpace.getDescriptor();
@@ -72,7 +72,11 @@ public abstract class Space implements Constants {
   public static final int PAGES_IN_CHUNK = 1 << (LOG_BYTES_IN_CHUNK - LOG_BYTES_IN_PAGE);
   private static final int LOG_MAX_CHUNKS;
   public static final int MAX_CHUNKS;
-  public static final int MAX_SPACES = 20; // quite arbitrary
+  /**
+   * Spaces are created by the class initializers of plans. The testbed links every plan
+   * (see PlanSelect), so this must cover the spaces of all plans, not just the selected one
+   */
+  public static final int MAX_SPACES = 32;
   
   static {
       if (BYTES_IN_ADDRESS == 4) {
@@ -152,6 +156,10 @@ public abstract class Space implements Constants {
     this.immortal = immortal;
     this.zeroed = zeroed;
     this.vmRequest = vmRequest;
+    if (spaceCount == MAX_SPACES) {
+      Log.write("Too many spaces creating \""); Log.write(name); Log.writeln("\", increase Space.MAX_SPACES");
+      VM.assertions.fail("exiting");
+    }
     this.index = spaceCount++;
     spaces[index] = this;
 
@@ -17,7 +17,4 @@ public abstract class Configuration {
     public static final int MACH_OS = 0;
     /* chosen os */
     public static final int OS = MACH_OS;
-    
-    /* Mutator threads */
-    public static final int MUTATOR_COUNT = 1;
 }
@@ -34,7 +34,37 @@ public class Main {
      * testbed exits after 10 gcs (0 means never exit)
      */
     public static int exitAfterSeveralGC = 10;
-
+    
+    /**
+     * number of mutator threads, and number of collector threads (MMTk's parallel collector group)
+     */
+    public static int mutators = 1;
+    public static int collectors = 1;
+    
+    /**
+     * what mutators allocate (see testbed.workload.Workload), and its parameters.
+     * Distributions are fixed:N, uniform:MIN:MAX or exp:MEAN
+     */
+    public static String workload = "random_field";
+    // bytes of non-reference data per object
+    public static String objectSize = "fixed:0";
+    // reference fields per object, uniform:0:maxField if not given
+    public static String objectFields = null;
+    // bytes allocated before a surviving object dies
+    public static String lifetime = "exp:1048576";
+    public static double youngDeathRate = 0.9;
+    // nodes per list/tree/dag
+    public static String structureSize = "exp:256";
+    // allocation trace file to replay
+    public static String trace = null;
+    // reference stores per round, and bytes allocated between rounds, for the barrier workload
+    public static int barrierStores = 1048576;
+    public static int barrierAllocBytes = 1048576;
+    
+    public static String getObjectFields() {
+        return objectFields != null ? objectFields : "uniform:0:" + maxField;
+    }
+    
     public static void main(String[] args) {
         for (int i = 0; i < args.length; i++) {
             Main.println("Process command line args:" + args[i]);
@@ -58,11 +88,52 @@ public class Main {
                 i++;
             } else if (args[i].equals("-enable_sanity_check")) {
                 sanityCheck = true;
+            } else if (args[i].equals("-mutators")) {
+                mutators = Integer.parseInt(args[i+1]);
+                i++;
+            } else if (args[i].equals("-workload")) {
+                workload = args[i+1];
+                i++;
+            } else if (args[i].equals("-object_size")) {
+                objectSize = args[i+1];
+                i++;
+            } else if (args[i].equals("-object_fields")) {
+                objectFields = args[i+1];
+                i++;
+            } else if (args[i].equals("-lifetime")) {
+                lifetime = args[i+1];
+                i++;
+            } else if (args[i].equals("-young_death_rate")) {
+                youngDeathRate = Double.parseDouble(args[i+1]);
+                i++;
+            } else if (args[i].equals("-structure_size")) {
+                structureSize = args[i+1];
+                i++;
+            } else if (args[i].equals("-trace")) {
+                trace = args[i+1];
+                workload = "trace";
+                i++;
+            } else if (args[i].equals("-barrier_stores")) {
+                barrierStores = Integer.parseInt(args[i+1]);
+                i++;
+            } else if (args[i].equals("-barrier_alloc")) {
+                barrierAllocBytes = Integer.parseInt(args[i+1]);
+                i++;
+            } else if (args[i].equals("-plan")) {
+                if (!PlanSelect.select(args[i+1]))
+                    sysFail("unknown plan " + args[i+1] + ", expect NoGC, SS, MS, Immix, GenImmix, MC, RC, GenCopy, GenMS, StickyMS or StickyImmix");
+                i++;
+            } else if (args[i].equals("-collectors")) {
+                collectors = Integer.parseInt(args[i+1]);
+                i++;
             }
         }
         
+        _assert(mutators > 0 && collectors > 0, "need at least one mutator and one collector");
+        
         print("[BOOT]...\n");
         PlanSelect.initPlan();
+        println("Plan: " + PlanSelect.getName());
         TestbedRuntime.boot();
         print("DONE.\n");
         
@@ -123,7 +194,7 @@ public class Main {
         if (!expect)
             sysFail(message);
     }
-
+    
     public static void sysFail(String message) {
         System.out.println("Fail: " + message);
         Thread.dumpStack();
@@ -45,10 +45,15 @@ public class TestbedRuntime {
     }
     
     public static void start() {
-        for (int i = 0; i < Configuration.MUTATOR_COUNT; i++) {
-            // start a mutator
+        // register all mutators first, a gc triggered by the first one waits for all of them
+        Thread[] mutators = new Thread[Main.mutators];
+        for (int i = 0; i < Main.mutators; i++) {
             MMTkContext mutator = new MMTkContext(null);
-            Scheduler.newMutatorThread(mutator);
+            mutators[i] = Scheduler.newMutatorThread(mutator);
         }
+        
+        Scheduler.statisticsAllocStart();
+        for (int i = 0; i < Main.mutators; i++)
+            mutators[i].start();
     }
 }
@@ -18,6 +18,7 @@ import testbed.mminterface.select.PlanSelect;
 import testbed.runtime.ObjectModel;
 import testbed.runtime.Scheduler;
 import testbed.runtime.TestbedObject;
+import testbed.workload.Workload;
 
 @RJavaCore
 public class MMTkContext implements Runnable{  
@@ -27,7 +28,7 @@ public class MMTkContext implements Runnable{
     // which thread is running this context
     Thread thread;
     
-    protected MutatorContext mutator = new MutatorSelect();
+    protected MutatorContext mutator = MutatorSelect.newMutator();
     protected CollectorContext collector;
     
     public MMTkContext() {
@@ -71,19 +72,16 @@ public class MMTkContext implements Runnable{
     public int getId() {
         return id;
     }
-
+    
     public void run() {
+        // so Scheduler.getCurrentContext() can find this context
+        OSConcurrency.setThreadLocal(this);
+        
         if (isCollector()) {
             collector.run();
         } else {
-            Scheduler.statisticsAllocStart();
             // mutator's job
-            
-//            allocSingleObject();
-//            allocExhaustDeadObjects();
-//            allocExhaustObjectsRandomRoot();
-            allocExhaustObjectsRandomRootRandomField();
-//            allocExtremePerformance();
+            Workload.create(this).run();
         }
     }
     
@@ -110,9 +108,10 @@ public class MMTkContext implements Runnable{
             int site = PlanSelect.getPlan().DEFAULT_SITE;
             int size = obj.getSize();
             
-            Address ret = mutator.alloc(size, 0, 0, allocator, site);
-            testbed.runtime.ObjectModel.initializeObject(ret.toObjectReference(), obj);
-            mutator.postAlloc(ret.toObjectReference(), ObjectReference.nullReference(), size, allocator);
+            Address ret = MutatorSelect.alloc(mutator, size, 0, 0, allocator, site);
+            ObjectReference objRef = testbed.runtime.ObjectModel.getObjectFromStartAddress(ret);
+            testbed.runtime.ObjectModel.initializeObject(objRef, obj);
+            MutatorSelect.postAlloc(mutator, objRef, ObjectReference.nullReference(), size, allocator);
             
             allocationVolume += size;
         }
@@ -153,11 +152,21 @@ public class MMTkContext implements Runnable{
         }
     }
     
+    /*
+     * the object being allocated and the objects it will reference are live across gc points,
+     * they are scanned as roots of this thread (see ScanningExt.computeThreadRoots())
+     */
+    public TestbedObject template;
+    // slots of the workload
+    public ObjectReferenceArray roots;
+    public ObjectReferenceArray objectToBeReferenced;
+    public int objectToBeReferencedCount = 0;
+    
     public void allocExhaustObjectsRandomRootRandomField() {
-        TestbedObject obj = new TestbedObject();
+        template = new TestbedObject();
+        TestbedObject obj = template;
         
-        ObjectReferenceArray objectToBeReferenced = ObjectReferenceArray.create(Main.maxField);
-        int fieldCount = 0;
+        objectToBeReferenced = ObjectReferenceArray.create(Main.maxField);
         
         double random;
         
@@ -168,14 +177,14 @@ public class MMTkContext implements Runnable{
             obj.reset();
             
             random = OSNative.random();
-            if (fieldCount == Main.maxField || random <= Main.randomReferencingChance) {
+            if (objectToBeReferencedCount == Main.maxField || random <= Main.randomReferencingChance) {
                 // this object will reference those objects in the array
-                obj.setFieldCount(fieldCount);
-                for (int i = 0; i < fieldCount; i++)
+                obj.setFieldCount(objectToBeReferencedCount);
+                for (int i = 0; i < objectToBeReferencedCount; i++)
                     obj.setField(i, objectToBeReferenced.get(i));
                 
                 // reset stored objects
-                fieldCount = 0;
+                objectToBeReferencedCount = 0;
             } else {
                 // this object will have no field, we dont need to do anything here
             }
@@ -193,44 +202,24 @@ public class MMTkContext implements Runnable{
             // will this obj be referenced?
             random = OSNative.random();
             if (random <= Main.randomReferencedChance) {
-                objectToBeReferenced.set(fieldCount, objRef);
-                fieldCount++;
+                objectToBeReferenced.set(objectToBeReferencedCount, objRef);
+                objectToBeReferencedCount++;
             }
         }
     }
-
-    private int gcState;
-    public static final int MUTATOR = 0;
-    public static final int GOING_TO_BLOCK = 1;
-    public static final int BLOCK = 2;
     
-    public int getGCState() {
-        return gcState;
-    }
+    private boolean blocked;
+    
     public boolean isBlocked() {
-        return gcState == BLOCK;
+        return blocked;
     }
-    public boolean shouldSuspendThisContext() {
-        return gcState == MUTATOR;
-    }
-    public void informGoingToBlock() {
-        gcState = GOING_TO_BLOCK;
+    public void setBlocked(boolean blocked) {
+        this.blocked = blocked;
     }
     
     public static final Object blockLock = new Object();
     
     public void blockForGC() {
-        synchronized (blockLock) {
-            try {
-                gcState = BLOCK;
-                blockLock.wait();
-            } catch (InterruptedException ignore) {}
-        }
-    }    
-    public void unblockAfterGC() {
-        synchronized (blockLock) {
-            gcState = MUTATOR;
-            blockLock.notify();
-        }
+        Scheduler.block(this);
     }
 }
@@ -12,6 +12,7 @@ import org.vmmagic.unboxed.ObjectReference;
 import testbed.Configuration;
 import testbed.Main;
 import testbed.TestbedRuntime;
+import testbed.mminterface.select.MutatorSelect;
 import testbed.mminterface.select.PlanSelect;
 import testbed.runtime.Heap;
 import testbed.runtime.Scheduler;
@@ -22,6 +23,8 @@ public class MemoryManager {
     public static Heap heap;
     
     public static void boot() {
+        testbed.runtime.ObjectModel.boot();
+        
         Main.print("-Set heap\n");
         heap = new Heap();
         Mmapper.boot();
@@ -52,9 +55,10 @@ public class MemoryManager {
         int size = object.getSize();
         
         MutatorContext mutator = Scheduler.getCurrentContext().mutator();
-        Address ret = mutator.alloc(size, align, offset, allocator, site);
+        Address start = MutatorSelect.alloc(mutator, size, align, offset, allocator, site);
+        Address ret = start.plus(testbed.runtime.ObjectModel.gcHeaderBytes);
         testbed.runtime.ObjectModel.initializeObject(ret.toObjectReference(), object);
-        mutator.postAlloc(ret.toObjectReference(), ObjectReference.nullReference(), size, allocator);
+        MutatorSelect.postAlloc(mutator, ret.toObjectReference(), ObjectReference.nullReference(), size, allocator);
         
         if (ret.toLong() % 4 != 0)
             Main.sysFail("return address:" + ret.toLong() + " is not aligned to 4");
@@ -1,17 +1,45 @@
 package testbed.mminterface.select;
 
-//import org.mmtk.plan.marksweep.MSConstraints;
+import org.mmtk.plan.PlanConstraints;
+import org.mmtk.plan.generational.copying.GenCopyConstraints;
+import org.mmtk.plan.generational.immix.GenImmixConstraints;
+import org.mmtk.plan.generational.marksweep.GenMSConstraints;
+import org.mmtk.plan.immix.ImmixConstraints;
+import org.mmtk.plan.markcompact.MCConstraints;
+import org.mmtk.plan.marksweep.MSConstraints;
+import org.mmtk.plan.nogc.NoGCConstraints;
+import org.mmtk.plan.refcount.fullheap.RCConstraints;
 import org.mmtk.plan.semispace.SSConstraints;
+import org.mmtk.plan.stickyimmix.StickyImmixConstraints;
+import org.mmtk.plan.stickyms.StickyMSConstraints;
 import org.rjava.restriction.rulesets.RJavaCore;
 
 @RJavaCore
-public class ConstraintsSelect extends SSConstraints {
-//public class ConstraintsSelect extends MSConstraints {
-    private static final ConstraintsSelect constraints = new ConstraintsSelect();
+public class ConstraintsSelect {
+    private static PlanConstraints constraints;
     
     private ConstraintsSelect() {}
     
-    public static ConstraintsSelect getConstraints() {
+    /**
+     * create the constraints of the plan selected in PlanSelect
+     */
+    public static void initConstraints() {
+        switch (PlanSelect.selected) {
+        case PlanSelect.NOGC:       constraints = new NoGCConstraints(); break;
+        case PlanSelect.SS:         constraints = new SSConstraints(); break;
+        case PlanSelect.MS:         constraints = new MSConstraints(); break;
+        case PlanSelect.IMMIX:      constraints = new ImmixConstraints(); break;
+        case PlanSelect.GENIMMIX:   constraints = new GenImmixConstraints(); break;
+        case PlanSelect.MC:         constraints = new MCConstraints(); break;
+        case PlanSelect.RC:         constraints = new RCConstraints(); break;
+        case PlanSelect.GENCOPY:    constraints = new GenCopyConstraints(); break;
+        case PlanSelect.GENMS:      constraints = new GenMSConstraints(); break;
+        case PlanSelect.STICKYMS:   constraints = new StickyMSConstraints(); break;
+        case PlanSelect.STICKYIMMIX: constraints = new StickyImmixConstraints(); break;
+        }
+    }
+    
+    public static PlanConstraints getConstraints() {
         return constraints;
     }
 }
@@ -1,10 +1,101 @@
 package testbed.mminterface.select;
 
-//import org.mmtk.plan.marksweep.MSMutator;
+import org.mmtk.plan.MutatorContext;
+import org.mmtk.plan.generational.GenMutator;
+import org.mmtk.plan.generational.copying.GenCopyMutator;
+import org.mmtk.plan.generational.immix.GenImmixMutator;
+import org.mmtk.plan.generational.marksweep.GenMSMutator;
+import org.mmtk.plan.immix.ImmixMutator;
+import org.mmtk.plan.markcompact.MCMutator;
+import org.mmtk.plan.marksweep.MSMutator;
+import org.mmtk.plan.nogc.NoGCMutator;
+import org.mmtk.plan.refcount.fullheap.RCMutator;
 import org.mmtk.plan.semispace.SSMutator;
+import org.mmtk.plan.stickyimmix.StickyImmixMutator;
+import org.mmtk.plan.stickyms.StickyMSMutator;
 import org.rjava.restriction.rulesets.RJavaCore;
+import org.vmmagic.pragma.Inline;
+import org.vmmagic.unboxed.Address;
+import org.vmmagic.unboxed.ObjectReference;
+import org.vmmagic.unboxed.Word;
 
+/**
+ * mutator contexts of the selected plan, and the allocation sequence and write barrier dispatched on PlanSelect.selected.
+ * Each case casts the mutator to its concrete (leaf) class, so the compiler calls alloc()/postAlloc()/objectReferenceWrite()
+ * directly and they can be inlined, instead of going through the class struct of MutatorContext
+ */
 @RJavaCore
-public class MutatorSelect extends SSMutator {
-//public class MutatorSelect extends MSMutator {
+public class MutatorSelect {
+    private MutatorSelect() {}
+    
+    public static MutatorContext newMutator() {
+        switch (PlanSelect.selected) {
+        case PlanSelect.NOGC:       return new NoGCMutator();
+        case PlanSelect.SS:         return new SSMutator();
+        case PlanSelect.MS:         return new MSMutator();
+        case PlanSelect.IMMIX:      return new ImmixMutator();
+        case PlanSelect.GENIMMIX:   return new GenImmixMutator();
+        case PlanSelect.MC:         return new MCMutator();
+        case PlanSelect.RC:         return new RCMutator();
+        case PlanSelect.GENCOPY:    return new GenCopyMutator();
+        case PlanSelect.GENMS:      return new GenMSMutator();
+        case PlanSelect.STICKYMS:   return new StickyMSMutator();
+        case PlanSelect.STICKYIMMIX: return new StickyImmixMutator();
+        }
+        return null;
+    }
+    
+    @Inline
+    public static Address alloc(MutatorContext mutator, int bytes, int align, int offset, int allocator, int site) {
+        switch (PlanSelect.selected) {
+        case PlanSelect.NOGC:       return ((NoGCMutator) mutator).alloc(bytes, align, offset, allocator, site);
+        case PlanSelect.SS:         return ((SSMutator) mutator).alloc(bytes, align, offset, allocator, site);
+        case PlanSelect.MS:         return ((MSMutator) mutator).alloc(bytes, align, offset, allocator, site);
+        case PlanSelect.IMMIX:      return ((ImmixMutator) mutator).alloc(bytes, align, offset, allocator, site);
+        case PlanSelect.GENIMMIX:   return ((GenImmixMutator) mutator).alloc(bytes, align, offset, allocator, site);
+        case PlanSelect.MC:         return ((MCMutator) mutator).alloc(bytes, align, offset, allocator, site);
+        case PlanSelect.RC:         return ((RCMutator) mutator).alloc(bytes, align, offset, allocator, site);
+        case PlanSelect.GENCOPY:    return ((GenCopyMutator) mutator).alloc(bytes, align, offset, allocator, site);
+        case PlanSelect.GENMS:      return ((GenMSMutator) mutator).alloc(bytes, align, offset, allocator, site);
+        case PlanSelect.STICKYMS:   return ((StickyMSMutator) mutator).alloc(bytes, align, offset, allocator, site);
+        case PlanSelect.STICKYIMMIX: return ((StickyImmixMutator) mutator).alloc(bytes, align, offset, allocator, site);
+        }
+        return mutator.alloc(bytes, align, offset, allocator, site);
+    }
+    
+    @Inline
+    public static void postAlloc(MutatorContext mutator, ObjectReference ref, ObjectReference typeRef, int bytes, int allocator) {
+        switch (PlanSelect.selected) {
+        case PlanSelect.NOGC:       ((NoGCMutator) mutator).postAlloc(ref, typeRef, bytes, allocator); return;
+        case PlanSelect.SS:         ((SSMutator) mutator).postAlloc(ref, typeRef, bytes, allocator); return;
+        case PlanSelect.MS:         ((MSMutator) mutator).postAlloc(ref, typeRef, bytes, allocator); return;
+        case PlanSelect.IMMIX:      ((ImmixMutator) mutator).postAlloc(ref, typeRef, bytes, allocator); return;
+        case PlanSelect.GENIMMIX:   ((GenImmixMutator) mutator).postAlloc(ref, typeRef, bytes, allocator); return;
+        case PlanSelect.MC:         ((MCMutator) mutator).postAlloc(ref, typeRef, bytes, allocator); return;
+        case PlanSelect.RC:         ((RCMutator) mutator).postAlloc(ref, typeRef, bytes, allocator); return;
+        case PlanSelect.GENCOPY:    ((GenCopyMutator) mutator).postAlloc(ref, typeRef, bytes, allocator); return;
+        case PlanSelect.GENMS:      ((GenMSMutator) mutator).postAlloc(ref, typeRef, bytes, allocator); return;
+        case PlanSelect.STICKYMS:   ((StickyMSMutator) mutator).postAlloc(ref, typeRef, bytes, allocator); return;
+        case PlanSelect.STICKYIMMIX: ((StickyImmixMutator) mutator).postAlloc(ref, typeRef, bytes, allocator); return;
+        }
+        mutator.postAlloc(ref, typeRef, bytes, allocator);
+    }
+    
+    /**
+     * the write barrier of plans that need one (PlanConstraints.needsObjectReferenceWriteBarrier()). The barrier
+     * does the store (BarriersExt) after its own work, e.g. remembering the slot or logging src
+     */
+    @Inline
+    public static void objectReferenceWrite(MutatorContext mutator, ObjectReference src, Address slot, ObjectReference value, Word metaDataA, Word metaDataB, int mode) {
+        switch (PlanSelect.selected) {
+        // GenMutator.objectReferenceWrite() is final
+        case PlanSelect.GENIMMIX:
+        case PlanSelect.GENCOPY:
+        case PlanSelect.GENMS:      ((GenMutator) mutator).objectReferenceWrite(src, slot, value, metaDataA, metaDataB, mode); return;
+        case PlanSelect.RC:         ((RCMutator) mutator).objectReferenceWrite(src, slot, value, metaDataA, metaDataB, mode); return;
+        case PlanSelect.STICKYMS:   ((StickyMSMutator) mutator).objectReferenceWrite(src, slot, value, metaDataA, metaDataB, mode); return;
+        case PlanSelect.STICKYIMMIX: ((StickyImmixMutator) mutator).objectReferenceWrite(src, slot, value, metaDataA, metaDataB, mode); return;
+        }
+        mutator.objectReferenceWrite(src, slot, value, metaDataA, metaDataB, mode);
+    }
 }
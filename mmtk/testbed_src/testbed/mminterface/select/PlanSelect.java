@@ -1,27 +1,119 @@
 package testbed.mminterface.select;
 
-//import org.mmtk.plan.marksweep.MS;
+import org.mmtk.plan.Plan;
+import org.mmtk.plan.generational.copying.GenCopy;
+import org.mmtk.plan.generational.immix.GenImmix;
+import org.mmtk.plan.generational.marksweep.GenMS;
+import org.mmtk.plan.immix.Immix;
+import org.mmtk.plan.markcompact.MC;
+import org.mmtk.plan.marksweep.MS;
+import org.mmtk.plan.nogc.NoGC;
+import org.mmtk.plan.refcount.fullheap.RC;
 import org.mmtk.plan.semispace.SS;
+import org.mmtk.plan.stickyimmix.StickyImmix;
+import org.mmtk.plan.stickyms.StickyMS;
 import org.rjava.restriction.rulesets.RJavaCore;
 import org.vmmagic.pragma.Inline;
 
+/**
+ * all plans are linked into the testbed, one of them is selected by -plan before boot.
+ * The selection never changes after boot, so MutatorSelect can dispatch on it to a monomorphic call
+ *
+ * As every plan is linked, the class initializer of every plan runs and creates its spaces, selected or not
+ * (see Space.MAX_SPACES). An unused discontiguous space only costs its Space object, it takes chunks from the
+ * shared pool when it allocates. So all plan spaces are discontiguous (MC asked for 60% of the heap), except
+ * the Gen nursery, which keeps its 15% at the top of the heap for the address compare in inNursery(), and is
+ * reserved whichever plan is selected. Space names are unique (e.g. gen-ms vs ms), so stats tell them apart.
+ * StickyMS and StickyImmix use the spaces of MS and Immix.
+ */
 @RJavaCore
-public class PlanSelect extends SS {
-//public class PlanSelect extends MS {
-    private static PlanSelect plan;
+public class PlanSelect {
+    public static final int NOGC = 0;
+    public static final int SS = 1;
+    public static final int MS = 2;
+    public static final int IMMIX = 3;
+    public static final int GENIMMIX = 4;
+    public static final int MC = 5;
+    public static final int RC = 6;
+    public static final int GENCOPY = 7;
+    public static final int GENMS = 8;
+    public static final int STICKYMS = 9;
+    public static final int STICKYIMMIX = 10;
+    
+    public static int selected = SS;
+    
+    private static Plan plan;
     
     private PlanSelect() {}
     
+    /**
+     * @param name NoGC, SS, MS, Immix, GenImmix, MC, RC, GenCopy, GenMS, StickyMS or StickyImmix
+     * @return false if there is no such plan
+     */
+    public static boolean select(String name) {
+        if (name.equals("NoGC"))
+            selected = NOGC;
+        else if (name.equals("SS"))
+            selected = SS;
+        else if (name.equals("MS"))
+            selected = MS;
+        else if (name.equals("Immix"))
+            selected = IMMIX;
+        else if (name.equals("GenImmix"))
+            selected = GENIMMIX;
+        else if (name.equals("MC"))
+            selected = MC;
+        else if (name.equals("RC"))
+            selected = RC;
+        else if (name.equals("GenCopy"))
+            selected = GENCOPY;
+        else if (name.equals("GenMS"))
+            selected = GENMS;
+        else if (name.equals("StickyMS"))
+            selected = STICKYMS;
+        else if (name.equals("StickyImmix"))
+            selected = STICKYIMMIX;
+        else return false;
+        
+        return true;
+    }
+    
     public static void initPlan() {
-        plan = new PlanSelect();
+        switch (selected) {
+        case NOGC:      plan = new NoGC(); break;
+        case SS:        plan = new SS(); break;
+        case MS:        plan = new MS(); break;
+        case IMMIX:     plan = new Immix(); break;
+        case GENIMMIX:  plan = new GenImmix(); break;
+        case MC:        plan = new MC(); break;
+        case RC:        plan = new RC(); break;
+        case GENCOPY:   plan = new GenCopy(); break;
+        case GENMS:     plan = new GenMS(); break;
+        case STICKYMS:  plan = new StickyMS(); break;
+        case STICKYIMMIX: plan = new StickyImmix(); break;
+        }
+        ConstraintsSelect.initConstraints();
     }
     
     public static String getName() {
-        return "org.mmtk.plan.semispace.SS";
+        switch (selected) {
+        case NOGC:      return "org.mmtk.plan.nogc.NoGC";
+        case SS:        return "org.mmtk.plan.semispace.SS";
+        case MS:        return "org.mmtk.plan.marksweep.MS";
+        case IMMIX:     return "org.mmtk.plan.immix.Immix";
+        case GENIMMIX:  return "org.mmtk.plan.generational.immix.GenImmix";
+        case MC:        return "org.mmtk.plan.markcompact.MC";
+        case RC:        return "org.mmtk.plan.refcount.fullheap.RC";
+        case GENCOPY:   return "org.mmtk.plan.generational.copying.GenCopy";
+        case GENMS:     return "org.mmtk.plan.generational.marksweep.GenMS";
+        case STICKYMS:  return "org.mmtk.plan.stickyms.StickyMS";
+        case STICKYIMMIX: return "org.mmtk.plan.stickyimmix.StickyImmix";
+        }
+        return null;
     }
     
     @Inline
-    public static PlanSelect getPlan() {
+    public static Plan getPlan() {
         return plan;
     }
 }
@@ -6,9 +6,13 @@ import org.mmtk.plan.Plan;
 import org.mmtk.plan.PlanConstraints;
 import org.mmtk.utility.Log;
 import org.mmtk.vm.ActivePlan;
+import org.rjava.osext.OSAtomic;
+import org.rjava.osext.OSMemory;
 import org.rjava.restriction.rulesets.RJavaCore;
+import org.vmmagic.unboxed.Address;
 
 import testbed.Configuration;
+import testbed.Constants;
 import testbed.Main;
 import testbed.TestbedRuntime;
 import testbed.mminterface.MMTkContext;
@@ -22,27 +26,27 @@ public class ActivePlanExt extends ActivePlan {
     public Plan global() {
         return PlanSelect.getPlan();
     }
-
+    
     @Override
     public PlanConstraints constraints() {
         return ConstraintsSelect.getConstraints();
     }
-
+    
     @Override
     public CollectorContext collector() {
         return Scheduler.getCurrentContext().collector();
     }
-
+    
     @Override
     public boolean isMutator() {
         return !Scheduler.getCurrentContext().isCollector();
     }
-
+    
     @Override
     public MutatorContext mutator() {
         return Scheduler.getCurrentContext().mutator();
     }
-
+    
     Log tempLog = new Log();
     
     @Override
@@ -52,26 +56,25 @@ public class ActivePlanExt extends ActivePlan {
         
         return Scheduler.getCurrentContext().mutator().getLog();
     }
-
+    
     @Override
     public int collectorCount() {
         return Scheduler.collectorCount;
     }
-
-    int mutatorIdCursor = 0;
+    
+    // collectors iterate mutators in parallel, each claims the next one
+    private Address mutatorCursor = OSMemory.malloc(Constants.BYTES_IN_INT);
     
     @Override
     public void resetMutatorIterator() {
-        mutatorIdCursor = 0;
+        OSAtomic.storeRelease(mutatorCursor, 0);
     }
-
+    
     @Override
     public MutatorContext getNextMutator() {
-        for (int i = mutatorIdCursor; i < Scheduler.mutatorCount; i++)
-            if (Scheduler.mutatorContexts[i] != null) {
-                mutatorIdCursor++;
-                return Scheduler.mutatorContexts[i].mutator();
-            }
+        int i = OSAtomic.fetchAndAdd(mutatorCursor, 1);
+        if (i < Scheduler.mutatorCount)
+            return Scheduler.mutatorContexts[i].mutator();
         
         return null;
     }
@@ -19,46 +19,45 @@ public class CollectionExt extends Collection {
     public void spawnCollectorContext(CollectorContext context) {
         Scheduler.newCollectorThread(new MMTkContext(context));
     }
-
+    
     @Override
     public int getDefaultThreads() {
-        // FIXME: need to be configurable
-        return 1;
+        return Main.collectors;
     }
-
+    
     @Override
     public int getActiveThreads() {
-        return 1;
+        return Main.collectors;
     }
-
+    
     @Override
     @Unpreemptible
     public void blockForGC() {
         Scheduler.currentThreadBlockForGC();
     }
-
+    
     @Override
     public void prepareMutator(MutatorContext m) {
         // do nothing
     }
-
+    
     @Override
     public void requestMutatorFlush() {
         Scheduler.getCurrentContext().mutator().flush();
     }
-
+    
     @Override
     @Unpreemptible
     public void stopAllMutators() {
         Scheduler.stopAllMutators();
     }
-
+    
     @Override
     @Unpreemptible
     public void resumeAllMutators() {
         Scheduler.resumeAllMutators();
     }
-
+    
     @Override
     public void outOfMemory() {
         Main.sysFail("Out of memory");
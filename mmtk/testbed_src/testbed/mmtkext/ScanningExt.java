@@ -1,5 +1,6 @@
 package testbed.mmtkext;
 
+import org.mmtk.plan.CollectorContext;
 import org.mmtk.plan.TraceLocal;
 import org.mmtk.plan.TransitiveClosure;
 import org.mmtk.vm.Scanning;
@@ -7,6 +8,7 @@ import org.rjava.ext.RJavaExt;
 import org.rjava.restriction.rulesets.RJavaCore;
 import org.vmmagic.unboxed.Address;
 import org.vmmagic.unboxed.ObjectReference;
+import org.vmmagic.unboxed.ObjectReferenceArray;
 
 import testbed.Constants;
 import testbed.Main;
@@ -27,53 +29,86 @@ public class ScanningExt extends Scanning {
             cursor = cursor.plus(Constants.OBJECTREFERENCE_LENGTH_IN_BYTES);
         }
     }
-
+    
     @Override
     public void specializedScanObject(int id, TransitiveClosure trace,
             ObjectReference object) {
         scanObject(trace, object);
     }
-
+    
     @Override
     public void resetThreadCounter() {
-        // TODO: 
+        Scheduler.resetThreadCounter();
     }
-
+    
     @Override
     public void computeStaticRoots(TraceLocal trace) {
         // TODO Auto-generated method stub
     }
-
+    
+    /**
+     * every collector calls this, so each scans its own share of the global roots
+     */
     @Override
     public void computeGlobalRoots(TraceLocal trace) {
-        for (int i = 0; i < TestbedRuntime.rootsCount; i++) {
+        CollectorContext collector = Scheduler.getCurrentContext().collector();
+        int workers = collector.parallelWorkerCount();
+        int chunk = (TestbedRuntime.rootsCount + workers - 1) / workers;
+        int start = collector.parallelWorkerOrdinal() * chunk;
+        int end = start + chunk;
+        if (end > TestbedRuntime.rootsCount)
+            end = TestbedRuntime.rootsCount;
+        
+        for (int i = start; i < end; i++) {
             Address slot = RJavaExt.getArrayEleAddress(TestbedRuntime.globalRoots, i);
             trace.processRootEdge(slot, true);
         }
     }
-
+    
+    /**
+     * collectors claim mutators one by one, and scan the references a mutator holds across gc points
+     */
     @Override
     public void computeThreadRoots(TraceLocal trace) {
-        // TODO Auto-generated method stub
+        MMTkContext mutator;
+        while ((mutator = Scheduler.claimThreadToScan()) != null) {
+            if (mutator.objectToBeReferenced != null) {
+                for (int i = 0; i < mutator.objectToBeReferencedCount; i++)
+                    trace.processRootEdge(RJavaExt.getArrayEleAddress(mutator.objectToBeReferenced, i), true);
+            }
+            
+            if (mutator.template != null) {
+                ObjectReferenceArray fields = mutator.template.getFields();
+                for (int i = 0; i < mutator.template.getFieldCount(); i++)
+                    trace.processRootEdge(RJavaExt.getArrayEleAddress(fields, i), true);
+            }
+            
+            // slots of the workload (see testbed.workload.Workload)
+            if (mutator.roots != null) {
+                for (int i = 0; i < mutator.roots.length(); i++)
+                    if (!mutator.roots.get(i).isNull())
+                        trace.processRootEdge(RJavaExt.getArrayEleAddress(mutator.roots, i), true);
+            }
+        }
     }
-
+    
     @Override
     public void computeBootImageRoots(TraceLocal trace) {
         // TODO Auto-generated method stub
-
+    
     }
-
+    
     @Override
     public void notifyInitialThreadScanComplete(boolean partialScan) {
         Scheduler.getCurrentContext().mutator().flushRememberedSets();
     }
-
+    
     @Override
     public void computeNewThreadRoots(TraceLocal trace) {
         // TODO Auto-generated method stub
         
     }
-
+    
     @Override
     public boolean supportsReturnBarrier() {
         // TODO Auto-generated method stub
@@ -1,11 +1,15 @@
 package testbed.mmtkext;
 
+import org.mmtk.utility.statistics.PerfEvent;
 import org.mmtk.vm.Statistics;
+import org.rjava.osext.OSNative;
 import org.rjava.restriction.rulesets.RJavaCore;
 import org.vmmagic.pragma.Interruptible;
 
 @RJavaCore
 public class StatisticsExt extends Statistics {
+    // perf events given by the PerfEvents option, they report with the rest of Stats
+    private PerfEvent[] perfEvents;
 
     @Override
     public long nanoTime() {
@@ -34,19 +38,21 @@ public class StatisticsExt extends Statistics {
 
     @Override
     public long cycles() {
-        // TODO Auto-generated method stub
-        return 0;
+        return OSNative.cycles();
     }
 
     @Override
     @Interruptible
     public void perfEventInit(String events) {
-
+        int n = OSNative.perfEventInit(events);
+        perfEvents = new PerfEvent[n];
+        for (int i = 0; i < n; i++)
+            perfEvents[i] = new PerfEvent(i, OSNative.perfEventName(i));
     }
 
     @Override
     public void perfEventRead(int counter, long[] values) {
-
+        OSNative.perfEventRead(counter, values);
     }
 
 }
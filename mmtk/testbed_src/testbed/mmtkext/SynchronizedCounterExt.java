@@ -1,30 +1,36 @@
 package testbed.mmtkext;
 
 import org.mmtk.vm.SynchronizedCounter;
+import org.rjava.osext.OSAtomic;
+import org.rjava.osext.OSMemory;
 import org.rjava.restriction.rulesets.RJavaCore;
+import org.vmmagic.unboxed.Address;
+
+import testbed.Constants;
 
 @RJavaCore
 public class SynchronizedCounterExt extends SynchronizedCounter {
-    // TODO: this counter is not synchronized
-    private int count = 0;
-
+    // the count lives outside the heap, so atomic operations can work on its address
+    private Address count;
+    
+    public SynchronizedCounterExt() {
+        count = OSMemory.malloc(Constants.BYTES_IN_INT);
+        OSAtomic.storeRelease(count, 0);
+    }
+    
     @Override
     public int reset() {
-        int val = count;
-        count = 0;
-        return val;
+        return OSAtomic.exchange(count, 0);
     }
-
+    
     @Override
     public int increment() {
-        int val = count;
-        count++;
-        return val;
+        return OSAtomic.fetchAndAdd(count, 1);
     }
-
+    
     @Override
     public int peek() {
-        return count;
+        return OSAtomic.loadAcquire(count);
     }
 
 }
@@ -1,5 +1,6 @@
 package testbed.runtime;
 
+import org.mmtk.plan.MutatorContext;
 import org.rjava.restriction.rulesets.RJavaCore;
 import org.vmmagic.pragma.Inline;
 import org.vmmagic.unboxed.Address;
@@ -10,6 +11,8 @@ import org.vmmagic.unboxed.Word;
 import testbed.Constants;
 import testbed.Main;
 import testbed.mminterface.MMTkConstants;
+import testbed.mminterface.select.ConstraintsSelect;
+import testbed.mminterface.select.MutatorSelect;
 
 @RJavaCore
 public abstract class ObjectModel {
@@ -23,7 +26,26 @@ public abstract class ObjectModel {
     public static final Offset OFFSET_FIELD_COUNT   = Offset.fromIntZeroExtend(12);
     public static final Offset OFFSET_FIELD_START   = Offset.fromIntZeroExtend(16);
     
-    public static final Offset OFFSET_GC_HEADER     = OFFSET_HEADER.minus(MMTkConstants.GC_HEADER_BYTES());
+    // the GC header depends on the plan selected at runtime, see boot()
+    public static int gcHeaderBytes;
+    public static Offset OFFSET_GC_HEADER;
+    // whether reference stores into objects go through the plan's write barrier (see writeField())
+    public static boolean writeBarrier;
+    
+    /**
+     * called once the plan is selected. Object size counts the GC header as well, an object
+     * starts gcHeaderBytes before its ObjectReference
+     */
+    public static void boot() {
+        gcHeaderBytes = MMTkConstants.GC_HEADER_BYTES();
+        OFFSET_GC_HEADER = OFFSET_HEADER.minus(gcHeaderBytes);
+        writeBarrier = ConstraintsSelect.getConstraints().needsObjectReferenceWriteBarrier();
+    }
+    
+    @Inline
+    public static ObjectReference getObjectFromStartAddress(Address start) {
+        return start.plus(gcHeaderBytes).toObjectReference();
+    }
     
     @Inline
     public static final void initializeObject(ObjectReference objRef, TestbedObject object) {
@@ -46,6 +68,52 @@ public abstract class ObjectModel {
         }            
     }
     
+    @Inline
+    public static Offset fieldOffset(int index) {
+        return OFFSET_FIELD_START.plus(index * Constants.OBJECTREFERENCE_LENGTH_IN_BYTES);
+    }
+    
+    @Inline
+    public static int getFieldCount(ObjectReference objRef) {
+        return objRef.toAddress().loadInt(OFFSET_FIELD_COUNT);
+    }
+    
+    @Inline
+    public static ObjectReference readField(ObjectReference objRef, int index) {
+        return objRef.toAddress().loadObjectReference(fieldOffset(index));
+    }
+    
+    /**
+     * store value into the index-th reference field of an object allocated before, through the write barrier of
+     * the plan if it has one (generational, sticky and RC plans). The caller checks index against the field count.
+     *
+     * initializeObject() stores the fields of a new object without the barrier, as plans deal with the fields of new
+     * objects themselves (a new object is in the nursery, or RC increments its fields when it is first reached)
+     */
+    @Inline
+    public static void writeField(MutatorContext mutator, ObjectReference objRef, int index, ObjectReference value) {
+        Offset offset = fieldOffset(index);
+        if (writeBarrier)
+            MutatorSelect.objectReferenceWrite(mutator, objRef, objRef.toAddress().plus(offset), value, offset.toWord(), Word.zero(), org.mmtk.utility.Constants.INSTANCE_FIELD);
+        else objRef.toAddress().store(value, offset);
+    }
+    
+    /**
+     * writeField() by the current mutator
+     */
+    public static void writeField(ObjectReference objRef, int index, ObjectReference value) {
+        writeField(Scheduler.getCurrentContext().mutator(), objRef, index, value);
+    }
+    
+    /**
+     * store without the barrier. Only safe if it does not create a reference the plan needs to know about,
+     * e.g. storing back what is already in the field (see testbed.workload.BarrierWorkload)
+     */
+    @Inline
+    public static void writeFieldNoBarrier(ObjectReference objRef, int index, ObjectReference value) {
+        objRef.toAddress().store(value, fieldOffset(index));
+    }
+    
     public static void initializeCopiedObject(ObjectReference fromObj, ObjectReference toObj) {
         Address from = fromObj.toAddress();
         Address to = toObj.toAddress();
@@ -73,7 +141,8 @@ public abstract class ObjectModel {
     }
     
     public static int objectMinSize() {
-        return testbed.Constants.WORD_LENGTH_IN_BYTES * 2+ // header + client header
+        return gcHeaderBytes +
+                testbed.Constants.WORD_LENGTH_IN_BYTES * 2+ // header + client header
                 testbed.Constants.INT_IN_BYTES + // size
                 testbed.Constants.INT_IN_BYTES;// field count
     }
@@ -1,26 +1,41 @@
 package testbed.runtime;
 
+import org.rjava.osext.OSAtomic;
 import org.rjava.osext.OSConcurrency;
+import org.rjava.osext.OSMemory;
 import org.rjava.restriction.rules.RegisterField;
 import org.rjava.restriction.rulesets.RJavaCore;
 import org.vmmagic.pragma.Inline;
+import org.vmmagic.unboxed.Address;
 
-import testbed.Configuration;
+import testbed.Constants;
 import testbed.Main;
 import testbed.mminterface.MMTkContext;
 
 @RJavaCore
 public class Scheduler {
-    private static final int MAX_THREADS = 10;    
     private static int threadCount = 0;
     
     public static int collectorCount = 0;
-    public static MMTkContext[] collectorContexts = new MMTkContext[MAX_THREADS];
+    public static MMTkContext[] collectorContexts;
     
     public static int mutatorCount = 0;
-    public static MMTkContext[] mutatorContexts = new MMTkContext[MAX_THREADS];
+    public static MMTkContext[] mutatorContexts;
+    
+    // collectors scan thread roots in parallel, each claims the next mutator with this cursor
+    private static Address threadScanCursor;
     
     public static void boot() {
+        collectorContexts = new MMTkContext[Main.collectors];
+        mutatorContexts = new MMTkContext[Main.mutators];
+        
+        threadScanCursor = OSMemory.malloc(Constants.BYTES_IN_INT);
+        OSAtomic.storeRelease(threadScanCursor, 0);
+        
+        allocRate = new double[Main.exitAfterSeveralGC];
+        pauseTime = new double[Main.exitAfterSeveralGC];
+        mutatorAllocRateSum = new double[Main.mutators];
+        
         registerMainThread();
     }
     
@@ -31,12 +46,17 @@ public class Scheduler {
     public static void registerMainThread() {
         mainThreadId = Thread.currentThread().getId();
         mainContext = new MMTkContext(null);
+        OSConcurrency.setThreadLocal(mainContext);
     }
     
     private static Object newThreadLock = new Object();
-    public static void newMutatorThread(MMTkContext mutator) {
-        Thread t = newThread(mutator);        
-        t.start();
+    
+    /**
+     * register a mutator, and return its thread without starting it.
+     * All mutators should be registered before any of them starts, since stopAllMutators() waits for mutatorCount of them
+     */
+    public static Thread newMutatorThread(MMTkContext mutator) {
+        return newThread(mutator);
     }
     
     public static void newCollectorThread(MMTkContext collector) {
@@ -46,15 +66,16 @@ public class Scheduler {
     
     private static Thread newThread(MMTkContext context) {
         Thread t = new Thread(context);
-        Main._assert(collectorCount + mutatorCount < MAX_THREADS, "creating collector when max thread is reached");
         
         synchronized(newThreadLock) {
             threadCount++;
             context.setThread(t);
             if (context.isCollector()) {
+                Main._assert(collectorCount < collectorContexts.length, "creating more collectors than " + collectorContexts.length);
                 collectorContexts[collectorCount] = context;
                 collectorCount++;
             } else {
+                Main._assert(mutatorCount < mutatorContexts.length, "creating more mutators than " + mutatorContexts.length);
                 mutatorContexts[mutatorCount] = context;
                 mutatorCount++;
             }
@@ -67,21 +88,17 @@ public class Scheduler {
         return Thread.currentThread();
     }
     
+    /**
+     * every context thread stores its context in the thread local slot when it starts running (see MMTkContext.run())
+     */
+    @Inline
     public static MMTkContext getCurrentContext() {
-        Thread current = getCurrentThread();
+        MMTkContext current = (MMTkContext) OSConcurrency.getThreadLocal();
         
-        for (int i = 0; i < mutatorCount; i++)
-            if (mutatorContexts[i].getThread().getId() == current.getId())
-                return mutatorContexts[i];
-        for (int i = 0; i < collectorCount; i++)
-            if (collectorContexts[i].getThread().getId() == current.getId())
-                return collectorContexts[i];        
+        if (current == null)
+            Main.sysFail("Failed to find current context, current thread: " + getCurrentThread().getName());
         
-        if (current.getId() == mainThreadId)
-            return mainContext;
-        
-        Main.sysFail("Failed to find current context, current thread: " + current.getName());
-        return null;
+        return current;
     }
     
     //@RegisterField
@@ -94,51 +111,66 @@ public class Scheduler {
     
     public static final Object gcStateChangeLock = new Object();
     
+    /*
+     * handshake between the collector and mutators, guarded by MMTkContext.blockLock.
+     * A mutator counts itself in mutatorsBlocked and waits until gcEpoch changes, the collector waits until
+     * all mutators are counted. Both sides sleep on blockLock instead of spinning
+     */
+    private static int mutatorsBlocked = 0;
+    private static int gcEpoch = 0;
+    
     /*
      * The best result is to have only adequate polling points that are necessary and sufficient.
      * 1. The mandatory polling points are the allocation sites. Allocation can trigger collection, so allocation site has to be a safe point.
-     * 2. Long-time execution are always associated with method call or loop. So call sites and loop back sites are also expected polling points. 
+     * 2. Long-time execution are always associated with method call or loop. So call sites and loop back sites are also expected polling points.
      * http://xiao-feng.blogspot.com.au/2008/01/gc-safe-point-and-safe-region.html
      */
     @Inline
     public static void gcPoint() {
         if (gcState == MUTATOR)
             return;
-
+        
         Main._assert(gcState == STOPPING_MUTATORS, "at gcpoint, state should be WAITING_FOR_MUTATORS. State is " + gcState);
-        getCurrentContext().informGoingToBlock();
         getCurrentContext().blockForGC();
     }
     
+    /**
+     * block the current mutator until the gc that is stopping mutators is finished (called from MMTkContext.blockForGC())
+     */
+    public static void block(MMTkContext context) {
+        synchronized (MMTkContext.blockLock) {
+            int epoch = gcEpoch;
+            context.setBlocked(true);
+            mutatorsBlocked++;
+            // the collector may be waiting for the last mutator
+            MMTkContext.blockLock.notifyAll();
+            
+            while (epoch == gcEpoch)
+                await();
+            context.setBlocked(false);
+        }
+    }
+    
     public static void stopAllMutators() {
         // 1. gc is about to start, waiting for mutators to synchronize at gc point
         synchronized (gcStateChangeLock) {
             gcState = STOPPING_MUTATORS;
         }
+        pauseStart = System.nanoTime();
         
         // 2. wait until they are all blocked
-        int mutatorsBlocked;
-        while (true) {
-            synchronized (MMTkContext.blockLock) {
-                mutatorsBlocked = 0;
-                // check blocked mutator
-                for (int i = 0; i < mutatorCount; i++)
-                    if (mutatorContexts[i].isBlocked())
-                        mutatorsBlocked ++;
-            }
-            
-            if (mutatorsBlocked == Configuration.MUTATOR_COUNT)
-                break;
-            else Thread.yield();
+        synchronized (MMTkContext.blockLock) {
+            while (mutatorsBlocked < mutatorCount)
+                await();
         }
         
         synchronized (gcStateChangeLock) {
-            gcState = STOPPING_WORLD;            
+            gcState = STOPPING_WORLD;
         }
         
         // 3. stop other threads
         
-        // 4. get statistics        
+        // 4. get statistics
         statisticsAllocEnd();
         
         // 5. done
@@ -147,21 +179,22 @@ public class Scheduler {
         }
     }
     
-    public static void resumeAllMutators() {        
+    public static void resumeAllMutators() {
+        statisticsPauseEnd();
+        
         synchronized (gcStateChangeLock) {
             gcState = MUTATOR;
         }
         
         statisticsAllocStart();
         // resume mutators here
-        for (int i = 0; i < mutatorCount; i++) {
-            MMTkContext context = mutatorContexts[i];           
-            if (context.isBlocked())
-                context.unblockAfterGC();
-            else Main._assert(false, "Unexpected MMTkContext gc state: " + context.getGCState());
+        synchronized (MMTkContext.blockLock) {
+            mutatorsBlocked = 0;
+            gcEpoch++;
+            MMTkContext.blockLock.notifyAll();
         }
     }
-
+    
     public static void currentThreadBlockForGC() {
         synchronized (gcStateChangeLock) {
             if (gcState == MUTATOR) {
@@ -172,13 +205,36 @@ public class Scheduler {
         gcPoint();
     }
     
+    // wait on MMTkContext.blockLock, the caller should hold it
+    private static void await() {
+        try {
+            MMTkContext.blockLock.wait();
+        } catch (InterruptedException ignore) {}
+    }
+    
+    public static void resetThreadCounter() {
+        OSAtomic.storeRelease(threadScanCursor, 0);
+    }
+    
+    /**
+     * @return the next mutator whose roots are not scanned in this gc, or null if all are claimed
+     */
+    public static MMTkContext claimThreadToScan() {
+        int i = OSAtomic.fetchAndAdd(threadScanCursor, 1);
+        return i < mutatorCount ? mutatorContexts[i] : null;
+    }
+    
     /*
      * statistics
      */
     public static long allocStart;
     public static long allocationVolumeSinceLastGC = 0;
     public static int gcCount = -1;
-    public static double[] allocRate = new double[Main.exitAfterSeveralGC];
+    public static double[] allocRate;
+    public static double[] mutatorAllocRateSum;
+    
+    public static long pauseStart;
+    public static double[] pauseTime;
     
     public static void statisticsAllocStart() {
         allocStart = System.currentTimeMillis();
@@ -194,6 +250,7 @@ public class Scheduler {
         else if (gcCount == Main.exitAfterSeveralGC) {
             Main.println("===================");
             Main.println(Main.exitAfterSeveralGC + " GCs done, exit.");
+            Main.println(mutatorCount + " mutators, " + collectorCount + " collectors");
             
             // calc average alloc rate
             double sum = 0;
@@ -201,23 +258,53 @@ public class Scheduler {
                 sum += allocRate[i];
             }
             Main.println("Average alloc rate = " + sum / allocRate.length + " bytes/ms");
+            for (int i = 0; i < mutatorCount; i++)
+                Main.println("  mutator" + i + " = " + mutatorAllocRateSum[i] / allocRate.length + " bytes/ms");
+            
+            double pauseSum = 0;
+            for (int i = 0; i < pauseTime.length; i++) {
+                pauseSum += pauseTime[i];
+            }
+            Main.println("Average gc pause = " + pauseSum / pauseTime.length + " ms");
             Main.sysExit(0);
         }
     }
     
     public static void statisticsAllocEnd() {
+        long elapsedTime = System.currentTimeMillis() - allocStart;
+        // avoid dividing by zero on a very short cycle
+        if (elapsedTime == 0)
+            elapsedTime = 1;
+        
         for (int i = 0; i < mutatorCount; i++) {
             MMTkContext context = mutatorContexts[i];
             allocationVolumeSinceLastGC += context.allocationVolume;
+            if (Main.exitAfterSeveralGC != 0)
+                mutatorAllocRateSum[i] += ((double) context.allocationVolume) / elapsedTime;
         }
         
-        long elapsedTime = System.currentTimeMillis() - allocStart;
-        
-        Main.println("[GC" + gcCount + "] allocVolume=" + allocationVolumeSinceLastGC + "bytes, elapsedTime=" + elapsedTime + "ms");
+        Main.println("[GC" + gcCount + "] allocVolume=" + allocationVolumeSinceLastGC + "bytes, elapsedTime=" + elapsedTime + "ms, allocRate=" + allocationVolumeSinceLastGC / elapsedTime + "bytes/ms");
+        if (mutatorCount > 1) {
+            for (int i = 0; i < mutatorCount; i++) {
+                MMTkContext context = mutatorContexts[i];
+                Main.println("  mutator" + i + ": allocVolume=" + context.allocationVolume + "bytes, allocRate=" + context.allocationVolume / elapsedTime + "bytes/ms");
+            }
+        }
         
         if (Main.exitAfterSeveralGC != 0) {
             // we need to record alloc rate
             allocRate[gcCount] = allocationVolumeSinceLastGC / elapsedTime;
         }
     }
+    
+    /**
+     * a pause counts from asking mutators to stop until they are resumed
+     */
+    public static void statisticsPauseEnd() {
+        double pause = ((double) (System.nanoTime() - pauseStart)) / 1000000;
+        Main.println("[GC" + gcCount + "] pause=" + pause + "ms with " + collectorCount + " collectors");
+        
+        if (Main.exitAfterSeveralGC != 0)
+            pauseTime[gcCount] = pause;
+    }
 }
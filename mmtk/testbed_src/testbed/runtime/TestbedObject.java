@@ -9,7 +9,11 @@ import testbed.Main;
 
 @RJavaCore
 public class TestbedObject {
-    private ObjectReferenceArray fields = ObjectReferenceArray.create(0);
+    // fields.length() is the capacity, fieldCount of them are stored in the object
+    private ObjectReferenceArray fields = null;
+    private int fieldCount;
+    // bytes after the fields that are not references (not initialized)
+    private int payload;
     private int size;
     
     public TestbedObject() {
@@ -17,20 +21,21 @@ public class TestbedObject {
     }
     
     public TestbedObject(int fieldCount) {
-        this.fields = ObjectReferenceArray.create(fieldCount);
-        computeSize();
+        setFieldCount(fieldCount);
     }
     
     public void reset() {
-        this.fields = null;
+        this.fieldCount = 0;
+        this.payload = 0;
         computeSize();
     }
     
     private void computeSize() {
         int minSize = ObjectModel.objectMinSize();
-
+        
         this.size = minSize +
-                testbed.Constants.OBJECTREFERENCE_LENGTH_IN_BYTES * getFieldCount();//fields
+                testbed.Constants.OBJECTREFERENCE_LENGTH_IN_BYTES * fieldCount +//fields
+                payload;
     }
     
     public void setField(int i, ObjectReference objRef) {
@@ -42,20 +47,41 @@ public class TestbedObject {
         return fields.get(i);
     }
     
+    /**
+     * @return the fields to be stored in the object (the first getFieldCount() of them), or null if it never had any
+     */
+    public ObjectReferenceArray getFields() {
+        return fields;
+    }
+    
     @Inline
     public int getSize() {
         return size;
     }
     
+    /**
+     * the field array is reused when it is large enough, so a template object does not allocate per object
+     */
     public void setFieldCount(int i) {
-        this.fields = ObjectReferenceArray.create(i);
+        if (fields == null || fields.length() < i)
+            this.fields = ObjectReferenceArray.create(i);
+        this.fieldCount = i;
+        computeSize();
+    }
+    
+    /**
+     * @param bytes of non-reference data, rounded up to the reference size so objects stay aligned
+     */
+    public void setPayload(int bytes) {
+        int align = testbed.Constants.OBJECTREFERENCE_LENGTH_IN_BYTES;
+        if (bytes < 0)
+            bytes = 0;
+        this.payload = (bytes + align - 1) / align * align;
         computeSize();
     }
     
     @Inline
     public int getFieldCount() {
-        if (this.fields == null)
-            return 0;
-        return fields.length();
+        return fieldCount;
     }
 }
@@ -0,0 +1,117 @@
+package testbed.workload;
+
+import org.mmtk.plan.MutatorContext;
+import org.rjava.restriction.rulesets.RJavaCore;
+import org.vmmagic.unboxed.ObjectReference;
+
+import testbed.Main;
+import testbed.mminterface.MMTkContext;
+import testbed.runtime.ObjectModel;
+import testbed.runtime.Scheduler;
+
+/**
+ * measures what the write barrier costs per reference store. Each round does -barrier_stores stores between random
+ * objects in the slots (-max_root of them, with -max_field fields each) through the barrier (ObjectModel.writeField()),
+ * and the same loop again without the barrier, which stores back what is already in the field so the plan does not
+ * miss a reference. The two loops take turns to go first, so neither always runs on a warm cache.
+ *
+ * Between rounds, -barrier_alloc bytes of new objects replace random slots, so stores create references from old
+ * objects to young ones and gcs happen. The result is reported once per gc
+ */
+@RJavaCore
+public class BarrierWorkload extends Workload {
+    private int slots;
+    private int fields;
+    private int stores;
+    private int allocBytes;
+    
+    // replays the same stores in both loops
+    private XorShiftRandom storeRandom = new XorShiftRandom(1);
+    
+    private long rounds = 0;
+    private long barrierNanos = 0;
+    private long noBarrierNanos = 0;
+    private int lastReportedGC;
+    
+    public BarrierWorkload(MMTkContext context) {
+        super(context);
+        slots = Main.maxRoot;
+        fields = Main.maxField > 0 ? Main.maxField : 1;
+        stores = Main.barrierStores;
+        allocBytes = Main.barrierAllocBytes;
+        
+        useTemplate();
+        useSlots(slots);
+        obj.setFieldCount(fields);
+        for (int i = 0; i < fields; i++)
+            obj.setField(i, ObjectReference.nullReference());
+    }
+    
+    @Override
+    public void run() {
+        // every slot holds an object, so every store has a source
+        for (int i = 0; i < slots; i++)
+            setSlot(i, alloc());
+        lastReportedGC = Scheduler.gcCount;
+        
+        while (true) {
+            for (int allocated = 0; allocated < allocBytes; allocated += obj.getSize())
+                setSlot(random.nextInt(slots), alloc());
+            
+            // no gc point in the loops, so the objects do not move
+            long seed = random.nextLong();
+            if ((rounds & 1) == 0) {
+                barrierNanos += storeWithBarrier(seed);
+                noBarrierNanos += storeWithoutBarrier(seed);
+            } else {
+                noBarrierNanos += storeWithoutBarrier(seed);
+                barrierNanos += storeWithBarrier(seed);
+            }
+            rounds++;
+            
+            if (Scheduler.gcCount != lastReportedGC) {
+                report();
+                lastReportedGC = Scheduler.gcCount;
+            }
+        }
+    }
+    
+    private long storeWithBarrier(long seed) {
+        MutatorContext mutator = context.mutator();
+        storeRandom.setSeed(seed);
+        long start = System.nanoTime();
+        for (int i = 0; i < stores; i++) {
+            ObjectReference src = slot(storeRandom.nextInt(slots));
+            int field = storeRandom.nextInt(fields);
+            ObjectReference target = slot(storeRandom.nextInt(slots));
+            ObjectModel.writeField(mutator, src, field, target);
+        }
+        return System.nanoTime() - start;
+    }
+    
+    private long storeWithoutBarrier(long seed) {
+        storeRandom.setSeed(seed);
+        long start = System.nanoTime();
+        for (int i = 0; i < stores; i++) {
+            ObjectReference src = slot(storeRandom.nextInt(slots));
+            int field = storeRandom.nextInt(fields);
+            // draw the target as the other loop does, but store back the field (a load as well)
+            storeRandom.nextInt(slots);
+            ObjectModel.writeFieldNoBarrier(src, field, ObjectModel.readField(src, field));
+        }
+        return System.nanoTime() - start;
+    }
+    
+    private void report() {
+        double total = (double) rounds * stores;
+        double withBarrier = barrierNanos / total;
+        double withoutBarrier = noBarrierNanos / total;
+        Main.println("[barrier] mutator" + context.getId() + ": " + rounds * stores + " stores, barrier=" + withBarrier
+                + "ns/store, no barrier=" + withoutBarrier + "ns/store, overhead=" + (withBarrier - withoutBarrier) + "ns/store"
+                + (ObjectModel.writeBarrier ? "" : " (the plan has no write barrier)"));
+        
+        rounds = 0;
+        barrierNanos = 0;
+        noBarrierNanos = 0;
+    }
+}
@@ -0,0 +1,58 @@
+package testbed.workload;
+
+import org.rjava.restriction.rulesets.RJavaCore;
+
+import testbed.Main;
+
+/**
+ * a distribution of non-negative ints, given on the command line as fixed:N, uniform:MIN:MAX or exp:MEAN
+ */
+@RJavaCore
+public class Distribution {
+    public static final int FIXED = 0;
+    public static final int UNIFORM = 1;
+    public static final int EXPONENTIAL = 2;
+    
+    private int kind;
+    private int a;
+    private int b;
+    
+    public Distribution(int kind, int a, int b) {
+        this.kind = kind;
+        this.a = a;
+        this.b = b;
+    }
+    
+    public static Distribution parse(String spec) {
+        int colon = spec.indexOf(':');
+        if (colon > 0) {
+            String kind = spec.substring(0, colon);
+            String args = spec.substring(colon + 1);
+            
+            if (kind.equals("fixed")) {
+                return new Distribution(FIXED, Integer.parseInt(args), 0);
+            } else if (kind.equals("uniform")) {
+                int second = args.indexOf(':');
+                if (second > 0) {
+                    int min = Integer.parseInt(args.substring(0, second));
+                    int max = Integer.parseInt(args.substring(second + 1));
+                    Main._assert(min <= max, "uniform distribution " + spec + " has min > max");
+                    return new Distribution(UNIFORM, min, max);
+                }
+            } else if (kind.equals("exp")) {
+                return new Distribution(EXPONENTIAL, Integer.parseInt(args), 0);
+            }
+        }
+        
+        Main.sysFail("unknown distribution " + spec + ", expect fixed:N, uniform:MIN:MAX or exp:MEAN");
+        return null;
+    }
+    
+    public int sample(XorShiftRandom random) {
+        switch (kind) {
+        case FIXED:     return a;
+        case UNIFORM:   return a + random.nextInt(b - a + 1);
+        default:        return (int) (-a * Math.log(1 - random.nextDouble()));
+        }
+    }
+}
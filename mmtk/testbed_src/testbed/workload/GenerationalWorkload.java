@@ -0,0 +1,87 @@
+package testbed.workload;
+
+import org.rjava.restriction.rulesets.RJavaCore;
+import org.vmmagic.unboxed.ObjectReference;
+
+import testbed.Main;
+import testbed.mminterface.MMTkContext;
+
+/**
+ * the generational hypothesis: -young_death_rate of the objects are garbage as soon as they are allocated, the rest
+ * survive for a lifetime drawn from -lifetime (in bytes allocated by this mutator). Survivors stay in the slots
+ * (-max_root of them) until they die, and new objects reference random slots. Objects have -object_fields references
+ * and -object_size bytes of other data
+ */
+@RJavaCore
+public class GenerationalWorkload extends Workload {
+    // dead survivors are cleared from the slots every time this many bytes are allocated
+    private static final int SWEEP_INTERVAL = 64 * 1024;
+    
+    private Distribution size;
+    private Distribution fields;
+    private Distribution lifetime;
+    private double youngDeathRate;
+    
+    private int slots;
+    // when the object in a slot dies, in bytes allocated by this mutator
+    private long[] deathTime;
+    private int[] freeSlots;
+    private int freeCount;
+    
+    private long clock = 0;
+    private long nextSweep = SWEEP_INTERVAL;
+    
+    public GenerationalWorkload(MMTkContext context) {
+        super(context);
+        size = Distribution.parse(Main.objectSize);
+        fields = Distribution.parse(Main.getObjectFields());
+        lifetime = Distribution.parse(Main.lifetime);
+        youngDeathRate = Main.youngDeathRate;
+        
+        slots = Main.maxRoot;
+        useTemplate();
+        useSlots(slots);
+        deathTime = new long[slots];
+        freeSlots = new int[slots];
+        for (int i = 0; i < slots; i++)
+            freeSlots[i] = slots - 1 - i;
+        freeCount = slots;
+    }
+    
+    @Override
+    public void run() {
+        while (true) {
+            obj.reset();
+            int fieldCount = fields.sample(random);
+            obj.setFieldCount(fieldCount);
+            for (int i = 0; i < fieldCount; i++)
+                obj.setField(i, slot(random.nextInt(slots)));
+            obj.setPayload(size.sample(random));
+            
+            ObjectReference objRef = alloc();
+            clock += obj.getSize();
+            
+            if (freeCount > 0 && random.nextDouble() >= youngDeathRate) {
+                freeCount--;
+                int slot = freeSlots[freeCount];
+                setSlot(slot, objRef);
+                deathTime[slot] = clock + lifetime.sample(random);
+            }
+            
+            if (clock >= nextSweep) {
+                sweep();
+                nextSweep = clock + SWEEP_INTERVAL;
+            }
+        }
+    }
+    
+    private void sweep() {
+        for (int i = 0; i < slots; i++) {
+            if (!slot(i).isNull() && deathTime[i] <= clock) {
+                setSlot(i, ObjectReference.nullReference());
+                freeSlots[freeCount] = i;
+                freeCount++;
+            }
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package testbed.workload;
+
+import org.rjava.restriction.rulesets.RJavaCore;
+import org.vmmagic.unboxed.ObjectReference;
+
+import testbed.Main;
+import testbed.mminterface.MMTkContext;
+
+/**
+ * allocates linked structures of -structure_size nodes: lists, binary trees or DAGs. The last -max_root structures
+ * are alive, a new one replaces the oldest, so whole structures die together.
+ *
+ * Structures are built bottom up (a node only references nodes allocated before it), so fields are set at allocation
+ */
+@RJavaCore
+public class StructureWorkload extends Workload {
+    public static final int LIST = 0;
+    public static final int TREE = 1;
+    public static final int DAG = 2;
+    
+    // slots [0, SCRATCH) hold the structure being built, the rest hold finished structures
+    private static final int SCRATCH = 64;
+    
+    private int shape;
+    private Distribution size;
+    private Distribution nodeSize;
+    private Distribution fields;
+    
+    private int structures;
+    private int nextStructure = 0;
+    
+    // height of the subtrees in the scratch slots, for TREE
+    private int[] height = new int[SCRATCH];
+    
+    public StructureWorkload(MMTkContext context, int shape) {
+        super(context);
+        this.shape = shape;
+        size = Distribution.parse(Main.structureSize);
+        nodeSize = Distribution.parse(Main.objectSize);
+        fields = Distribution.parse(Main.getObjectFields());
+        
+        structures = Main.maxRoot;
+        useTemplate();
+        useSlots(SCRATCH + structures);
+    }
+    
+    @Override
+    public void run() {
+        while (true) {
+            int nodes = size.sample(random);
+            if (nodes < 1)
+                nodes = 1;
+            
+            ObjectReference root;
+            switch (shape) {
+            case LIST:  root = buildList(nodes); break;
+            case TREE:  root = buildTree(nodes); break;
+            default:    root = buildDAG(nodes); break;
+            }
+            
+            setSlot(SCRATCH + nextStructure, root);
+            nextStructure = (nextStructure + 1) % structures;
+        }
+    }
+    
+    /**
+     * every node references the one before it
+     * @return the head (last node)
+     */
+    private ObjectReference buildList(int nodes) {
+        setSlot(0, ObjectReference.nullReference());
+        for (int i = 0; i < nodes; i++) {
+            obj.reset();
+            obj.setFieldCount(1);
+            obj.setField(0, slot(0));
+            obj.setPayload(nodeSize.sample(random));
+            setSlot(0, alloc());
+        }
+        
+        return clearScratch(1);
+    }
+    
+    /**
+     * leaves are pushed on a stack in the scratch slots, and two subtrees of the same height are merged under a new
+     * parent, so the tree is complete except for its right spine
+     * @return the root
+     */
+    private ObjectReference buildTree(int nodes) {
+        int top = 0;
+        int count = 0;
+        while (count < nodes || top > 1) {
+            if (top >= 2 && (height[top - 1] == height[top - 2] || count >= nodes)) {
+                // merge the top two subtrees
+                obj.reset();
+                obj.setFieldCount(2);
+                obj.setField(0, slot(top - 2));
+                obj.setField(1, slot(top - 1));
+                obj.setPayload(nodeSize.sample(random));
+                setSlot(top - 1, ObjectReference.nullReference());
+                setSlot(top - 2, alloc());
+                height[top - 2] = (height[top - 2] > height[top - 1] ? height[top - 2] : height[top - 1]) + 1;
+                top--;
+            } else {
+                // push a leaf
+                obj.reset();
+                obj.setPayload(nodeSize.sample(random));
+                setSlot(top, alloc());
+                height[top] = 0;
+                top++;
+            }
+            count++;
+        }
+        
+        return clearScratch(1);
+    }
+    
+    /**
+     * every node references the one before it, and -object_fields random nodes among the last SCRATCH ones
+     * (shared, so it is a DAG rather than a tree)
+     * @return the last node, which reaches all the others
+     */
+    private ObjectReference buildDAG(int nodes) {
+        int last = 0;
+        for (int i = 0; i < nodes; i++) {
+            int window = i < SCRATCH ? i : SCRATCH;
+            int extra = window == 0 ? 0 : fields.sample(random);
+            
+            obj.reset();
+            obj.setFieldCount(1 + extra);
+            obj.setField(0, i == 0 ? ObjectReference.nullReference() : slot(last));
+            for (int j = 0; j < extra; j++)
+                obj.setField(1 + j, slot(random.nextInt(window)));
+            obj.setPayload(nodeSize.sample(random));
+            
+            last = i % SCRATCH;
+            setSlot(last, alloc());
+        }
+        
+        ObjectReference root = slot(last);
+        clearScratch(SCRATCH);
+        return root;
+    }
+    
+    /**
+     * @return the structure in scratch slot 0, the first n scratch slots are cleared
+     */
+    private ObjectReference clearScratch(int n) {
+        ObjectReference root = slot(0);
+        for (int i = 0; i < n; i++)
+            setSlot(i, ObjectReference.nullReference());
+        return root;
+    }
+}
@@ -0,0 +1,46 @@
+package testbed.workload;
+
+import org.rjava.restriction.rulesets.RJavaCore;
+
+import testbed.Main;
+import testbed.mminterface.MMTkContext;
+
+/**
+ * the original uniform churn loops of MMTkContext
+ */
+@RJavaCore
+public class SyntheticWorkload extends Workload {
+    public static final int SINGLE = 0;
+    public static final int DEAD = 1;
+    public static final int RANDOM_ROOT = 2;
+    public static final int RANDOM_FIELD = 3;
+    public static final int EXTREME = 4;
+    
+    private int kind;
+    
+    public SyntheticWorkload(MMTkContext context, String name) {
+        super(context);
+        if (name.equals("single"))
+            kind = SINGLE;
+        else if (name.equals("dead"))
+            kind = DEAD;
+        else if (name.equals("random_root"))
+            kind = RANDOM_ROOT;
+        else if (name.equals("random_field"))
+            kind = RANDOM_FIELD;
+        else if (name.equals("extreme"))
+            kind = EXTREME;
+        else Main.sysFail("unknown workload " + name + ", expect single, dead, random_root, random_field, extreme, generational, list, tree, dag or trace");
+    }
+    
+    @Override
+    public void run() {
+        switch (kind) {
+        case SINGLE:        context.allocSingleObject(); break;
+        case DEAD:          context.allocExhaustDeadObjects(); break;
+        case RANDOM_ROOT:   context.allocExhaustObjectsRandomRoot(); break;
+        case RANDOM_FIELD:  context.allocExhaustObjectsRandomRootRandomField(); break;
+        case EXTREME:       context.allocExtremePerformance(); break;
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package testbed.workload;
+
+import org.rjava.osext.OSMemory;
+import org.rjava.restriction.rulesets.RJavaCore;
+import org.vmmagic.unboxed.Address;
+import org.vmmagic.unboxed.ObjectReference;
+import org.vmmagic.unboxed.Offset;
+
+import testbed.Main;
+import testbed.mminterface.MMTkContext;
+import testbed.runtime.ObjectModel;
+
+/**
+ * replays an allocation trace (-trace FILE) recorded from a real VM. The file is mapped once, and every mutator
+ * replays it from the start, over and over.
+ *
+ * Format: the bytes 'M' 'T' 'R' 'C', a version byte (1), then numbers as unsigned LEB128:
+ *   slots                              the number of slots the trace keeps live objects in
+ *   then records, each starts with its kind:
+ *   0 ALLOC slot bytes n f1 .. fn      allocate an object of bytes with n reference fields, field i references the
+ *                                      object in slot fi - 1 (0 is null). The object is kept in slot, and whatever
+ *                                      was in the slot dies
+ *   1 FREE slot                        the object in slot dies
+ *   2 WRITE slot field target          store the object in slot target - 1 (0 is null) to a field of the object in slot,
+ *                                      through the write barrier
+ *   3 END                              end of the trace
+ * A recorder gives each live object a slot and reuses the slots of dead objects, so slots is the peak number of
+ * objects the recorded program kept alive (that it could reference later).
+ */
+@RJavaCore
+public class TraceWorkload extends Workload {
+    public static final int ALLOC = 0;
+    public static final int FREE = 1;
+    public static final int WRITE = 2;
+    public static final int END = 3;
+    
+    private static final int HEADER_BYTES = 5;
+    private static final int VERSION = 1;
+    
+    // mapped once, shared by all mutators
+    private static final Object loadLock = new Object();
+    private static Address trace;
+    private static Address traceEnd;
+    
+    private int slots;
+    private Address cursor;
+    private Address recordsStart;
+    
+    public TraceWorkload(MMTkContext context) {
+        super(context);
+        load();
+        
+        cursor = trace.plus(HEADER_BYTES);
+        slots = (int) readNumber();
+        recordsStart = cursor;
+        
+        useTemplate();
+        useSlots(slots);
+    }
+    
+    private static void load() {
+        synchronized (loadLock) {
+            if (trace != null)
+                return;
+            
+            Main._assert(Main.trace != null, "-workload trace needs -trace FILE");
+            long size = OSMemory.fileSize(Main.trace);
+            Address start = OSMemory.mapFile(Main.trace);
+            if (size <= HEADER_BYTES || start.isZero())
+                Main.sysFail("cannot map trace " + Main.trace);
+            
+            if (start.loadByte() != 'M' || start.loadByte(offset(1)) != 'T' || start.loadByte(offset(2)) != 'R' || start.loadByte(offset(3)) != 'C')
+                Main.sysFail(Main.trace + " is not an allocation trace");
+            if (start.loadByte(offset(4)) != VERSION)
+                Main.sysFail(Main.trace + " is trace version " + start.loadByte(offset(4)) + ", expect " + VERSION);
+            
+            traceEnd = start.plus((int) size);
+            trace = start;
+        }
+    }
+    
+    private static Offset offset(int bytes) {
+        return Offset.fromIntZeroExtend(bytes);
+    }
+    
+    @Override
+    public void run() {
+        while (true) {
+            int kind = cursor.LT(traceEnd) ? (int) readNumber() : END;
+            switch (kind) {
+            case ALLOC:
+                replayAlloc();
+                break;
+            case FREE:
+                setSlot(readSlot(), ObjectReference.nullReference());
+                break;
+            case WRITE: {
+                int slot = readSlot();
+                int field = (int) readNumber();
+                ObjectReference target = readReference();
+                ObjectReference src = slot(slot);
+                if (!src.isNull()) {
+                    if (field >= ObjectModel.getFieldCount(src))
+                        Main.sysFail("corrupt trace: writing field " + field + " of an object with " + ObjectModel.getFieldCount(src) + " fields");
+                    ObjectModel.writeField(context.mutator(), src, field, target);
+                }
+                break;
+            }
+            case END:
+                // everything the trace kept alive dies, then start over
+                for (int i = 0; i < slots; i++)
+                    setSlot(i, ObjectReference.nullReference());
+                cursor = recordsStart;
+                break;
+            default:
+                Main.sysFail("corrupt trace: unknown record " + kind);
+            }
+        }
+    }
+    
+    private void replayAlloc() {
+        int slot = readSlot();
+        int bytes = (int) readNumber();
+        int fieldCount = (int) readNumber();
+        
+        obj.reset();
+        obj.setFieldCount(fieldCount);
+        for (int i = 0; i < fieldCount; i++)
+            obj.setField(i, readReference());
+        // the rest of the recorded size is data
+        obj.setPayload(bytes - obj.getSize());
+        
+        // the object that was in the slot dies now rather than after the allocation
+        setSlot(slot, ObjectReference.nullReference());
+        setSlot(slot, alloc());
+    }
+    
+    private int readSlot() {
+        int slot = (int) readNumber();
+        if (slot >= slots)
+            Main.sysFail("corrupt trace: slot " + slot + " out of " + slots);
+        return slot;
+    }
+    
+    private ObjectReference readReference() {
+        int slot = (int) readNumber();
+        if (slot == 0)
+            return ObjectReference.nullReference();
+        if (slot > slots)
+            Main.sysFail("corrupt trace: slot " + (slot - 1) + " out of " + slots);
+        return slot(slot - 1);
+    }
+    
+    /**
+     * unsigned LEB128
+     */
+    private long readNumber() {
+        long ret = 0;
+        int shift = 0;
+        while (true) {
+            if (!cursor.LT(traceEnd))
+                Main.sysFail("corrupt trace: truncated record");
+            int b = cursor.loadByte() & 0xff;
+            cursor = cursor.plus(1);
+            ret |= ((long) (b & 0x7f)) << shift;
+            if ((b & 0x80) == 0)
+                return ret;
+            shift += 7;
+        }
+    }
+}
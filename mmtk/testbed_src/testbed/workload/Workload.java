@@ -0,0 +1,81 @@
+package testbed.workload;
+
+import org.rjava.restriction.rulesets.RJavaCore;
+import org.vmmagic.pragma.Inline;
+import org.vmmagic.unboxed.ObjectReference;
+import org.vmmagic.unboxed.ObjectReferenceArray;
+
+import testbed.Main;
+import testbed.mminterface.MMTkContext;
+import testbed.mminterface.MemoryManager;
+import testbed.runtime.Scheduler;
+import testbed.runtime.TestbedObject;
+
+/**
+ * what a mutator allocates, chosen by -workload. A workload runs until the testbed exits.
+ *
+ * References a workload keeps across allocations (gc points) should be in its slots (the mutator's roots), or
+ * in the fields of the template object, since both are scanned as roots of the mutator and updated if objects move
+ */
+@RJavaCore
+public abstract class Workload {
+    protected MMTkContext context;
+    protected XorShiftRandom random;
+    // describes the next object to allocate
+    protected TestbedObject obj;
+    
+    protected Workload(MMTkContext context) {
+        this.context = context;
+        this.random = new XorShiftRandom(0x2545F4914F6CDD1DL * (context.getId() + 1));
+    }
+    
+    public abstract void run();
+    
+    public static Workload create(MMTkContext context) {
+        String name = Main.workload;
+        if (name.equals("generational"))
+            return new GenerationalWorkload(context);
+        else if (name.equals("list"))
+            return new StructureWorkload(context, StructureWorkload.LIST);
+        else if (name.equals("tree"))
+            return new StructureWorkload(context, StructureWorkload.TREE);
+        else if (name.equals("dag"))
+            return new StructureWorkload(context, StructureWorkload.DAG);
+        else if (name.equals("trace"))
+            return new TraceWorkload(context);
+        else if (name.equals("barrier"))
+            return new BarrierWorkload(context);
+        else return new SyntheticWorkload(context, name);
+    }
+    
+    protected void useTemplate() {
+        context.template = new TestbedObject();
+        obj = context.template;
+    }
+    
+    protected void useSlots(int slots) {
+        context.roots = ObjectReferenceArray.create(slots);
+    }
+    
+    @Inline
+    protected ObjectReference slot(int i) {
+        return context.roots.get(i);
+    }
+    
+    @Inline
+    protected void setSlot(int i, ObjectReference objRef) {
+        context.roots.set(i, objRef);
+    }
+    
+    /**
+     * allocate an object as the template describes. This is a gc point, so the fields of the template should be set
+     * before, and references in local variables are stale after
+     */
+    @Inline
+    protected ObjectReference alloc() {
+        Scheduler.gcPoint();
+        ObjectReference objRef = MemoryManager.alloc(obj).toObjectReference();
+        context.allocationVolume += obj.getSize();
+        return objRef;
+    }
+}
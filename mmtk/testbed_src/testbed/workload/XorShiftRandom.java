@@ -0,0 +1,49 @@
+package testbed.workload;
+
+import org.rjava.restriction.rulesets.RJavaCore;
+import org.vmmagic.pragma.Inline;
+
+/**
+ * xorshift64 generator. Each mutator owns one, so workloads neither share state nor lock (OSNative.random() does both)
+ */
+@RJavaCore
+public class XorShiftRandom {
+    private long state;
+    
+    public XorShiftRandom(long seed) {
+        setSeed(seed);
+    }
+    
+    /**
+     * restart the sequence, the same seed gives the same numbers
+     */
+    public void setSeed(long seed) {
+        this.state = seed == 0 ? 0x9E3779B97F4A7C15L : seed;
+    }
+    
+    @Inline
+    public long nextLong() {
+        long x = state;
+        x ^= x << 13;
+        x ^= x >>> 7;
+        x ^= x << 17;
+        state = x;
+        return x;
+    }
+    
+    /**
+     * @return a random int in [0, bound)
+     */
+    @Inline
+    public int nextInt(int bound) {
+        return (int) ((nextLong() >>> 1) % bound);
+    }
+    
+    /**
+     * @return a random double in [0, 1)
+     */
+    @Inline
+    public double nextDouble() {
+        return (nextLong() >>> 11) * (1.0 / (1L << 53));
+    }
+}
@@ -0,0 +1,179 @@
+/*
+ * allocation throughput and gc pause microbenchmark for the standalone MMTk (see ../c/mmtk.h)
+ *
+ * Each thread allocates small objects that reference recently allocated ones, and keeps a fixed number of them
+ * alive in its root slots (randomly replaced), so every gc has a live set of about threads * roots * object size.
+ */
+#include "mmtk.h"
+
+#include <pthread.h>
+#include <stdio.h>
+#include <stdlib.h>
+#include <string.h>
+#include <time.h>
+
+/* object layout after the GC header: status word, size in bytes, number of fields, fields */
+typedef struct bench_object {
+    uintptr_t status;
+    uintptr_t size;
+    uintptr_t fields;
+    mmtk_object_t field[];
+} bench_object;
+
+typedef struct bench_thread {
+    pthread_t thread;
+    int id;
+    mmtk_object_t* roots;
+    int64_t allocated;
+    double seconds;
+} bench_thread;
+
+static int threads = 1;
+static int collectors = 1;
+static size_t heap_mb = 64;
+static size_t alloc_mb = 1024;
+static int roots = 4096;
+static int max_fields = 4;
+static const char* options = NULL;
+
+static size_t header_bytes;
+
+static size_t bench_object_size(mmtk_object_t object) {
+    return ((bench_object*) object)->size;
+}
+
+static void bench_scan_object(mmtk_trace_t trace, mmtk_object_t object) {
+    bench_object* o = (bench_object*) object;
+    uintptr_t i;
+    for (i = 0; i < o->fields; i++)
+        if (o->field[i] != NULL)
+            mmtk_process_edge(trace, object, &o->field[i]);
+}
+
+static void bench_scan_thread_roots(mmtk_trace_t trace, void* tls) {
+    bench_thread* t = (bench_thread*) tls;
+    int i;
+    for (i = 0; i < roots; i++)
+        if (t->roots[i] != NULL)
+            mmtk_process_root_edge(trace, &t->roots[i]);
+}
+
+static void bench_out_of_memory(void) {
+    fprintf(stderr, "out of memory: the live set does not fit in %zuMB\n", heap_mb);
+}
+
+static double now() {
+    struct timespec ts;
+    clock_gettime(CLOCK_MONOTONIC, &ts);
+    return ts.tv_sec + ts.tv_nsec / 1e9;
+}
+
+/* xorshift, so threads dont share rand() state */
+static inline uint32_t next_random(uint32_t* state) {
+    uint32_t x = *state;
+    x ^= x << 13;
+    x ^= x >> 17;
+    x ^= x << 5;
+    return *state = x;
+}
+
+static void* bench_run(void* arg) {
+    bench_thread* t = (bench_thread*) arg;
+    uint32_t random = 2463534242u + t->id;
+    size_t target = alloc_mb << 20;
+
+    t->roots = (mmtk_object_t*) calloc(roots, sizeof(mmtk_object_t));
+    mmtk_mutator_t mutator = mmtk_bind_mutator(t);
+
+    double start = now();
+    while (t->allocated < (int64_t) target) {
+        uintptr_t fields = next_random(&random) % (max_fields + 1);
+        size_t size = header_bytes + sizeof(bench_object) + fields * sizeof(mmtk_object_t);
+
+        bench_object* o = (bench_object*) mmtk_alloc(mutator, size, 0, 0, MMTK_ALLOC_DEFAULT);
+        o->size = size;
+        o->fields = fields;
+        memset(o->field, 0, fields * sizeof(mmtk_object_t));
+        mmtk_post_alloc(mutator, o, size, MMTK_ALLOC_DEFAULT);
+        t->allocated += size;
+
+        // objects move only at gc polls, so the last object is read from its root (roots[0]) after the allocation
+        if (fields > 0)
+            mmtk_write_reference(mutator, o, &o->field[0], t->roots[0]);
+        if (next_random(&random) % 8 == 0)
+            t->roots[1 + next_random(&random) % (roots - 1)] = o;
+        t->roots[0] = o;
+    }
+    t->seconds = now() - start;
+
+    mmtk_unbind_mutator(mutator);
+    return NULL;
+}
+
+static void usage(const char* name) {
+    fprintf(stderr, "usage: %s [-t threads] [-c collectors] [-h heap MB] [-a MB to allocate per thread] [-r roots per thread] [-f max fields] [-o mmtk options]\n", name);
+    exit(1);
+}
+
+int main(int argc, char** argv) {
+    int i;
+    for (i = 1; i < argc; i++) {
+        if (i + 1 >= argc)
+            usage(argv[0]);
+        if (strcmp(argv[i], "-t") == 0)
+            threads = atoi(argv[++i]);
+        else if (strcmp(argv[i], "-c") == 0)
+            collectors = atoi(argv[++i]);
+        else if (strcmp(argv[i], "-h") == 0)
+            heap_mb = atoi(argv[++i]);
+        else if (strcmp(argv[i], "-a") == 0)
+            alloc_mb = atoi(argv[++i]);
+        else if (strcmp(argv[i], "-r") == 0)
+            roots = atoi(argv[++i]);
+        else if (strcmp(argv[i], "-f") == 0)
+            max_fields = atoi(argv[++i]);
+        else if (strcmp(argv[i], "-o") == 0)
+            options = argv[++i];
+        else usage(argv[0]);
+    }
+    if (threads < 1 || collectors < 1 || roots < 2 || max_fields < 0)
+        usage(argv[0]);
+
+    mmtk_upcalls upcalls = {
+        .object_size = bench_object_size,
+        .scan_object = bench_scan_object,
+        .scan_global_roots = NULL,
+        .scan_thread_roots = bench_scan_thread_roots,
+        .out_of_memory = bench_out_of_memory,
+    };
+    if (mmtk_init(heap_mb << 20, collectors, options, &upcalls) != 0) {
+        fprintf(stderr, "fail to init MMTk\n");
+        return 1;
+    }
+    header_bytes = mmtk_gc_header_bytes();
+
+    printf("plan %s, heap %zuMB, %d mutators, %d collectors, %zuMB per mutator\n", mmtk_plan_name(), heap_mb, threads, collectors, alloc_mb);
+
+    bench_thread* workers = (bench_thread*) calloc(threads, sizeof(bench_thread));
+    double start = now();
+    for (i = 0; i < threads; i++) {
+        workers[i].id = i;
+        pthread_create(&workers[i].thread, NULL, bench_run, &workers[i]);
+    }
+    for (i = 0; i < threads; i++)
+        pthread_join(workers[i].thread, NULL);
+    double elapsed = now() - start;
+
+    mmtk_stats stats;
+    mmtk_get_stats(&stats);
+
+    for (i = 0; i < threads; i++)
+        printf("mutator %d: %.1f MB/s\n", i, workers[i].allocated / workers[i].seconds / (1 << 20));
+    printf("total: %.1f MB in %.3f s, %.1f MB/s\n", stats.allocated_bytes / (double) (1 << 20), elapsed, stats.allocated_bytes / elapsed / (1 << 20));
+    printf("gc: %d, pause total %.3f ms, avg %.3f ms, max %.3f ms (%.1f%% of time)\n", stats.gc_count,
+           stats.total_pause_nanos / 1e6,
+           stats.gc_count > 0 ? stats.total_pause_nanos / 1e6 / stats.gc_count : 0.0,
+           stats.max_pause_nanos / 1e6,
+           stats.total_pause_nanos / 1e9 / elapsed * 100);
+    return 0;
+}
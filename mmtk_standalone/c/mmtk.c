@@ -0,0 +1,147 @@
+#include "mmtk.h"
+
+#include "rjava_crt.h"
+#include "java_lang_String.h"
+#include "org_mmtk_host_Host_methods.h"
+#include "org_mmtk_host_HostCallbacks_methods.h"
+
+#include <stdio.h>
+#include <stdlib.h>
+#include <string.h>
+
+#define MUTATOR(m) ((struct org_mmtk_host_HostContext*) (m))
+
+static mmtk_upcalls upcalls;
+static char* plan_name = NULL;
+
+/* name=value,name=value */
+static int process_options(const char* options) {
+    char* copy = strdup(options);
+    char* saveptr = NULL;
+    char* option = strtok_r(copy, ",", &saveptr);
+    int ret = 0;
+
+    while (option != NULL) {
+        // the option set may keep the string, so it is not freed
+        if (!org_mmtk_host_Host_setOption_java_lang_String(newStringConstant(strdup(option)))) {
+            fprintf(stderr, "MMTk: unrecognized option %s\n", option);
+            ret = -1;
+        }
+        option = strtok_r(NULL, ",", &saveptr);
+    }
+
+    free(copy);
+    return ret;
+}
+
+int mmtk_init(size_t heap_bytes, int collector_threads, const char* options, const mmtk_upcalls* given) {
+    if (given == NULL || given->object_size == NULL || given->scan_object == NULL || collector_threads < 1)
+        return -1;
+    upcalls = *given;
+
+    rjava_class_init();
+    org_mmtk_host_Host_init();
+
+    if (options != NULL && process_options(options) != 0)
+        return -1;
+
+    org_mmtk_host_Host_boot_org_vmmagic_unboxed_Extent_int32_t((org_vmmagic_unboxed_Extent) heap_bytes, collector_threads);
+    return 0;
+}
+
+const char* mmtk_plan_name(void) {
+    if (plan_name == NULL) {
+        java_lang_String* name = org_mmtk_host_Host_planName();
+        plan_name = strndup(to_c_char_array(name), name->count);
+    }
+    return plan_name;
+}
+
+size_t mmtk_gc_header_bytes(void) {
+    return (size_t) org_mmtk_host_Host_gcHeaderBytes();
+}
+
+mmtk_mutator_t mmtk_bind_mutator(void* tls) {
+    return (mmtk_mutator_t) org_mmtk_host_Host_bindMutator_org_vmmagic_unboxed_Address((org_vmmagic_unboxed_Address) tls);
+}
+
+void mmtk_unbind_mutator(mmtk_mutator_t mutator) {
+    org_mmtk_host_Host_unbindMutator_org_mmtk_host_HostContext(MUTATOR(mutator));
+}
+
+mmtk_object_t mmtk_alloc(mmtk_mutator_t mutator, size_t bytes, size_t align, size_t offset, int allocator) {
+    org_vmmagic_unboxed_ObjectReference object =
+        org_mmtk_host_Host_alloc_org_mmtk_host_HostContext_int32_t_int32_t_int32_t_int32_t(MUTATOR(mutator), (int32_t) bytes, (int32_t) align, (int32_t) offset, allocator);
+    *((uintptr_t*) object) = 0;
+    return (mmtk_object_t) object;
+}
+
+void mmtk_post_alloc(mmtk_mutator_t mutator, mmtk_object_t object, size_t bytes, int allocator) {
+    org_mmtk_host_Host_postAlloc_org_mmtk_host_HostContext_org_vmmagic_unboxed_ObjectReference_int32_t_int32_t(MUTATOR(mutator), (org_vmmagic_unboxed_ObjectReference) object, (int32_t) bytes, allocator);
+}
+
+void mmtk_write_reference(mmtk_mutator_t mutator, mmtk_object_t src, mmtk_object_t* slot, mmtk_object_t value) {
+    org_mmtk_host_Host_writeReference_org_mmtk_host_HostContext_org_vmmagic_unboxed_ObjectReference_org_vmmagic_unboxed_Address_org_vmmagic_unboxed_ObjectReference(
+        MUTATOR(mutator), (org_vmmagic_unboxed_ObjectReference) src, (org_vmmagic_unboxed_Address) slot, (org_vmmagic_unboxed_ObjectReference) value);
+}
+
+void mmtk_gc_poll(mmtk_mutator_t mutator) {
+    org_mmtk_host_Host_gcPoll_org_mmtk_host_HostContext(MUTATOR(mutator));
+}
+
+void mmtk_enter_safe_region(mmtk_mutator_t mutator) {
+    org_mmtk_host_Host_enterSafeRegion_org_mmtk_host_HostContext(MUTATOR(mutator));
+}
+
+void mmtk_leave_safe_region(mmtk_mutator_t mutator) {
+    org_mmtk_host_Host_leaveSafeRegion_org_mmtk_host_HostContext(MUTATOR(mutator));
+}
+
+void mmtk_collect(void) {
+    org_mmtk_host_Host_collect();
+}
+
+void mmtk_process_edge(mmtk_trace_t trace, mmtk_object_t source, mmtk_object_t* slot) {
+    org_mmtk_host_Host_processEdge_org_mmtk_plan_TransitiveClosure_org_vmmagic_unboxed_ObjectReference_org_vmmagic_unboxed_Address(
+        (struct org_mmtk_plan_TransitiveClosure*) trace, (org_vmmagic_unboxed_ObjectReference) source, (org_vmmagic_unboxed_Address) slot);
+}
+
+void mmtk_process_root_edge(mmtk_trace_t trace, mmtk_object_t* slot) {
+    org_mmtk_host_Host_processRootEdge_org_mmtk_plan_TraceLocal_org_vmmagic_unboxed_Address_bool(
+        (struct org_mmtk_plan_TraceLocal*) trace, (org_vmmagic_unboxed_Address) slot, false);
+}
+
+void mmtk_get_stats(mmtk_stats* stats) {
+    stats->gc_count = org_mmtk_host_Host_gcCount();
+    stats->total_pause_nanos = org_mmtk_host_Host_totalPauseNanos();
+    stats->max_pause_nanos = org_mmtk_host_Host_maxPauseNanos();
+    stats->allocated_bytes = org_mmtk_host_Host_allocationVolume();
+    stats->used_bytes = org_mmtk_host_Host_usedBytes();
+    stats->heap_bytes = org_mmtk_host_Host_totalBytes();
+}
+
+/*
+ * org.mmtk.host.HostCallbacks
+ */
+int32_t org_mmtk_host_HostCallbacks_objectSize_org_vmmagic_unboxed_ObjectReference(org_vmmagic_unboxed_ObjectReference parameter0) {
+    return (int32_t) upcalls.object_size((mmtk_object_t) parameter0);
+}
+
+void org_mmtk_host_HostCallbacks_scanObject_org_mmtk_plan_TransitiveClosure_org_vmmagic_unboxed_ObjectReference(struct org_mmtk_plan_TransitiveClosure* parameter0, org_vmmagic_unboxed_ObjectReference parameter1) {
+    upcalls.scan_object((mmtk_trace_t) parameter0, (mmtk_object_t) parameter1);
+}
+
+void org_mmtk_host_HostCallbacks_scanGlobalRoots_org_mmtk_plan_TraceLocal(struct org_mmtk_plan_TraceLocal* parameter0) {
+    if (upcalls.scan_global_roots != NULL)
+        upcalls.scan_global_roots((mmtk_trace_t) parameter0);
+}
+
+void org_mmtk_host_HostCallbacks_scanThreadRoots_org_mmtk_plan_TraceLocal_org_vmmagic_unboxed_Address(struct org_mmtk_plan_TraceLocal* parameter0, org_vmmagic_unboxed_Address parameter1) {
+    if (upcalls.scan_thread_roots != NULL)
+        upcalls.scan_thread_roots((mmtk_trace_t) parameter0, (void*) parameter1);
+}
+
+void org_mmtk_host_HostCallbacks_outOfMemory() {
+    if (upcalls.out_of_memory != NULL)
+        upcalls.out_of_memory();
+}
@@ -0,0 +1,98 @@
+#ifndef MMTK_H
+#define MMTK_H
+
+/*
+ * C embedding API of the standalone MMTk (org.mmtk.host, compiled by RJava into libmmtk.a)
+ *
+ * Object layout: an object starts with mmtk_gc_header_bytes() of GC header (0 for SS and MS), followed by one word
+ * of MMTk status bits. An mmtk_object_t points at the status word, the embedding program's data follows it.
+ * Object sizes count from the start of the object, and are multiples of the word size.
+ *
+ * Threads: a thread calls mmtk_bind_mutator() before it allocates or touches the heap, and polls for gc
+ * (mmtk_gc_poll()) regularly. Allocation is a gc poll. A thread that blocks without touching the heap
+ * should do it inside mmtk_enter_safe_region()/mmtk_leave_safe_region(), otherwise a gc waits for it.
+ * Objects may move at any gc poll, so references should be kept in slots the embedding program reports as roots.
+ */
+
+#include <stddef.h>
+#include <stdint.h>
+
+#ifdef __cplusplus
+extern "C" {
+#endif
+
+typedef void* mmtk_object_t;
+// a bound mutator thread
+typedef struct mmtk_mutator* mmtk_mutator_t;
+// passed to scanning upcalls, give it back to mmtk_process_edge()/mmtk_process_root_edge()
+typedef void* mmtk_trace_t;
+
+#define MMTK_ALLOC_DEFAULT  0
+#define MMTK_ALLOC_LOS      4
+
+typedef struct mmtk_upcalls {
+    // size of object in bytes
+    size_t (*object_size)(mmtk_object_t object);
+    // call mmtk_process_edge() for each reference field of object
+    void (*scan_object)(mmtk_trace_t trace, mmtk_object_t object);
+    // call mmtk_process_root_edge() for each root that does not belong to a thread (may be NULL)
+    void (*scan_global_roots)(mmtk_trace_t trace);
+    // call mmtk_process_root_edge() for each root of the thread bound with tls (may be NULL)
+    void (*scan_thread_roots)(mmtk_trace_t trace, void* tls);
+    // the heap is exhausted. MMTk aborts when this returns (may be NULL)
+    void (*out_of_memory)(void);
+} mmtk_upcalls;
+
+typedef struct mmtk_stats {
+    int gc_count;
+    // a pause counts from when a gc asks mutators to stop until they are resumed
+    int64_t total_pause_nanos;
+    int64_t max_pause_nanos;
+    // bytes given by mmtk_post_alloc(), by all mutators ever bound
+    int64_t allocated_bytes;
+    int64_t used_bytes;
+    int64_t heap_bytes;
+} mmtk_stats;
+
+/*
+ * boot MMTk with a fixed heap of heap_bytes, and collector_threads gc threads.
+ * options are MMTk options as "name=value,name=value" (e.g. "verbose=1"), or NULL
+ * @return 0 if success
+ */
+int mmtk_init(size_t heap_bytes, int collector_threads, const char* options, const mmtk_upcalls* upcalls);
+
+const char* mmtk_plan_name(void);
+size_t mmtk_gc_header_bytes(void);
+
+mmtk_mutator_t mmtk_bind_mutator(void* tls);
+void mmtk_unbind_mutator(mmtk_mutator_t mutator);
+
+/*
+ * allocate bytes (including GC header and status word), with the start of the object aligned to align at offset.
+ * the status word is cleared. The object should be initialized, then mmtk_post_alloc() called before the next gc poll
+ */
+mmtk_object_t mmtk_alloc(mmtk_mutator_t mutator, size_t bytes, size_t align, size_t offset, int allocator);
+void mmtk_post_alloc(mmtk_mutator_t mutator, mmtk_object_t object, size_t bytes, int allocator);
+
+// store value into a reference field of src, through the plan's write barrier
+void mmtk_write_reference(mmtk_mutator_t mutator, mmtk_object_t src, mmtk_object_t* slot, mmtk_object_t value);
+
+void mmtk_gc_poll(mmtk_mutator_t mutator);
+void mmtk_enter_safe_region(mmtk_mutator_t mutator);
+void mmtk_leave_safe_region(mmtk_mutator_t mutator);
+
+// collect, and return when it is done. The caller should be a bound mutator
+void mmtk_collect(void);
+
+// for scan_object: slot is a reference field of source
+void mmtk_process_edge(mmtk_trace_t trace, mmtk_object_t source, mmtk_object_t* slot);
+// for scan_global_roots/scan_thread_roots
+void mmtk_process_root_edge(mmtk_trace_t trace, mmtk_object_t* slot);
+
+void mmtk_get_stats(mmtk_stats* stats);
+
+#ifdef __cplusplus
+}
+#endif
+
+#endif
@@ -0,0 +1,78 @@
+package org.mmtk.host;
+
+import org.mmtk.plan.CollectorContext;
+import org.mmtk.plan.MutatorContext;
+import org.mmtk.plan.Plan;
+import org.mmtk.plan.PlanConstraints;
+import org.mmtk.utility.Log;
+import org.mmtk.vm.ActivePlan;
+import org.rjava.osext.OSAtomic;
+import org.rjava.osext.OSConcurrency;
+import org.rjava.osext.OSMemory;
+import org.rjava.restriction.rulesets.RJavaCore;
+import org.vmmagic.unboxed.Address;
+
+import org.mmtk.host.select.ConstraintsSelect;
+import org.mmtk.host.select.PlanSelect;
+
+@RJavaCore
+public class ActivePlanExt extends ActivePlan {
+    @Override
+    public Plan global() {
+        return PlanSelect.getPlan();
+    }
+    
+    @Override
+    public PlanConstraints constraints() {
+        return ConstraintsSelect.getConstraints();
+    }
+    
+    @Override
+    public CollectorContext collector() {
+        return HostScheduler.getCurrentContext().collector();
+    }
+    
+    @Override
+    public boolean isMutator() {
+        return !HostScheduler.getCurrentContext().isCollector();
+    }
+    
+    @Override
+    public MutatorContext mutator() {
+        return HostScheduler.getCurrentContext().mutator();
+    }
+    
+    Log tempLog = new Log();
+    
+    @Override
+    public Log log() {
+        HostContext current = (HostContext) OSConcurrency.getThreadLocal();
+        if (current == null)
+            return tempLog;
+        
+        return current.isCollector() ? current.collector().getLog() : current.mutator().getLog();
+    }
+    
+    @Override
+    public int collectorCount() {
+        return HostScheduler.collectorCount;
+    }
+    
+    // collectors iterate mutators in parallel, each claims the next one
+    private Address mutatorCursor = OSMemory.malloc(HostConstants.BYTES_IN_INT);
+    
+    @Override
+    public void resetMutatorIterator() {
+        OSAtomic.storeRelease(mutatorCursor, 0);
+    }
+    
+    @Override
+    public MutatorContext getNextMutator() {
+        int i = OSAtomic.fetchAndAdd(mutatorCursor, 1);
+        if (i < HostScheduler.mutatorCount)
+            return HostScheduler.mutatorContexts[i].mutator();
+        
+        return null;
+    }
+
+}
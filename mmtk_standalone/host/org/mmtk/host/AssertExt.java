@@ -0,0 +1,36 @@
+package org.mmtk.host;
+
+import org.mmtk.vm.Assert;
+import org.rjava.restriction.rulesets.RJavaCore;
+
+@RJavaCore
+public class AssertExt extends Assert {
+
+    @Override
+    public void fail(String message) {
+        Host.fail(message);
+    }
+    
+    @Override
+    public void _assert(boolean cond) {
+        if (!cond)
+            fail("assertion failed");
+    }
+    
+    @Override
+    public void _assert(boolean cond, String message) {
+        if (!cond)
+            fail(message);
+    }
+    
+    @Override
+    public void dumpStack() {
+        Thread.dumpStack();
+    }
+    
+    @Override
+    protected boolean getVerifyAssertionsConstant() {
+        return Host.DEBUG;
+    }
+
+}
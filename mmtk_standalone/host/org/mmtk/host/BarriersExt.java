@@ -0,0 +1,243 @@
+package org.mmtk.host;
+
+import org.mmtk.vm.Barriers;
+import org.rjava.restriction.rulesets.RJavaCore;
+import org.vmmagic.pragma.Inline;
+import org.vmmagic.unboxed.Address;
+import org.vmmagic.unboxed.Extent;
+import org.vmmagic.unboxed.ObjectReference;
+import org.vmmagic.unboxed.Offset;
+import org.vmmagic.unboxed.Word;
+
+/**
+ * the actual memory accesses behind MMTk barriers. metaDataA is the offset of the field from the object reference
+ * (see Host.writeReference()), metaDataB and mode are not used
+ */
+@RJavaCore
+public class BarriersExt extends Barriers {
+    @Inline
+    private static Offset offset(Word metaDataA) {
+        return metaDataA.toOffset();
+    }
+    
+    @Override
+    public void booleanWrite(ObjectReference ref, boolean value, Word metaDataA,
+            Word metaDataB, int mode) {
+        ref.toAddress().store((value ? (byte) 1 : (byte) 0), offset(metaDataA));
+    }
+    
+    @Override
+    public boolean booleanRead(ObjectReference ref, Word metaDataA, Word metaDataB,
+            int mode) {
+        return ref.toAddress().loadByte(offset(metaDataA)) != 0;
+    }
+    
+    @Override
+    public void byteWrite(ObjectReference ref, byte value, Word metaDataA,
+            Word metaDataB, int mode) {
+        ref.toAddress().store(value, offset(metaDataA));
+    }
+    
+    @Override
+    public byte byteRead(ObjectReference ref, Word metaDataA, Word metaDataB,
+            int mode) {
+        return ref.toAddress().loadByte(offset(metaDataA));
+    }
+    
+    @Override
+    public void charWrite(ObjectReference ref, char value, Word metaDataA,
+            Word metaDataB, int mode) {
+        ref.toAddress().store(value, offset(metaDataA));
+    }
+    
+    @Override
+    public char charRead(ObjectReference ref, Word metaDataA, Word metaDataB,
+            int mode) {
+        return ref.toAddress().loadChar(offset(metaDataA));
+    }
+    
+    @Override
+    public void shortWrite(ObjectReference ref, short value, Word metaDataA,
+            Word metaDataB, int mode) {
+        ref.toAddress().store(value, offset(metaDataA));
+    }
+    
+    @Override
+    public short shortRead(ObjectReference ref, Word metaDataA, Word metaDataB,
+            int mode) {
+        return ref.toAddress().loadShort(offset(metaDataA));
+    }
+    
+    @Override
+    public void intWrite(ObjectReference ref, int value, Word metaDataA,
+            Word metaDataB, int mode) {
+        ref.toAddress().store(value, offset(metaDataA));
+    }
+    
+    @Override
+    public int intRead(ObjectReference ref, Word metaDataA, Word metaDataB,
+            int mode) {
+        return ref.toAddress().loadInt(offset(metaDataA));
+    }
+    
+    @Override
+    public boolean intTryCompareAndSwap(ObjectReference objref, int old,
+            int value, Word metaDataA, Word metaDataB, int mode) {
+        return objref.toAddress().attempt(old, value, offset(metaDataA));
+    }
+    
+    @Override
+    public void longWrite(ObjectReference ref, long value, Word metaDataA,
+            Word metaDataB, int mode) {
+        ref.toAddress().store(value, offset(metaDataA));
+    }
+    
+    @Override
+    public long longRead(ObjectReference ref, Word metaDataA, Word metaDataB,
+            int mode) {
+        return ref.toAddress().loadLong(offset(metaDataA));
+    }
+    
+    @Override
+    public boolean longTryCompareAndSwap(ObjectReference objref, long old,
+            long value, Word metaDataA, Word metaDataB, int mode) {
+        // a word is 64 bits (HostConstants.BUILD_FOR_64_ADDRESS)
+        return objref.toAddress().attempt(Word.fromLong(old), Word.fromLong(value), offset(metaDataA));
+    }
+    
+    @Override
+    public void floatWrite(ObjectReference ref, float value, Word metaDataA,
+            Word metaDataB, int mode) {
+        ref.toAddress().store(value, offset(metaDataA));
+    }
+    
+    @Override
+    public float floatRead(ObjectReference ref, Word metaDataA, Word metaDataB,
+            int mode) {
+        return ref.toAddress().loadFloat(offset(metaDataA));
+    }
+    
+    @Override
+    public void doubleWrite(ObjectReference ref, double value, Word metaDataA,
+            Word metaDataB, int mode) {
+        ref.toAddress().store(value, offset(metaDataA));
+    }
+    
+    @Override
+    public double doubleRead(ObjectReference ref, Word metaDataA, Word metaDataB,
+            int mode) {
+        return ref.toAddress().loadDouble(offset(metaDataA));
+    }
+    
+    @Override
+    public void objectReferenceWrite(ObjectReference ref,
+            ObjectReference value, Word metaDataA, Word metaDataB, int mode) {
+        ref.toAddress().store(value, offset(metaDataA));
+    }
+    
+    @Override
+    public ObjectReference objectReferenceRead(ObjectReference ref,
+            Word metaDataA, Word metaDataB, int mode) {
+        return ref.toAddress().loadObjectReference(offset(metaDataA));
+    }
+    
+    @Override
+    public void objectReferenceNonHeapWrite(Address slot,
+            ObjectReference target, Word metaDataA, Word metaDataB) {
+        slot.store(target);
+    }
+    
+    @Override
+    public ObjectReference objectReferenceAtomicWrite(ObjectReference ref,
+            ObjectReference target, Word metaDataA, Word metaDataB, int mode) {
+        ObjectReference old;
+        do {
+            old = ref.toAddress().prepareObjectReference(offset(metaDataA));
+        } while (!ref.toAddress().attempt(old, target, offset(metaDataA)));
+        return old;
+    }
+    
+    @Override
+    public boolean objectReferenceTryCompareAndSwap(ObjectReference ref,
+            ObjectReference old, ObjectReference target, Word metaDataA,
+            Word metaDataB, int mode) {
+        return ref.toAddress().attempt(old, target, offset(metaDataA));
+    }
+    
+    @Override
+    public void wordWrite(ObjectReference ref, Word target, Word metaDataA,
+            Word metaDataB, int mode) {
+        ref.toAddress().store(target, offset(metaDataA));
+    }
+    
+    @Override
+    public Word wordAtomicWrite(ObjectReference ref, Word rawTarget,
+            Word metaDataA, Word metaDataB, int mode) {
+        Word old;
+        do {
+            old = ref.toAddress().prepareWord(offset(metaDataA));
+        } while (!ref.toAddress().attempt(old, rawTarget, offset(metaDataA)));
+        return old;
+    }
+    
+    @Override
+    public boolean wordTryCompareAndSwap(ObjectReference ref, Word old,
+            Word target, Word metaDataA, Word metaDataB, int mode) {
+        return ref.toAddress().attempt(old, target, offset(metaDataA));
+    }
+    
+    @Override
+    public Word wordRead(ObjectReference ref, Word metaDataA, Word metaDataB,
+            int mode) {
+        return ref.toAddress().loadWord(offset(metaDataA));
+    }
+    
+    @Override
+    public void addressWrite(ObjectReference ref, Address target,
+            Word metaDataA, Word metaDataB, int mode) {
+        ref.toAddress().store(target, offset(metaDataA));
+    }
+    
+    @Override
+    public Address addressRead(ObjectReference ref, Word metaDataA,
+            Word metaDataB, int mode) {
+        return ref.toAddress().loadAddress(offset(metaDataA));
+    }
+    
+    @Override
+    public boolean addressTryCompareAndSwap(ObjectReference ref, Address old,
+            Address target, Word metaDataA, Word metaDataB, int mode) {
+        return ref.toAddress().attempt(old, target, offset(metaDataA));
+    }
+    
+    @Override
+    public void offsetWrite(ObjectReference ref, Offset target, Word metaDataA,
+            Word metaDataB, int mode) {
+        ref.toAddress().store(target.toWord(), offset(metaDataA));
+    }
+    
+    @Override
+    public Offset offsetRead(ObjectReference ref, Word metaDataA,
+            Word metaDataB, int mode) {
+        return ref.toAddress().loadWord(offset(metaDataA)).toOffset();
+    }
+    
+    @Override
+    public void extentWrite(ObjectReference ref, Extent target, Word metaDataA,
+            Word metaDataB, int mode) {
+        ref.toAddress().store(target.toWord(), offset(metaDataA));
+    }
+    
+    @Override
+    public Extent extentRead(ObjectReference ref, Word metaDataA,
+            Word metaDataB, int mode) {
+        return ref.toAddress().loadWord(offset(metaDataA)).toExtent();
+    }
+    
+    @Override
+    public void objectArrayStoreNoGCBarrier(Object[] dst, int index,
+            Object value) {
+        dst[index] = value;
+    }
+
+}
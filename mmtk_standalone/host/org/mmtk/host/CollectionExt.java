@@ -0,0 +1,64 @@
+package org.mmtk.host;
+
+import org.mmtk.plan.CollectorContext;
+import org.mmtk.plan.MutatorContext;
+import org.mmtk.vm.Collection;
+import org.rjava.restriction.rulesets.RJavaCore;
+import org.vmmagic.pragma.Interruptible;
+import org.vmmagic.pragma.Unpreemptible;
+
+@RJavaCore
+public class CollectionExt extends Collection {
+
+    @Override
+    @Interruptible
+    public void spawnCollectorContext(CollectorContext context) {
+        HostScheduler.newCollectorThread(new HostContext(context));
+    }
+    
+    @Override
+    public int getDefaultThreads() {
+        return Host.collectors;
+    }
+    
+    @Override
+    public int getActiveThreads() {
+        return Host.collectors;
+    }
+    
+    @Override
+    @Unpreemptible
+    public void blockForGC() {
+        // a gc is requested, but it may not have started yet
+        HostScheduler.block(HostScheduler.getCurrentContext(), true);
+    }
+    
+    @Override
+    public void prepareMutator(MutatorContext m) {
+        // do nothing
+    }
+    
+    @Override
+    public void requestMutatorFlush() {
+        HostScheduler.getCurrentContext().mutator().flush();
+    }
+    
+    @Override
+    @Unpreemptible
+    public void stopAllMutators() {
+        HostScheduler.stopAllMutators();
+    }
+    
+    @Override
+    @Unpreemptible
+    public void resumeAllMutators() {
+        HostScheduler.resumeAllMutators();
+    }
+    
+    @Override
+    public void outOfMemory() {
+        HostCallbacks.outOfMemory();
+        Host.fail("Out of memory");
+    }
+
+}
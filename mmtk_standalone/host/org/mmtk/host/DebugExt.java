@@ -0,0 +1,14 @@
+package org.mmtk.host;
+
+import org.mmtk.vm.Debug;
+import org.rjava.restriction.rulesets.RJavaCore;
+
+@RJavaCore
+public class DebugExt extends Debug {
+
+    @Override
+    public boolean isEnabled() {
+        return Host.DEBUG;
+    }
+
+}
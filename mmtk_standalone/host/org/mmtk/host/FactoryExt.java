@@ -19,122 +19,107 @@ import org.mmtk.vm.Statistics;
 import org.mmtk.vm.Strings;
 import org.mmtk.vm.SynchronizedCounter;
 import org.mmtk.vm.TraceInterface;
+import org.rjava.restriction.rulesets.RJavaCore;
 import org.vmutil.options.OptionSet;
 
+@RJavaCore
 public class FactoryExt extends Factory {
-
+    // Option set, used by FactoryExt
+    public static OptionSet gcOptions = new HostOptionSet("-X:gc");
+    
     @Override
     public OptionSet getOptionSet() {
-        // TODO Auto-generated method stub
-        return null;
+        return gcOptions;
     }
-
+    
     @Override
     public ActivePlan newActivePlan() {
-        // TODO Auto-generated method stub
-        return null;
+        return new ActivePlanExt();
     }
-
+    
     @Override
     public Assert newAssert() {
-        // TODO Auto-generated method stub
-        return null;
+        return new AssertExt();
     }
-
+    
     @Override
     public Barriers newBarriers() {
-        // TODO Auto-generated method stub
-        return null;
+        return new BarriersExt();
     }
-
+    
     @Override
     public Collection newCollection() {
-        // TODO Auto-generated method stub
-        return null;
+        return new CollectionExt();
     }
-
+    
     @Override
     public BuildTimeConfig newBuildTimeConfig() {
-        // TODO Auto-generated method stub
-        return null;
+        return new BuildTimeConfigExt();
     }
-
+    
     @Override
     public Lock newLock(String name) {
-        // TODO Auto-generated method stub
-        return null;
+        return new LockExt();
     }
-
+    
     @Override
     public Monitor newMonitor(String name) {
-        // TODO Auto-generated method stub
-        return null;
+        return new MonitorExt();
     }
-
+    
     @Override
     public Memory newMemory() {
-        // TODO Auto-generated method stub
-        return null;
+        return new MemoryExt();
     }
-
+    
     @Override
     public ObjectModel newObjectModel() {
-        // TODO Auto-generated method stub
-        return null;
+        return new ObjectModelExt();
     }
-
+    
     @Override
     public ReferenceProcessor newReferenceProcessor(int semantics) {
-        // TODO Auto-generated method stub
-        return null;
+        return new ReferenceProcessorExt();
     }
-
+    
     @Override
     public FinalizableProcessor newFinalizableProcessor() {
-        // TODO Auto-generated method stub
-        return null;
+        return new FinalizableProcessorExt();
     }
-
+    
     @Override
     public Scanning newScanning() {
-        // TODO Auto-generated method stub
-        return null;
+        return new ScanningExt();
     }
-
+    
     @Override
     public Statistics newStatistics() {
-        // TODO Auto-generated method stub
-        return null;
+        return new StatisticsExt();
     }
-
+    
     @Override
     public Strings newStrings() {
-        // TODO Auto-generated method stub
-        return null;
+        return new StringsExt();
     }
-
+    
     @Override
     public SynchronizedCounter newSynchronizedCounter() {
-        // TODO Auto-generated method stub
-        return null;
+        return new SynchronizedCounterExt();
     }
-
+    
     @Override
     public TraceInterface newTraceInterface() {
-        // TODO Auto-generated method stub
-        return null;
+        return new TraceInterfaceExt();
     }
-
+    
     @Override
     public MMTk_Events newEvents() {
-        // TODO Auto-generated method stub
-        return null;
+        return new MMTk_EventsExt();
     }
-
+    
     @Override
     public Debug newDebug() {
-        // TODO Auto-generated method stub
-        return null;
+        return new DebugExt();
     }
 
 }
@@ -0,0 +1,25 @@
+package org.mmtk.host;
+
+import org.mmtk.plan.TraceLocal;
+import org.mmtk.vm.FinalizableProcessor;
+import org.rjava.restriction.rulesets.RJavaCore;
+
+@RJavaCore
+public class FinalizableProcessorExt extends FinalizableProcessor {
+
+    @Override
+    public void clear() {
+        Host.warn("FinalizableProcessor.clear() called, but not implemented");
+    }
+    
+    @Override
+    public void scan(TraceLocal trace, boolean nursery) {
+        Host.warn("FinalizableProcessor.scan() called, but not implemented");
+    }
+    
+    @Override
+    public void forward(TraceLocal trace, boolean nursery) {
+        Host.warn("FinalizableProcessor.forward() called, but not implemented");
+    }
+
+}
@@ -0,0 +1,201 @@
+package org.mmtk.host;
+
+import org.mmtk.plan.Plan;
+import org.mmtk.plan.TraceLocal;
+import org.mmtk.plan.TransitiveClosure;
+import org.mmtk.utility.Constants;
+import org.mmtk.utility.heap.HeapGrowthManager;
+import org.mmtk.utility.heap.Mmapper;
+import org.mmtk.utility.options.Options;
+import org.rjava.osext.OSConcurrency;
+import org.rjava.restriction.rulesets.RJavaCore;
+import org.vmmagic.pragma.Inline;
+import org.vmmagic.unboxed.Address;
+import org.vmmagic.unboxed.Extent;
+import org.vmmagic.unboxed.ObjectReference;
+import org.vmmagic.unboxed.Word;
+
+import org.mmtk.host.select.ConstraintsSelect;
+import org.mmtk.host.select.PlanSelect;
+
+/**
+ * entry points of the standalone MMTk. They are called from C (see c/mmtk.h, which wraps them as the embedding API),
+ * so they are static, and take the mutator handle (a HostContext) explicitly.
+ *
+ * Object layout expected from the embedding program: an object starts with gcHeaderBytes() of GC header,
+ * followed by one word of MMTk status bits. The object reference points at the status word.
+ * The size of an object (HostCallbacks.objectSize()) counts from the start of the object.
+ */
+@RJavaCore
+public class Host {
+    public static final boolean DEBUG = false;
+    
+    public static int collectors = 1;
+    public static boolean booted = false;
+    
+    // size of the GC header in front of the object reference
+    public static int gcHeaderBytes;
+    
+    /**
+     * create the plan, so options can be set before boot()
+     */
+    public static void init() {
+        PlanSelect.initPlan();
+        HostScheduler.boot();
+        gcHeaderBytes = ConstraintsSelect.getConstraints().gcHeaderWords() << HostConstants.LOG_BYTES_IN_WORD;
+        
+        // MMTk may log on the booting thread, and logging needs a context
+        OSConcurrency.setThreadLocal(new HostContext(Address.zero()));
+    }
+    
+    /**
+     * @param arg an MMTk option as name=value
+     * @return true if it is understood
+     */
+    public static boolean setOption(String arg) {
+        return FactoryExt.gcOptions.process(arg);
+    }
+    
+    public static void boot(Extent heapSize, int collectorThreads) {
+        collectors = collectorThreads;
+        
+        Mmapper.boot();
+        HeapGrowthManager.boot(heapSize, heapSize);
+        
+        Options.eagerMmapSpaces.setValue(true);
+        Options.variableSizeHeap.setValue(false);
+        Options.noFinalizer.setValue(true);
+        Options.noReferenceTypes.setValue(true);
+        
+        PlanSelect.getPlan().processOptions();
+        PlanSelect.getPlan().enableAllocation();
+        PlanSelect.getPlan().enableCollection();
+        booted = true;
+    }
+    
+    public static String planName() {
+        return PlanSelect.getName();
+    }
+    
+    public static int gcHeaderBytes() {
+        return gcHeaderBytes;
+    }
+    
+    /**
+     * @param tls the embedding program's handle for the calling thread, given back when scanning its roots
+     * @return the mutator handle of the calling thread
+     */
+    public static HostContext bindMutator(Address tls) {
+        HostContext context = new HostContext(tls);
+        OSConcurrency.setThreadLocal(context);
+        HostScheduler.addMutator(context);
+        return context;
+    }
+    
+    public static void unbindMutator(HostContext context) {
+        context.mutator().flush();
+        HostScheduler.removeMutator(context);
+        context.mutator().deinitMutator();
+        OSConcurrency.setThreadLocal(null);
+    }
+    
+    /**
+     * @return the object reference of a new object of bytes (including GC header and status word).
+     * The object should be initialized and postAlloc() called before the next gc poll
+     */
+    @Inline
+    public static ObjectReference alloc(HostContext context, int bytes, int align, int offset, int allocator) {
+        HostScheduler.gcPoint(context);
+        Address start = context.mutator().alloc(bytes, align, offset, allocator, Plan.DEFAULT_SITE);
+        return start.plus(gcHeaderBytes).toObjectReference();
+    }
+    
+    @Inline
+    public static void postAlloc(HostContext context, ObjectReference object, int bytes, int allocator) {
+        context.mutator().postAlloc(object, ObjectReference.nullReference(), bytes, allocator);
+        context.allocationVolume += bytes;
+    }
+    
+    /**
+     * store value into the reference field slot of src, through the write barrier if the plan needs one
+     */
+    @Inline
+    public static void writeReference(HostContext context, ObjectReference src, Address slot, ObjectReference value) {
+        if (ConstraintsSelect.getConstraints().needsObjectReferenceWriteBarrier()) {
+            Word offset = slot.diff(src.toAddress()).toWord();
+            context.mutator().objectReferenceWrite(src, slot, value, offset, Word.zero(), Constants.INSTANCE_FIELD);
+        } else slot.store(value);
+    }
+    
+    @Inline
+    public static void gcPoll(HostContext context) {
+        HostScheduler.gcPoint(context);
+    }
+    
+    public static void enterSafeRegion(HostContext context) {
+        HostScheduler.enterSafeRegion(context);
+    }
+    
+    public static void leaveSafeRegion(HostContext context) {
+        HostScheduler.leaveSafeRegion(context);
+    }
+    
+    /**
+     * collect now, and return when it is done. The caller should be a bound mutator
+     */
+    public static void collect() {
+        Plan.handleUserCollectionRequest();
+    }
+    
+    /**
+     * called by the embedding program from HostCallbacks.scanObject(), for each reference field of the object
+     */
+    @Inline
+    public static void processEdge(TransitiveClosure trace, ObjectReference source, Address slot) {
+        trace.processEdge(source, slot);
+    }
+    
+    /**
+     * called by the embedding program from HostCallbacks.scanGlobalRoots()/scanThreadRoots(), for each root slot
+     */
+    @Inline
+    public static void processRootEdge(TraceLocal trace, Address slot, boolean untraced) {
+        trace.processRootEdge(slot, untraced);
+    }
+    
+    /*
+     * statistics
+     */
+    public static int gcCount() {
+        return HostScheduler.getGCCount();
+    }
+    
+    public static long totalPauseNanos() {
+        return HostScheduler.totalPauseNanos;
+    }
+    
+    public static long maxPauseNanos() {
+        return HostScheduler.maxPauseNanos;
+    }
+    
+    public static long allocationVolume() {
+        return HostScheduler.getAllocationVolume();
+    }
+    
+    public static long usedBytes() {
+        return ((long) PlanSelect.getPlan().getPagesUsed()) << HostConstants.LOG_BYTES_IN_PAGE;
+    }
+    
+    public static long totalBytes() {
+        return ((long) PlanSelect.getPlan().getTotalPages()) << HostConstants.LOG_BYTES_IN_PAGE;
+    }
+    
+    public static void fail(String message) {
+        System.out.println("MMTk fail: " + message);
+        System.exit(1);
+    }
+    
+    public static void warn(Object message) {
+        System.out.println("[Warning]" + message);
+    }
+}
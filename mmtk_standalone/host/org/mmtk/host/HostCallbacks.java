@@ -0,0 +1,39 @@
+package org.mmtk.host;
+
+import org.mmtk.plan.TraceLocal;
+import org.mmtk.plan.TransitiveClosure;
+import org.rjava.restriction.rulesets.RJavaCore;
+import org.vmmagic.unboxed.Address;
+import org.vmmagic.unboxed.ObjectReference;
+
+/**
+ * what MMTk needs to know from the embedding program. They are implemented in C (c/mmtk.c),
+ * which calls the functions the embedding program registers in mmtk_init()
+ */
+@RJavaCore
+public abstract class HostCallbacks {
+    /**
+     * @return the size of object in bytes, from the start of its GC header
+     */
+    public static native int objectSize(ObjectReference object);
+    
+    /**
+     * call Host.processEdge() for each reference field of object
+     */
+    public static native void scanObject(TransitiveClosure trace, ObjectReference object);
+    
+    /**
+     * call Host.processRootEdge() for each root that does not belong to a thread
+     */
+    public static native void scanGlobalRoots(TraceLocal trace);
+    
+    /**
+     * call Host.processRootEdge() for each root of the mutator thread bound with tls
+     */
+    public static native void scanThreadRoots(TraceLocal trace, Address tls);
+    
+    /**
+     * the heap is exhausted. It should not return
+     */
+    public static native void outOfMemory();
+}
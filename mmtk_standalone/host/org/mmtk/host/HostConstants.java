@@ -0,0 +1,104 @@
+package org.mmtk.host;
+
+import org.rjava.restriction.rulesets.RJavaCore;
+import org.vmmagic.unboxed.Address;
+
+@RJavaCore
+public abstract class HostConstants {
+    /* true if build for 64bits address, otherwise 32 bits */
+    public static final boolean BUILD_FOR_64_ADDRESS = true;
+    
+    /* arch */
+    public static final boolean BUILD_FOR_IA32 = true;
+    
+    public static final Address HEAP_START;
+    public static final Address CONTIGUOUS_START;
+    public static final Address HEAP_END;
+    
+    static {
+        // we reserved 0x10000000 size for VM space (see MemoryExt),
+        // the range is fixed, so the embedding program should not map anything there
+        if (BUILD_FOR_64_ADDRESS) {
+            HEAP_START          = Address.fromLong(0x000200000000L);
+            CONTIGUOUS_START    = Address.fromLong(0x000210000000L);
+            HEAP_END            = Address.fromLong(0x000300000000L);
+        } else {
+            HEAP_START          = Address.fromIntZeroExtend(0x31000000);
+            CONTIGUOUS_START    = Address.fromIntZeroExtend(0x36800000);
+            HEAP_END            = Address.fromIntZeroExtend(0x70000000);
+        }
+    }
+    
+    /*
+     * alignment 
+     */
+    public static final int LOG_MIN_ALIGNMENT = 0x2;
+    public static final int ALIGNMENT_VALUE = 0xdeadbeef;
+    /*
+     * size constants
+     */    
+    public static final int LOG_BYTES_IN_BYTE = 0;
+    public static final int BYTES_IN_BYTE = 1;
+    public static final int LOG_BITS_IN_BYTE = 3;
+    public static final int BITS_IN_BYTE = 1 << LOG_BITS_IN_BYTE;
+    
+    public static final int LOG_BYTES_IN_BOOLEAN = 0;
+    public static final int BYTES_IN_BOOLEAN = 1 << LOG_BYTES_IN_BOOLEAN;
+    public static final int LOG_BITS_IN_BOOLEAN = LOG_BITS_IN_BYTE + LOG_BYTES_IN_BOOLEAN;
+    public static final int BITS_IN_BOOLEAN = 1 << LOG_BITS_IN_BOOLEAN;
+    
+    public static final int LOG_BYTES_IN_CHAR = 1;
+    public static final int BYTES_IN_CHAR = 1 << LOG_BYTES_IN_CHAR;
+    public static final int LOG_BITS_IN_CHAR = LOG_BITS_IN_BYTE + LOG_BYTES_IN_CHAR;
+    public static final int BITS_IN_CHAR = 1 << LOG_BITS_IN_CHAR;
+    
+    public static final int LOG_BYTES_IN_SHORT = 1;
+    public static final int BYTES_IN_SHORT = 1 << LOG_BYTES_IN_SHORT;
+    public static final int LOG_BITS_IN_SHORT = LOG_BITS_IN_BYTE + LOG_BYTES_IN_SHORT;
+    public static final int BITS_IN_SHORT = 1 << LOG_BITS_IN_SHORT;
+    
+    public static final int LOG_BYTES_IN_INT = 2;
+    public static final int BYTES_IN_INT = 1 << LOG_BYTES_IN_INT;
+    public static final int LOG_BITS_IN_INT = LOG_BITS_IN_BYTE + LOG_BYTES_IN_INT;
+    public static final int BITS_IN_INT = 1 << LOG_BITS_IN_INT;
+    
+    public static final int LOG_BYTES_IN_FLOAT = 2;
+    public static final int BYTES_IN_FLOAT = 1 << LOG_BYTES_IN_FLOAT;
+    public static final int LOG_BITS_IN_FLOAT = LOG_BITS_IN_BYTE + LOG_BYTES_IN_FLOAT;
+    public static final int BITS_IN_FLOAT = 1 << LOG_BITS_IN_FLOAT;
+    
+    public static final int LOG_BYTES_IN_LONG = 3;
+    public static final int BYTES_IN_LONG = 1 << LOG_BYTES_IN_LONG;
+    public static final int LOG_BITS_IN_LONG = LOG_BITS_IN_BYTE + LOG_BYTES_IN_LONG;
+    public static final int BITS_IN_LONG = 1 << LOG_BITS_IN_LONG;
+    
+    public static final int LOG_BYTES_IN_DOUBLE = 3;
+    public static final int BYTES_IN_DOUBLE = 1 << LOG_BYTES_IN_DOUBLE;
+    public static final int LOG_BITS_IN_DOUBLE = LOG_BITS_IN_BYTE + LOG_BYTES_IN_DOUBLE;
+    public static final int BITS_IN_DOUBLE = 1 << LOG_BITS_IN_DOUBLE;
+    
+    public static final int LOG_BYTES_IN_ADDRESS = BUILD_FOR_64_ADDRESS ? 3 : 2;
+    public static final int BYTES_IN_ADDRESS = 1 << LOG_BYTES_IN_ADDRESS;
+    public static final int LOG_BITS_IN_ADDRESS = LOG_BITS_IN_BYTE + LOG_BYTES_IN_ADDRESS;
+    public static final int BITS_IN_ADDRESS = 1 << LOG_BITS_IN_ADDRESS;
+    
+    public static final int LOG_BYTES_IN_WORD = BUILD_FOR_64_ADDRESS ? 3 : 2;
+    public static final int BYTES_IN_WORD = 1 << LOG_BYTES_IN_WORD;
+    public static final int LOG_BITS_IN_WORD = LOG_BITS_IN_BYTE + LOG_BYTES_IN_WORD;
+    public static final int BITS_IN_WORD = 1 << LOG_BITS_IN_WORD;
+    
+    public static final int LOG_BYTES_IN_EXTENT = BUILD_FOR_64_ADDRESS ? 3 : 2;
+    public static final int BYTES_IN_EXTENT = 1 << LOG_BYTES_IN_EXTENT;
+    public static final int LOG_BITS_IN_EXTENT = LOG_BITS_IN_BYTE + LOG_BYTES_IN_EXTENT;
+    public static final int BITS_IN_EXTENT = 1 << LOG_BITS_IN_EXTENT;
+    
+    public static final int LOG_BYTES_IN_OFFSET = BUILD_FOR_64_ADDRESS ? 3 : 2;
+    public static final int BYTES_IN_OFFSET = 1 << LOG_BYTES_IN_OFFSET;
+    public static final int LOG_BITS_IN_OFFSET = LOG_BITS_IN_BYTE + LOG_BYTES_IN_OFFSET;
+    public static final int BITS_IN_OFFSET = 1 << LOG_BITS_IN_OFFSET;
+    
+    public static final int LOG_BYTES_IN_PAGE = 12;
+    public static final int BYTES_IN_PAGE = 1 << LOG_BYTES_IN_PAGE;
+    public static final int LOG_BITS_IN_PAGE = LOG_BITS_IN_BYTE + LOG_BYTES_IN_PAGE;
+    public static final int BITS_IN_PAGE = 1 << LOG_BITS_IN_PAGE;
+}
@@ -0,0 +1,82 @@
+package org.mmtk.host;
+
+import org.mmtk.plan.CollectorContext;
+import org.mmtk.plan.MutatorContext;
+import org.rjava.osext.OSConcurrency;
+import org.rjava.restriction.rulesets.RJavaCore;
+import org.vmmagic.pragma.Inline;
+import org.vmmagic.unboxed.Address;
+
+import org.mmtk.host.select.MutatorSelect;
+
+/**
+ * MMTk state of one thread. A mutator context is created when the embedding program binds one of its threads
+ * (see Host.bindMutator()), and the C side keeps it as the mutator handle.
+ * A collector context runs in a thread we start (see HostScheduler.newCollectorThread())
+ */
+@RJavaCore
+public class HostContext implements Runnable {
+    private static int idCount = 0;
+    private static final Object idLock = new Object();
+    protected int id;
+    
+    // the embedding program's handle for the thread, given back to it when its roots are scanned
+    protected Address tls;
+    
+    protected MutatorContext mutator;
+    protected CollectorContext collector;
+    
+    // set under HostScheduler.lock: the thread is waiting for a gc to finish, or is in a gc safe region
+    boolean blocked = false;
+    boolean inSafeRegion = false;
+    
+    // bytes allocated since the context is bound
+    public long allocationVolume = 0;
+    
+    public HostContext(Address tls) {
+        this.id = nextId();
+        this.tls = tls;
+        this.mutator = new MutatorSelect();
+        this.mutator.initMutator(id);
+    }
+    
+    public HostContext(CollectorContext collector) {
+        this.id = nextId();
+        this.tls = Address.zero();
+        this.collector = collector;
+        this.collector.initCollector(id);
+    }
+    
+    private static int nextId() {
+        synchronized (idLock) {
+            return idCount++;
+        }
+    }
+    
+    @Inline
+    public MutatorContext mutator() {
+        return mutator;
+    }
+    
+    public CollectorContext collector() {
+        return collector;
+    }
+    
+    public boolean isCollector() {
+        return collector != null;
+    }
+    
+    public Address getTls() {
+        return tls;
+    }
+    
+    public int getId() {
+        return id;
+    }
+    
+    public void run() {
+        // so HostScheduler.getCurrentContext() can find this context
+        OSConcurrency.setThreadLocal(this);
+        collector.run();
+    }
+}
@@ -0,0 +1,328 @@
+package org.mmtk.host;
+
+import org.rjava.restriction.rulesets.RJavaCore;
+import org.vmmagic.pragma.Uninterruptible;
+import org.vmmagic.unboxed.Extent;
+import org.vmmagic.unboxed.Word;
+import org.vmutil.options.AddressOption;
+import org.vmutil.options.BooleanOption;
+import org.vmutil.options.EnumOption;
+import org.vmutil.options.FloatOption;
+import org.vmutil.options.IntOption;
+import org.vmutil.options.MicrosecondsOption;
+import org.vmutil.options.Option;
+import org.vmutil.options.OptionSet;
+import org.vmutil.options.PagesOption;
+import org.vmutil.options.StringOption;
+
+@RJavaCore
+public class HostOptionSet extends OptionSet {
+    private String prefix;
+    
+    public HostOptionSet(String prefix) {
+        this.prefix = prefix;
+    }
+    
+    /**
+     * Take a string (most likely a command-line argument) and try to proccess it
+     * as an option command.  Return true if the string was understood, false
+     * otherwise.
+     *
+     * @param arg a String to try to process as an option command
+     * @return {@code true} if successful, {@code false} otherwise
+     */
+    public boolean process(String arg) {
+    
+      // First handle the "option commands"
+      if (arg.equals("help")) {
+         printHelp();
+         return true;
+      }
+      if (arg.equals("printOptions")) {
+         printOptions();
+         return true;
+      }
+      if (arg.length() == 0) {
+        printHelp();
+        return true;
+      }
+      
+      // Required format of arg is 'name=value'
+      // Split into 'name' and 'value' strings
+      int split = arg.indexOf('=');
+      if (split == -1) {
+        System.out.println("  Illegal option specification!\n  \""+arg+
+                    "\" must be specified as a name-value pair in the form of option=value");
+        return false;
+      }
+      
+      String name = arg.substring(0,split);
+      String value = arg.substring(split+1);
+      
+      Option o = getOption(name);
+      
+      if (o == null) return false;
+      
+      switch (o.getType()) {
+        case Option.BOOLEAN_OPTION:
+          if (value.equals("true")) {
+            ((BooleanOption)o).setValue(true);
+            return true;
+          } else if (value.equals("false")) {
+            ((BooleanOption)o).setValue(false);
+            return true;
+          }
+          return false;
+        case Option.INT_OPTION:
+          int ival = Integer.parseInt(value);
+          ((IntOption)o).setValue(ival);
+          return true;
+        case Option.ADDRESS_OPTION:
+          ival = Integer.parseInt(value);
+          ((AddressOption)o).setValue(ival);
+          return true;
+        case Option.FLOAT_OPTION:
+          float fval = Float.parseFloat(value);
+          ((FloatOption)o).setValue(fval);
+          return true;
+        case Option.STRING_OPTION:
+          ((StringOption)o).setValue(value);
+          return true;
+        case Option.ENUM_OPTION:
+          ((EnumOption)o).setValue(value);
+          return true;
+        case Option.PAGES_OPTION:
+          /*long pval = CommandLineArgs.parseMemorySize(o.getName(), name, "b", 1, arg, value);
+          if (pval < 0) return false;
+          ((PagesOption)o).setBytes(Extent.fromIntSignExtend((int)pval));*/
+          return true;
+        case Option.MICROSECONDS_OPTION:
+          int mval = Integer.parseInt(value);
+          ((MicrosecondsOption)o).setMicroseconds(mval);
+          return true;
+      }
+      
+      // None of the above tests matched, so this wasn't an option
+      return false;
+    }
+    
+    /**
+     * Print a short description of every option
+     */
+    public void printHelp() {
+    
+      System.out.println("Commands");
+      System.out.print(prefix);System.out.println("[:help]\t\t\tPrint brief description of arguments");
+      System.out.print(prefix);System.out.println(":printOptions\t\tPrint the current values of options");
+      System.out.println();
+      
+      //Begin generated help messages
+      System.out.print("Boolean Options (");
+      System.out.print(prefix);System.out.print(":<option>=true or ");
+      System.out.print(prefix);System.out.println(":<option>=false)");
+      System.out.println("Option                                 Description");
+      
+      Option o = getFirst();
+      while (o != null) {
+        if (o.getType() == Option.BOOLEAN_OPTION) {
+          String key = o.getKey();
+          System.out.print(key);
+          for (int c = key.length(); c<39;c++) {
+            System.out.print(" ");
+          }
+          System.out.println(o.getDescription());
+        }
+        o = o.getNext();
+      }
+      
+      System.out.print("\nValue Options (");System.out.print(prefix);System.out.println(":<option>=<value>)");
+      System.out.println("Option                         Type    Description");
+      
+      o = getFirst();
+      while (o != null) {
+        if (o.getType() != Option.BOOLEAN_OPTION &&
+            o.getType() != Option.ENUM_OPTION) {
+          String key = o.getKey();
+          System.out.print(key);
+          for (int c = key.length(); c<31;c++) {
+            System.out.print(" ");
+          }
+          switch (o.getType()) {
+            case Option.INT_OPTION:          System.out.print("int     "); break;
+            case Option.ADDRESS_OPTION:      System.out.print("address "); break;
+            case Option.FLOAT_OPTION:        System.out.print("float   "); break;
+            case Option.MICROSECONDS_OPTION: System.out.print("usec    "); break;
+            case Option.PAGES_OPTION:        System.out.print("bytes   "); break;
+            case Option.STRING_OPTION:       System.out.print("string  "); break;
+          }
+          System.out.println(o.getDescription());
+        }
+        o = o.getNext();
+      }
+      
+      System.out.println("\nSelection Options (set option to one of an enumeration of possible values)");
+      
+      o = getFirst();
+      while (o != null) {
+        if (o.getType() == Option.ENUM_OPTION) {
+          String key = o.getKey();
+          System.out.print(key);
+          for (int c = key.length(); c<31;c++) {
+            System.out.print(" ");
+          }
+          System.out.println(o.getDescription());
+          System.out.print("    { ");
+          boolean first = true;
+          for (String val : ((EnumOption)o).getValues()) {
+            System.out.print(first ? "" : ", ");
+            System.out.print(val);
+            first = false;
+          }
+          System.out.println(" }");
+        }
+        o = o.getNext();
+      }
+      
+      System.exit(10);
+    }
+    
+    /**
+     * Print out the option values
+     */
+    public void printOptions() {
+      System.out.println("Current value of GC options");
+      
+      Option o = getFirst();
+      while (o != null) {
+        if (o.getType() == Option.BOOLEAN_OPTION) {
+          String key = o.getKey();
+          System.out.print("\t");
+          System.out.print(key);
+          for (int c = key.length(); c<31;c++) {
+            System.out.print(" ");
+          }
+          System.out.print(" = ");
+          logValue(o, false);
+          System.out.println();
+        }
+        o = o.getNext();
+      }
+      
+      o = getFirst();
+      while (o != null) {
+        if (o.getType() != Option.BOOLEAN_OPTION &&
+            o.getType() != Option.ENUM_OPTION) {
+          String key = o.getKey();
+          System.out.print("\t");
+          System.out.print(key);
+          for (int c = key.length(); c<31;c++) {
+            System.out.print(" ");
+          }
+          System.out.print(" = ");
+          logValue(o, false);
+          System.out.println();
+        }
+        o = o.getNext();
+      }
+      
+      o = getFirst();
+      while (o != null) {
+        if (o.getType() == Option.ENUM_OPTION) {
+          String key = o.getKey();
+          System.out.print("\t");
+          System.out.print(key);
+          for (int c = key.length(); c<31;c++) {
+            System.out.print(" ");
+          }
+          System.out.print(" = ");
+          logValue(o, false);
+          System.out.println();
+        }
+        o = o.getNext();
+      }
+    }
+    
+    @Override
+    protected void logValue(Option o, boolean forXml) {
+      switch (o.getType()) {
+      case Option.BOOLEAN_OPTION:
+        System.out.print(((BooleanOption) o).getValue() ? "true" : "false");
+        break;
+      case Option.INT_OPTION:
+        System.out.print(((IntOption) o).getValue());
+        break;
+      case Option.ADDRESS_OPTION:
+        System.out.print(Long.toHexString(((AddressOption) o).getValue().toLong()));
+        break;
+      case Option.FLOAT_OPTION:
+        System.out.print(((FloatOption) o).getValue());
+        break;
+      case Option.MICROSECONDS_OPTION:
+        System.out.print(((MicrosecondsOption) o).getMicroseconds());
+        System.out.print(" usec");
+        break;
+      case Option.PAGES_OPTION:
+        System.out.print(((PagesOption) o).getBytes().toLong());
+        System.out.print(" bytes");
+        break;
+      case Option.STRING_OPTION:
+        System.out.print(((StringOption) o).getValue());
+        break;
+      case Option.ENUM_OPTION:
+        System.out.print(((EnumOption) o).getValueString());
+        break;
+      }
+    }
+    
+    @Override
+    protected void logString(String s) {
+      System.out.print(s);
+    }
+    
+    @Override
+    protected void logNewLine() {
+      System.out.println();
+    }
+    
+    @Override
+    protected String computeKey(String name) {
+      int space = name.indexOf(' ');
+      if (space < 0) return name.toLowerCase();
+      
+      String word = name.substring(0, space);
+      String key = word.toLowerCase();
+      
+      do {
+        int old = space+1;
+        space = name.indexOf(' ', old);
+        if (space < 0) {
+          key += name.substring(old);
+          return key;
+        }
+        key += name.substring(old, space);
+      } while (true);
+    }
+    
+    @Override
+    protected void warn(Option o, String message) {
+      System.out.println("WARNING: Option '" + o.getKey() + "' : " + message);
+    }
+    
+    @Override
+    protected void fail(Option o, String message) {
+      Host.fail("ERROR: Option '" + o.getKey() + "' : " + message);
+    }
+    
+    @Override
+    @Uninterruptible
+    protected int bytesToPages(Extent bytes) {
+      return bytes.plus(HostConstants.BYTES_IN_PAGE-1).toWord().rshl(HostConstants.LOG_BYTES_IN_PAGE).toInt();
+    }
+    
+    @Override
+    @Uninterruptible
+    protected Extent pagesToBytes(int pages) {
+      return Word.fromIntZeroExtend(pages).lsh(HostConstants.LOG_BYTES_IN_PAGE).toExtent();
+    }
+
+}
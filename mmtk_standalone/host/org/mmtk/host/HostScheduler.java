@@ -0,0 +1,228 @@
+package org.mmtk.host;
+
+import org.rjava.osext.OSAtomic;
+import org.rjava.osext.OSConcurrency;
+import org.rjava.osext.OSMemory;
+import org.rjava.restriction.rulesets.RJavaCore;
+import org.vmmagic.pragma.Inline;
+import org.vmmagic.unboxed.Address;
+
+/**
+ * stop-the-world for threads we dont own. Mutators are the embedding program's threads, they stop for gc only
+ * at gc polls (Host.gcPoll() and allocation) or when they wait in blockForGC(), and a thread in a gc safe region
+ * (it wont touch the heap until it leaves) counts as stopped.
+ * All state changes are made holding lock, and waiting threads wait on it.
+ */
+@RJavaCore
+public class HostScheduler {
+    public static final int MAX_MUTATORS = 256;
+    public static final int MAX_COLLECTORS = 64;
+    
+    public static int collectorCount = 0;
+    public static HostContext[] collectorContexts = new HostContext[MAX_COLLECTORS];
+    
+    // bound mutators are kept in [0, mutatorCount). they dont change during a gc
+    public static int mutatorCount = 0;
+    public static HostContext[] mutatorContexts = new HostContext[MAX_MUTATORS];
+    
+    public static final int MUTATOR = 0;
+    public static final int STOPPING_MUTATORS = 1;
+    public static final int GC = 2;
+    
+    // the gc state, read by gc polls without holding lock
+    private static Address gcState;
+    // next mutator whose roots are not scanned yet (see ScanningExt.computeThreadRoots())
+    private static Address threadScanCursor;
+    
+    public static final Object lock = new Object();
+    // the number of gcs finished
+    private static int gcEpoch = 0;
+    
+    /*
+     * statistics
+     */
+    public static long pauseStart;
+    public static long totalPauseNanos = 0;
+    public static long maxPauseNanos = 0;
+    // allocation of mutators that are unbound
+    public static long retiredAllocationVolume = 0;
+    
+    public static void boot() {
+        gcState = OSMemory.malloc(HostConstants.BYTES_IN_INT);
+        OSAtomic.storeRelease(gcState, MUTATOR);
+        threadScanCursor = OSMemory.malloc(HostConstants.BYTES_IN_INT);
+        OSAtomic.storeRelease(threadScanCursor, 0);
+    }
+    
+    /**
+     * every thread MMTk can see stores its context in the thread local slot (see Host.bindMutator() and HostContext.run())
+     */
+    @Inline
+    public static HostContext getCurrentContext() {
+        HostContext current = (HostContext) OSConcurrency.getThreadLocal();
+        
+        if (current == null)
+            Host.fail("Current thread is not bound to MMTk");
+        
+        return current;
+    }
+    
+    @Inline
+    public static int gcState() {
+        return OSAtomic.loadAcquire(gcState);
+    }
+    
+    public static void newCollectorThread(HostContext collector) {
+        synchronized (lock) {
+            if (collectorCount == MAX_COLLECTORS)
+                Host.fail("Too many collector threads");
+            collectorContexts[collectorCount] = collector;
+            collectorCount++;
+        }
+        
+        new Thread(collector).start();
+    }
+    
+    public static void addMutator(HostContext context) {
+        synchronized (lock) {
+            // a mutator cannot join in the middle of a gc
+            while (gcState() != MUTATOR)
+                await();
+            
+            if (mutatorCount == MAX_MUTATORS)
+                Host.fail("Too many mutator threads");
+            mutatorContexts[mutatorCount] = context;
+            mutatorCount++;
+        }
+    }
+    
+    public static void removeMutator(HostContext context) {
+        synchronized (lock) {
+            // we are stopped while waiting for a gc to finish
+            context.blocked = true;
+            lock.notifyAll();
+            while (gcState() != MUTATOR)
+                await();
+            context.blocked = false;
+            
+            for (int i = 0; i < mutatorCount; i++)
+                if (mutatorContexts[i] == context) {
+                    mutatorCount--;
+                    mutatorContexts[i] = mutatorContexts[mutatorCount];
+                    mutatorContexts[mutatorCount] = null;
+                    break;
+                }
+            retiredAllocationVolume += context.allocationVolume;
+        }
+    }
+    
+    /**
+     * gc poll. Allocation can trigger collection, so allocation is always a gc poll (see Host.alloc()).
+     * A long running mutator should also poll in its loops
+     * http://xiao-feng.blogspot.com.au/2008/01/gc-safe-point-and-safe-region.html
+     */
+    @Inline
+    public static void gcPoint(HostContext context) {
+        if (gcState() == MUTATOR)
+            return;
+        
+        block(context, false);
+    }
+    
+    /**
+     * stop the current mutator until the gc in progress is finished.
+     * If waitForNextGC, a gc is requested but may not have started, so wait until a gc finishes after now
+     */
+    public static void block(HostContext context, boolean waitForNextGC) {
+        synchronized (lock) {
+            int epoch = gcEpoch;
+            context.blocked = true;
+            lock.notifyAll();
+            while (gcState() != MUTATOR || (waitForNextGC && gcEpoch == epoch))
+                await();
+            context.blocked = false;
+        }
+    }
+    
+    public static void enterSafeRegion(HostContext context) {
+        synchronized (lock) {
+            context.inSafeRegion = true;
+            lock.notifyAll();
+        }
+    }
+    
+    public static void leaveSafeRegion(HostContext context) {
+        synchronized (lock) {
+            while (gcState() != MUTATOR)
+                await();
+            context.inSafeRegion = false;
+        }
+    }
+    
+    public static void stopAllMutators() {
+        synchronized (lock) {
+            // the pause includes the time mutators take to reach a gc poll
+            pauseStart = System.nanoTime();
+            OSAtomic.storeRelease(gcState, STOPPING_MUTATORS);
+            
+            while (!allMutatorsStopped())
+                await();
+            
+            OSAtomic.storeRelease(gcState, GC);
+        }
+    }
+    
+    private static boolean allMutatorsStopped() {
+        for (int i = 0; i < mutatorCount; i++)
+            if (!mutatorContexts[i].blocked && !mutatorContexts[i].inSafeRegion)
+                return false;
+        return true;
+    }
+    
+    public static void resumeAllMutators() {
+        synchronized (lock) {
+            long pause = System.nanoTime() - pauseStart;
+            totalPauseNanos += pause;
+            if (pause > maxPauseNanos)
+                maxPauseNanos = pause;
+            
+            gcEpoch++;
+            OSAtomic.storeRelease(gcState, MUTATOR);
+            lock.notifyAll();
+        }
+    }
+    
+    public static int getGCCount() {
+        return gcEpoch;
+    }
+    
+    public static long getAllocationVolume() {
+        synchronized (lock) {
+            long ret = retiredAllocationVolume;
+            for (int i = 0; i < mutatorCount; i++)
+                ret += mutatorContexts[i].allocationVolume;
+            return ret;
+        }
+    }
+    
+    public static void resetThreadCounter() {
+        OSAtomic.storeRelease(threadScanCursor, 0);
+    }
+    
+    /**
+     * collectors scan thread roots in parallel, each claims the next mutator to scan
+     * @return the index of a mutator, or mutatorCount if all are claimed
+     */
+    public static int claimThreadToScan() {
+        int i = OSAtomic.fetchAndAdd(threadScanCursor, 1);
+        return i < mutatorCount ? i : mutatorCount;
+    }
+    
+    // wait on lock, the caller should hold it
+    private static void await() {
+        try {
+            lock.wait();
+        } catch (InterruptedException ignore) {
+        }
+    }
+}
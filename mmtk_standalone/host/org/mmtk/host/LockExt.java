@@ -0,0 +1,69 @@
+package org.mmtk.host;
+
+import org.mmtk.vm.Lock;
+import org.rjava.osext.OSAtomic;
+import org.rjava.osext.OSConcurrency;
+import org.rjava.osext.OSMemory;
+import org.rjava.restriction.rulesets.RJavaCore;
+import org.vmmagic.pragma.Inline;
+import org.vmmagic.unboxed.Address;
+
+/**
+ * spin-then-futex lock. The lock word is
+ * UNLOCKED, LOCKED (no thread is waiting), or CONTENDED (some thread may be blocked in futexWait)
+ */
+@RJavaCore
+public class LockExt extends Lock {
+    private static final int UNLOCKED = 0;
+    private static final int LOCKED = 1;
+    private static final int CONTENDED = 2;
+    
+    // how many times we try before blocking
+    private static final int SPIN_LIMIT = 100;
+    
+    private String name;
+    private Address state;
+    
+    public LockExt() {
+        state = OSMemory.malloc(HostConstants.BYTES_IN_INT);
+        OSAtomic.storeRelease(state, UNLOCKED);
+    }
+    
+    @Override
+    public void setName(String str) {
+        this.name = str;
+    }
+    
+    @Override
+    @Inline
+    public void acquire() {
+        if (OSAtomic.compareAndSwap(state, UNLOCKED, LOCKED))
+            return;
+        acquireSlow();
+    }
+    
+    private void acquireSlow() {
+        for (int i = 0; i < SPIN_LIMIT; i++) {
+            OSAtomic.spinPause();
+            if (OSAtomic.loadAcquire(state) == UNLOCKED && OSAtomic.compareAndSwap(state, UNLOCKED, LOCKED))
+                return;
+        }
+        
+        // we dont know if anyone else is waiting, so we take the lock as CONTENDED and release will wake someone
+        while (OSAtomic.exchange(state, CONTENDED) != UNLOCKED)
+            OSConcurrency.futexWait(state, CONTENDED);
+    }
+    
+    @Override
+    public void check(int w) {
+        
+    }
+    
+    @Override
+    @Inline
+    public void release() {
+        if (OSAtomic.exchange(state, UNLOCKED) == CONTENDED)
+            OSConcurrency.futexWake(state, 1);
+    }
+
+}
@@ -0,0 +1,26 @@
+package org.mmtk.host;
+
+import org.mmtk.policy.Space;
+import org.mmtk.vm.MMTk_Events;
+import org.rjava.restriction.rulesets.RJavaCore;
+import org.vmmagic.unboxed.Address;
+import org.vmmagic.unboxed.Extent;
+
+@RJavaCore
+public class MMTk_EventsExt extends MMTk_Events {
+
+    @Override
+    public void tracePageAcquired(Space space, Address startAddress,
+            int numPages) {
+    }
+    
+    @Override
+    public void tracePageReleased(Space space, Address startAddress,
+            int numPages) {
+    }
+    
+    @Override
+    public void heapSizeChanged(Extent heapSize) {
+    }
+
+}
@@ -0,0 +1,162 @@
+package org.mmtk.host;
+
+import org.mmtk.policy.ImmortalSpace;
+import org.mmtk.utility.heap.VMRequest;
+import org.mmtk.vm.Memory;
+import org.rjava.osext.OSMemory;
+import org.rjava.osext.OSNative;
+import org.rjava.restriction.rulesets.RJavaCore;
+import org.vmmagic.pragma.Inline;
+import org.vmmagic.pragma.Interruptible;
+import org.vmmagic.unboxed.Address;
+import org.vmmagic.unboxed.Extent;
+import org.vmmagic.unboxed.Offset;
+
+@RJavaCore
+public class MemoryExt extends Memory {
+    private static ImmortalSpace vmSpace = null;
+    private static Extent VMSPACE_SIZE = Extent.fromIntZeroExtend(0x10000000);
+    @Override
+    @Interruptible
+    public ImmortalSpace getVMSpace() {
+        if (vmSpace == null)
+            vmSpace = new ImmortalSpace("vm", VMRequest.create(VMSPACE_SIZE, false));
+        
+        return vmSpace;
+    }
+    
+    @Override
+    public void globalPrepareVMSpace() {
+        
+    }
+    
+    @Override
+    public void collectorPrepareVMSpace() {
+        
+    }
+    
+    @Override
+    public void collectorReleaseVMSpace() {
+        
+    }
+    
+    @Override
+    public void globalReleaseVMSpace() {
+        
+    }
+    
+    @Override
+    public void setHeapRange(int id, Address start, Address end) {
+    }
+    
+    @Override
+    public int dzmmap(Address start, int size) {
+       int prot = OSMemory.PROT_READ | OSMemory.PROT_WRITE | OSMemory.PROT_EXEC;
+       int flags = OSMemory.MAP_ANONYMOUS | OSMemory.MAP_PRIVATE | OSMemory.MAP_FIXED;
+       Address ret = OSMemory.mmap(start, Extent.fromIntZeroExtend(size), prot, flags, -1, Offset.zero());
+       if (ret.EQ(start))
+           return 0;
+       else{
+           return OSNative.errno();
+       }
+    }
+    
+    @Override
+    public boolean mprotect(Address start, int size) {
+        return OSMemory.mprotect(start, Extent.fromIntZeroExtend(size), OSMemory.PROT_NONE) == 0;
+    }
+    
+    @Override
+    public boolean munprotect(Address start, int size) {
+        return OSMemory.mprotect(start, 
+                Extent.fromIntZeroExtend(size), 
+                OSMemory.PROT_READ | OSMemory.PROT_WRITE | OSMemory.PROT_EXEC) == 0;
+    }
+    
+    @Override
+    /**
+     * currently ignoring useNT argument
+     */
+    public void zero(boolean useNT, Address start, Extent len) {
+        OSMemory.memset(start, 0x00, len);
+    }
+    
+    @Override
+    public void dumpMemory(Address start, int beforeBytes, int afterBytes) {
+        Address cursor = start.minus(beforeBytes);
+        while (cursor.LT(start.plus(afterBytes))) {
+            System.out.println(Long.toHexString(cursor.toLong()) + ": " + Long.toHexString(cursor.loadWord().toLong()));
+            cursor = cursor.plus(HostConstants.BYTES_IN_WORD);
+        }
+    }
+    
+    @Override
+    @Inline
+    public void sync() {
+        // TODO: on intel machine dont need to do anything
+    }
+    
+    @Override
+    @Inline
+    public void isync() {
+        // TODO: on intel machine dont need to do anything
+    }
+    
+    @Override
+    protected Address getHeapStartConstant() {
+        return HostConstants.HEAP_START;
+    }
+    
+    @Override
+    protected Address getHeapEndConstant() {
+        return HostConstants.HEAP_END;
+    }
+    
+    @Override
+    protected Address getAvailableStartConstant() {
+        return HostConstants.CONTIGUOUS_START;
+    }
+    
+    @Override
+    protected Address getAvailableEndConstant() {
+        return HostConstants.HEAP_END;
+    }
+    
+    @Override
+    protected byte getLogBytesInAddressConstant() {
+        return HostConstants.LOG_BYTES_IN_ADDRESS;
+    }
+    
+    @Override
+    protected byte getLogBytesInWordConstant() {
+        return HostConstants.LOG_BYTES_IN_WORD;
+    }
+    
+    @Override
+    protected byte getLogBytesInPageConstant() {
+        return HostConstants.LOG_BYTES_IN_PAGE;
+    }
+    
+    @Override
+    protected byte getLogMinAlignmentConstant() {
+        return HostConstants.LOG_MIN_ALIGNMENT;
+    }
+    
+    @Override
+    protected byte getMaxAlignmentShiftConstant() {
+        return (HostConstants.BUILD_FOR_IA32 ? 1 : 0)
+                + HostConstants.LOG_BYTES_IN_LONG 
+                - HostConstants.LOG_BYTES_IN_INT;
+    }
+    
+    @Override
+    protected int getMaxBytesPaddingConstant() {
+        return HostConstants.BYTES_IN_DOUBLE;
+    }
+    
+    @Override
+    protected int getAlignmentValueConstant() {
+        return HostConstants.ALIGNMENT_VALUE;
+    }
+
+}
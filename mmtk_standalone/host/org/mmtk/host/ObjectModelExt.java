@@ -0,0 +1,171 @@
+package org.mmtk.host;
+
+import org.mmtk.plan.CollectorContext;
+import org.mmtk.vm.ObjectModel;
+import org.rjava.osext.OSMemory;
+import org.rjava.restriction.rulesets.RJavaCore;
+import org.vmmagic.pragma.Inline;
+import org.vmmagic.unboxed.Address;
+import org.vmmagic.unboxed.Extent;
+import org.vmmagic.unboxed.ObjectReference;
+import org.vmmagic.unboxed.Offset;
+import org.vmmagic.unboxed.Word;
+
+/**
+ * objects of the embedding program (see Host for the layout). MMTk status bits are the word at the object reference,
+ * everything else is opaque to us, we only ask the embedding program for the size
+ */
+@RJavaCore
+public class ObjectModelExt extends ObjectModel {
+
+    @Override
+    public ObjectReference copy(ObjectReference from, int allocator) {
+        int size = HostCallbacks.objectSize(from);
+        int align = 0;
+        
+        CollectorContext c = HostScheduler.getCurrentContext().collector();
+        allocator = c.copyCheckAllocator(from, size, align, allocator);
+        Address toRegion = c.allocCopy(from, size, align, 0, allocator);
+        
+        // the status word is copied as well, postCopy() clears the forwarding bits in it
+        OSMemory.memcpy(toRegion, objectStartRef(from), Extent.fromIntZeroExtend(size));
+        ObjectReference to = getObjectFromStartAddress(toRegion);
+        
+        c.postCopy(to, null, size, allocator);
+        
+        return to;
+    }
+    
+    @Override
+    public Address copyTo(ObjectReference from, ObjectReference to,
+            Address region) {
+        int size = HostCallbacks.objectSize(from);
+        OSMemory.memcpy(objectStartRef(to), objectStartRef(from), Extent.fromIntZeroExtend(size));
+        return region.plus(size);
+    }
+    
+    @Override
+    public ObjectReference getReferenceWhenCopiedTo(ObjectReference from,
+            Address to) {
+        return getObjectFromStartAddress(to);
+    }
+    
+    @Override
+    public int getSizeWhenCopied(ObjectReference object) {
+        return HostCallbacks.objectSize(object);
+    }
+    
+    @Override
+    public int getAlignWhenCopied(ObjectReference object) {
+        return 0;
+    }
+    
+    @Override
+    public int getAlignOffsetWhenCopied(ObjectReference object) {
+        return 0;
+    }
+    
+    @Override
+    public int getCurrentSize(ObjectReference object) {
+        return HostCallbacks.objectSize(object);
+    }
+    
+    @Override
+    public ObjectReference getNextObject(ObjectReference object) {
+        return getObjectFromStartAddress(getObjectEndAddress(object));
+    }
+    
+    @Override
+    @Inline
+    public ObjectReference getObjectFromStartAddress(Address start) {
+        return start.plus(Host.gcHeaderBytes).toObjectReference();
+    }
+    
+    @Override
+    public Address getObjectEndAddress(ObjectReference object) {
+        return objectStartRef(object).plus(getCurrentSize(object));
+    }
+    
+    @Override
+    public byte[] getTypeDescriptor(ObjectReference ref) {
+        return "host object".getBytes();
+    }
+    
+    @Override
+    public boolean isArray(ObjectReference object) {
+        return false;
+    }
+    
+    @Override
+    public boolean isPrimitiveArray(ObjectReference object) {
+        return false;
+    }
+    
+    @Override
+    public int getArrayLength(ObjectReference object) {
+        return 0;
+    }
+    
+    @Override
+    public boolean attemptAvailableBits(ObjectReference object, Word oldVal,
+            Word newVal) {
+        return object.toAddress().attempt(oldVal, newVal);
+    }
+    
+    @Override
+    public Word prepareAvailableBits(ObjectReference object) {
+        return object.toAddress().prepareWord();
+    }
+    
+    @Override
+    public void writeAvailableByte(ObjectReference object, byte val) {
+        object.toAddress().store(val);
+    }
+    
+    @Override
+    public byte readAvailableByte(ObjectReference object) {
+        return object.toAddress().loadByte();
+    }
+    
+    @Override
+    public void writeAvailableBitsWord(ObjectReference object, Word val) {
+        object.toAddress().store(val);
+    }
+    
+    @Override
+    public Word readAvailableBitsWord(ObjectReference object) {
+        return object.toAddress().loadWord();
+    }
+    
+    @Override
+    public Offset GC_HEADER_OFFSET() {
+        return Offset.fromIntSignExtend(-Host.gcHeaderBytes);
+    }
+    
+    @Override
+    @Inline
+    public Address objectStartRef(ObjectReference object) {
+        return object.toAddress().minus(Host.gcHeaderBytes);
+    }
+    
+    @Override
+    public Address refToAddress(ObjectReference object) {
+        return object.toAddress();
+    }
+    
+    @Override
+    public boolean isAcyclic(ObjectReference typeRef) {
+        return false;
+    }
+    
+    @Override
+    public void dumpObject(ObjectReference object) {
+        System.out.println("object " + Long.toHexString(object.toAddress().toLong()) + ", size " + HostCallbacks.objectSize(object));
+    }
+    
+    @Override
+    protected Offset getArrayBaseOffset() {
+        return Offset.zero();
+    }
+
+}
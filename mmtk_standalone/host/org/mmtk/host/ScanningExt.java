@@ -0,0 +1,73 @@
+package org.mmtk.host;
+
+import org.mmtk.plan.TraceLocal;
+import org.mmtk.plan.TransitiveClosure;
+import org.mmtk.vm.Scanning;
+import org.mmtk.vm.VM;
+import org.rjava.restriction.rulesets.RJavaCore;
+import org.vmmagic.unboxed.ObjectReference;
+
+/**
+ * the embedding program knows where references are, so scanning is done by its callbacks (see HostCallbacks)
+ */
+@RJavaCore
+public class ScanningExt extends Scanning {
+
+    @Override
+    public void scanObject(TransitiveClosure trace, ObjectReference object) {
+        HostCallbacks.scanObject(trace, object);
+    }
+    
+    @Override
+    public void specializedScanObject(int id, TransitiveClosure trace,
+            ObjectReference object) {
+        scanObject(trace, object);
+    }
+    
+    @Override
+    public void resetThreadCounter() {
+        HostScheduler.resetThreadCounter();
+    }
+    
+    @Override
+    public void computeStaticRoots(TraceLocal trace) {
+        // statics of the embedding program are global roots
+    }
+    
+    @Override
+    public void computeGlobalRoots(TraceLocal trace) {
+        // every collector gets here, global roots only need to be scanned once
+        if (VM.activePlan.collector().parallelWorkerOrdinal() == 0)
+            HostCallbacks.scanGlobalRoots(trace);
+    }
+    
+    @Override
+    public void computeThreadRoots(TraceLocal trace) {
+        int i = HostScheduler.claimThreadToScan();
+        while (i < HostScheduler.mutatorCount) {
+            HostCallbacks.scanThreadRoots(trace, HostScheduler.mutatorContexts[i].getTls());
+            i = HostScheduler.claimThreadToScan();
+        }
+    }
+    
+    @Override
+    public void computeBootImageRoots(TraceLocal trace) {
+        // no boot image
+    }
+    
+    @Override
+    public void notifyInitialThreadScanComplete(boolean partialScan) {
+        
+    }
+    
+    @Override
+    public void computeNewThreadRoots(TraceLocal trace) {
+        computeThreadRoots(trace);
+    }
+    
+    @Override
+    public boolean supportsReturnBarrier() {
+        return false;
+    }
+
+}
@@ -0,0 +1,58 @@
+package org.mmtk.host;
+
+import org.mmtk.utility.statistics.PerfEvent;
+import org.mmtk.vm.Statistics;
+import org.rjava.osext.OSNative;
+import org.rjava.restriction.rulesets.RJavaCore;
+import org.vmmagic.pragma.Interruptible;
+
+@RJavaCore
+public class StatisticsExt extends Statistics {
+    // perf events given by the PerfEvents option, they report with the rest of Stats
+    private PerfEvent[] perfEvents;
+    
+    @Override
+    public long nanoTime() {
+        return System.nanoTime();
+    }
+    
+    @Override
+    public double nanosToMillis(long c) {
+        return ((double)c) / 1000000;
+    }
+    
+    @Override
+    public double nanosToSecs(long c) {
+        return ((double)c) / 1000000000;
+    }
+    
+    @Override
+    public long millisToNanos(double t) {
+        return (long) (t * 1000000);
+    }
+    
+    @Override
+    public long secsToNanos(double t) {
+        return (long) (t * 1000000000);
+    }
+    
+    @Override
+    public long cycles() {
+        return OSNative.cycles();
+    }
+    
+    @Override
+    @Interruptible
+    public void perfEventInit(String events) {
+        int n = OSNative.perfEventInit(events);
+        perfEvents = new PerfEvent[n];
+        for (int i = 0; i < n; i++)
+            perfEvents[i] = new PerfEvent(i, OSNative.perfEventName(i));
+    }
+    
+    @Override
+    public void perfEventRead(int counter, long[] values) {
+        OSNative.perfEventRead(counter, values);
+    }
+
+}
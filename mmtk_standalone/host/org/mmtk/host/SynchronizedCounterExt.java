@@ -0,0 +1,34 @@
+package org.mmtk.host;
+
+import org.mmtk.vm.SynchronizedCounter;
+import org.rjava.osext.OSAtomic;
+import org.rjava.osext.OSMemory;
+import org.rjava.restriction.rulesets.RJavaCore;
+import org.vmmagic.unboxed.Address;
+
+@RJavaCore
+public class SynchronizedCounterExt extends SynchronizedCounter {
+    // the count lives outside the heap, so atomic operations can work on its address
+    private Address count;
+    
+    public SynchronizedCounterExt() {
+        count = OSMemory.malloc(HostConstants.BYTES_IN_INT);
+        OSAtomic.storeRelease(count, 0);
+    }
+    
+    @Override
+    public int reset() {
+        return OSAtomic.exchange(count, 0);
+    }
+    
+    @Override
+    public int increment() {
+        return OSAtomic.fetchAndAdd(count, 1);
+    }
+    
+    @Override
+    public int peek() {
+        return OSAtomic.loadAcquire(count);
+    }
+
+}
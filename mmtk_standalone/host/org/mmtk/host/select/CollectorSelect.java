@@ -1,4 +1,4 @@
-package testbed.mminterface.select;
+package org.mmtk.host.select;
 
 //import org.mmtk.plan.marksweep.MSCollector;
 import org.mmtk.plan.semispace.SSCollector;
@@ -0,0 +1,10 @@
+package org.mmtk.host.select;
+
+//import org.mmtk.plan.marksweep.MSMutator;
+import org.mmtk.plan.semispace.SSMutator;
+import org.rjava.restriction.rulesets.RJavaCore;
+
+@RJavaCore
+public class MutatorSelect extends SSMutator {
+//public class MutatorSelect extends MSMutator {
+}
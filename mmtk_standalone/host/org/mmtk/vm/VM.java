@@ -14,6 +14,7 @@ package org.mmtk.vm;
 
 import org.mmtk.host.FactoryExt;
 import org.mmtk.utility.options.Options;
+import org.rjava.restriction.rulesets.MMTk;
 import org.vmmagic.pragma.Untraced;
 import org.vmmagic.unboxed.Address;
 import org.vmmagic.unboxed.Offset;
@@ -41,11 +42,16 @@ import org.vmmagic.unboxed.Offset;
  * <code>mmtk.hostjvm</code> to load the VM-specific concrete classes
  * and initialize the constants and singletons defined here.
  */
+@MMTk
 public final class VM {
   /*
    * VM-specific constant values
    */
-
+  
+  /** Address.zero() for code clarity **/
+  public static final Address ADDRESS_EMPTY_VALUE = Address.zero();
+  public static final Address ADDRESS_FAIL = Address.zero();
+  
   /** <code>true</code> if assertions should be verified */
   public static final boolean VERIFY_ASSERTIONS;
   /** The lowest address in virtual memory known to MMTk */
@@ -74,7 +80,7 @@ public final class VM {
   public static final Offset ARRAY_BASE_OFFSET;
   /** Global debugging switch */
   public static final boolean DEBUG;
-
+  
   /*
    * VM-specific functionality captured in a series of singleton classs
    */
@@ -112,7 +118,7 @@ public final class VM {
   public static final MMTk_Events events;
   @Untraced
   public static final Debug debugging;
-
+  
   /*
    * The remainder is does the static initialization of the
    * above, reflectively binding to the appropriate host jvm
@@ -120,7 +126,7 @@ public final class VM {
    */
   private static final Factory factory;
   private static final String factoryName = null;
-
+  
   /**
    * This class initializer establishes a VM-specific factory class
    * using reflection, and then uses that to create VM-specific concrete
@@ -141,7 +147,7 @@ public final class VM {
     factory = xfa;*/
     // TODO: the following code should be configurable
     factory = new FactoryExt();
-
+    
     /* Now instantiate the singletons using the factory */
     activePlan = factory.newActivePlan();
     assertions = factory.newAssert();
@@ -161,7 +167,7 @@ public final class VM {
     events = factory.newEvents();
     debugging = factory.newDebug();
     config = new Config(factory.newBuildTimeConfig());
-
+    
     /* Now initialize the constants using the vm-specific singletons */
     VERIFY_ASSERTIONS = Assert.verifyAssertionsTrapdoor(assertions);
     HEAP_START = Memory.heapStartTrapdoor(memory);
@@ -178,7 +184,7 @@ public final class VM {
     ARRAY_BASE_OFFSET = ObjectModel.arrayBaseOffsetTrapdoor(objectModel);
     DEBUG = Debug.isEnabledTrapdoor(debugging);
   }
-
+  
   /**
    * Create a new Lock instance using the appropriate VM-specific
    * concrete Lock sub-class.
@@ -191,7 +197,7 @@ public final class VM {
   public static Lock newLock(String name) {
     return factory.newLock(name);
   }
-
+  
   /**
    * Create a new HeavyCondLock instance using the appropriate VM-specific
    * concrete Lock sub-class.
@@ -204,7 +210,7 @@ public final class VM {
   public static Monitor newHeavyCondLock(String name) {
     return factory.newMonitor(name);
   }
-
+  
   /**
    * Create a new SynchronizedCounter instance using the appropriate
    * VM-specific concrete SynchronizedCounter sub-class.
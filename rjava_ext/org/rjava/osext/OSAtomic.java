@@ -0,0 +1,78 @@
+package org.rjava.osext;
+
+import org.rjava.restriction.rulesets.RJavaCore;
+import org.vmmagic.unboxed.Address;
+import org.vmmagic.unboxed.Word;
+
+/**
+ * atomic operations on a word in memory. They are compiled to gcc __atomic builtins (see org_rjava_osext_OSAtomic.h),
+ * and are sequentially consistent unless the name says otherwise
+ */
+@RJavaCore
+public abstract class OSAtomic {
+    /**
+     * atomically add delta to the int at addr
+     * @return the value before the add
+     */
+    public static native int fetchAndAdd(Address addr, int delta);
+    
+    /**
+     * atomically add delta to the word at addr
+     * @return the value before the add
+     */
+    public static native Word fetchAndAdd(Address addr, Word delta);
+    
+    /**
+     * atomically set the int at addr to newValue if it is oldValue
+     * @return true if succeed
+     */
+    public static native boolean compareAndSwap(Address addr, int oldValue, int newValue);
+    
+    /**
+     * atomically set the word at addr to newValue if it is oldValue
+     * @return true if succeed
+     */
+    public static native boolean compareAndSwap(Address addr, Word oldValue, Word newValue);
+    
+    /**
+     * atomically set the int at addr to value
+     * @return the value before
+     */
+    public static native int exchange(Address addr, int value);
+    
+    /**
+     * atomically set the word at addr to value
+     * @return the value before
+     */
+    public static native Word exchange(Address addr, Word value);
+    
+    /**
+     * read the int at addr. Later memory accesses are not reordered before it
+     */
+    public static native int loadAcquire(Address addr);
+    
+    /**
+     * write value to the int at addr. Earlier memory accesses are not reordered after it
+     */
+    public static native void storeRelease(Address addr, int value);
+    
+    /**
+     * no memory access is reordered across the fence
+     */
+    public static native void fullFence();
+    
+    /**
+     * loads before the fence are not reordered with memory accesses after it
+     */
+    public static native void loadFence();
+    
+    /**
+     * memory accesses before the fence are not reordered with stores after it
+     */
+    public static native void storeFence();
+    
+    /**
+     * hint the processor that we are in a spin-wait loop (pause on x86)
+     */
+    public static native void spinPause();
+}
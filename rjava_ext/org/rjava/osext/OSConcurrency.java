@@ -1,21 +1,34 @@
 package org.rjava.osext;
 
 import org.rjava.restriction.rulesets.RJavaCore;
+import org.vmmagic.unboxed.Address;
 
 @RJavaCore
 public abstract class OSConcurrency {
     /**
-     * lock on the object instance_mutex. This method is an alternative to MonitorEnter of such object (synchronized method/block)
+     * lock on the object lock word. This method is an alternative to MonitorEnter of such object (synchronized method/block)
      * @param lock
      */
     public static native void mutexLock(Object lock);
     
     /**
-     * unlock on the object instance_mutex. This method is an alternative to MonitorExit of such object (synchronized method/block)
+     * unlock on the object lock word. This method is an alternative to MonitorExit of such object (synchronized method/block)
      * @param lock
      */
     public static native void mutexUnlock(Object lock);
     
+    /**
+     * set the per-thread slot of current thread (a C thread local). Reading it back with getThreadLocal() is O(1)
+     * @param value
+     */
+    public static native void setThreadLocal(Object value);
+    
+    /**
+     * get the per-thread slot of current thread, null if it is never set in this thread
+     * @return
+     */
+    public static native Object getThreadLocal();
+    
     /**
      * suspending a RJava thread by sending signal
      * @param t
@@ -27,4 +40,19 @@ public abstract class OSConcurrency {
      * @param t
      */
     public static native void threadResume(Thread t);
+    
+    /**
+     * block the current thread while the int at addr is expected (futex wait on linux). It may return spuriously, 
+     * so the caller needs to check the int again
+     * @param addr
+     * @param expected
+     */
+    public static native void futexWait(Address addr, int expected);
+    
+    /**
+     * wake up at most count threads blocked in futexWait(addr)
+     * @param addr
+     * @param count
+     */
+    public static native void futexWake(Address addr, int count);
 }
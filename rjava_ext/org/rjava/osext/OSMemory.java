@@ -14,7 +14,7 @@ public abstract class OSMemory {
     public static int PROT_READ   = 1;
     public static int PROT_WRITE  = 2;
     public static int PROT_EXEC   = 4;
-
+    
     /**
      * those constants are defined in org_rjava_osext_OSMemory.h, which is os dependant
      */
@@ -56,4 +56,24 @@ public abstract class OSMemory {
             Address start,
             int c,
             Extent length);
+    
+    /**
+     * libc: memcpy (the regions should not overlap)
+     * @return dst
+     */
+    public static native Address memcpy(
+            Address dst,
+            Address src,
+            Extent length);
+    
+    /**
+     * map a whole file read only (it stays mapped)
+     * @return start of the mapping, or Address.zero() if the file can't be opened or mapped
+     */
+    public static native Address mapFile(String path);
+    
+    /**
+     * @return size of the file in bytes, or -1 if it can't be found
+     */
+    public static native long fileSize(String path);
 }
@@ -21,4 +21,30 @@ public abstract class OSNative {
      * @return
      */
     public native static double random();
+    
+    /**
+     * read the hardware cycle counter (rdtsc on x86, cntvct on arm64). It is not serializing
+     * @return
+     */
+    public native static long cycles();
+    
+    /**
+     * set up perf events (perf_event_open on linux) that count user mode of the thread reading them
+     * @param events comma separated event names, e.g. "cycles,instructions,cache-misses,dTLB-load-misses", or rNNN for a raw event
+     * @return number of events. An event that is unknown or can't be opened stays in the list and reads 0
+     */
+    public native static int perfEventInit(String events);
+    
+    /**
+     * @param id
+     * @return name of the id-th event given to perfEventInit()
+     */
+    public native static String perfEventName(int id);
+    
+    /**
+     * read the id-th perf event of the current thread
+     * @param id
+     * @param values raw count, time enabled and time running
+     */
+    public native static void perfEventRead(int id, long[] values);
 }
@@ -38,8 +38,8 @@ RJAVA_ALWAYS_INLINE java_lang_Boolean* java_lang_Boolean_parseBoolean_java_lang_
 
 RJAVA_ALWAYS_INLINE java_lang_String* java_lang_Boolean_toString(void* this_parameter) {
 	if (((java_lang_Boolean*) this_parameter) -> internal == true)
-		return newStringConstant("true");
-	else return newStringConstant("false");
+		return rjava_intern_c_string("true");
+	else return rjava_intern_c_string("false");
 }
 
 java_lang_String* java_lang_Boolean_toString_noinline (void* this_parameter);
@@ -3,4 +3,8 @@
 
 double java_lang_Math_sqrt_double(double a) {
   return sqrt(a);
+}
+
+double java_lang_Math_log_double(double a) {
+  return log(a);
 }
\ No newline at end of file
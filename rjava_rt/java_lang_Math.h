@@ -2,5 +2,6 @@
 #define JAVA_LANG_MATH_H
 
 double java_lang_Math_sqrt_double(double a);
+double java_lang_Math_log_double(double a);
 
 #endif
\ No newline at end of file
@@ -12,11 +12,29 @@ java_lang_String* java_lang_Object_toString_noinline(void* this_parameter) {
 }
 
 /* synchronization */
+// wait/notify always inflate the lock of the object (the caller owns the lock), see rjava_inflate_monitor() in rjava_crt
+// a waiting thread counts as a user of the monitor, so the lock is not deflated under it. 
+// it releases the monitor to threads blocked entering it, and once notified, blocks with them until the monitor is released
+static void rjava_monitor_release_and_wait(RJava_Monitor* monitor, struct timespec* ts) {
+    pthread_mutex_lock(&(monitor -> mutex));
+    int count = monitor -> count;
+    monitor -> owner = 0;
+    monitor -> count = 0;
+    monitor -> users++;
+    pthread_cond_signal(&(monitor -> entry));
+    if (ts == NULL)
+        pthread_cond_wait(&(monitor -> cond), &(monitor -> mutex));
+    else pthread_cond_timedwait(&(monitor -> cond), &(monitor -> mutex), ts);
+    while (monitor -> owner != 0)
+        pthread_cond_wait(&(monitor -> entry), &(monitor -> mutex));
+    monitor -> users--;
+    monitor -> owner = RJAVA_THREAD_LOCK_TOKEN;
+    monitor -> count = count;
+    pthread_mutex_unlock(&(monitor -> mutex));
+}
+
 void java_lang_Object_wait(void* this_parameter) {
-    pthread_cond_wait(\
-                      &(((RJava_Common_Instance*)this_parameter) -> instance_cond),\
-                      &(((RJava_Common_Instance*)this_parameter) -> instance_mutex)\
-                      );
+    rjava_monitor_release_and_wait(rjava_inflate_monitor(this_parameter), NULL);
 }
 
 void java_lang_Object_wait_int64_t(void* this_parameter, int64_t timeout) {
@@ -41,19 +59,21 @@ void java_lang_Object_wait_int64_t_int32_t(void* this_parameter, int64_t timeout
     
     ts.tv_nsec = ts.tv_nsec + timeout * 1000000LL + nanos;
     
-    pthread_cond_timedwait(\
-                           &(((RJava_Common_Instance*)this_parameter) -> instance_cond),\
-                           &(((RJava_Common_Instance*)this_parameter) -> instance_mutex),\
-                           &ts\
-                           );
+    rjava_monitor_release_and_wait(rjava_inflate_monitor(this_parameter), &ts);
 }
 
 void java_lang_Object_notify(void* this_parameter) {
-    pthread_cond_signal(&(((RJava_Common_Instance*)this_parameter) -> instance_cond));
+    RJava_Monitor* monitor = rjava_inflate_monitor(this_parameter);
+    pthread_mutex_lock(&(monitor -> mutex));
+    pthread_cond_signal(&(monitor -> cond));
+    pthread_mutex_unlock(&(monitor -> mutex));
 }
 
 void java_lang_Object_notifyAll(void* this_parameter) {
-    pthread_cond_broadcast(&(((RJava_Common_Instance*)this_parameter) -> instance_cond));
+    RJava_Monitor* monitor = rjava_inflate_monitor(this_parameter);
+    pthread_mutex_lock(&(monitor -> mutex));
+    pthread_cond_broadcast(&(monitor -> cond));
+    pthread_mutex_unlock(&(monitor -> mutex));
 }
 
 int32_t java_lang_Object_hashCode(void* this_parameter) {
@@ -18,11 +18,20 @@ typedef struct java_lang_Object_class {
     java_lang_String* (*toString)(void* this_parameter);
 } java_lang_Object_class;
 
+/*
+ * a string whose chars all fit in a byte is stored as LATIN1: count bytes followed by a '\0', so it can be passed to C as is.
+ * Otherwise it is UTF16 (count int16_t). Strings are always created in the compact form if possible,
+ * so strings with different coders never equal
+ */
+#define RJAVA_STRING_LATIN1 0
+#define RJAVA_STRING_UTF16  1
+
 struct java_lang_String {
     java_lang_Object instance_header;
     
-    int16_t* internal;
+    void* internal;
     int count;
+    int8_t coder;
 };
 
 typedef struct java_lang_String_class {
@@ -42,9 +51,8 @@ int32_t java_lang_Object_hashCode(void* this_parameter);
 java_lang_Object_class java_lang_Object_class_instance;
 
 RJAVA_ALWAYS_INLINE void java_lang_Object_rjinit(void* this_parameter) {
-    // init instance mutex
-    pthread_mutex_init(&(((RJava_Common_Instance*)this_parameter) -> instance_mutex), NULL);
-    pthread_cond_init(&(((RJava_Common_Instance*)this_parameter) -> instance_cond), NULL);
+    // init lock word (unlocked)
+    ((RJava_Common_Instance*)this_parameter) -> lock_word = 0;
     return;
 }
 
@@ -52,16 +60,15 @@ RJAVA_ALWAYS_INLINE java_lang_String* java_lang_Object_toString(void* this_param
     char* buffer = (char*)malloc(sizeof(char) * 100);
     sprintf(buffer, "Object:%p", this_parameter);
     
-    // hand RJAVA_ALWAYS_INLINE newStringConstant(buffer) here
+    // hand RJAVA_ALWAYS_INLINE newStringConstant(buffer) here. buffer is ascii, so it is the latin1 chars of the string
     java_lang_String* ret = (java_lang_String*) malloc(sizeof(java_lang_String));
     
     ret->count = strlen(buffer);
-    ret->internal = (int16_t*) malloc(ret->count * sizeof(int16_t));
-    int i = 0;
-    for (; i < ret->count; i++)
-        ret->internal[i] = (int16_t)buffer[i];
+    ret->internal = buffer;
+    ret->coder = RJAVA_STRING_LATIN1;
     
-    (((RJava_Common_Instance*)this_parameter)->class_struct) = &java_lang_String_class_instance;
+    (((RJava_Common_Instance*)ret)->class_struct) = &java_lang_String_class_instance;
+    (((RJava_Common_Instance*)ret)->lock_word) = 0;
     
     return ret;
 }
@@ -17,42 +17,145 @@ java_lang_String* java_lang_String_substring_int32_t(void* this_parameter, int32
 }
 
 java_lang_String* java_lang_String_substring_int32_t_int32_t(void* this_parameter, int32_t start, int32_t end) {
-    int16_t* str = ((java_lang_String*)this_parameter)->internal;
+    java_lang_String* this_str = (java_lang_String*) this_parameter;
     int substr_len = end - start;
-    int16_t* substr = (int16_t*) malloc(substr_len * sizeof(int16_t));
-    
-    int i = 0;
-    for (; i < substr_len; i++) {
-        substr[i] = str[start+i];
-    }
-
     java_lang_String* ret = (java_lang_String*) malloc(sizeof(java_lang_String));
-    java_lang_String_rjinit_from_int16_tarray(ret, substr_len, substr);
+    
+    if (this_str->coder == RJAVA_STRING_LATIN1)
+        java_lang_String_rjinit_from_latin1(ret, substr_len, ((uint8_t*) this_str->internal) + start);
+    // the substring of a utf16 string may fit in latin1, rjinit_from_int16_tarray() checks it
+    else java_lang_String_rjinit_from_int16_tarray(ret, substr_len, ((int16_t*) this_str->internal) + start);
     return ret;
 }
 
 java_lang_String* java_lang_String_toLowerCase(void* this_parameter) {
     java_lang_String* old_str = (java_lang_String*)this_parameter;
-    int16_t* lower = (int16_t*) malloc(old_str->count * sizeof(int16_t));
+    java_lang_String* ret = (java_lang_String*) malloc(sizeof(java_lang_String));
     
+    // only ascii chars are lowered, so the result keeps the coder
     int i = 0;
-    for (; i < old_str->count; i++) {
-        lower[i] = (int16_t)tolower((char)old_str->internal[i]);
+    if (old_str->coder == RJAVA_STRING_LATIN1) {
+        java_lang_String_rjinit_from_latin1(ret, old_str->count, (uint8_t*) old_str->internal);
+        uint8_t* lower = (uint8_t*) ret->internal;
+        for (; i < ret->count; i++)
+            if (lower[i] < 0x80)
+                lower[i] = (uint8_t) tolower(lower[i]);
+    } else {
+        int16_t* lower = (int16_t*) malloc(old_str->count * sizeof(int16_t));
+        for (; i < old_str->count; i++) {
+            int16_t c = ((int16_t*) old_str->internal)[i];
+            lower[i] = (c >= 0 && c < 0x80) ? (int16_t) tolower(c) : c;
+        }
+        ret->internal = lower;
+        ret->count = old_str->count;
+        ret->coder = RJAVA_STRING_UTF16;
+        (((RJava_Common_Instance*)ret)->class_struct) = &java_lang_String_class_instance;
     }
-    
-    java_lang_String* ret = (java_lang_String*) malloc(sizeof(java_lang_String));
-    java_lang_String_rjinit_from_int16_tarray(ret, old_str->count, lower);
     return ret;
 }
 
 int32_t java_lang_String_indexOf_int32_t_int32_t(void* this_parameter, int32_t ch, int32_t from) {
     java_lang_String* this_str = (java_lang_String*) this_parameter;
-
+    
+    if (from < 0)
+        from = 0;
+    if (from >= this_str->count)
+        return -1;
+    
+    if (this_str->coder == RJAVA_STRING_LATIN1) {
+        if (ch < 0 || ch > 0xff)
+            return -1;
+        uint8_t* found = (uint8_t*) memchr(((uint8_t*) this_str->internal) + from, ch, this_str->count - from);
+        return found == NULL ? -1 : (int32_t) (found - (uint8_t*) this_str->internal);
+    }
+    
     int i = from;
     for (; i < this_str->count; i++) {
-        if (this_str->internal[i] == ch)
+        if (((int16_t*) this_str->internal)[i] == ch)
             return i;
     }
     
     return -1;
 }
+
+/*
+ * intern table: chained hash table keyed by the chars of a string
+ * entries are allocated by malloc() and reachable from the (static) table, so a collector wont free them
+ */
+#define RJAVA_INTERN_TABLE_SIZE 4096
+
+typedef struct rjava_intern_entry {
+    java_lang_String* str;
+    uint32_t hash;
+    struct rjava_intern_entry* next;
+} rjava_intern_entry;
+
+static rjava_intern_entry* intern_table[RJAVA_INTERN_TABLE_SIZE];
+static pthread_mutex_t intern_lock = PTHREAD_MUTEX_INITIALIZER;
+
+/* same as java.lang.String.hashCode() */
+static uint32_t string_hash(java_lang_String* str) {
+    uint32_t h = 0;
+    int i = 0;
+    if (str->coder == RJAVA_STRING_LATIN1) {
+        for (; i < str->count; i++)
+            h = 31 * h + ((uint8_t*) str->internal)[i];
+    } else {
+        for (; i < str->count; i++)
+            h = 31 * h + (uint16_t) ((int16_t*) str->internal)[i];
+    }
+    return h;
+}
+
+/* a c string is taken as latin1 */
+static uint32_t c_string_hash(const char* c_str, int count) {
+    uint32_t h = 0;
+    int i = 0;
+    for (; i < count; i++)
+        h = 31 * h + (uint8_t) c_str[i];
+    return h;
+}
+
+/* caller holds intern_lock */
+static void intern_add(java_lang_String* str, uint32_t hash) {
+    rjava_intern_entry* entry = (rjava_intern_entry*) malloc(sizeof(rjava_intern_entry));
+    entry->str = str;
+    entry->hash = hash;
+    entry->next = intern_table[hash % RJAVA_INTERN_TABLE_SIZE];
+    intern_table[hash % RJAVA_INTERN_TABLE_SIZE] = entry;
+}
+
+java_lang_String* java_lang_String_intern(void* this_parameter) {
+    java_lang_String* str = (java_lang_String*) this_parameter;
+    uint32_t hash = string_hash(str);
+    
+    pthread_mutex_lock(&intern_lock);
+    rjava_intern_entry* entry = intern_table[hash % RJAVA_INTERN_TABLE_SIZE];
+    for (; entry != NULL; entry = entry->next) {
+        if (entry->hash == hash && rjava_string_equals(entry->str, str)) {
+            pthread_mutex_unlock(&intern_lock);
+            return entry->str;
+        }
+    }
+    intern_add(str, hash);
+    pthread_mutex_unlock(&intern_lock);
+    return str;
+}
+
+java_lang_String* rjava_intern_c_string(const char* c_str) {
+    int count = strlen(c_str);
+    uint32_t hash = c_string_hash(c_str, count);
+    
+    pthread_mutex_lock(&intern_lock);
+    rjava_intern_entry* entry = intern_table[hash % RJAVA_INTERN_TABLE_SIZE];
+    for (; entry != NULL; entry = entry->next) {
+        if (entry->hash == hash && java_string_equals_c_string(entry->str, c_str)) {
+            pthread_mutex_unlock(&intern_lock);
+            return entry->str;
+        }
+    }
+    java_lang_String* str = newStringConstant(c_str);
+    intern_add(str, hash);
+    pthread_mutex_unlock(&intern_lock);
+    return str;
+}
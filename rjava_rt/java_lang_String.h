@@ -9,25 +9,58 @@
 
 #define RJAVA_STR java_lang_String*
 
-RJAVA_ALWAYS_INLINE void java_lang_String_rjinit(void* this_parameter, const char* str) {
-    java_lang_String* this_str = (java_lang_String*) this_parameter;
+// only used by lib implementation: char at index, regardless of the coder (no range check)
+RJAVA_ALWAYS_INLINE int16_t rjava_string_char_at(java_lang_String* str, int index) {
+    if (str->coder == RJAVA_STRING_LATIN1)
+        return (int16_t) ((uint8_t*) str->internal)[index];
+    else return ((int16_t*) str->internal)[index];
+}
 
-    this_str->count = strlen(str);
-    this_str->internal = (int16_t*) malloc(this_str->count * sizeof(int16_t));
+// only used by lib implementation: true if all chars fit in latin1
+RJAVA_ALWAYS_INLINE bool rjava_can_be_latin1(int16_t* array, int length) {
     int i = 0;
-    for (; i < this_str->count; i++)
-        this_str->internal[i] = (int16_t)str[i];
+    for (; i < length; i++)
+        if ((uint16_t) array[i] > 0xff)
+            return false;
+    return true;
+}
+
+// only used by lib implementation: init this_parameter with length latin1 chars (copied)
+RJAVA_ALWAYS_INLINE void java_lang_String_rjinit_from_latin1(void* this_parameter, int length, const uint8_t* latin1) {
+    java_lang_String* this_str = (java_lang_String*) this_parameter;
+    
+    this_str->count = length;
+    this_str->coder = RJAVA_STRING_LATIN1;
+    this_str->internal = malloc(length + 1);
+    memcpy(this_str->internal, latin1, length);
+    ((uint8_t*) this_str->internal)[length] = '\0';
     
     (((RJava_Common_Instance*)this_parameter)->class_struct) = &java_lang_String_class_instance;
 }
 
+RJAVA_ALWAYS_INLINE void java_lang_String_rjinit(void* this_parameter, const char* str) {
+    java_lang_String_rjinit_from_latin1(this_parameter, strlen(str), (const uint8_t*) str);
+}
+
 // only used by lib implementation
 RJAVA_ALWAYS_INLINE void java_lang_String_rjinit_from_int16_tarray(void* this_parameter, int length, int16_t* array) {
     java_lang_String* this_str = (java_lang_String*) this_parameter;
     
+    if (rjava_can_be_latin1(array, length)) {
+        uint8_t* latin1 = (uint8_t*) malloc(length + 1);
+        int i = 0;
+        for (; i < length; i++)
+            latin1[i] = (uint8_t) array[i];
+        latin1[length] = '\0';
+    
+        this_str->internal = latin1;
+        this_str->coder = RJAVA_STRING_LATIN1;
+    } else {
+        this_str->internal = malloc(length * sizeof(int16_t));
+        memcpy(this_str->internal, array, length * sizeof(int16_t));
+        this_str->coder = RJAVA_STRING_UTF16;
+    }
     this_str->count = length;
-    this_str->internal = (int16_t*) malloc(length * sizeof(int16_t));
-    memcpy(this_str->internal, array, length * sizeof(int16_t));
     
     (((RJava_Common_Instance*)this_parameter)->class_struct) = &java_lang_String_class_instance;
 }
@@ -35,62 +68,61 @@ RJAVA_ALWAYS_INLINE void java_lang_String_rjinit_from_int16_tarray(void* this_pa
 RJAVA_ALWAYS_INLINE void java_lang_String_rjinit_java_lang_String(void* this_parameter, java_lang_String* str) {
     java_lang_String* this_str = (java_lang_String*) this_parameter;
     
-    this_str->internal = (int16_t*) malloc(str->count * sizeof(int16_t));
+    // chars are never modified, so they can be shared
+    this_str->internal = str->internal;
     this_str->count = str->count;
-    memcpy(this_str->internal, str->internal, str->count * sizeof(int16_t));
+    this_str->coder = str->coder;
     
     (((RJava_Common_Instance*)this_parameter)->class_struct) = &java_lang_String_class_instance;
 }
 
-RJAVA_ALWAYS_INLINE bool java_lang_String_equals_java_lang_Object(void* this_parameter, void* another) {
-    java_lang_String* this_str = (java_lang_String*) this_parameter;
-    
-    if (!rjava_instanceof(another, &java_lang_String_class_instance))
+// only used by lib implementation
+RJAVA_ALWAYS_INLINE bool rjava_string_equals(java_lang_String* a, java_lang_String* b) {
+    if (a == b)
+        return true;
+    if (a->count != b->count || a->coder != b->coder)
         return false;
     
-    java_lang_String* another_str = (java_lang_String*) another;
+    return memcmp(a->internal, b->internal, a->coder == RJAVA_STRING_LATIN1 ? a->count : a->count * sizeof(int16_t)) == 0;
+}
 
-    if (this_str->count != another_str->count)
+RJAVA_ALWAYS_INLINE bool java_lang_String_equals_java_lang_Object(void* this_parameter, void* another) {
+    if (!rjava_instanceof(another, &java_lang_String_class_instance))
         return false;
     
-    int i = 0;
-    for (; i < this_str->count; i++)
-        if (this_str->internal[i] != another_str->internal[i])
-            return false;
-    
-    return true;
+    return rjava_string_equals((java_lang_String*) this_parameter, (java_lang_String*) another);
 }
 
 // only used by lib implementation
 RJAVA_ALWAYS_INLINE bool java_string_equals_c_string(java_lang_String* java_str, const char* c_str) {
-    if (strlen(c_str) != java_str->count)
+    // c_str is taken as latin1, a utf16 string has some char that doesnt fit
+    if (java_str->coder != RJAVA_STRING_LATIN1)
         return false;
     
-    int i = 0;
-    for (; i < java_str->count; i++)
-        if (java_str->internal[i] != c_str[i])
-            return false;
-    
-    return true;
+    return strlen(c_str) == java_str->count && memcmp(java_str->internal, c_str, java_str->count) == 0;
 }
 
-// only used by lib implementation
+// only used by lib implementation. The returned chars may belong to str, dont modify them
 RJAVA_ALWAYS_INLINE char* to_c_char_array(java_lang_String* str) {
+    if (str->coder == RJAVA_STRING_LATIN1)
+        return (char*) str->internal;
+    
     char* c_str = (char*) malloc(str->count + 1);
     int i = 0;
     for (; i < str->count; i++)
-        c_str[i] = (char) str->internal[i];
+        c_str[i] = (char) ((int16_t*) str->internal)[i];
     c_str[str->count] = '\0';
     return c_str;
 }
 
 // only used by lib implementation
 RJAVA_ALWAYS_INLINE int16_t* from_c_char_array(char* str) {
-    int16_t* ret = (int16_t*) malloc(strlen(str) * sizeof(int16_t));
+    int length = strlen(str);
+    int16_t* ret = (int16_t*) malloc(length * sizeof(int16_t));
     
     int i =0;
-    for (; i < strlen(str); i++)
-        ret[i] = (int16_t) str[i];
+    for (; i < length; i++)
+        ret[i] = (int16_t) (uint8_t) str[i];
     
     return ret;
 }
@@ -126,7 +158,7 @@ RJAVA_ALWAYS_INLINE int16_t java_lang_String_charAt_int32_t(void* this_parameter
         sprintf(errmsg, "index(%d) out of range (%d) in String.charAt()", index, this_str->count);
         rjava_assert(false, errmsg);
     }
-    return this_str->internal[index];
+    return rjava_string_char_at(this_str, index);
 }
 
 RJAVA_ALWAYS_INLINE int32_t java_lang_String_length(void* this_parameter) {
@@ -136,8 +168,17 @@ RJAVA_ALWAYS_INLINE int32_t java_lang_String_length(void* this_parameter) {
 
 RJAVA_ALWAYS_INLINE byte* java_lang_String_getBytes(void* this_parameter) {
     java_lang_String* this_str = (java_lang_String*) this_parameter;
-    long ele_size = sizeof(int16_t);
-    byte* ret = (byte*) rjava_c_array_to_rjava_array(this_str->count, ele_size, this_str->internal);
+    /* a byte[] has byte elements (generated code indexes it by sizeof(byte)), so narrow each char */
+    byte* ret = (byte*) rjava_new_array(this_str->count, sizeof(byte));
+    byte* elements = (byte*) rjava_array_elements(ret);
+    if (this_str->coder == RJAVA_STRING_LATIN1) {
+        memcpy(elements, this_str->internal, this_str->count);
+        return ret;
+    }
+    
+    int i = 0;
+    for (; i < this_str->count; i++)
+        elements[i] = (byte) ((int16_t*) this_str->internal)[i];
     return ret;
 }
 
@@ -152,4 +193,10 @@ RJAVA_ALWAYS_INLINE int32_t java_lang_String_indexOf_int32_t(void* this_paramete
 
 java_lang_String* java_lang_String_toLowerCase(void* this_parameter);
 
+/* intern table. string literals (statically allocated in rjava_crt.c) are interned at class init */
+java_lang_String* java_lang_String_intern(void* this_parameter);
+
+// only used by lib implementation: the interned string with the same chars as c_str, only allocates for a new one
+java_lang_String* rjava_intern_c_string(const char* c_str);
+
 #endif
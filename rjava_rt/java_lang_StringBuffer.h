@@ -3,17 +3,20 @@
 
 #include "java_lang_Object.h"
 #include "java_lang_String.h"
+#include "java_lang_StringBuilder.h"
 #include "rjava_crt.h"
 #include <stdio.h>
 #include <stdlib.h>
 #include <string.h>
 
+/* same layout as java_lang_StringBuilder. StringBuffer is synchronized, so it takes the object lock around the builder's functions */
 typedef struct java_lang_StringBuffer{
     java_lang_Object instance_header;
     
-    int16_t* internal;
+    void* internal;             // latin1 until a char that doesnt fit is appended, then utf16 (see java_lang_String)
+    int8_t coder;
     int curr_buffer_used;
-    int curr_buffer_size;
+    int curr_buffer_size;       // in chars
 } java_lang_StringBuffer;
 
 typedef struct java_lang_StringBuffer_class {
@@ -22,53 +25,92 @@ typedef struct java_lang_StringBuffer_class {
 
 java_lang_StringBuffer_class java_lang_StringBuffer_class_instance;
 
-#define JAVA_LANG_STRINGBUFFER_INIT_SIZE 1024
-
+/* constructors dont need the lock, nobody else sees the buffer yet */
 RJAVA_ALWAYS_INLINE void java_lang_StringBuffer_rjinit(java_lang_StringBuffer* this_parameter) {
-    this_parameter->internal = (int16_t *) malloc (JAVA_LANG_STRINGBUFFER_INIT_SIZE * sizeof(int16_t));
-    this_parameter->curr_buffer_size = JAVA_LANG_STRINGBUFFER_INIT_SIZE;
-    this_parameter->curr_buffer_used = 0;
+    java_lang_StringBuilder_rjinit((java_lang_StringBuilder*) this_parameter);
 }
 
-java_lang_StringBuffer* java_lang_StringBuffer_append_java_lang_Object(java_lang_StringBuffer* this_parameter, void* obj);
+RJAVA_ALWAYS_INLINE void java_lang_StringBuffer_rjinit_int32_t(java_lang_StringBuffer* this_parameter, int32_t capacity) {
+    java_lang_StringBuilder_rjinit_int32_t((java_lang_StringBuilder*) this_parameter, capacity);
+}
 
 RJAVA_ALWAYS_INLINE void java_lang_StringBuffer_rjinit_java_lang_String(java_lang_StringBuffer* this_parameter, java_lang_String* str) {
-    java_lang_StringBuffer_rjinit(this_parameter);
-    java_lang_StringBuffer_append_java_lang_Object(this_parameter, str);
+    java_lang_StringBuilder_rjinit_java_lang_String((java_lang_StringBuilder*) this_parameter, str);
+}
+
+RJAVA_ALWAYS_INLINE java_lang_StringBuffer* java_lang_StringBuffer_append_java_lang_Object(java_lang_StringBuffer* this_parameter, void* obj) {
+    rjava_monitor_enter(this_parameter);
+    java_lang_StringBuilder_append_java_lang_Object((java_lang_StringBuilder*) this_parameter, obj);
+    rjava_monitor_exit(this_parameter);
+    return this_parameter;
 }
 
 RJAVA_ALWAYS_INLINE java_lang_StringBuffer* java_lang_StringBuffer_append_java_lang_String(java_lang_StringBuffer* this_parameter, java_lang_String* str) {
-    return java_lang_StringBuffer_append_java_lang_Object(this_parameter, str);
+    rjava_monitor_enter(this_parameter);
+    java_lang_StringBuilder_append_java_lang_String((java_lang_StringBuilder*) this_parameter, str);
+    rjava_monitor_exit(this_parameter);
+    return this_parameter;
 }
 
 RJAVA_ALWAYS_INLINE java_lang_StringBuffer* java_lang_StringBuffer_append_int32_t(java_lang_StringBuffer* this_parameter, int32_t i) {
-    char iStr[50];
-    sprintf (iStr, "%"PRId32, i);
-    return java_lang_StringBuffer_append_java_lang_Object(this_parameter, newStringConstant(iStr));
+    rjava_monitor_enter(this_parameter);
+    java_lang_StringBuilder_append_int32_t((java_lang_StringBuilder*) this_parameter, i);
+    rjava_monitor_exit(this_parameter);
+    return this_parameter;
 }
 
 RJAVA_ALWAYS_INLINE java_lang_StringBuffer* java_lang_StringBuffer_append_int64_t(java_lang_StringBuffer* this_parameter, int64_t i) {
-    char iStr[50];
-    sprintf (iStr, "%"PRId64, i);
-    return java_lang_StringBuffer_append_java_lang_Object(this_parameter, newStringConstant(iStr));
+    rjava_monitor_enter(this_parameter);
+    java_lang_StringBuilder_append_int64_t((java_lang_StringBuilder*) this_parameter, i);
+    rjava_monitor_exit(this_parameter);
+    return this_parameter;
 }
 
 RJAVA_ALWAYS_INLINE java_lang_StringBuffer* java_lang_StringBuffer_append_double(java_lang_StringBuffer* this_parameter, double d) {
-    char iStr[50];
-    sprintf (iStr, "%f", d);
-    return java_lang_StringBuffer_append_java_lang_String(this_parameter, newStringConstant(iStr));
+    rjava_monitor_enter(this_parameter);
+    java_lang_StringBuilder_append_double((java_lang_StringBuilder*) this_parameter, d);
+    rjava_monitor_exit(this_parameter);
+    return this_parameter;
+}
+
+RJAVA_ALWAYS_INLINE java_lang_StringBuffer* java_lang_StringBuffer_append_float(java_lang_StringBuffer* this_parameter, float f) {
+    rjava_monitor_enter(this_parameter);
+    java_lang_StringBuilder_append_float((java_lang_StringBuilder*) this_parameter, f);
+    rjava_monitor_exit(this_parameter);
+    return this_parameter;
 }
 
+RJAVA_ALWAYS_INLINE java_lang_StringBuffer* java_lang_StringBuffer_append_bool(java_lang_StringBuffer* this_parameter, bool b) {
+    rjava_monitor_enter(this_parameter);
+    java_lang_StringBuilder_append_bool((java_lang_StringBuilder*) this_parameter, b);
+    rjava_monitor_exit(this_parameter);
+    return this_parameter;
+}
+
+// java char
+RJAVA_ALWAYS_INLINE java_lang_StringBuffer* java_lang_StringBuffer_append_int16_t(java_lang_StringBuffer* this_parameter, int16_t c) {
+    rjava_monitor_enter(this_parameter);
+    java_lang_StringBuilder_append_int16_t((java_lang_StringBuilder*) this_parameter, c);
+    rjava_monitor_exit(this_parameter);
+    return this_parameter;
+}
+
+// only used by lib implementation
 RJAVA_ALWAYS_INLINE java_lang_StringBuffer* java_lang_StringBuffer_append_char(java_lang_StringBuffer* this_parameter, char c) {
-    char iStr[1]; iStr[0] = c;
-    return java_lang_StringBuffer_append_java_lang_String(this_parameter, newStringConstant(iStr));
+    return java_lang_StringBuffer_append_int16_t(this_parameter, (int16_t) (uint8_t) c);
+}
+
+RJAVA_ALWAYS_INLINE int32_t java_lang_StringBuffer_length(java_lang_StringBuffer* this_parameter) {
+    return this_parameter->curr_buffer_used;
 }
 
 RJAVA_ALWAYS_INLINE java_lang_String* java_lang_StringBuffer_toString(java_lang_StringBuffer* this_parameter) {
-    java_lang_String* ret = (java_lang_String*) malloc(sizeof(java_lang_String));
-    java_lang_String_rjinit_from_int16_tarray(ret, this_parameter->curr_buffer_used, this_parameter->internal);
+    rjava_monitor_enter(this_parameter);
+    java_lang_String* ret = java_lang_StringBuilder_toString((java_lang_StringBuilder*) this_parameter);
+    rjava_monitor_exit(this_parameter);
     return ret;
 }
 
+java_lang_String* java_lang_StringBuffer_toString_noinline(void* this_parameter);
 
 #endif
@@ -0,0 +1,31 @@
+#include "java_lang_StringBuilder.h"
+
+void rjava_string_builder_expand(java_lang_StringBuilder* this_parameter, int size_needed) {
+    int char_size = this_parameter->coder == RJAVA_STRING_LATIN1 ? 1 : sizeof(int16_t);
+    
+    // amortized doubling, appending n chars copies O(n) chars in total
+    int new_size = this_parameter->curr_buffer_size * 2 + 2;
+    if (new_size < size_needed)
+        new_size = size_needed;
+    
+    void* new_buff = malloc(new_size * char_size);
+    memcpy(new_buff, this_parameter->internal, this_parameter->curr_buffer_used * char_size);
+    this_parameter->internal = new_buff;
+    this_parameter->curr_buffer_size = new_size;
+}
+
+void rjava_string_builder_inflate(java_lang_StringBuilder* this_parameter) {
+    uint8_t* old_buff = (uint8_t*) this_parameter->internal;
+    int16_t* utf16 = (int16_t*) malloc(this_parameter->curr_buffer_size * sizeof(int16_t));
+    
+    int i = 0;
+    for (; i < this_parameter->curr_buffer_used; i++)
+        utf16[i] = (int16_t) old_buff[i];
+    
+    this_parameter->internal = utf16;
+    this_parameter->coder = RJAVA_STRING_UTF16;
+}
+
+java_lang_String* java_lang_StringBuilder_toString_noinline(void* this_parameter) {
+    return java_lang_StringBuilder_toString((java_lang_StringBuilder*) this_parameter);
+}
\ No newline at end of file
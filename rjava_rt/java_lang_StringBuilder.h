@@ -0,0 +1,189 @@
+#ifndef JAVA_LANG_STRINGBUILDER_H
+#define JAVA_LANG_STRINGBUILDER_H
+
+#include "java_lang_Object.h"
+#include "java_lang_String.h"
+#include "rjava_crt.h"
+#include <stdio.h>
+#include <stdlib.h>
+#include <string.h>
+
+/*
+ * the implementation of both string buffers, without locking.
+ * java_lang_StringBuffer has the same layout, and locks around the same functions
+ */
+typedef struct java_lang_StringBuilder {
+    java_lang_Object instance_header;
+    
+    void* internal;             // latin1 until a char that doesnt fit is appended, then utf16 (see java_lang_String)
+    int8_t coder;
+    int curr_buffer_used;
+    int curr_buffer_size;       // in chars
+} java_lang_StringBuilder;
+
+typedef struct java_lang_StringBuilder_class {
+    java_lang_Object_class class_header;
+} java_lang_StringBuilder_class;
+
+java_lang_StringBuilder_class java_lang_StringBuilder_class_instance;
+
+#define JAVA_LANG_STRINGBUILDER_DEFAULT_CAPACITY 16
+
+// only used by lib implementation: grow the buffer (at least doubling it) to hold size_needed chars
+void rjava_string_builder_expand(java_lang_StringBuilder* this_parameter, int size_needed);
+// only used by lib implementation: the buffer becomes utf16 for good
+void rjava_string_builder_inflate(java_lang_StringBuilder* this_parameter);
+
+RJAVA_ALWAYS_INLINE void rjava_string_builder_ensure_capacity(java_lang_StringBuilder* this_parameter, int size_needed) {
+    if (__builtin_expect(size_needed > this_parameter->curr_buffer_size, 0))
+        rjava_string_builder_expand(this_parameter, size_needed);
+}
+
+// only used by lib implementation: append length latin1 chars
+RJAVA_ALWAYS_INLINE void rjava_string_builder_append_latin1(java_lang_StringBuilder* this_parameter, const uint8_t* latin1, int length) {
+    rjava_string_builder_ensure_capacity(this_parameter, this_parameter->curr_buffer_used + length);
+    
+    if (this_parameter->coder == RJAVA_STRING_LATIN1)
+        memcpy(((uint8_t*) this_parameter->internal) + this_parameter->curr_buffer_used, latin1, length);
+    else {
+        int16_t* buff = ((int16_t*) this_parameter->internal) + this_parameter->curr_buffer_used;
+        int i = 0;
+        for (; i < length; i++)
+            buff[i] = (int16_t) latin1[i];
+    }
+    this_parameter->curr_buffer_used += length;
+}
+
+// only used by lib implementation: write the decimal digits of v to the bytes before end, return where they start
+RJAVA_ALWAYS_INLINE uint8_t* rjava_format_int64(uint8_t* end, int64_t v) {
+    uint64_t u = v < 0 ? -(uint64_t) v : (uint64_t) v;
+    do {
+        *--end = (uint8_t) ('0' + u % 10);
+        u = u / 10;
+    } while (u != 0);
+    if (v < 0)
+        *--end = '-';
+    return end;
+}
+
+RJAVA_ALWAYS_INLINE void java_lang_StringBuilder_rjinit_int32_t(java_lang_StringBuilder* this_parameter, int32_t capacity) {
+    if (capacity < 0)
+        capacity = 0;
+    this_parameter->internal = malloc(capacity);
+    this_parameter->coder = RJAVA_STRING_LATIN1;
+    this_parameter->curr_buffer_size = capacity;
+    this_parameter->curr_buffer_used = 0;
+    ((RJava_Common_Instance*)this_parameter) -> lock_word = 0;
+}
+
+RJAVA_ALWAYS_INLINE void java_lang_StringBuilder_rjinit(java_lang_StringBuilder* this_parameter) {
+    java_lang_StringBuilder_rjinit_int32_t(this_parameter, JAVA_LANG_STRINGBUILDER_DEFAULT_CAPACITY);
+}
+
+RJAVA_ALWAYS_INLINE java_lang_StringBuilder* java_lang_StringBuilder_append_java_lang_String(java_lang_StringBuilder* this_parameter, java_lang_String* str) {
+    if (str == NULL) {
+        rjava_string_builder_append_latin1(this_parameter, (const uint8_t*) "null", 4);
+        return this_parameter;
+    }
+    
+    if (str->coder == RJAVA_STRING_LATIN1) {
+        rjava_string_builder_append_latin1(this_parameter, (uint8_t*) str->internal, str->count);
+        return this_parameter;
+    }
+    
+    if (this_parameter->coder == RJAVA_STRING_LATIN1)
+        rjava_string_builder_inflate(this_parameter);
+    rjava_string_builder_ensure_capacity(this_parameter, this_parameter->curr_buffer_used + str->count);
+    memcpy(((int16_t*) this_parameter->internal) + this_parameter->curr_buffer_used, str->internal, str->count * sizeof(int16_t));
+    this_parameter->curr_buffer_used += str->count;
+    return this_parameter;
+}
+
+/*
+ * used by generated code for a concatenation chain (see StringConcatChains in the compiler).
+ * capacity is what the compiler estimates the chain needs, str is the initial content (or NULL)
+ */
+RJAVA_ALWAYS_INLINE void rjava_string_builder_init(void* this_parameter, java_lang_String* str, int32_t capacity) {
+    if (str != NULL && capacity < str->count + JAVA_LANG_STRINGBUILDER_DEFAULT_CAPACITY)
+        capacity = str->count + JAVA_LANG_STRINGBUILDER_DEFAULT_CAPACITY;
+    java_lang_StringBuilder_rjinit_int32_t((java_lang_StringBuilder*) this_parameter, capacity);
+    if (str != NULL)
+        java_lang_StringBuilder_append_java_lang_String((java_lang_StringBuilder*) this_parameter, str);
+}
+
+RJAVA_ALWAYS_INLINE void java_lang_StringBuilder_rjinit_java_lang_String(java_lang_StringBuilder* this_parameter, java_lang_String* str) {
+    rjava_string_builder_init(this_parameter, str, 0);
+}
+
+RJAVA_ALWAYS_INLINE java_lang_StringBuilder* java_lang_StringBuilder_append_java_lang_Object(java_lang_StringBuilder* this_parameter, void* obj) {
+    if (obj == NULL || ((RJava_Common_Instance*)obj) -> class_struct == &java_lang_String_class_instance)
+        return java_lang_StringBuilder_append_java_lang_String(this_parameter, (java_lang_String*) obj);
+    
+    java_lang_String* str = ((java_lang_Object_class*)(((RJava_Common_Instance*)obj) -> class_struct)) -> toString(obj);
+    return java_lang_StringBuilder_append_java_lang_String(this_parameter, str);
+}
+
+RJAVA_ALWAYS_INLINE java_lang_StringBuilder* java_lang_StringBuilder_append_int32_t(java_lang_StringBuilder* this_parameter, int32_t i) {
+    uint8_t digits[12];
+    uint8_t* start = rjava_format_int64(digits + sizeof(digits), i);
+    rjava_string_builder_append_latin1(this_parameter, start, digits + sizeof(digits) - start);
+    return this_parameter;
+}
+
+RJAVA_ALWAYS_INLINE java_lang_StringBuilder* java_lang_StringBuilder_append_int64_t(java_lang_StringBuilder* this_parameter, int64_t i) {
+    uint8_t digits[21];
+    uint8_t* start = rjava_format_int64(digits + sizeof(digits), i);
+    rjava_string_builder_append_latin1(this_parameter, start, digits + sizeof(digits) - start);
+    return this_parameter;
+}
+
+RJAVA_ALWAYS_INLINE java_lang_StringBuilder* java_lang_StringBuilder_append_double(java_lang_StringBuilder* this_parameter, double d) {
+    // %f of the largest double is 309 digits and the fraction
+    char str[330];
+    int length = snprintf(str, sizeof(str), "%f", d);
+    rjava_string_builder_append_latin1(this_parameter, (uint8_t*) str, length < (int) sizeof(str) ? length : (int) sizeof(str) - 1);
+    return this_parameter;
+}
+
+RJAVA_ALWAYS_INLINE java_lang_StringBuilder* java_lang_StringBuilder_append_float(java_lang_StringBuilder* this_parameter, float f) {
+    return java_lang_StringBuilder_append_double(this_parameter, (double) f);
+}
+
+RJAVA_ALWAYS_INLINE java_lang_StringBuilder* java_lang_StringBuilder_append_bool(java_lang_StringBuilder* this_parameter, bool b) {
+    if (b)
+        rjava_string_builder_append_latin1(this_parameter, (const uint8_t*) "true", 4);
+    else rjava_string_builder_append_latin1(this_parameter, (const uint8_t*) "false", 5);
+    return this_parameter;
+}
+
+// java char
+RJAVA_ALWAYS_INLINE java_lang_StringBuilder* java_lang_StringBuilder_append_int16_t(java_lang_StringBuilder* this_parameter, int16_t c) {
+    if ((uint16_t) c <= 0xff) {
+        uint8_t latin1 = (uint8_t) c;
+        rjava_string_builder_append_latin1(this_parameter, &latin1, 1);
+        return this_parameter;
+    }
+    
+    if (this_parameter->coder == RJAVA_STRING_LATIN1)
+        rjava_string_builder_inflate(this_parameter);
+    rjava_string_builder_ensure_capacity(this_parameter, this_parameter->curr_buffer_used + 1);
+    ((int16_t*) this_parameter->internal)[this_parameter->curr_buffer_used] = c;
+    this_parameter->curr_buffer_used++;
+    return this_parameter;
+}
+
+RJAVA_ALWAYS_INLINE int32_t java_lang_StringBuilder_length(java_lang_StringBuilder* this_parameter) {
+    return this_parameter->curr_buffer_used;
+}
+
+RJAVA_ALWAYS_INLINE java_lang_String* java_lang_StringBuilder_toString(java_lang_StringBuilder* this_parameter) {
+    java_lang_String* ret = (java_lang_String*) malloc(sizeof(java_lang_String));
+    if (this_parameter->coder == RJAVA_STRING_LATIN1)
+        java_lang_String_rjinit_from_latin1(ret, this_parameter->curr_buffer_used, (uint8_t*) this_parameter->internal);
+    else java_lang_String_rjinit_from_int16_tarray(ret, this_parameter->curr_buffer_used, (int16_t*) this_parameter->internal);
+    return ret;
+}
+
+java_lang_String* java_lang_StringBuilder_toString_noinline(void* this_parameter);
+
+#endif
@@ -15,11 +15,7 @@ void java_lang_System_gc() {
 #endif
 }
 
-extern void rjava_debug_report_func_log();
 void java_lang_System_exit_int32_t(int32_t exit_code) {
-#ifdef LOG_FUNCTION_EXEC
-    rjava_debug_report_func_log();
-#endif
     exit(exit_code);
 }
 
@@ -7,11 +7,32 @@
 
 // #define DEBUG_THREAD
 
-// record all the created threads
-#define MAX_THREADS 1024
-java_lang_Thread* rjava_threads[MAX_THREADS];
+// record all the created threads (grows on demand, protected by thread_create_lock)
+#define INITIAL_THREADS_CAPACITY 16
+java_lang_Thread** rjava_threads = NULL;
+int rjava_threads_capacity = 0;
 int rjava_thread_count = 0;
 
+// current thread, set when the thread starts running (see thread_run_trampoline)
+__thread java_lang_Thread* rjava_current_thread = NULL;
+// a per-thread slot for RJava code (see org.rjava.osext.OSConcurrency.getThreadLocal())
+__thread void* rjava_thread_local = NULL;
+
+// need to hold thread_create_lock
+static void record_thread(java_lang_Thread* t) {
+    if (rjava_thread_count == rjava_threads_capacity) {
+        int new_capacity = rjava_threads_capacity == 0 ? INITIAL_THREADS_CAPACITY : rjava_threads_capacity * 2;
+        java_lang_Thread** new_threads = (java_lang_Thread**) realloc(rjava_threads, sizeof(java_lang_Thread*) * new_capacity);
+        if (new_threads == NULL) {
+            printf("failed to grow the thread table to %d threads\n", new_capacity);
+            exit(1);
+        }
+        rjava_threads = new_threads;
+        rjava_threads_capacity = new_capacity;
+    }
+    rjava_threads[rjava_thread_count] = t;
+}
+
 
 void java_lang_Thread_dumpStack() {
     void* array[20];
@@ -37,8 +58,7 @@ void java_lang_Thread_rjinit_java_lang_Runnable_java_lang_String(void* this_para
     
     // get the interface first
     if (runnable != NULL) {
-        RJava_Interface_Node* interface_list = ((RJava_Common_Class*)(((RJava_Common_Instance*)runnable) -> class_struct)) -> interfaces;
-        java_lang_Runnable* runnable_interface = (java_lang_Runnable*)rjava_get_interface(interface_list, "java_lang_Runnable");
+        java_lang_Runnable* runnable_interface = (java_lang_Runnable*)rjava_get_interface(runnable, RJAVA_RUNNABLE_INTERFACE_ID);
         t -> start_function = runnable_interface -> run;
         t -> worker = runnable;
     }
@@ -50,7 +70,7 @@ void java_lang_Thread_rjinit_java_lang_Runnable_java_lang_String(void* this_para
     // thread name
     t -> name = name;
     // rjava thread
-    rjava_threads[rjava_thread_count] = t;
+    record_thread(t);
     // increase count
     rjava_thread_count++;
     pthread_mutex_unlock(&thread_create_lock);
@@ -79,7 +99,7 @@ void java_lang_Thread_run(void* this_parameter) {
         pthread_mutex_unlock(&thread_create_lock);
         
 #ifdef DEBUG_THREAD
-        printf("[DEBUG]New thread running. id:%" PRId64 ", pthread:%u, name:%s\n", t->thread_id, t->internal_thread, t->name->internal);
+        printf("[DEBUG]New thread running. id:%" PRId64 ", pthread:%u, name:%s\n", t->thread_id, t->internal_thread, to_c_char_array(t->name));
 #endif
         t -> start_function(t -> worker);
     } else {
@@ -88,16 +108,15 @@ void java_lang_Thread_run(void* this_parameter) {
 }
 
 void* thread_run_trampoline(void* ptr) {
+    rjava_current_thread = (java_lang_Thread*) ptr;
     java_lang_Thread_run(ptr);
     return 0;
 }
 
 void java_lang_Thread_start(void* this_parameter) {
     java_lang_Thread* t = (java_lang_Thread*) this_parameter;
-    internal_assert(rjava_thread_count < MAX_THREADS, "Trying to create more threads than MAX_THREADS");
-    
 #ifdef DEBUG_THREAD
-    printf("[DEBUG]create new thread. id:%" PRId64 ", pthread:%u, name:%s\n", t->thread_id, t->internal_thread, t->name->internal);
+    printf("[DEBUG]create new thread. id:%" PRId64 ", pthread:%u, name:%s\n", t->thread_id, t->internal_thread, to_c_char_array(t->name));
 #endif
     // creating thread
     pthread_mutex_lock(&thread_create_lock);
@@ -111,31 +130,25 @@ void java_lang_Thread_start(void* this_parameter) {
 #endif
 }
 
-java_lang_Thread* java_lang_Thread_currentThread() {
-    int i = 0;
-#ifdef DEBUG_THREAD
-    printf("[DEBUG]Trying to find current thread from all threads:\n");
-    for (i = 0; i < rjava_thread_count; i++) {
-        printf("%d: id=%d, pthread=%d, name=%s\n", i, rjava_threads[i]->thread_id, rjava_threads[i]->internal_thread, rjava_threads[i]->name->internal);
-    }
-#endif
-    pthread_t current_pthread = pthread_self();
-    for (i = 0; i < rjava_thread_count; i++)
-        if (rjava_threads[i]->internal_thread == current_pthread)
-            return rjava_threads[i];
-    
-    internal_assert(false, "couldn't find current thread");
-    return NULL;
-}
-
 /*******************************************/
 /* helper methods                          */
 /*******************************************/
 
 void rjava_join_all_threads() {
     int i = 0;
-    for (; i < rjava_thread_count; i++)
-        pthread_join(rjava_threads[i]->internal_thread, NULL);
+    while (1) {
+        // threads may still be created while we join, and record_thread() may move the table
+        pthread_mutex_lock(&thread_create_lock);
+        if (i >= rjava_thread_count) {
+            pthread_mutex_unlock(&thread_create_lock);
+            return;
+        }
+        pthread_t thread = rjava_threads[i]->internal_thread;
+        pthread_mutex_unlock(&thread_create_lock);
+        
+        pthread_join(thread, NULL);
+        i++;
+    }
 }
 
 /* this is a hack to add main thread as a RJava thread (but it is already launched) */
@@ -150,6 +163,7 @@ void rjava_add_main_thread() {
     // we will need to add pthread to array
     pthread_t main_thread = pthread_self();
     rjava_threads[0]->internal_thread = main_thread;
+    rjava_current_thread = rjava_main;
 }
 
 /*******************************************/
@@ -33,10 +33,13 @@ typedef struct java_lang_Thread_class {
 
 java_lang_Thread_class java_lang_Thread_class_instance;
 
+/* thread locals (defined in java_lang_Thread.c) */
+extern __thread java_lang_Thread* rjava_current_thread;
+extern __thread void* rjava_thread_local;
+
 /* thread creation */
 // static:
 void java_lang_Thread_dumpStack();                                                      //done
-java_lang_Thread* java_lang_Thread_currentThread();                                     //done
 // non-static:
 void java_lang_Thread_rjinit_java_lang_Runnable(void* this_parameter, void* runnable);  //done
 void java_lang_Thread_run(void* this_parameter);                                        //done
@@ -68,4 +71,8 @@ void rjava_add_main_thread();
 // used to create thread and record those threads
 pthread_mutex_t thread_create_lock;
 
+RJAVA_ALWAYS_INLINE java_lang_Thread* java_lang_Thread_currentThread() {
+    return rjava_current_thread;
+}
+
 #endif
\ No newline at end of file
@@ -0,0 +1,52 @@
+#ifndef ORG_RJAVA_OSEXT_OSATOMIC_H
+#define ORG_RJAVA_OSEXT_OSATOMIC_H
+
+#include "org_vmmagic_unboxed_Address.h"
+#include "org_vmmagic_unboxed_Word.h"
+#include "rjava_crt.h"
+
+#define org_rjava_osext_OSAtomic_fetchAndAdd_org_vmmagic_unboxed_Address_int32_t(addr, delta) \
+__atomic_fetch_add((int32_t*) (addr), delta, __ATOMIC_SEQ_CST)
+
+#define org_rjava_osext_OSAtomic_fetchAndAdd_org_vmmagic_unboxed_Address_org_vmmagic_unboxed_Word(addr, delta) \
+__atomic_fetch_add((org_vmmagic_unboxed_Word*) (addr), delta, __ATOMIC_SEQ_CST)
+
+/* __atomic_compare_exchange_n writes the current value back to expected, so it needs a variable */
+RJAVA_ALWAYS_INLINE bool org_rjava_osext_OSAtomic_compareAndSwap_org_vmmagic_unboxed_Address_int32_t_int32_t(org_vmmagic_unboxed_Address addr, int32_t old_value, int32_t new_value) {
+    return __atomic_compare_exchange_n((int32_t*) addr, &old_value, new_value, false, __ATOMIC_SEQ_CST, __ATOMIC_SEQ_CST);
+}
+
+RJAVA_ALWAYS_INLINE bool org_rjava_osext_OSAtomic_compareAndSwap_org_vmmagic_unboxed_Address_org_vmmagic_unboxed_Word_org_vmmagic_unboxed_Word(org_vmmagic_unboxed_Address addr, org_vmmagic_unboxed_Word old_value, org_vmmagic_unboxed_Word new_value) {
+    return __atomic_compare_exchange_n((org_vmmagic_unboxed_Word*) addr, &old_value, new_value, false, __ATOMIC_SEQ_CST, __ATOMIC_SEQ_CST);
+}
+
+#define org_rjava_osext_OSAtomic_exchange_org_vmmagic_unboxed_Address_int32_t(addr, value) \
+__atomic_exchange_n((int32_t*) (addr), value, __ATOMIC_SEQ_CST)
+
+#define org_rjava_osext_OSAtomic_exchange_org_vmmagic_unboxed_Address_org_vmmagic_unboxed_Word(addr, value) \
+__atomic_exchange_n((org_vmmagic_unboxed_Word*) (addr), value, __ATOMIC_SEQ_CST)
+
+#define org_rjava_osext_OSAtomic_loadAcquire_org_vmmagic_unboxed_Address(addr) \
+__atomic_load_n((int32_t*) (addr), __ATOMIC_ACQUIRE)
+
+#define org_rjava_osext_OSAtomic_storeRelease_org_vmmagic_unboxed_Address_int32_t(addr, value) \
+__atomic_store_n((int32_t*) (addr), value, __ATOMIC_RELEASE)
+
+#define org_rjava_osext_OSAtomic_fullFence() \
+__atomic_thread_fence(__ATOMIC_SEQ_CST)
+
+#define org_rjava_osext_OSAtomic_loadFence() \
+__atomic_thread_fence(__ATOMIC_ACQUIRE)
+
+#define org_rjava_osext_OSAtomic_storeFence() \
+__atomic_thread_fence(__ATOMIC_RELEASE)
+
+#if defined(__i386__) || defined(__x86_64__)
+#define org_rjava_osext_OSAtomic_spinPause() \
+__builtin_ia32_pause()
+#else
+#define org_rjava_osext_OSAtomic_spinPause() \
+__asm__ __volatile__("" ::: "memory")
+#endif
+
+#endif
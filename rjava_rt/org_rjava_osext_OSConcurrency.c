@@ -1,5 +1,12 @@
 #include "org_rjava_osext_OSConcurrency.h"
 #include <signal.h>
+#ifdef __OS_MACOSX_
+#include <sched.h>
+#else
+#include <linux/futex.h>
+#include <sys/syscall.h>
+#include <unistd.h>
+#endif
 
 #define RESUME_SIG  SIGUSR2
 #define SUSPEND_SIG SIGUSR1
@@ -15,6 +22,22 @@ void org_rjava_osext_OSConcurrency_threadResume_java_lang_Thread(java_lang_Threa
     pthread_kill(t->internal_thread, RESUME_SIG);
 }
 
+void org_rjava_osext_OSConcurrency_futexWait_org_vmmagic_unboxed_Address_int32_t(org_vmmagic_unboxed_Address addr, int32_t expected) {
+#ifdef __OS_MACOSX_
+    // no futex on OS X, the caller rechecks anyway
+    if (*((volatile int32_t*) addr) == expected)
+        sched_yield();
+#else
+    syscall(SYS_futex, (int32_t*) addr, FUTEX_WAIT_PRIVATE, expected, NULL, NULL, 0);
+#endif
+}
+
+void org_rjava_osext_OSConcurrency_futexWake_org_vmmagic_unboxed_Address_int32_t(org_vmmagic_unboxed_Address addr, int32_t count) {
+#ifndef __OS_MACOSX_
+    syscall(SYS_futex, (int32_t*) addr, FUTEX_WAKE_PRIVATE, count, NULL, NULL, 0);
+#endif
+}
+
 /* helpers */
 void resume_handler(int sig) {
     suspended = 0;
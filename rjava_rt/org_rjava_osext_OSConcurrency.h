@@ -3,14 +3,24 @@
 
 #include "rjava_crt.h"
 #include "rjava_clib.h"
+#include "org_vmmagic_unboxed_Address.h"
 
 #define org_rjava_osext_OSConcurrency_mutexLock_java_lang_Object(obj) \
-	pthread_mutex_lock(&(((RJava_Common_Instance*) obj) -> instance_mutex))
+	rjava_monitor_enter(obj)
 	
 #define org_rjava_osext_OSConcurrency_mutexUnlock_java_lang_Object(obj) \
-	pthread_mutex_unlock(&(((RJava_Common_Instance*) obj) -> instance_mutex))
+	rjava_monitor_exit(obj)
+
+#define org_rjava_osext_OSConcurrency_setThreadLocal_java_lang_Object(obj) \
+	(rjava_thread_local = (void*) (obj))
+
+#define org_rjava_osext_OSConcurrency_getThreadLocal() \
+	rjava_thread_local
 
 void org_rjava_osext_OSConcurrency_threadSuspend_java_lang_Thread(java_lang_Thread* t);
 void org_rjava_osext_OSConcurrency_threadResume_java_lang_Thread(java_lang_Thread* t);
 
+void org_rjava_osext_OSConcurrency_futexWait_org_vmmagic_unboxed_Address_int32_t(org_vmmagic_unboxed_Address addr, int32_t expected);
+void org_rjava_osext_OSConcurrency_futexWake_org_vmmagic_unboxed_Address_int32_t(org_vmmagic_unboxed_Address addr, int32_t count);
+
 #endif
\ No newline at end of file
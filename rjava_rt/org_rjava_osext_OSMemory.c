@@ -0,0 +1,30 @@
+#include "org_rjava_osext_OSMemory.h"
+
+#include <fcntl.h>
+#include <sys/stat.h>
+#include <unistd.h>
+
+org_vmmagic_unboxed_Address org_rjava_osext_OSMemory_mapFile_java_lang_String(java_lang_String* path) {
+    struct stat st;
+    void* ret;
+    int fd = open(to_c_char_array(path), O_RDONLY);
+    if (fd < 0)
+        return 0;
+
+    if (fstat(fd, &st) != 0 || st.st_size == 0) {
+        close(fd);
+        return 0;
+    }
+
+    ret = mmap(NULL, st.st_size, PROT_READ, MAP_PRIVATE, fd, 0);
+    // the mapping keeps the file
+    close(fd);
+    return ret == MAP_FAILED ? 0 : (org_vmmagic_unboxed_Address) ret;
+}
+
+int64_t org_rjava_osext_OSMemory_fileSize_java_lang_String(java_lang_String* path) {
+    struct stat st;
+    if (stat(to_c_char_array(path), &st) != 0)
+        return -1;
+    return (int64_t) st.st_size;
+}
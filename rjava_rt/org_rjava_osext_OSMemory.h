@@ -7,6 +7,7 @@
 #include <sys/mman.h>
 #include <string.h>
 #include "rjava_crt.h"
+#include "java_lang_String.h"
 
 #define var_org_rjava_osext_OSMemory_PROT_NONE      0x0
 #define var_org_rjava_osext_OSMemory_PROT_READ      0x1
@@ -37,4 +38,10 @@ mprotect((void*) start, length, prot)
 #define org_rjava_osext_OSMemory_memset_org_vmmagic_unboxed_Address_int32_t_org_vmmagic_unboxed_Extent(start, c, length) \
 (org_vmmagic_unboxed_Address) memset((void*) start, c, length)
 
+#define org_rjava_osext_OSMemory_memcpy_org_vmmagic_unboxed_Address_org_vmmagic_unboxed_Address_org_vmmagic_unboxed_Extent(dst, src, length) \
+(org_vmmagic_unboxed_Address) memcpy((void*) dst, (void*) src, length)
+
+org_vmmagic_unboxed_Address org_rjava_osext_OSMemory_mapFile_java_lang_String(java_lang_String* path);
+int64_t org_rjava_osext_OSMemory_fileSize_java_lang_String(java_lang_String* path);
+
 #endif
\ No newline at end of file
@@ -1,9 +1,172 @@
 #include "org_rjava_osext_OSNative.h"
 
+#include <stdio.h>
+#include <stdlib.h>
+#include <string.h>
 #include <time.h>
+#include <unistd.h>
+#ifndef __OS_MACOSX_
+#include <linux/perf_event.h>
+#include <sys/ioctl.h>
+#include <sys/syscall.h>
+#endif
 
 double org_rjava_osext_OSNative_random() {
     srand(time(NULL));
     int r = random() % 100;
     return ((double)r) / 100;
-}
\ No newline at end of file
+}
+
+/*
+ * perf events
+ * the events are given once (perfEventInit), each thread opens them as its own group the first time it reads them,
+ * so the counters of a group are scheduled on the PMU together and only count the thread that reads them
+ */
+#define PERF_EVENT_UNKNOWN ((uint32_t) -1)
+
+static int perf_event_count = 0;
+static char* perf_event_names[RJAVA_MAX_PERF_EVENTS];
+static uint32_t perf_event_types[RJAVA_MAX_PERF_EVENTS];
+static uint64_t perf_event_configs[RJAVA_MAX_PERF_EVENTS];
+
+static __thread bool perf_event_opened = false;
+static __thread int perf_event_fds[RJAVA_MAX_PERF_EVENTS];
+
+#ifndef __OS_MACOSX_
+#define PERF_CACHE_EVENT(cache, op, result) \
+    ((cache) | ((op) << 8) | ((result) << 16))
+
+static const struct {
+    const char* name;
+    uint32_t type;
+    uint64_t config;
+} known_perf_events[] = {
+    {"cycles",                  PERF_TYPE_HARDWARE, PERF_COUNT_HW_CPU_CYCLES},
+    {"instructions",            PERF_TYPE_HARDWARE, PERF_COUNT_HW_INSTRUCTIONS},
+    {"cache-references",        PERF_TYPE_HARDWARE, PERF_COUNT_HW_CACHE_REFERENCES},
+    {"cache-misses",            PERF_TYPE_HARDWARE, PERF_COUNT_HW_CACHE_MISSES},
+    {"branches",                PERF_TYPE_HARDWARE, PERF_COUNT_HW_BRANCH_INSTRUCTIONS},
+    {"branch-misses",           PERF_TYPE_HARDWARE, PERF_COUNT_HW_BRANCH_MISSES},
+    {"PERF_COUNT_HW_CPU_CYCLES",        PERF_TYPE_HARDWARE, PERF_COUNT_HW_CPU_CYCLES},
+    {"PERF_COUNT_HW_INSTRUCTIONS",      PERF_TYPE_HARDWARE, PERF_COUNT_HW_INSTRUCTIONS},
+    {"PERF_COUNT_HW_CACHE_REFERENCES",  PERF_TYPE_HARDWARE, PERF_COUNT_HW_CACHE_REFERENCES},
+    {"PERF_COUNT_HW_CACHE_MISSES",      PERF_TYPE_HARDWARE, PERF_COUNT_HW_CACHE_MISSES},
+    {"PERF_COUNT_HW_BRANCH_INSTRUCTIONS", PERF_TYPE_HARDWARE, PERF_COUNT_HW_BRANCH_INSTRUCTIONS},
+    {"PERF_COUNT_HW_BRANCH_MISSES",     PERF_TYPE_HARDWARE, PERF_COUNT_HW_BRANCH_MISSES},
+    {"L1-dcache-load-misses",   PERF_TYPE_HW_CACHE, PERF_CACHE_EVENT(PERF_COUNT_HW_CACHE_L1D, PERF_COUNT_HW_CACHE_OP_READ, PERF_COUNT_HW_CACHE_RESULT_MISS)},
+    {"LLC-load-misses",         PERF_TYPE_HW_CACHE, PERF_CACHE_EVENT(PERF_COUNT_HW_CACHE_LL, PERF_COUNT_HW_CACHE_OP_READ, PERF_COUNT_HW_CACHE_RESULT_MISS)},
+    {"dTLB-load-misses",        PERF_TYPE_HW_CACHE, PERF_CACHE_EVENT(PERF_COUNT_HW_CACHE_DTLB, PERF_COUNT_HW_CACHE_OP_READ, PERF_COUNT_HW_CACHE_RESULT_MISS)},
+    {"iTLB-load-misses",        PERF_TYPE_HW_CACHE, PERF_CACHE_EVENT(PERF_COUNT_HW_CACHE_ITLB, PERF_COUNT_HW_CACHE_OP_READ, PERF_COUNT_HW_CACHE_RESULT_MISS)},
+};
+
+static void perf_event_lookup(const char* name, uint32_t* type, uint64_t* config) {
+    int i = 0;
+    for (; i < sizeof(known_perf_events) / sizeof(known_perf_events[0]); i++)
+        if (strcmp(name, known_perf_events[i].name) == 0) {
+            *type = known_perf_events[i].type;
+            *config = known_perf_events[i].config;
+            return;
+        }
+    
+    // raw event as perf(1) takes it: rNNN (hex)
+    if (name[0] == 'r' && name[1] != '\0') {
+        char* end;
+        uint64_t raw = strtoull(name + 1, &end, 16);
+        if (*end == '\0') {
+            *type = PERF_TYPE_RAW;
+            *config = raw;
+            return;
+        }
+    }
+    
+    fprintf(stderr, "Warning: unknown perf event %s, it will not be counted\n", name);
+    *type = PERF_EVENT_UNKNOWN;
+}
+
+static void perf_event_open_group() {
+    int leader = -1;
+    int i = 0;
+    for (; i < perf_event_count; i++) {
+        perf_event_fds[i] = -1;
+        if (perf_event_types[i] == PERF_EVENT_UNKNOWN)
+            continue;
+        
+        struct perf_event_attr attr;
+        memset(&attr, 0, sizeof(attr));
+        attr.size = sizeof(attr);
+        attr.type = perf_event_types[i];
+        attr.config = perf_event_configs[i];
+        attr.read_format = PERF_FORMAT_TOTAL_TIME_ENABLED | PERF_FORMAT_TOTAL_TIME_RUNNING;
+        // the group starts when the leader is enabled
+        attr.disabled = leader == -1;
+        // user mode only, so it works with the default perf_event_paranoid
+        attr.exclude_kernel = 1;
+        attr.exclude_hv = 1;
+        
+        perf_event_fds[i] = syscall(__NR_perf_event_open, &attr, 0, -1, leader, 0);
+        if (perf_event_fds[i] == -1)
+            fprintf(stderr, "Warning: perf_event_open failed for %s: %s\n", perf_event_names[i], strerror(errno));
+        else if (leader == -1)
+            leader = perf_event_fds[i];
+    }
+    
+    if (leader != -1)
+        ioctl(leader, PERF_EVENT_IOC_ENABLE, PERF_IOC_FLAG_GROUP);
+    perf_event_opened = true;
+}
+#else
+static void perf_event_lookup(const char* name, uint32_t* type, uint64_t* config) {
+    fprintf(stderr, "Warning: no perf events on this OS, %s will not be counted\n", name);
+    *type = PERF_EVENT_UNKNOWN;
+}
+
+static void perf_event_open_group() {
+    int i = 0;
+    for (; i < perf_event_count; i++)
+        perf_event_fds[i] = -1;
+    perf_event_opened = true;
+}
+#endif
+
+int32_t org_rjava_osext_OSNative_perfEventInit_java_lang_String(java_lang_String* events) {
+    char* list = strdup(to_c_char_array(events));
+    char* save;
+    char* name = strtok_r(list, ",", &save);
+    
+    perf_event_count = 0;
+    for (; name != NULL; name = strtok_r(NULL, ",", &save)) {
+        if (perf_event_count == RJAVA_MAX_PERF_EVENTS) {
+            fprintf(stderr, "Warning: at most %d perf events, ignoring %s and the rest\n", RJAVA_MAX_PERF_EVENTS, name);
+            break;
+        }
+        
+        perf_event_names[perf_event_count] = strdup(name);
+        perf_event_lookup(name, &perf_event_types[perf_event_count], &perf_event_configs[perf_event_count]);
+        perf_event_count++;
+    }
+    free(list);
+    
+    // start counting for the calling thread now, other threads start at their first read
+    if (perf_event_count > 0)
+        perf_event_open_group();
+    return perf_event_count;
+}
+
+java_lang_String* org_rjava_osext_OSNative_perfEventName_int32_t(int32_t id) {
+    return newStringConstant(perf_event_names[id]);
+}
+
+/* values is a long[3]: raw count, time enabled, time running. All 0 if the event is not counted */
+void org_rjava_osext_OSNative_perfEventRead_int32_t_int64_tarray(int32_t id, void* values) {
+    int64_t* out = (int64_t*) rjava_array_elements(values);
+    if (!perf_event_opened)
+        perf_event_open_group();
+    
+    uint64_t buf[3] = {0, 0, 0};
+    if (perf_event_fds[id] == -1 || read(perf_event_fds[id], buf, sizeof(buf)) != sizeof(buf))
+        buf[0] = buf[1] = buf[2] = 0;
+    
+    out[0] = (int64_t) buf[0];
+    out[1] = (int64_t) buf[1];
+    out[2] = (int64_t) buf[2];
+}
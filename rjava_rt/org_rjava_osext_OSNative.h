@@ -3,6 +3,8 @@
 
 #include "java_lang_String.h"
 #include <errno.h>
+#include <stdint.h>
+#include <time.h>
 
 #define org_rjava_osext_OSNative_errno() \
 errno
@@ -12,4 +14,28 @@ newStringConstant(strerror(errno))
 
 double org_rjava_osext_OSNative_random();
 
-#endif
\ No newline at end of file
+/* time stamp counter on x86, virtual counter on arm64, otherwise monotonic nanoseconds */
+RJAVA_ALWAYS_INLINE int64_t org_rjava_osext_OSNative_cycles() {
+#if defined(__i386__) || defined(__x86_64__)
+    uint32_t lo, hi;
+    __asm__ __volatile__("rdtsc" : "=a" (lo), "=d" (hi));
+    return (int64_t) (((uint64_t) hi << 32) | lo);
+#elif defined(__aarch64__)
+    int64_t v;
+    __asm__ __volatile__("mrs %0, cntvct_el0" : "=r" (v));
+    return v;
+#else
+    struct timespec ts;
+    clock_gettime(CLOCK_MONOTONIC, &ts);
+    return (int64_t) ts.tv_sec * 1000000000 + ts.tv_nsec;
+#endif
+}
+
+/* perf events (perf_event_open on linux), counting user mode of the calling thread */
+#define RJAVA_MAX_PERF_EVENTS 16
+
+int32_t org_rjava_osext_OSNative_perfEventInit_java_lang_String(java_lang_String* events);
+java_lang_String* org_rjava_osext_OSNative_perfEventName_int32_t(int32_t id);
+void org_rjava_osext_OSNative_perfEventRead_int32_t_int64_tarray(int32_t id, void* values);
+
+#endif
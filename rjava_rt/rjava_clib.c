@@ -2,6 +2,9 @@
 #include "rjava_crt.h"
 #include <stdio.h>
 
+/* the address of this thread local identifies the thread as a lock owner (see RJAVA_THREAD_LOCK_TOKEN) */
+__thread int64_t rjava_thread_lock_token;
+
 void rjava_lib_init() {
     /* thread create lock */
     pthread_mutex_init(&thread_create_lock, NULL);
@@ -11,7 +14,10 @@ void rjava_lib_init() {
     
     /* init for java_lang_Object */
     ((RJava_Common_Class*)(&java_lang_Object_class_instance)) -> super_class = NULL;
-    ((RJava_Common_Class*)(&java_lang_Object_class_instance)) -> interfaces = NULL;
+    memset(((RJava_Common_Class*)(&java_lang_Object_class_instance)) -> itable, 0, sizeof(((RJava_Common_Class*)(&java_lang_Object_class_instance)) -> itable));
+    ((RJava_Common_Class*)(&java_lang_Object_class_instance)) -> depth = 0;
+    memset(((RJava_Common_Class*)(&java_lang_Object_class_instance)) -> display, 0, sizeof(((RJava_Common_Class*)(&java_lang_Object_class_instance)) -> display));
+    ((RJava_Common_Class*)(&java_lang_Object_class_instance)) -> display[0] = (RJava_Common_Class*)(&java_lang_Object_class_instance);
     pthread_mutex_init( &(((RJava_Common_Class*)(&java_lang_Object_class_instance)) -> class_mutex), NULL);
     ((java_lang_Object_class*)(&java_lang_Object_class_instance)) -> toString = java_lang_Object_toString_noinline ;
 #ifdef DEBUG_TARGET
@@ -52,6 +58,20 @@ void rjava_lib_init() {
 #endif
     ((java_lang_Object_class*)(&java_lang_String_class_instance)) -> toString = java_lang_String_toString_noinline ;
     
+    /* init for java_lang_StringBuffer */
+    rjava_init_header(&java_lang_StringBuffer_class_instance, &java_lang_Object_class_instance, sizeof(java_lang_Object_class));
+#ifdef DEBUG_TARGET
+    ((RJava_Common_Class*)(&java_lang_StringBuffer_class_instance)) -> class_name = "java_lang_StringBuffer";
+#endif
+    ((java_lang_Object_class*)(&java_lang_StringBuffer_class_instance)) -> toString = java_lang_StringBuffer_toString_noinline ;
+    
+    /* init for java_lang_StringBuilder */
+    rjava_init_header(&java_lang_StringBuilder_class_instance, &java_lang_Object_class_instance, sizeof(java_lang_Object_class));
+#ifdef DEBUG_TARGET
+    ((RJava_Common_Class*)(&java_lang_StringBuilder_class_instance)) -> class_name = "java_lang_StringBuilder";
+#endif
+    ((java_lang_Object_class*)(&java_lang_StringBuilder_class_instance)) -> toString = java_lang_StringBuilder_toString_noinline ;
+    
     /* init for java_lang_Class */
     rjava_init_header(&java_lang_Class_class_instance, &java_lang_Object_class_instance, sizeof(java_lang_Object_class));
 #ifdef DEBUG_TARGET
@@ -83,5 +103,5 @@ void rjava_lib_init() {
 #endif
     java_lang_Runnable* java_lang_Runnable_implemented_on_java_lang_Thread = malloc(sizeof(java_lang_Runnable));
     java_lang_Runnable_implemented_on_java_lang_Thread -> run = java_lang_Thread_run;
-    rjava_add_interface_to_class(java_lang_Runnable_implemented_on_java_lang_Thread, sizeof(java_lang_Runnable), "java_lang_Runnable", (RJava_Common_Class*)&java_lang_Thread_class_instance);
+    rjava_add_interface_to_class(java_lang_Runnable_implemented_on_java_lang_Thread, RJAVA_RUNNABLE_INTERFACE_ID, (RJava_Common_Class*)&java_lang_Thread_class_instance);
 }
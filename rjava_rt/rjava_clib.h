@@ -4,6 +4,7 @@
 #include "java_lang_Object.h"
 #include "java_lang_System.h"
 #include "java_lang_StringBuffer.h"
+#include "java_lang_StringBuilder.h"
 #include "java_lang_String.h"
 #include "java_lang_Integer.h"
 #include "java_lang_Float.h"
@@ -0,0 +1,387 @@
+/* needed for dladdr() and REG_RIP */
+#define _GNU_SOURCE
+#include "rjava_crt.h"
+
+#ifdef RJAVA_PROFILE
+
+#include <stdio.h>
+#include <stdlib.h>
+#include <pthread.h>
+#include <string.h>
+#include <time.h>
+#include <signal.h>
+#include <sys/time.h>
+#include <execinfo.h>
+#include <dlfcn.h>
+#include <ucontext.h>
+#ifdef __OS_MACOSX_
+#include <mach-o/getsect.h>
+#include <mach-o/ldsyms.h>
+#endif
+
+/* see RJAVA_PROF_SECTION */
+#ifdef __OS_MACOSX_
+static rjava_prof_slot* rjava_prof_slots(size_t* n) {
+    unsigned long size = 0;
+    rjava_prof_slot* slots = (rjava_prof_slot*) getsectiondata(&_mh_execute_header, "__DATA", "__rjava_prof", &size);
+    *n = size / sizeof(rjava_prof_slot);
+    return slots;
+}
+#else
+extern rjava_prof_slot __start_rjava_prof[];
+extern rjava_prof_slot __stop_rjava_prof[];
+
+static rjava_prof_slot* rjava_prof_slots(size_t* n) {
+    *n = __stop_rjava_prof - __start_rjava_prof;
+    return __start_rjava_prof;
+}
+#endif
+
+static uint64_t rjava_prof_start_ticks;
+static struct timespec rjava_prof_start_time;
+
+static const char* rjava_prof_out() {
+    const char* out = getenv("RJAVA_PROF_OUT");
+    return out != NULL ? out : "rjava_prof.txt";
+}
+
+static double rjava_prof_seconds_since_start() {
+    struct timespec now;
+    clock_gettime(CLOCK_MONOTONIC, &now);
+    return (now.tv_sec - rjava_prof_start_time.tv_sec) + (now.tv_nsec - rjava_prof_start_time.tv_nsec) / 1e9;
+}
+
+rjava_prof_slot* rjava_prof_first_slot;
+__thread rjava_prof_counter* rjava_prof_counters = NULL;
+
+#if RJAVA_PROFILE == RJAVA_PROFILE_COUNT || RJAVA_PROFILE == RJAVA_PROFILE_TIME
+
+/* counters of every thread that has called a generated function, kept after the thread exits */
+typedef struct rjava_prof_thread {
+    rjava_prof_counter* counters;
+    struct rjava_prof_thread* next;
+} rjava_prof_thread;
+
+static rjava_prof_thread* rjava_prof_threads = NULL;
+static pthread_mutex_t rjava_prof_threads_lock = PTHREAD_MUTEX_INITIALIZER;
+
+/* the first call of a generated function in a thread comes here */
+rjava_prof_counter* rjava_prof_thread_counters() {
+    size_t n;
+    rjava_prof_first_slot = rjava_prof_slots(&n);
+
+    rjava_prof_thread* thread = (rjava_prof_thread*) malloc(sizeof(rjava_prof_thread));
+    thread->counters = (rjava_prof_counter*) calloc(n, sizeof(rjava_prof_counter));
+    pthread_mutex_lock(&rjava_prof_threads_lock);
+    thread->next = rjava_prof_threads;
+    rjava_prof_threads = thread;
+    pthread_mutex_unlock(&rjava_prof_threads_lock);
+
+    rjava_prof_counters = thread->counters;
+    return rjava_prof_counters;
+}
+
+typedef struct rjava_prof_method {
+    const char* signature;
+    rjava_prof_counter counter;
+} rjava_prof_method;
+
+static int rjava_prof_by_signature(const void* a, const void* b) {
+    return strcmp(((rjava_prof_method*) a)->signature, ((rjava_prof_method*) b)->signature);
+}
+
+/* most expensive first: by time if there is time, otherwise by calls */
+static int rjava_prof_by_cost(const void* a, const void* b) {
+    const rjava_prof_counter* x = &((const rjava_prof_method*) a)->counter;
+    const rjava_prof_counter* y = &((const rjava_prof_method*) b)->counter;
+    uint64_t cx = RJAVA_PROFILE == RJAVA_PROFILE_TIME ? x->ticks : x->calls;
+    uint64_t cy = RJAVA_PROFILE == RJAVA_PROFILE_TIME ? y->ticks : y->calls;
+    return cx < cy ? 1 : (cx > cy ? -1 : 0);
+}
+
+static void rjava_prof_report() {
+    double seconds = rjava_prof_seconds_since_start();
+#if RJAVA_PROFILE == RJAVA_PROFILE_TIME
+    double ns_per_tick = seconds * 1e9 / (rjava_prof_ticks() - rjava_prof_start_ticks);
+#endif
+
+    /* sum up the threads (other threads may still be running, their counters are read as they are) */
+    size_t n, i, merged = 0;
+    rjava_prof_slot* slots = rjava_prof_slots(&n);
+    rjava_prof_method* methods = (rjava_prof_method*) calloc(n + 1, sizeof(rjava_prof_method));
+    for (i = 0; i < n; i++)
+        methods[i].signature = slots[i].signature;
+    pthread_mutex_lock(&rjava_prof_threads_lock);
+    rjava_prof_thread* thread;
+    for (thread = rjava_prof_threads; thread != NULL; thread = thread->next) {
+        for (i = 0; i < n; i++) {
+            methods[i].counter.calls += thread->counters[i].calls;
+            methods[i].counter.ticks += thread->counters[i].ticks;
+        }
+    }
+    pthread_mutex_unlock(&rjava_prof_threads_lock);
+
+    /* one entry for each method, an inline method has slots in several files */
+    qsort(methods, n, sizeof(rjava_prof_method), rjava_prof_by_signature);
+    for (i = 0; i < n; i++) {
+        if (merged > 0 && strcmp(methods[merged - 1].signature, methods[i].signature) == 0) {
+            methods[merged - 1].counter.calls += methods[i].counter.calls;
+            methods[merged - 1].counter.ticks += methods[i].counter.ticks;
+        } else methods[merged++] = methods[i];
+    }
+    qsort(methods, merged, sizeof(rjava_prof_method), rjava_prof_by_cost);
+
+    FILE* out = fopen(rjava_prof_out(), "w");
+    if (out == NULL) {
+        fprintf(stderr, "rjava profiler: cannot write to %s\n", rjava_prof_out());
+        free(methods);
+        return;
+    }
+#if RJAVA_PROFILE == RJAVA_PROFILE_TIME
+    fprintf(out, "# %zu methods in %.3fs, inclusive time\n", merged, seconds);
+    fprintf(out, "%16s %12s %12s  %s\n", "calls", "ms", "ns/call", "method");
+#else
+    fprintf(out, "# %zu methods in %.3fs\n", merged, seconds);
+    fprintf(out, "%16s  %s\n", "calls", "method");
+#endif
+    for (i = 0; i < merged; i++) {
+        rjava_prof_counter* counter = &methods[i].counter;
+        if (counter->calls == 0)
+            break;
+#if RJAVA_PROFILE == RJAVA_PROFILE_TIME
+        double ns = counter->ticks * ns_per_tick;
+        fprintf(out, "%16llu %12.3f %12.1f  %s\n", (unsigned long long) counter->calls, ns / 1e6, ns / counter->calls, methods[i].signature);
+#else
+        fprintf(out, "%16llu  %s\n", (unsigned long long) counter->calls, methods[i].signature);
+#endif
+    }
+    fclose(out);
+    fprintf(stderr, "rjava profiler: %zu methods called, report in %s\n", i, rjava_prof_out());
+
+    free(methods);
+}
+
+void rjava_prof_init() {
+    rjava_prof_start_ticks = rjava_prof_ticks();
+    clock_gettime(CLOCK_MONOTONIC, &rjava_prof_start_time);
+    atexit(rjava_prof_report);
+}
+
+#elif RJAVA_PROFILE == RJAVA_PROFILE_SAMPLE
+
+#define RJAVA_PROF_DEPTH 64
+
+typedef struct rjava_prof_sample {
+    int depth;
+    void* pc[RJAVA_PROF_DEPTH];
+} rjava_prof_sample;
+
+/* preallocated, so the signal handler never allocates. Later samples are dropped if it is full */
+static rjava_prof_sample* rjava_prof_samples;
+static int rjava_prof_max_samples;
+static volatile int rjava_prof_taken = 0;
+
+static void* rjava_prof_interrupted_pc(void* context) {
+    ucontext_t* uc = (ucontext_t*) context;
+#if defined(__OS_MACOSX_) && defined(__x86_64__)
+    return (void*) uc->uc_mcontext->__ss.__rip;
+#elif defined(__OS_MACOSX_) && defined(__i386__)
+    return (void*) uc->uc_mcontext->__ss.__eip;
+#elif defined(__x86_64__)
+    return (void*) uc->uc_mcontext.gregs[REG_RIP];
+#elif defined(__i386__)
+    return (void*) uc->uc_mcontext.gregs[REG_EIP];
+#else
+    return NULL;
+#endif
+}
+
+static void rjava_prof_signal(int sig, siginfo_t* info, void* context) {
+    int i = __atomic_fetch_add(&rjava_prof_taken, 1, __ATOMIC_RELAXED);
+    if (i >= rjava_prof_max_samples)
+        return;
+
+    rjava_prof_sample* sample = &rjava_prof_samples[i];
+    void* pc = rjava_prof_interrupted_pc(context);
+    int depth = backtrace(sample->pc, RJAVA_PROF_DEPTH);
+
+    /* drop the frames of the handler and the signal trampoline, the stack starts at the interrupted pc */
+    int skip = 0;
+    while (skip < depth && sample->pc[skip] != pc)
+        skip++;
+    if (skip == depth)
+        skip = depth < 2 ? depth : 2;
+    memmove(sample->pc, sample->pc + skip, (depth - skip) * sizeof(void*));
+    sample->depth = depth - skip;
+    /* the report looks up pc - 1 for return addresses, the leaf is not one */
+    if (sample->depth > 0)
+        sample->pc[0] = (char*) sample->pc[0] + 1;
+}
+
+/* generated functions by address, to find the function a pc is in */
+static rjava_prof_slot** rjava_prof_functions;
+static size_t rjava_prof_function_count;
+
+static int rjava_prof_by_address(const void* a, const void* b) {
+    uintptr_t x = (uintptr_t) (*(rjava_prof_slot**) a)->function;
+    uintptr_t y = (uintptr_t) (*(rjava_prof_slot**) b)->function;
+    return x < y ? -1 : (x > y ? 1 : 0);
+}
+
+static int rjava_prof_by_pc(const void* a, const void* b) {
+    uintptr_t x = (uintptr_t) *(void**) a;
+    uintptr_t y = (uintptr_t) *(void**) b;
+    return x < y ? -1 : (x > y ? 1 : 0);
+}
+
+/* where the generated code is loaded (the executable, or whatever links the library) */
+static void* rjava_prof_base;
+
+/*
+ * the generated function that starts closest below pc, unless dladdr() finds a symbol that starts even closer (the
+ * runtime, libc, etc). Static (inline) functions are not in the dynamic symbol table, so they are only found by slots
+ */
+static const char* rjava_prof_resolve(void* pc) {
+    Dl_info info;
+    int found = dladdr(pc, &info);
+    /* in another library, even if there is no symbol for it */
+    if (found != 0 && info.dli_fbase != rjava_prof_base)
+        return info.dli_sname != NULL ? info.dli_sname : info.dli_fname;
+
+    size_t lo = 0, hi = rjava_prof_function_count;
+    while (lo < hi) {
+        size_t mid = (lo + hi) / 2;
+        if ((uintptr_t) rjava_prof_functions[mid]->function <= (uintptr_t) pc)
+            lo = mid + 1;
+        else hi = mid;
+    }
+    rjava_prof_slot* below = lo > 0 ? rjava_prof_functions[lo - 1] : NULL;
+    if (found != 0 && info.dli_saddr != NULL &&
+            (below == NULL || (uintptr_t) info.dli_saddr > (uintptr_t) below->function))
+        return info.dli_sname != NULL ? info.dli_sname : "[unknown]";
+    if (below == NULL)
+        return "[unknown]";
+    return below->signature;
+}
+
+typedef struct rjava_prof_pc_name {
+    void* pc;
+    const char* name;
+} rjava_prof_pc_name;
+
+static int rjava_prof_by_pc_name(const void* a, const void* b) {
+    return rjava_prof_by_pc(&((rjava_prof_pc_name*) a)->pc, &((rjava_prof_pc_name*) b)->pc);
+}
+
+static int rjava_prof_by_string(const void* a, const void* b) {
+    return strcmp(*(char**) a, *(char**) b);
+}
+
+static void rjava_prof_report() {
+    struct itimerval stop;
+    memset(&stop, 0, sizeof(stop));
+    setitimer(ITIMER_PROF, &stop, NULL);
+
+    int samples = rjava_prof_taken < rjava_prof_max_samples ? rjava_prof_taken : rjava_prof_max_samples;
+    size_t n, i, pcs = 0;
+    int s, j;
+
+    rjava_prof_slot* slots = rjava_prof_slots(&n);
+    rjava_prof_functions = (rjava_prof_slot**) malloc(n * sizeof(rjava_prof_slot*));
+    for (i = 0; i < n; i++)
+        rjava_prof_functions[i] = &slots[i];
+    rjava_prof_function_count = n;
+    qsort(rjava_prof_functions, n, sizeof(rjava_prof_slot*), rjava_prof_by_address);
+    Dl_info self;
+    if (dladdr((void*) rjava_prof_init, &self) != 0)
+        rjava_prof_base = self.dli_fbase;
+
+    /* resolve each distinct pc once, dladdr() is slow. A return address points after the call, so look at pc - 1 */
+    for (s = 0; s < samples; s++)
+        pcs += rjava_prof_samples[s].depth;
+    rjava_prof_pc_name* names = (rjava_prof_pc_name*) malloc((pcs + 1) * sizeof(rjava_prof_pc_name));
+    pcs = 0;
+    for (s = 0; s < samples; s++)
+        for (j = 0; j < rjava_prof_samples[s].depth; j++)
+            names[pcs++].pc = rjava_prof_samples[s].pc[j];
+    qsort(names, pcs, sizeof(rjava_prof_pc_name), rjava_prof_by_pc_name);
+    for (i = 0; i < pcs; i++)
+        names[i].name = (i > 0 && names[i].pc == names[i - 1].pc) ? names[i - 1].name : rjava_prof_resolve((char*) names[i].pc - 1);
+
+    /* fold each stack to "outer;...;leaf" */
+    char** stacks = (char**) malloc((samples + 1) * sizeof(char*));
+    for (s = 0; s < samples; s++) {
+        rjava_prof_sample* sample = &rjava_prof_samples[s];
+        size_t length = 1;
+        const char* frames[RJAVA_PROF_DEPTH];
+        for (j = 0; j < sample->depth; j++) {
+            rjava_prof_pc_name key = {sample->pc[j], NULL};
+            frames[j] = ((rjava_prof_pc_name*) bsearch(&key, names, pcs, sizeof(rjava_prof_pc_name), rjava_prof_by_pc_name))->name;
+            length += strlen(frames[j]) + 1;
+        }
+        stacks[s] = (char*) malloc(length);
+        stacks[s][0] = '\0';
+        for (j = sample->depth; j > 0; j--) {
+            strcat(stacks[s], frames[j - 1]);
+            if (j > 1)
+                strcat(stacks[s], ";");
+        }
+    }
+    qsort(stacks, samples, sizeof(char*), rjava_prof_by_string);
+
+    FILE* out = fopen(rjava_prof_out(), "w");
+    if (out == NULL) {
+        fprintf(stderr, "rjava profiler: cannot write to %s\n", rjava_prof_out());
+        return;
+    }
+    int count = 0;
+    for (s = 0; s < samples; s++) {
+        count++;
+        if (s + 1 == samples || strcmp(stacks[s], stacks[s + 1]) != 0) {
+            fprintf(out, "%s %d\n", stacks[s], count);
+            count = 0;
+        }
+    }
+    fclose(out);
+    fprintf(stderr, "rjava profiler: %d samples in %.3fs (%d dropped), stacks in %s\n", samples, rjava_prof_seconds_since_start(),
+            rjava_prof_taken - samples, rjava_prof_out());
+
+    for (s = 0; s < samples; s++)
+        free(stacks[s]);
+    free(stacks);
+    free(names);
+    free(rjava_prof_functions);
+}
+
+void rjava_prof_init() {
+    rjava_prof_start_ticks = rjava_prof_ticks();
+    clock_gettime(CLOCK_MONOTONIC, &rjava_prof_start_time);
+
+    const char* max = getenv("RJAVA_PROF_SAMPLES");
+    rjava_prof_max_samples = max != NULL ? atoi(max) : 65536;
+    rjava_prof_samples = (rjava_prof_sample*) malloc((size_t) rjava_prof_max_samples * sizeof(rjava_prof_sample));
+
+    /* the first backtrace() loads the unwinder, which allocates. Do it here instead of in the handler */
+    void* warmup[1];
+    backtrace(warmup, 1);
+
+    struct sigaction action;
+    memset(&action, 0, sizeof(action));
+    action.sa_sigaction = rjava_prof_signal;
+    action.sa_flags = SA_SIGINFO | SA_RESTART;
+    sigemptyset(&action.sa_mask);
+    sigaction(SIGPROF, &action, NULL);
+
+    const char* interval = getenv("RJAVA_PROF_INTERVAL");
+    struct itimerval timer;
+    timer.it_interval.tv_sec = 0;
+    timer.it_interval.tv_usec = interval != NULL ? atoi(interval) : 1000;
+    timer.it_value = timer.it_interval;
+    setitimer(ITIMER_PROF, &timer, NULL);
+
+    atexit(rjava_prof_report);
+}
+
+#endif
+
+#endif
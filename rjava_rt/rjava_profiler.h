@@ -0,0 +1,99 @@
+#ifndef RJAVA_PROFILER_H
+#define RJAVA_PROFILER_H
+
+/*
+ * function profiler for generated code, turned on by rjc -profile (RJAVA_PROFILE is defined in rjava_crt.h)
+ *
+ * Each generated function starts with RJAVA_PROF_ENTER(), which declares a static slot for the function in the
+ * rjava_prof section, so the report finds all the slots without any registration. An inline function has one slot in
+ * each file that includes it, the report adds them up by name.
+ *  count:  calls are counted. Each thread has its own counters (indexed by slot), so counting is a plain increment
+ *  time:   calls are counted, and rdtsc ticks between entry and exit (inclusive time) are summed. Time of recursive
+ *          calls is counted once for each frame
+ *  sample: nothing is counted. SIGPROF interrupts the program every RJAVA_PROF_INTERVAL microseconds of cpu time
+ *          (1000 by default), and the call stack is recorded. Slots only map code addresses back to methods
+ *
+ * The report is written at exit to RJAVA_PROF_OUT, or rjava_prof.txt: calls (and time) of each method, most expensive
+ * first, or with sampling, one line per distinct stack with its samples ("outer;...;leaf count", the input of flamegraph.pl)
+ */
+#define RJAVA_PROFILE_COUNT  1
+#define RJAVA_PROFILE_TIME   2
+#define RJAVA_PROFILE_SAMPLE 3
+
+#ifdef RJAVA_PROFILE
+
+#include <stdint.h>
+#include <time.h>
+#if defined(__x86_64__) || defined(__i386__)
+#include <x86intrin.h>
+#endif
+
+/* same size and alignment on 32 and 64 bits, so the section is an array of slots */
+typedef struct rjava_prof_slot {
+    const char* signature;
+    void* function;
+} __attribute__((aligned(16))) rjava_prof_slot;
+
+#ifdef __OS_MACOSX_
+#define RJAVA_PROF_SECTION __attribute__((used, section("__DATA,__rjava_prof")))
+#else
+#define RJAVA_PROF_SECTION __attribute__((used, section("rjava_prof")))
+#endif
+
+typedef struct rjava_prof_counter {
+    uint64_t calls;
+    uint64_t ticks;
+} rjava_prof_counter;
+
+/* the first slot in the section, and counters of the current thread (one for each slot) */
+extern rjava_prof_slot* rjava_prof_first_slot;
+extern __thread rjava_prof_counter* rjava_prof_counters;
+rjava_prof_counter* rjava_prof_thread_counters();
+
+static inline rjava_prof_counter* rjava_prof_counter_of(rjava_prof_slot* slot) {
+    rjava_prof_counter* counters = rjava_prof_counters;
+    if (__builtin_expect(counters == NULL, 0))
+        counters = rjava_prof_thread_counters();
+    return &counters[slot - rjava_prof_first_slot];
+}
+
+static inline uint64_t rjava_prof_ticks() {
+#if defined(__x86_64__) || defined(__i386__)
+    return __rdtsc();
+#else
+    struct timespec ts;
+    clock_gettime(CLOCK_MONOTONIC, &ts);
+    return (uint64_t) ts.tv_sec * 1000000000 + ts.tv_nsec;
+#endif
+}
+
+typedef struct rjava_prof_frame {
+    rjava_prof_counter* counter;
+    uint64_t start;
+} rjava_prof_frame;
+
+/* runs whenever the function returns, as the cleanup of its frame variable */
+static inline void rjava_prof_exit(rjava_prof_frame* frame) {
+    frame->counter->ticks += rjava_prof_ticks() - frame->start;
+}
+
+#if RJAVA_PROFILE == RJAVA_PROFILE_COUNT
+#define RJAVA_PROF_ENTER(function, signature) \
+    static rjava_prof_slot rjava_prof_this RJAVA_PROF_SECTION = {signature, NULL}; \
+    rjava_prof_counter_of(&rjava_prof_this)->calls++
+#elif RJAVA_PROFILE == RJAVA_PROFILE_TIME
+#define RJAVA_PROF_ENTER(function, signature) \
+    static rjava_prof_slot rjava_prof_this RJAVA_PROF_SECTION = {signature, NULL}; \
+    rjava_prof_frame rjava_prof_frame_this __attribute__((cleanup(rjava_prof_exit))) = {rjava_prof_counter_of(&rjava_prof_this), rjava_prof_ticks()}; \
+    rjava_prof_frame_this.counter->calls++
+#elif RJAVA_PROFILE == RJAVA_PROFILE_SAMPLE
+#define RJAVA_PROF_ENTER(function, signature) \
+    static rjava_prof_slot rjava_prof_this RJAVA_PROF_SECTION = {signature, (void*) function}
+#endif
+
+/* called from rjava_runtime_global_init(), the report is written at exit */
+void rjava_prof_init();
+
+#endif
+
+#endif
@@ -0,0 +1,96 @@
+package org.rjava.unittest.lang;
+
+import org.rjava.restriction.rulesets.RJavaCore;
+import org.rjava.unittest.UnitTest;
+
+/**
+ * array accesses that bounds check elimination proves in range, and accesses it cannot prove (which keep the check).
+ * An access out of bounds exits the test, so every access here is in range
+ */
+@RJavaCore
+public class TestBoundsCheck extends UnitTest {
+    public static void main(String[] args) {
+        start("Test forward loop over array (proved)");
+        check(testForwardLoop());
+        
+        start("Test reverse loop over array (proved)");
+        check(testReverseLoop());
+        
+        start("Test loop bound by length in a local (proved)");
+        check(testLengthLocal());
+        
+        start("Test index plus one (not proved)");
+        check(testIndexPlusOne());
+        
+        start("Test array reassigned in loop (not proved)");
+        check(testArrayReassigned());
+        
+        start("Test index loaded from array (not proved)");
+        check(testIndexFromArray());
+    }
+    
+    private static int[] newArray(int length) {
+        int[] array = new int[length];
+        for (int i = 0; i < array.length; i++)
+            array[i] = i * 2;
+        return array;
+    }
+    
+    public static boolean testForwardLoop() {
+        int[] array = newArray(10);
+        int sum = 0;
+        for (int i = 0; i < array.length; i++)
+            sum += array[i];
+        return sum == 90;
+    }
+    
+    public static boolean testReverseLoop() {
+        int[] array = newArray(10);
+        int sum = 0;
+        for (int i = array.length - 1; i >= 0; i--)
+            sum += array[i];
+        return sum == 90;
+    }
+    
+    public static boolean testLengthLocal() {
+        int[] array = newArray(10);
+        int length = array.length;
+        int sum = 0;
+        for (int i = 0; i < length; i++)
+            sum += array[i];
+        return sum == 90;
+    }
+    
+    public static boolean testIndexPlusOne() {
+        int[] array = newArray(10);
+        int sum = 0;
+        for (int i = 0; i < array.length; i++) {
+            if (i + 1 < array.length)
+                sum += array[i + 1] - array[i];
+        }
+        return sum == 18;
+    }
+    
+    public static boolean testArrayReassigned() {
+        int[] array = newArray(10);
+        int[] shorter = newArray(5);
+        int sum = 0;
+        for (int i = 0; i < array.length; i++) {
+            if (i == 3)
+                array = shorter;
+            if (i < array.length)
+                sum += array[i];
+        }
+        // 0 + 2 + 4 from the first array, then 6 + 8 from the shorter one
+        return sum == 20;
+    }
+    
+    public static boolean testIndexFromArray() {
+        int[] array = newArray(10);
+        int[] indices = {9, 0, 4};
+        int sum = 0;
+        for (int i = 0; i < indices.length; i++)
+            sum += array[indices[i]];
+        return sum == 26;
+    }
+}
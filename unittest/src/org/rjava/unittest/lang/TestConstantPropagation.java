@@ -0,0 +1,107 @@
+package org.rjava.unittest.lang;
+
+import org.rjava.restriction.rulesets.RJavaCore;
+import org.rjava.unittest.UnitTest;
+
+/**
+ * constants that sparse conditional constant propagation finds beyond literals: static final fields set by the class
+ * initializer (as VM.VERIFY_ASSERTIONS) and calls that return a constant. Blocks guarded by them are folded away,
+ * and private methods only called from such blocks are removed
+ */
+@RJavaCore
+public class TestConstantPropagation extends UnitTest {
+    public static void main(String[] args) {
+        start("Test block guarded by a false static final is folded");
+        check(testFoldedAssertionBlock());
+        
+        start("Test else branch of a false static final is kept");
+        check(testFoldedElseBranch());
+        
+        start("Test switch on a static final is folded");
+        check(testFoldedSwitch());
+        
+        start("Test private method called from live code is kept");
+        check(testPrivateMethodStillCalled());
+        
+        start("Test static final set from a mutable field is not folded");
+        check(testNonConstantField());
+        
+        start("Test constant survives a loop");
+        check(testConstantInLoop());
+    }
+    
+    // not compile time constants, so javac leaves them to the analysis
+    static class Options {
+        static final boolean VERIFY = verifyAssertions();
+        static final int LEVEL = level();
+        
+        static int enabled = 1;
+        static final boolean DYNAMIC = enabled > 0;
+        
+        private static boolean verifyAssertions() {
+            return false;
+        }
+        
+        private static int level() {
+            return 2;
+        }
+    }
+    
+    // only called from blocks guarded by Options.VERIFY, so it is removed
+    private static int assertionsOnly() {
+        return 1;
+    }
+    
+    // called from a guarded block and from live code, so it is kept
+    private static int sometimesCalled() {
+        return 2;
+    }
+    
+    public static boolean testFoldedAssertionBlock() {
+        int calls = 0;
+        if (Options.VERIFY)
+            calls += assertionsOnly();
+        return calls == 0;
+    }
+    
+    public static boolean testFoldedElseBranch() {
+        int taken;
+        if (Options.VERIFY)
+            taken = 1;
+        else taken = 2;
+        return taken == 2;
+    }
+    
+    public static boolean testFoldedSwitch() {
+        int ret;
+        switch (Options.LEVEL) {
+        case 1: ret = 10; break;
+        case 2: ret = 20; break;
+        default: ret = 30;
+        }
+        return ret == 20;
+    }
+    
+    public static boolean testPrivateMethodStillCalled() {
+        int sum = 0;
+        if (Options.VERIFY)
+            sum += sometimesCalled();
+        sum += sometimesCalled();
+        return sum == 2;
+    }
+    
+    public static boolean testNonConstantField() {
+        return Options.DYNAMIC;
+    }
+    
+    public static boolean testConstantInLoop() {
+        int x = 3;
+        int sum = 0;
+        for (int i = 0; i < 10; i++) {
+            if (x != 3)
+                x = 5;
+            sum += x;
+        }
+        return x == 3 && sum == 30;
+    }
+}
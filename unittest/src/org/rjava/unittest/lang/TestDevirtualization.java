@@ -0,0 +1,104 @@
+package org.rjava.unittest.lang;
+
+import org.rjava.restriction.rulesets.RJavaCore;
+import org.rjava.unittest.UnitTest;
+
+/**
+ * virtual calls that class hierarchy analysis turns into direct calls (one target), guarded direct calls
+ * (a few targets), or leaves virtual (receivers typed as java.lang.Object may be rjava_rt classes such as String)
+ */
+@RJavaCore
+public class TestDevirtualization extends UnitTest {
+    public static void main(String[] args) {
+        start("Test monomorphic call");
+        check(testMonomorphic());
+        
+        start("Test bimorphic call");
+        check(testBimorphic());
+        
+        start("Test equals() on Object receiver");
+        check(testObjectEquals());
+        
+        start("Test toString() on Object receiver");
+        check(testObjectToString());
+    }
+    
+    static class Counter {
+        int count = 0;
+        public void increase() {
+            count++;
+        }
+    }
+    
+    static abstract class Shape {
+        public abstract int area();
+    }
+    
+    static class Square extends Shape {
+        int side;
+        Square(int side) {
+            this.side = side;
+        }
+        public int area() {
+            return side * side;
+        }
+    }
+    
+    // inherits area() from Square, so it dispatches to the same target
+    static class ColoredSquare extends Square {
+        ColoredSquare(int side) {
+            super(side);
+        }
+    }
+    
+    static class Rectangle extends Shape {
+        int width;
+        int height;
+        Rectangle(int width, int height) {
+            this.width = width;
+            this.height = height;
+        }
+        public int area() {
+            return width * height;
+        }
+    }
+    
+    // the only application class overriding equals() and toString()
+    static class Named {
+        String name;
+        Named(String name) {
+            this.name = name;
+        }
+        public boolean equals(Object o) {
+            return o instanceof Named && ((Named) o).name.equals(name);
+        }
+        public String toString() {
+            return name;
+        }
+    }
+    
+    public static boolean testMonomorphic() {
+        Counter counter = new Counter();
+        for (int i = 0; i < 10; i++)
+            counter.increase();
+        return counter.count == 10;
+    }
+    
+    public static boolean testBimorphic() {
+        Shape[] shapes = {new Square(2), new Rectangle(2, 3), new ColoredSquare(3), new Rectangle(1, 5)};
+        int sum = 0;
+        for (int i = 0; i < shapes.length; i++)
+            sum += shapes[i].area();
+        return sum == 4 + 6 + 9 + 5;
+    }
+    
+    public static boolean testObjectEquals() {
+        Object[] objects = {"abc", new Named("abc")};
+        return objects[0].equals("abc") && !objects[1].equals("abc") && objects[1].equals(new Named("abc"));
+    }
+    
+    public static boolean testObjectToString() {
+        Object[] objects = {"abc", new Named("abc")};
+        return objects[0].toString().equals("abc") && objects[1].toString().equals("abc");
+    }
+}
@@ -0,0 +1,108 @@
+package org.rjava.unittest.lang;
+
+import org.rjava.restriction.rulesets.RJavaCore;
+import org.rjava.unittest.UnitTest;
+
+/**
+ * objects that escape analysis may allocate on the stack, and objects that have to stay on the heap.
+ * A stack slot is reused each time its allocation site runs, so an object that is still live when the site
+ * runs again (e.g. kept in prev across iterations) must not share the slot with the new one
+ */
+@RJavaCore
+public class TestEscapeAnalysis extends UnitTest {
+    public static void main(String[] args) {
+        start("Test non-escaping object in loop");
+        check(testNonEscapingInLoop());
+        
+        start("Test object kept across iterations");
+        check(testLoopCarriedPrev());
+        
+        start("Test object stored to array");
+        check(testStoredToArray());
+        
+        start("Test objects linked in loop");
+        check(testLinkedInLoop());
+        
+        start("Test object returned from callee");
+        check(testReturned());
+    }
+    
+    static class Point {
+        int x;
+        int y;
+        Point(int x, int y) {
+            this.x = x;
+            this.y = y;
+        }
+        int sum() {
+            return x + y;
+        }
+    }
+    
+    static class Node {
+        int value;
+        Node next;
+        Node(int value) {
+            this.value = value;
+        }
+    }
+    
+    public static boolean testNonEscapingInLoop() {
+        int sum = 0;
+        for (int i = 0; i < 10; i++) {
+            Point p = new Point(i, i);
+            sum += p.sum();
+        }
+        return sum == 90;
+    }
+    
+    public static boolean testLoopCarriedPrev() {
+        Node prev = null;
+        boolean ret = true;
+        for (int i = 0; i < 10; i++) {
+            Node obj = new Node(i);
+            if (prev != null)
+                ret = ret && prev.value == i - 1 && prev != obj;
+            prev = obj;
+        }
+        return ret && prev.value == 9;
+    }
+    
+    public static boolean testStoredToArray() {
+        Point[] points = new Point[10];
+        for (int i = 0; i < points.length; i++)
+            points[i] = new Point(i, 0);
+        
+        int sum = 0;
+        for (int i = 0; i < points.length; i++)
+            sum += points[i].x;
+        return sum == 45;
+    }
+    
+    public static boolean testLinkedInLoop() {
+        Node head = null;
+        for (int i = 0; i < 10; i++) {
+            Node n = new Node(i);
+            n.next = head;
+            head = n;
+        }
+        
+        int expected = 9;
+        for (Node n = head; n != null; n = n.next) {
+            if (n.value != expected)
+                return false;
+            expected--;
+        }
+        return expected == -1;
+    }
+    
+    private static Point newPoint(int x, int y) {
+        return new Point(x, y);
+    }
+    
+    public static boolean testReturned() {
+        Point a = newPoint(1, 2);
+        Point b = newPoint(3, 4);
+        return a != b && a.sum() == 3 && b.sum() == 7;
+    }
+}
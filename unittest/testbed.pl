@@ -0,0 +1,64 @@
+#!/usr/bin/perl
+
+# boots the MMTk testbed (compiled with all plans, see testbed_all.list) with every -plan value
+
+use Config;
+use Cwd 'abs_path';
+use File::Basename;
+
+my $rjava_base = dirname(abs_path($0))."/..";
+my $rjc_script = "$rjava_base/rjc";
+my $generated_c_path = "$rjava_base/output";
+
+my @plans = ("NoGC", "SS", "MS", "Immix", "GenImmix", "MC", "RC", "GenCopy", "GenMS", "StickyMS", "StickyImmix");
+# seconds a plan may run. NoGC never collects, so it only needs to boot
+my $timeout = 120;
+
+my $rjc_flags = "-m32 ";
+my $mute = "> /dev/null 2>&1";
+
+my $os = "$Config{osname}";
+if ($os eq "linux") {
+  $rjc_flags = $rjc_flags."-host_os linux ";
+}
+
+print "OS: $os\n\n";
+
+print "RJava base dir:$rjava_base\n\n";
+
+chdir($rjava_base);
+my $exec_cmd = "$rjc_script $rjc_flags -dir mmtk/src:mmtk/testbed_src -l testbed_all.list -o testbed $mute";
+print "$exec_cmd\n";
+system($exec_cmd) == 0
+or die "Failed to compile testbed";
+
+chdir($generated_c_path);
+system("make $mute") == 0
+or die "Failed to build testbed";
+
+my $total = 0;
+my $success = 0;
+
+foreach $plan (@plans) {
+  $total ++;
+  print "Boot plan: $plan ";
+
+  my @out = `timeout $timeout ./testbed -plan $plan 2>&1`;
+  my $status = $?;
+  my $booted = grep(/\[RUN\]/, @out);
+
+  # gc plans exit after a few gcs
+  if ($booted && ($status == 0 || $plan eq "NoGC")) {
+    print "(pass)\n";
+    $success ++;
+  } else {
+    print "(fail)\n";
+    print "  $_" foreach (grep { defined } @out[-10 .. -1]);
+  }
+}
+
+print "===Testbed Results===\n";
+print "Boot success: $success / $total\n";
+print "===  End of Results ===\n";
+
+exit($success == $total ? 0 : 1);